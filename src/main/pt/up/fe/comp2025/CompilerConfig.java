@@ -4,12 +4,18 @@ import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public class CompilerConfig {
 
     private static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String OPTIMIZATION_LEVEL = "optimizationLevel";
+    private static final String TIME_PASSES = "timePasses";
+    private static final String REMARKS = "remarks";
+
+    private static final int MAX_OPTIMIZATION_LEVEL = 3;
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -18,8 +24,16 @@ public class CompilerConfig {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("O", CompilerConfig.OPTIMIZATION_LEVEL);
+        shortToLong.put("t", CompilerConfig.TIME_PASSES);
+        shortToLong.put("R", CompilerConfig.REMARKS);
     }
 
+    /**
+     * Options that are only given by their full name, as in '-profile=<file>'.
+     */
+    static Set<String> longOptions = Set.of(ConfigOptions.getInstrument(), ConfigOptions.getProfile());
+
 
     public static Optional<File> getInputFile(Map<String, String> config) {
         var inputFile = config.get(INPUT_FILE);
@@ -40,6 +54,75 @@ public class CompilerConfig {
         return Integer.parseInt(config.getOrDefault(REGISTER, "-1"));
     }
 
+    /**
+     * @return the optimization level, from 0 (no optimizations) to 3; without a level, '-o' is the same as '-O2'
+     */
+    public static int getOptimizationLevel(Map<String, String> config) {
+        var level = config.get(OPTIMIZATION_LEVEL);
+        if (level == null) {
+            return getOptimize(config) ? 2 : 0;
+        }
+
+        int value = Integer.parseInt(level);
+        if (value < 0 || value > MAX_OPTIMIZATION_LEVEL) {
+            throw new RuntimeException("Optimization level should be between 0 and " + MAX_OPTIMIZATION_LEVEL
+                    + ", got '" + level + "'");
+        }
+        return value;
+    }
+
+    /**
+     * @return true if the time of each optimization pass and the changes to the size of the code are printed
+     */
+    public static boolean getTimePasses(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(TIME_PASSES, "false"));
+    }
+
+
+    /**
+     * @return the JSON-lines file the optimization remarks are written to, if any
+     */
+    public static Optional<File> getRemarksFile(Map<String, String> config) {
+        var remarksFile = config.get(REMARKS);
+
+        if (remarksFile == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(remarksFile));
+    }
+
+
+    /**
+     * @return true if the generated code counts how many times its blocks, branches and calls run
+     */
+    public static boolean isInstrumented(Map<String, String> config) {
+        var instrument = config.get(ConfigOptions.getInstrument());
+        return instrument != null && !instrument.equals("false");
+    }
+
+    /**
+     * @return the file the profile of an instrumented build of the class is written to, by default the name of the
+     * class with the extension '.profile', in the directory the program runs in
+     */
+    public static String getInstrumentFile(Map<String, String> config, String className) {
+        var instrument = config.getOrDefault(ConfigOptions.getInstrument(), "true");
+        return instrument.equals("true") ? className + ".profile" : instrument;
+    }
+
+    /**
+     * @return the profile of an instrumented build the optimizations are guided by, if any
+     */
+    public static Optional<File> getProfileFile(Map<String, String> config) {
+        var profileFile = config.get(ConfigOptions.getProfile());
+
+        if (profileFile == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(profileFile));
+    }
+
 
     public static Map<String, String> getDefault() {
 
@@ -72,6 +155,13 @@ public class CompilerConfig {
                 throw new RuntimeException("Arguments should start with '-'");
             }
 
+            String longOption = arg.substring(1).split("=", 2)[0];
+            if (longOptions.contains(longOption)) {
+                var value = arg.length() > longOption.length() + 1 ? arg.substring(longOption.length() + 2) : "true";
+                config.put(longOption, value);
+                continue;
+            }
+
             String shortOption = arg.substring(1, 2);
             if (!isShortOpt(shortOption)) {
                 throw new RuntimeException("Unrecognized option '-" + shortOption + "'");
@@ -83,6 +173,10 @@ public class CompilerConfig {
                 if (equalSign.equals("=")) {
 
                     value = arg.substring(3);
+                } else if (Character.isDigit(arg.charAt(2))) {
+
+                    // Numbers can follow the option directly, as in '-O2'
+                    value = arg.substring(2);
                 }
             }
 
@@ -103,9 +197,15 @@ public class CompilerConfig {
         var absolutePath = inputFile.getAbsolutePath();
         config.put(INPUT_FILE, absolutePath);
 
+        var profileFile = getProfileFile(config);
+        if (profileFile.isPresent() && !profileFile.get().isFile()) {
+            throw new RuntimeException("Could not find profile file '" + profileFile.get() + "'");
+        }
+
         // Verify if values are valid
         getOptimize(config);
         getRegisterAllocation(config);
+        getOptimizationLevel(config);
 
         return config;
     }
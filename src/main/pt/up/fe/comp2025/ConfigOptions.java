@@ -1,5 +1,7 @@
 package pt.up.fe.comp2025;
 
+import pt.up.fe.comp2025.optimization.OptimizationBudget;
+
 import java.io.File;
 import java.util.Map;
 import java.util.Optional;
@@ -11,6 +13,22 @@ public class ConfigOptions {
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
     private static final String EXTRA = "extra";
+    private static final String OPTIMIZATION_LEVEL = "optimizationLevel";
+    private static final String INLINE_SIZE = "inlineSize";
+    private static final String INLINE_CALLER_SIZE = "inlineCallerSize";
+    private static final String INLINE_DEPTH = "inlineDepth";
+    private static final String INLINE_PUBLIC = "inlinePublic";
+    private static final String UNROLL = "unroll";
+    private static final String UNROLL_FACTOR = "unrollFactor";
+    private static final String UNROLL_SIZE = "unrollSize";
+    private static final String WORK_BUDGET = "workBudget";
+    private static final String BUDGET = "budget";
+    private static final String SIZE_BUDGET = "sizeBudget";
+    private static final String METHOD_WORK_BUDGET = "methodWorkBudget";
+    private static final String METHOD_BUDGET = "methodBudget";
+    private static final String METHOD_SIZE_BUDGET = "methodSizeBudget";
+    private static final String INSTRUMENT = "instrument";
+    private static final String PROFILE = "profile";
 
     // These methods should be on CompilerConfig, but to avoid rewriting a file
     // that is in the src folder, this new class was added
@@ -31,6 +49,70 @@ public class ConfigOptions {
         return EXTRA;
     }
 
+    public static String getOptimizationLevel() {
+        return OPTIMIZATION_LEVEL;
+    }
+
+    public static String getInlineSize() {
+        return INLINE_SIZE;
+    }
+
+    public static String getInlineCallerSize() {
+        return INLINE_CALLER_SIZE;
+    }
+
+    public static String getInlineDepth() {
+        return INLINE_DEPTH;
+    }
+
+    public static String getInlinePublic() {
+        return INLINE_PUBLIC;
+    }
+
+    public static String getUnroll() {
+        return UNROLL;
+    }
+
+    public static String getUnrollFactor() {
+        return UNROLL_FACTOR;
+    }
+
+    public static String getUnrollSize() {
+        return UNROLL_SIZE;
+    }
+
+    public static String getWorkBudget() {
+        return WORK_BUDGET;
+    }
+
+    public static String getBudget() {
+        return BUDGET;
+    }
+
+    public static String getSizeBudget() {
+        return SIZE_BUDGET;
+    }
+
+    public static String getMethodWorkBudget() {
+        return METHOD_WORK_BUDGET;
+    }
+
+    public static String getMethodBudget() {
+        return METHOD_BUDGET;
+    }
+
+    public static String getMethodSizeBudget() {
+        return METHOD_SIZE_BUDGET;
+    }
+
+    public static String getInstrument() {
+        return INSTRUMENT;
+    }
+
+    public static String getProfile() {
+        return PROFILE;
+    }
+
     public static Optional<File> getInputFile(Map<String, String> config) {
         var inputFile = config.get(INPUT_FILE);
 
@@ -54,4 +136,100 @@ public class ConfigOptions {
     public static boolean getExtra(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(EXTRA, "false"));
     }
+
+    /**
+     * @return maximum number of OLLIR instructions of a method that is inlined
+     */
+    public static int getInlineSize(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(INLINE_SIZE, "20"));
+    }
+
+    /**
+     * @return maximum number of OLLIR instructions a method can grow to by inlining calls
+     */
+    public static int getInlineCallerSize(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(INLINE_CALLER_SIZE, "400"));
+    }
+
+    /**
+     * @return maximum nesting of calls inlined inside the code of other inlined calls
+     */
+    public static int getInlineDepth(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(INLINE_DEPTH, "3"));
+    }
+
+    /**
+     * @return true if public methods called on 'this' can be inlined, assuming no subclass overrides them
+     */
+    public static boolean getInlinePublic(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(INLINE_PUBLIC, "false"));
+    }
+
+    /**
+     * @return true if the loops with a number of iterations known at compile time are unrolled, by default only with
+     * -O3
+     */
+    public static boolean getUnroll(Map<String, String> config) {
+        var unrollByDefault = CompilerConfig.getOptimizationLevel(config) >= 3;
+        return Boolean.parseBoolean(config.getOrDefault(UNROLL, String.valueOf(unrollByDefault)));
+    }
+
+    /**
+     * @return maximum number of copies of the body of a loop that is partially unrolled
+     */
+    public static int getUnrollFactor(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(UNROLL_FACTOR, "4"));
+    }
+
+    /**
+     * @return maximum number of OLLIR instructions of the code that replaces the body of an unrolled loop
+     */
+    public static int getUnrollSize(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(UNROLL_SIZE, "64"));
+    }
+
+    /**
+     * @return instruction visits the optimizations of a compilation can make before the expensive ones are skipped
+     */
+    public static long getWorkBudget(Map<String, String> config) {
+        return Long.parseLong(config.getOrDefault(WORK_BUDGET, "20000000"));
+    }
+
+    /**
+     * @return milliseconds the optimizations of a compilation can take before the expensive ones are skipped, not
+     * limited unless given, since the time changes from run to run
+     */
+    public static long getBudget(Map<String, String> config) {
+        return config.containsKey(BUDGET) ? Long.parseLong(config.get(BUDGET)) : OptimizationBudget.NO_TIME_LIMIT;
+    }
+
+    /**
+     * @return maximum number of OLLIR instructions of a class for the expensive optimizations to run
+     */
+    public static int getSizeBudget(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(SIZE_BUDGET, "200000"));
+    }
+
+    /**
+     * @return instruction visits the optimizations can make on a method before the expensive ones are skipped for it
+     */
+    public static long getMethodWorkBudget(Map<String, String> config) {
+        return Long.parseLong(config.getOrDefault(METHOD_WORK_BUDGET, "2000000"));
+    }
+
+    /**
+     * @return milliseconds the optimizations can spend on a method before the expensive ones are skipped for it, not
+     * limited unless given
+     */
+    public static long getMethodBudget(Map<String, String> config) {
+        return config.containsKey(METHOD_BUDGET) ? Long.parseLong(config.get(METHOD_BUDGET))
+                : OptimizationBudget.NO_TIME_LIMIT;
+    }
+
+    /**
+     * @return maximum number of OLLIR instructions of a method for the expensive optimizations to run on it
+     */
+    public static int getMethodSizeBudget(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(METHOD_SIZE_BUDGET, "10000"));
+    }
 }
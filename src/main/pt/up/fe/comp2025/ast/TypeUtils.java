@@ -64,6 +64,7 @@ public class TypeUtils {
             case THIS_EXPR -> new Type(table.getClassName(), false);
             case MEMBER_EXPR -> getMemberExprType(expr);
             case UNARY_EXPR -> getUnaryExprType(expr);
+            case PAREN_EXPR -> getExprType(expr.getChildren().getFirst());
             case METHOD_CALL_EXPR -> getMethodCallExprType(expr);
             default -> throw new UnsupportedOperationException("Unknown expression kind: " + kind);
         };
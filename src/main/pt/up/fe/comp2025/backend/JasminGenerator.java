@@ -2,8 +2,11 @@ package pt.up.fe.comp2025.backend;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.specs.comp.ollir.ArrayOperand;
 import org.specs.comp.ollir.ClassUnit;
@@ -37,6 +40,9 @@ import org.specs.comp.ollir.type.Type;
 
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.CompilerConfig;
 import pt.up.fe.comp2025.backend.builders.AssignInstructionBuilder;
 import pt.up.fe.comp2025.backend.builders.BinaryOpInstructionBuilder;
 import pt.up.fe.comp2025.backend.builders.CallInstructionBuilder;
@@ -44,6 +50,13 @@ import pt.up.fe.comp2025.backend.builders.CondBranchInstructionBuilder;
 import pt.up.fe.comp2025.backend.builders.ControlFlowInstructionBuilder;
 import pt.up.fe.comp2025.backend.builders.FieldAccessInstructionBuilder;
 import pt.up.fe.comp2025.backend.builders.UnaryOpInstructionBuilder;
+import pt.up.fe.comp2025.backend.peephole.InstructionSize;
+import pt.up.fe.comp2025.backend.peephole.JasminInstruction;
+import pt.up.fe.comp2025.backend.peephole.LongJumps;
+import pt.up.fe.comp2025.backend.peephole.PeepholeOptimizer;
+import pt.up.fe.comp2025.backend.peephole.StackAnalysis;
+import pt.up.fe.comp2025.backend.split.MethodSplitter;
+import pt.up.fe.comp2025.optimization.Profile;
 import pt.up.fe.specs.util.classmap.FunctionClassMap;
 
 /**
@@ -64,12 +77,16 @@ public class JasminGenerator {
     Method currentMethod;
 
     private int labelCounter = 0;
-    private int maxStack = 0;
-    private int stack = 0;
 
-    private final Map<String, Integer> methodMaxStack = new HashMap<>();
     private final Map<String, Integer> methodMaxLocals = new HashMap<>();
 
+    // Hits of each peephole rule in all the methods of the class
+    private final Map<String, Integer> peepholeHits = new LinkedHashMap<>();
+
+    // Only in an instrumented build
+    private ProfileCounters profileCounters;
+    private Set<String> classMethods;
+
     public JasminGenerator(OllirResult ollirResult) {
         this.ollirResult = ollirResult;
         this.reports = new ArrayList<>();
@@ -112,6 +129,15 @@ public class JasminGenerator {
     }
 
     private String generateClassUnit(ClassUnit classUnit) {
+        // Methods too large for the JVM are split before any of them is generated
+        reports.addAll(new MethodSplitter(classUnit).split());
+
+        if (CompilerConfig.isInstrumented(ollirResult.getConfig())) {
+            profileCounters = new ProfileCounters(classUnit,
+                    CompilerConfig.getInstrumentFile(ollirResult.getConfig(), classUnit.getClassName()));
+            classMethods = classUnit.getMethods().stream().map(Method::getMethodName).collect(Collectors.toSet());
+        }
+
         ClassStructureBuilder structureBuilder = new ClassStructureBuilder();
 
         // Build complete class structure
@@ -119,11 +145,24 @@ public class JasminGenerator {
                 .withInheritance(resolveParentClassName(classUnit))
                 .withFieldDeclarations(classUnit.getFields())
                 .withDefaultConstructor()
-                .withMethodImplementations(filterNonConstructorMethods(ollirResult.getOllirClass().getMethods()));
+                .withMethodImplementations(filterNonConstructorMethods(ollirResult.getOllirClass().getMethods()))
+                .withProfileCounters();
+
+        if (CompilerConfig.getTimePasses(ollirResult.getConfig()) && !peepholeHits.isEmpty()) {
+            printPeepholeStatistics(classUnit.getClassName());
+        }
 
         return structureBuilder.buildJasminCode();
     }
 
+    /**
+     * Prints how many times each peephole rule was applied, after the statistics of the optimization passes.
+     */
+    private void printPeepholeStatistics(String className) {
+        System.out.println("Peephole rules of class '" + className + "':");
+        peepholeHits.forEach((rule, hits) -> System.out.println(String.format("  %-28s %9d", rule, hits)));
+    }
+
     // Inner class for building Jasmin class structure
     private class ClassStructureBuilder {
         private StringBuilder codeBuffer;
@@ -162,6 +201,23 @@ public class JasminGenerator {
             return this;
         }
 
+        /**
+         * The counters are known once all the methods were generated.
+         */
+        public ClassStructureBuilder withProfileCounters() {
+            if (profileCounters == null) {
+                return this;
+            }
+
+            codeBuffer.append(profileCounters.getMethods());
+            if (profileCounters.getDropped() > 0) {
+                reports.add(new Report(ReportType.WARNING, Stage.GENERATION, -1, -1, "Instrumentation of class '"
+                        + ollirResult.getOllirClass().getClassName() + "': " + profileCounters.getDropped()
+                        + " counters dropped, the class has too many"));
+            }
+            return this;
+        }
+
         public String buildJasminCode() {
             return codeBuffer.toString();
         }
@@ -176,7 +232,11 @@ public class JasminGenerator {
                         .append(NL);
             }
 
-            if (!fields.isEmpty()) {
+            if (profileCounters != null) {
+                codeBuffer.append(profileCounters.getFieldDeclaration());
+            }
+
+            if (!fields.isEmpty() || profileCounters != null) {
                 codeBuffer.append(NL);
             }
         }
@@ -193,9 +253,15 @@ public class JasminGenerator {
         }
     }
 
+    /**
+     * Classes without {@code extends} extend {@code Object} in the OLLIR code, which the JVM only knows by its full
+     * name.
+     */
     private String resolveParentClassName(ClassUnit classUnit) {
         String parentClass = classUnit.getSuperClass();
-        return (parentClass != null && !parentClass.isEmpty()) ? parentClass : "java/lang/Object";
+        return (parentClass != null && !parentClass.isEmpty() && !parentClass.equals("Object"))
+                ? parentClass
+                : "java/lang/Object";
     }
 
     private List<Method> filterNonConstructorMethods(List<Method> methods) {
@@ -209,7 +275,6 @@ public class JasminGenerator {
     private void calculateMethodLimits(Method method) {
         MethodAnalyzer analyzer = new MethodAnalyzer(method);
         methodMaxLocals.put(method.getMethodName(), analyzer.computeMaxLocals());
-        methodMaxStack.put(method.getMethodName(), analyzer.computeMaxStackSize());
     }
 
     // Inner class for analyzing method requirements
@@ -229,134 +294,9 @@ public class JasminGenerator {
             }
             return maxLocals;
         }
-
-        public int computeMaxStackSize() {
-            StackCalculator calculator = new StackCalculator();
-            return calculator.calculateForMethod(method);
-        }
-    }
-
-    // Separate class for stack size calculations
-    private class StackCalculator {
-        public int calculateForMethod(Method method) {
-            int maxStack = 0;
-            int currentStack = 0;
-
-            for (Instruction inst : method.getInstructions()) {
-                int stackDelta = analyzeStackChange(inst);
-                currentStack += stackDelta;
-                maxStack = Math.max(maxStack, currentStack);
-
-                // Ensure stack doesn't go negative
-                if (currentStack < 0) {
-                    currentStack = 0;
-                }
-            }
-
-            int minimumRequired = calculateMinimumRequiredStack(method);
-            return Math.max(maxStack, minimumRequired);
-        }
-
-        private int calculateMinimumRequiredStack(Method method) {
-            int minStack = 1; // Base requirement
-
-            for (Instruction inst : method.getInstructions()) {
-                minStack = Math.max(minStack, getMinStackForInstruction(inst));
-            }
-            return minStack;
-        }
-
-        private int getMinStackForInstruction(Instruction inst) {
-            if (inst instanceof CallInstruction call) {
-                int argsCount = call.getOperands().size() - 2;
-                if (call instanceof InvokeVirtualInstruction || call instanceof InvokeSpecialInstruction) {
-                    return 1 + argsCount + 2; // object ref + args + buffer
-                } else if (call instanceof InvokeStaticInstruction) {
-                    return argsCount + 2; // args + buffer
-                } else if (call instanceof NewInstruction) {
-                    return 3; // new + dup + args
-                }
-            } else if (inst instanceof BinaryOpInstruction) {
-                return 3; // two operands + result
-            } else if (inst instanceof AssignInstruction assign) {
-                if (assign.getDest() instanceof ArrayOperand) {
-                    return 4; // array ref + index + value + buffer
-                }
-            }
-            return 1;
-        }
-
-        private int analyzeStackChange(Instruction inst) {
-            return getStackChange(inst);
-        }
-    }
-
-    private int getStackChange(Instruction inst) {
-        if (inst instanceof AssignInstruction assign) {
-            Element lhs = assign.getDest();
-            Instruction rhs = assign.getRhs();
-            if (lhs instanceof ArrayOperand) {
-                return getStackChange(rhs) + 1 - 1;
-            } else {
-                return getStackChange(rhs) - 1;
-            }
-        }
-        if (inst instanceof BinaryOpInstruction) {
-            return 1;
-        }
-        if (inst instanceof UnaryOpInstruction) {
-            return 0;
-        }
-        if (inst instanceof CallInstruction call) {
-            int argsCount = call.getOperands().size() - 2;
-            boolean hasReturnValue = !(call.getReturnType() instanceof BuiltinType) ||
-                    ((BuiltinType) call.getReturnType()).getKind() != BuiltinKind.VOID;
-            if (call instanceof InvokeVirtualInstruction || call instanceof InvokeSpecialInstruction) {
-                return (1 + argsCount) - (hasReturnValue ? 0 : 1 + argsCount);
-            } else if (call instanceof InvokeStaticInstruction) {
-                return argsCount - (hasReturnValue ? argsCount - 1 : argsCount);
-            } else if (call instanceof NewInstruction) {
-                Type returnType = call.getReturnType();
-                if (returnType instanceof ArrayType) {
-                    return 1 - 1 + 1;
-                } else {
-                    return 2;
-                }
-            }
-        }
-        if (inst instanceof ReturnInstruction) {
-            return 0;
-        }
-        if (inst instanceof CondBranchInstruction) {
-            return 1;
-        }
-        if (inst instanceof SingleOpInstruction) {
-            return 1;
-        }
-        if (inst instanceof ArrayLengthInstruction) {
-            return 1 - 1 + 1;
-        }
-        if (inst instanceof GetFieldInstruction) {
-            return 1 - 1 + 1;
-        }
-        if (inst instanceof PutFieldInstruction) {
-            return 1;
-        }
-        if (inst instanceof GotoInstruction) {
-            return 0;
-        }
-        return 0;
     }
 
     // Utility methods for code generation
-    private void updateStackSize(int change) {
-        stack += change;
-        maxStack = Math.max(maxStack, stack);
-        if (currentMethod != null) {
-            methodMaxStack.put(currentMethod.getMethodName(), maxStack);
-        }
-    }
-
     private String getNextLabel() {
         return "L" + (labelCounter++);
     }
@@ -364,8 +304,8 @@ public class JasminGenerator {
     private String generateMethod(Method method) {
         MethodBuilder methodBuilder = new MethodBuilder(method);
         return methodBuilder.withSignature()
-                .withLimits()
                 .withInstructionProcessing()
+                .withLimits()
                 .buildJasminMethod();
     }
 
@@ -373,12 +313,18 @@ public class JasminGenerator {
     private class MethodBuilder {
         private final Method method;
         private final StringBuilder codeBuffer;
+        private final List<JasminInstruction> body;
         private final String methodName;
 
+        // Computed before the instructions are generated
+        private final int localsLimit;
+
         public MethodBuilder(Method method) {
             this.method = method;
             this.methodName = method.getMethodName();
             this.codeBuffer = new StringBuilder();
+            this.body = new ArrayList<>();
+            this.localsLimit = methodMaxLocals.getOrDefault(methodName, 99);
         }
 
         public MethodBuilder withSignature() {
@@ -388,10 +334,7 @@ public class JasminGenerator {
         }
 
         public MethodBuilder withLimits() {
-            int stackLimit = methodMaxStack.getOrDefault(methodName, 5);
-            int localsLimit = methodMaxLocals.getOrDefault(methodName, 99);
-
-            codeBuffer.append(TAB).append(".limit stack ").append(stackLimit).append(NL);
+            codeBuffer.append(TAB).append(".limit stack ").append(computeStackLimit()).append(NL);
             codeBuffer.append(TAB).append(".limit locals ").append(localsLimit).append(NL);
             return this;
         }
@@ -404,6 +347,13 @@ public class JasminGenerator {
         }
 
         public String buildJasminMethod() {
+            for (var inst : body) {
+                if (!inst.isLabel()) {
+                    codeBuffer.append(TAB);
+                }
+                codeBuffer.append(inst).append(NL);
+            }
+            codeBuffer.append(".end method").append(NL);
             return codeBuffer.toString();
         }
 
@@ -420,7 +370,8 @@ public class JasminGenerator {
             if (methodName.equals("main")) {
                 return "public static ";
             }
-            return types.getModifier(method.getMethodAccessModifier());
+            var modifier = types.getModifier(method.getMethodAccessModifier());
+            return method.isStaticMethod() ? modifier + "static " : modifier;
         }
 
         private String buildParameterSignature() {
@@ -451,21 +402,61 @@ public class JasminGenerator {
 
         private void initializeMethodContext() {
             currentMethod = method;
-            maxStack = 0;
-            stack = 0;
         }
 
         private void processInstructionSequence() {
+            if (profileCounters != null) {
+                processInstrumentedSequence();
+                return;
+            }
+
             for (var inst : method.getInstructions()) {
                 processLabelsForInstruction(inst);
                 processInstructionCode(inst);
             }
         }
 
+        /**
+         * Counts the entries of the method, the blocks that start with a label, the conditional branches and their
+         * fall-through, and the calls to methods of the class, with the keys of {@link Profile}. The profile is
+         * written each time {@code main} returns.
+         */
+        private void processInstrumentedSequence() {
+            var instructions = method.getInstructions();
+            var branchSites = Profile.getBranchSites(instructions);
+            var callSites = Profile.getCallSites(instructions);
+
+            body.addAll(profileCounters.increment(Profile.getEntryKey(methodName)));
+            for (var inst : instructions) {
+                processLabelsForInstruction(inst);
+
+                var labels = method.getLabels(inst);
+                if (labels != null && !labels.isEmpty()) {
+                    body.addAll(profileCounters.increment(Profile.getBlockKey(methodName, labels.get(0))));
+                }
+                if (callSites.containsKey(inst) && classMethods.contains(Profile.getCallee(inst))) {
+                    body.addAll(profileCounters.increment(Profile.getCallKey(methodName, callSites.get(inst))));
+                }
+                if (branchSites.containsKey(inst)) {
+                    body.addAll(profileCounters.increment(Profile.getBranchKey(methodName, branchSites.get(inst))));
+                }
+                if (inst instanceof ReturnInstruction && methodName.equals("main")) {
+                    body.add(profileCounters.dump());
+                }
+
+                processInstructionCode(inst);
+
+                if (branchSites.containsKey(inst)) {
+                    body.addAll(profileCounters.increment(
+                            Profile.getFallthroughKey(methodName, branchSites.get(inst))));
+                }
+            }
+        }
+
         private void processLabelsForInstruction(Instruction inst) {
             if (method.getLabels(inst) != null && !method.getLabels(inst).isEmpty()) {
                 for (String label : method.getLabels(inst)) {
-                    codeBuffer.append(label).append(":").append(NL);
+                    body.add(JasminInstruction.label(label));
                 }
             }
         }
@@ -475,15 +466,88 @@ public class JasminGenerator {
             String[] lines = instCode.split("\n");
             for (String line : lines) {
                 if (!line.trim().isEmpty()) {
-                    codeBuffer.append(TAB).append(line).append(NL);
+                    body.add(JasminInstruction.parse(line));
                 }
             }
+
+            // A call used as a statement must not leave its result in the stack
+            if (inst instanceof CallInstruction call && returnsValue(call)) {
+                body.add(JasminInstruction.of("pop"));
+            }
+        }
+
+        private boolean returnsValue(CallInstruction call) {
+            return !(call.getReturnType() instanceof BuiltinType builtinType)
+                    || builtinType.getKind() != BuiltinKind.VOID;
         }
 
         private void finalizeMethod() {
-            codeBuffer.append(".end method").append(NL);
+            if (CompilerConfig.getOptimizationLevel(ollirResult.getConfig()) > 0) {
+                applyPeephole();
+            }
+            widenLongJumps();
+            checkCodeSize();
             currentMethod = null;
         }
+
+        /**
+         * Done after the peephole optimizer, which could otherwise remove the jumps over a {@code goto_w}.
+         */
+        private void widenLongJumps() {
+            var longJumps = new LongJumps();
+            var widened = longJumps.widen(body);
+
+            body.clear();
+            body.addAll(widened);
+
+            if (longJumps.getWidened() > 0) {
+                reports.add(Report.newLog(Stage.GENERATION, -1, -1,
+                        "Long jumps in method '" + methodName + "': " + longJumps.getWidened()
+                                + " jumps rewritten with goto_w", null));
+            }
+        }
+
+        private void checkCodeSize() {
+            int size = InstructionSize.getSize(body);
+            if (size > InstructionSize.MAX_CODE_SIZE) {
+                reports.add(Report.newError(Stage.GENERATION, -1, -1,
+                        "Code of method '" + methodName + "' has " + size + " bytes, more than the "
+                                + InstructionSize.MAX_CODE_SIZE + " the JVM allows", null));
+            }
+        }
+
+        private void applyPeephole() {
+            var optimizer = new PeepholeOptimizer();
+            var optimized = optimizer.optimize(body);
+            int removed = body.size() - optimized.size();
+
+            body.clear();
+            body.addAll(optimized);
+            optimizer.getHits().forEach((rule, hits) -> peepholeHits.merge(rule, hits, Integer::sum));
+
+            var applied = optimizer.getHits().entrySet().stream()
+                    .filter(entry -> entry.getValue() > 0)
+                    .map(entry -> entry.getKey() + " " + entry.getValue())
+                    .collect(Collectors.joining(", "));
+            if (!applied.isEmpty()) {
+                reports.add(Report.newLog(Stage.GENERATION, -1, -1,
+                        "Peephole optimization in method '" + methodName + "': " + removed
+                                + " instructions removed (" + applied + ")", null));
+            }
+        }
+
+        /**
+         * The limit is the highest the stack gets on any path of the final code. Paths that disagree on the height
+         * of the stack make the code invalid, and are reported as errors.
+         */
+        private int computeStackLimit() {
+            var analysis = StackAnalysis.analyze(body);
+            for (var error : analysis.getErrors()) {
+                reports.add(Report.newError(Stage.GENERATION, -1, -1,
+                        "Invalid stack in method '" + methodName + "': " + error, null));
+            }
+            return analysis.getMaxStack();
+        }
     }
 
     private String generateAssign(AssignInstruction assign) {
@@ -620,16 +684,13 @@ public class JasminGenerator {
         BinaryOpInstructionBuilder builder = new BinaryOpInstructionBuilder(
                 binaryOp, generators, this::getNextLabel);
 
-        String result = builder.withOperandAnalysis()
+        return builder.withOperandAnalysis()
                 .buildBinaryOperation();
-
-        updateStackSize(-1);
-        return result;
     }
 
     private String generateUnaryOp(UnaryOpInstruction unaryOp) {
         UnaryOpInstructionBuilder builder = new UnaryOpInstructionBuilder(
-                unaryOp, generators, this::getNextLabel);
+                unaryOp, generators);
 
         return builder.withOperandLoading()
                 .withOperationGeneration()
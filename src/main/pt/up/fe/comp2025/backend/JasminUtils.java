@@ -92,14 +92,14 @@ public class JasminUtils {
 
     /**
      * Returns the appropriate load instruction based on the type and register.
+     * Jasmin emits the wide form for registers above 255.
      */
     public String getLoadInstruction(Type type, int register, boolean isArray) {
-        if (isArray)
-            return  "aload_" + register;
         String prefix;
 
-
-        if (type instanceof BuiltinType) {
+        if (isArray) {
+            prefix = "a";
+        } else if (type instanceof BuiltinType) {
             BuiltinType primitiveType = (BuiltinType) type;
 
             prefix = switch (primitiveType.getKind()) {
@@ -120,6 +120,7 @@ public class JasminUtils {
 
     /**
      * Returns the appropriate store instruction based on the type and register.
+     * Jasmin emits the wide form for registers above 255.
      */
     public String getStoreInstruction(Type type, int register) {
         String prefix;
@@ -0,0 +1,166 @@
+package pt.up.fe.comp2025.backend;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Field;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2025.backend.peephole.JasminInstruction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Counters of an instrumented build of a class, in a static array of the class that is written to the profile when
+ * the program ends.
+ * <p>
+ * Each counter is an element of the array, incremented by the code of {@link #increment(String)}, and has the key of
+ * its line of the profile. The names of the array and of the method that writes the profile start with
+ * {@code jmm$}, with more {@code $} added if the class already has a member with that name.
+ */
+class ProfileCounters {
+
+    /**
+     * The keys are written by a single string constant of the class, which cannot have more than 65535 bytes.
+     */
+    private static final int MAX_KEYS_LENGTH = 60000;
+
+    private static final String SEPARATOR = ";";
+
+    private final String className;
+    private final String fieldName;
+    private final String dumpName;
+    private final String path;
+    private final List<String> keys;
+    private int keysLength;
+    private int dropped;
+
+    /**
+     * @param path file the counts are appended to
+     */
+    ProfileCounters(ClassUnit classUnit, String path) {
+        this.className = classUnit.getClassName();
+        this.fieldName = getUniqueName("jmm$counters",
+                classUnit.getFields().stream().map(Field::getFieldName).collect(Collectors.toSet()));
+        this.dumpName = getUniqueName("jmm$dumpProfile",
+                classUnit.getMethods().stream().map(Method::getMethodName).collect(Collectors.toSet()));
+        this.path = path;
+        this.keys = new ArrayList<>();
+        this.keysLength = 0;
+        this.dropped = 0;
+    }
+
+    private static String getUniqueName(String name, Set<String> names) {
+        while (names.contains(name)) {
+            name += "$";
+        }
+        return name;
+    }
+
+    /**
+     * @return the code that increments a new counter with the given key, or no code if the class has too many
+     * counters
+     */
+    List<JasminInstruction> increment(String key) {
+        if (keysLength + key.length() + SEPARATOR.length() > MAX_KEYS_LENGTH) {
+            dropped++;
+            return List.of();
+        }
+
+        keys.add(key);
+        keysLength += key.length() + SEPARATOR.length();
+        return List.of(
+                JasminInstruction.of("getstatic", className + "/" + fieldName, "[I"),
+                JasminInstruction.intConstant(keys.size() - 1),
+                JasminInstruction.of("dup2"),
+                JasminInstruction.of("iaload"),
+                JasminInstruction.of("iconst_1"),
+                JasminInstruction.of("iadd"),
+                JasminInstruction.of("iastore"));
+    }
+
+    /**
+     * @return the call that appends the counts to the profile
+     */
+    JasminInstruction dump() {
+        return JasminInstruction.of("invokestatic", className + "/" + dumpName + "()V");
+    }
+
+    /**
+     * @return the number of counters that were not added because the class had too many
+     */
+    int getDropped() {
+        return dropped;
+    }
+
+    String getFieldDeclaration() {
+        return ".field private static " + fieldName + " [I\n";
+    }
+
+    /**
+     * @return the static initializer that creates the array and the method that appends each key and its count as
+     * a line of the profile
+     */
+    String getMethods() {
+        return String.format("""
+
+                .method static <clinit>()V
+                   .limit stack 1
+                   .limit locals 0
+                   %s
+                   newarray int
+                   putstatic %s/%s [I
+                   return
+                .end method
+
+                .method private static %s()V
+                   .limit stack 6
+                   .limit locals 3
+                   new java/io/PrintStream
+                   dup
+                   new java/io/FileOutputStream
+                   dup
+                   ldc "%s"
+                   iconst_1
+                   invokespecial java/io/FileOutputStream/<init>(Ljava/lang/String;Z)V
+                   invokespecial java/io/PrintStream/<init>(Ljava/io/OutputStream;)V
+                   astore_0
+                   ldc "%s"
+                   ldc "%s"
+                   invokevirtual java/lang/String/split(Ljava/lang/String;)[Ljava/lang/String;
+                   astore_1
+                   iconst_0
+                   istore_2
+                profileLoop:
+                   iload_2
+                   aload_1
+                   arraylength
+                   if_icmpge profileEnd
+                   aload_0
+                   aload_1
+                   iload_2
+                   aaload
+                   invokevirtual java/io/PrintStream/print(Ljava/lang/String;)V
+                   aload_0
+                   bipush 32
+                   invokevirtual java/io/PrintStream/print(C)V
+                   aload_0
+                   getstatic %s/%s [I
+                   iload_2
+                   iaload
+                   invokevirtual java/io/PrintStream/println(I)V
+                   iinc 2 1
+                   goto profileLoop
+                profileEnd:
+                   aload_0
+                   invokevirtual java/io/PrintStream/close()V
+                   return
+                .end method
+                """, JasminInstruction.intConstant(keys.size()), className, fieldName, dumpName, escape(path),
+                String.join(SEPARATOR, keys), SEPARATOR, className, fieldName);
+    }
+
+    private static String escape(String string) {
+        return string.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -107,7 +107,8 @@ public class AssignInstructionBuilder {
     private boolean generateIincIfPossible(Operand variable, LiteralElement literal) {
         try {
             int increment = Integer.parseInt(literal.getLiteral());
-            if (increment >= -128 && increment <= 127) {
+            // Jasmin uses the wide form of iinc for increments that do not fit in a byte
+            if (increment >= Short.MIN_VALUE && increment <= Short.MAX_VALUE) {
                 var reg = currentMethod.getVarTable().get(variable.getName()).getVirtualReg();
                 codeBuffer.append("iinc ").append(reg).append(" ").append(increment).append(NL);
                 return true;
@@ -4,6 +4,8 @@ import org.specs.comp.ollir.inst.BinaryOpInstruction;
 import org.specs.comp.ollir.Element;
 import org.specs.comp.ollir.LiteralElement;
 import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 import pt.up.fe.specs.util.classmap.FunctionClassMap;
 import org.specs.comp.ollir.tree.TreeNode;
@@ -62,55 +64,72 @@ public class BinaryOpInstructionBuilder {
                 ((LiteralElement) operand).getLiteral().equals("0");
     }
 
+    private boolean isBoolean(Element operand) {
+        return operand.getType() instanceof BuiltinType builtinType && builtinType.getKind() == BuiltinKind.BOOLEAN;
+    }
+
+    /**
+     * Comparisons against zero are computed from the sign bit of the other operand, without branches.
+     */
     private void generateOptimizedComparison() {
         boolean leftIsZero = isZeroLiteral(instruction.getLeftOperand());
-
-        if (leftIsZero) {
-            generateZeroLeftComparison();
-        } else {
-            generateZeroRightComparison();
+        Element operand = leftIsZero ? instruction.getRightOperand() : instruction.getLeftOperand();
+        // 0 < a is a > 0, and so on
+        OperationType opType = leftIsZero ? swap(operationType) : operationType;
+        String load = generators.apply(operand);
+
+        // A boolean is already 0 or 1
+        if (isBoolean(operand) && (opType == OperationType.EQ || opType == OperationType.NEQ)) {
+            codeBuffer.append(load);
+            if (opType == OperationType.EQ) {
+                appendNegation();
+            }
+            return;
         }
-    }
 
-    private void generateZeroLeftComparison() {
-        // Load only the right operand
-        codeBuffer.append(generators.apply(instruction.getRightOperand()));
+        switch (opType) {
+            // a < 0 is the sign bit of a
+            case LTH, GTE -> {
+                codeBuffer.append(load);
+                appendSignBit();
+            }
+            // a > 0 is the sign bit of (a >> 31) - a, which is -a for non-negative a and ~a for negative a
+            case GTH, LTE -> {
+                codeBuffer.append(load);
+                codeBuffer.append("bipush 31").append(NL).append("ishr").append(NL);
+                codeBuffer.append(load);
+                codeBuffer.append("isub").append(NL);
+                appendSignBit();
+            }
+            // a != 0 is the sign bit of a | -a
+            case NEQ, EQ -> {
+                codeBuffer.append(load);
+                codeBuffer.append("dup").append(NL).append("ineg").append(NL).append("ior").append(NL);
+                appendSignBit();
+            }
+            default -> throw new NotImplementedException(opType);
+        }
 
-        // 0 < a, 0 <= a, 0 > a, 0 >= a, 0 == a, 0 != a
-        String ifInstruction = getZeroLeftComparisonInstruction();
-        generateComparisonBranching(ifInstruction);
+        if (opType == OperationType.GTE || opType == OperationType.LTE || opType == OperationType.EQ) {
+            appendNegation();
+        }
     }
 
-    private String getZeroLeftComparisonInstruction() {
-        return switch (operationType) {
-            case LTH -> "ifgt "; // 0 < a  <=> a > 0
-            case LTE -> "ifge "; // 0 <= a <=> a >= 0
-            case GTH -> "iflt "; // 0 > a  <=> a < 0
-            case GTE -> "ifle "; // 0 >= a <=> a <= 0
-            case EQ -> "ifeq ";
-            case NEQ -> "ifne ";
-            default -> throw new NotImplementedException(operationType);
-        };
+    private void appendSignBit() {
+        codeBuffer.append("bipush 31").append(NL).append("iushr").append(NL);
     }
 
-    private void generateZeroRightComparison() {
-        // Load only the left operand
-        codeBuffer.append(generators.apply(instruction.getLeftOperand()));
-
-        // For a < 0, a <= 0, a > 0, a >= 0, a == 0, a != 0
-        String ifInstruction = getZeroRightComparisonInstruction();
-        generateComparisonBranching(ifInstruction);
+    private void appendNegation() {
+        codeBuffer.append("iconst_1").append(NL).append("ixor").append(NL);
     }
 
-    private String getZeroRightComparisonInstruction() {
-        return switch (operationType) {
-            case LTH -> "iflt ";
-            case LTE -> "ifle ";
-            case GTH -> "ifgt ";
-            case GTE -> "ifge ";
-            case EQ -> "ifeq ";
-            case NEQ -> "ifne ";
-            default -> throw new NotImplementedException(operationType);
+    private static OperationType swap(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTH;
+            case LTE -> OperationType.GTE;
+            case GTH -> OperationType.LTH;
+            case GTE -> OperationType.LTE;
+            default -> opType;
         };
     }
 
@@ -119,6 +138,16 @@ public class BinaryOpInstructionBuilder {
         codeBuffer.append(generators.apply(instruction.getLeftOperand()));
         codeBuffer.append(generators.apply(instruction.getRightOperand()));
 
+        // Two booleans are different when their xor is 1
+        if (isBoolean(instruction.getLeftOperand()) && isBoolean(instruction.getRightOperand())
+                && (operationType == OperationType.EQ || operationType == OperationType.NEQ)) {
+            codeBuffer.append("ixor").append(NL);
+            if (operationType == OperationType.EQ) {
+                appendNegation();
+            }
+            return;
+        }
+
         String ifInstruction = getTwoOperandComparisonInstruction();
         generateComparisonBranching(ifInstruction);
     }
@@ -185,6 +214,10 @@ public class BinaryOpInstructionBuilder {
             case MUL -> "imul";
             case SUB -> "isub";
             case DIV -> "idiv";
+            case REM -> "irem";
+            case SHL -> "ishl";
+            case SHR -> "ishr";
+            case SHRR -> "iushr";
             case XOR -> "ixor";
             case AND, ANDB, NOTB -> "iand";
             case OR, ORB -> "ior";
@@ -121,8 +121,8 @@ public class CallInstructionBuilder {
     private void generateNewObjectCall() {
         Type returnType = instruction.getReturnType();
         if (returnType instanceof ClassType classType) {
+            // The constructor is called by the invokespecial that follows in the OLLIR code, on the stored reference
             codeBuffer.append("new ").append(classType.getName().replace(".", "/")).append(NL);
-            codeBuffer.append("dup").append(NL);
         } else if (returnType instanceof ArrayType) {
             codeBuffer.append("newarray int").append(NL);
         }
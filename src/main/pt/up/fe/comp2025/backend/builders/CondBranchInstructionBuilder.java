@@ -1,9 +1,12 @@
 package pt.up.fe.comp2025.backend.builders;
 
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
 import org.specs.comp.ollir.OperationType;
 import org.specs.comp.ollir.inst.BinaryOpInstruction;
 import org.specs.comp.ollir.inst.CondBranchInstruction;
 import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.UnaryOpInstruction;
 import org.specs.comp.ollir.tree.TreeNode;
 
 import pt.up.fe.specs.util.classmap.FunctionClassMap;
@@ -29,6 +32,9 @@ public class CondBranchInstructionBuilder {
 
         if (condition instanceof BinaryOpInstruction) {
             return withBinaryCondition((BinaryOpInstruction) condition);
+        } else if (condition instanceof UnaryOpInstruction unaryOp
+                && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            return withNegatedCondition(unaryOp);
         } else {
             return withGenericCondition(condition);
         }
@@ -37,6 +43,20 @@ public class CondBranchInstructionBuilder {
     private CondBranchInstructionBuilder withBinaryCondition(BinaryOpInstruction binOp) {
         OperationType opType = binOp.getOperation().getOpType();
 
+        if (isComparison(opType) && isZeroLiteral(binOp.getRightOperand())) {
+            // a < 0, a <= 0, ... only need the left operand
+            codeBuilder.append(generators.apply(binOp.getLeftOperand()));
+            codeBuilder.append(getZeroComparisonInstruction(opType)).append(targetLabel).append(NL);
+            return this;
+        }
+
+        if (isComparison(opType) && isZeroLiteral(binOp.getLeftOperand())) {
+            // 0 < a is a > 0, and so on
+            codeBuilder.append(generators.apply(binOp.getRightOperand()));
+            codeBuilder.append(getZeroComparisonInstruction(swap(opType))).append(targetLabel).append(NL);
+            return this;
+        }
+
         // Load both operands for comparison
         codeBuilder.append(generators.apply(binOp.getLeftOperand()));
         codeBuilder.append(generators.apply(binOp.getRightOperand()));
@@ -48,6 +68,47 @@ public class CondBranchInstructionBuilder {
         return this;
     }
 
+    private static boolean isComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH, LTE, GTH, GTE, EQ, NEQ -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isZeroLiteral(Element operand) {
+        return operand instanceof LiteralElement literal && literal.getLiteral().equals("0");
+    }
+
+    private static OperationType swap(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTH;
+            case LTE -> OperationType.GTE;
+            case GTH -> OperationType.LTH;
+            case GTE -> OperationType.LTE;
+            default -> opType;
+        };
+    }
+
+    private static String getZeroComparisonInstruction(OperationType opType) {
+        return switch (opType) {
+            case LTH -> "iflt ";
+            case LTE -> "ifle ";
+            case GTH -> "ifgt ";
+            case GTE -> "ifge ";
+            case EQ -> "ifeq ";
+            case NEQ -> "ifne ";
+            default -> throw new IllegalArgumentException("Not a comparison: " + opType);
+        };
+    }
+
+    private CondBranchInstructionBuilder withNegatedCondition(UnaryOpInstruction unaryOp) {
+        // Branch when the operand is zero, instead of computing its negation
+        codeBuilder.append(generators.apply(unaryOp.getOperand()));
+        codeBuilder.append("ifeq ").append(targetLabel).append(NL);
+
+        return this;
+    }
+
     private CondBranchInstructionBuilder withGenericCondition(Instruction condition) {
         // For non-binary conditions, evaluate condition and check if non-zero
         codeBuilder.append(generators.apply(condition));
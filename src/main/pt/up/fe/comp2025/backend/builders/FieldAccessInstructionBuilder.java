@@ -59,7 +59,8 @@ public class FieldAccessInstructionBuilder {
         String className = ollirResult.getOllirClass().getClassName();
         Operand fieldOp = (Operand) putField.getOperands().get(1);
         String fieldName = fieldOp.getName();
-        Type fieldType = putField.getFieldType();
+        // The type of the instruction is the type of the putfield, void, the field has its own
+        Type fieldType = fieldOp.getType();
 
         codeBuilder.append("putfield ").append(className).append("/")
                 .append(fieldName).append(" ")
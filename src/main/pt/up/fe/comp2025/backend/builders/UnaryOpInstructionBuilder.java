@@ -12,15 +12,12 @@ public class UnaryOpInstructionBuilder {
     private final UnaryOpInstruction unaryOp;
     private final FunctionClassMap<TreeNode, String> generators;
     private final StringBuilder codeBuilder;
-    private final LabelGenerator labelGenerator;
 
     public UnaryOpInstructionBuilder(UnaryOpInstruction unaryOp,
-            FunctionClassMap<TreeNode, String> generators,
-            LabelGenerator labelGenerator) {
+            FunctionClassMap<TreeNode, String> generators) {
         this.unaryOp = unaryOp;
         this.generators = generators;
         this.codeBuilder = new StringBuilder();
-        this.labelGenerator = labelGenerator;
     }
 
     public UnaryOpInstructionBuilder withOperandLoading() {
@@ -41,31 +38,12 @@ public class UnaryOpInstructionBuilder {
     }
 
     private void generateBooleanNot() {
-        // Generate boolean NOT operation using conditional jumps
-        String ifLabel = labelGenerator.getNextLabel();
-        String endLabel = labelGenerator.getNextLabel();
-
-        // If operand is 0 (false), jump to ifLabel to set result to 1 (true)
-        codeBuilder.append("ifeq ").append(ifLabel).append(NL);
-
-        // Operand was non-zero (true), so result should be 0 (false)
-        codeBuilder.append("iconst_0").append(NL);
-        codeBuilder.append("goto ").append(endLabel).append(NL);
-
-        // Operand was zero (false), so result should be 1 (true)
-        codeBuilder.append(ifLabel).append(":").append(NL);
+        // Booleans are always 0 or 1, so flipping the lowest bit negates them without branches
         codeBuilder.append("iconst_1").append(NL);
-
-        // End of operation
-        codeBuilder.append(endLabel).append(":").append(NL);
+        codeBuilder.append("ixor").append(NL);
     }
 
     public String buildUnaryOpInstruction() {
         return codeBuilder.toString();
     }
-
-    // Interface for label generation to maintain compatibility
-    public interface LabelGenerator {
-        String getNextLabel();
-    }
 }
@@ -0,0 +1,69 @@
+package pt.up.fe.comp2025.backend.peephole;
+
+import java.util.List;
+
+/**
+ * How many bytes the Jasmin instructions take in the code of a method.
+ * <p>
+ * Jasmin chooses the encoding of some instructions by itself: the {@code wide} forms of loads, stores and {@code iinc}
+ * for locals above 255 or increments outside a byte, and {@code ldc_w} for constants that are not among the first 256
+ * of the constant pool. The sizes are those of the form Jasmin uses, or of the longest form when it is not known.
+ */
+public class InstructionSize {
+
+    /**
+     * Largest number of bytes of code a method can have.
+     */
+    public static final int MAX_CODE_SIZE = 65535;
+
+    private InstructionSize() {
+    }
+
+    /**
+     * @return the number of bytes of the instruction, or 0 for a label
+     * @throws IllegalArgumentException if the opcode is not one the backend emits
+     */
+    public static int getSize(JasminInstruction inst) {
+        if (inst.isLabel()) {
+            return 0;
+        }
+
+        var opcode = inst.getOpcode();
+        if (inst.isLoad() || inst.isStore()) {
+            if (opcode.contains("_")) {
+                return 1;
+            }
+            return inst.getLocal() <= 255 ? 2 : 4;
+        }
+        if (opcode.startsWith("if")) {
+            return 3;
+        }
+        if (opcode.startsWith("iconst_")) {
+            return 1;
+        }
+
+        return switch (opcode) {
+            case "iinc" -> inst.getLocal() <= 255 && fitsByte(Integer.parseInt(inst.getArg(1))) ? 3 : 6;
+            case "bipush", "newarray" -> 2;
+            case "sipush", "ldc", "goto", "invokevirtual", "invokespecial", "invokestatic", "getfield", "putfield",
+                 "getstatic", "putstatic", "new", "anewarray", "checkcast", "instanceof" -> 3;
+            case "goto_w" -> 5;
+            case "iadd", "isub", "imul", "idiv", "irem", "iand", "ior", "ixor", "ishl", "ishr", "iushr", "ineg",
+                 "iaload", "baload", "aaload", "iastore", "bastore", "aastore", "arraylength", "pop", "pop2",
+                 "dup", "dup2", "dup_x1", "swap", "aconst_null", "ireturn", "areturn", "return", "athrow",
+                 "nop" -> 1;
+            default -> throw new IllegalArgumentException("Unknown size of instruction '" + inst + "'");
+        };
+    }
+
+    /**
+     * @return the number of bytes of the instructions
+     */
+    public static int getSize(List<JasminInstruction> code) {
+        return code.stream().mapToInt(InstructionSize::getSize).sum();
+    }
+
+    private static boolean fitsByte(int value) {
+        return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+    }
+}
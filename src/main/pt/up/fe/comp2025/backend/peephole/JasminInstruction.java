@@ -0,0 +1,202 @@
+package pt.up.fe.comp2025.backend.peephole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A single line of the body of a Jasmin method: either an instruction, with its opcode and arguments, or a label.
+ */
+public class JasminInstruction {
+
+    private static final Set<String> EXITS = Set.of("goto", "goto_w", "return", "ireturn", "areturn", "athrow");
+
+    private final String opcode;
+    private final List<String> args;
+    private final String label;
+
+    private JasminInstruction(String opcode, List<String> args, String label) {
+        this.opcode = opcode;
+        this.args = args;
+        this.label = label;
+    }
+
+    public static JasminInstruction of(String opcode, String... args) {
+        return new JasminInstruction(opcode, List.of(args), null);
+    }
+
+    public static JasminInstruction label(String label) {
+        return new JasminInstruction(null, List.of(), label);
+    }
+
+    /**
+     * Parses a line of Jasmin code, such as {@code iload 4} or {@code whileBody1:}.
+     */
+    public static JasminInstruction parse(String line) {
+        var trimmed = line.strip();
+        if (trimmed.endsWith(":")) {
+            return label(trimmed.substring(0, trimmed.length() - 1));
+        }
+
+        var tokens = trimmed.split("\\s+");
+        return new JasminInstruction(tokens[0], List.of(Arrays.copyOfRange(tokens, 1, tokens.length)), null);
+    }
+
+    public boolean isLabel() {
+        return label != null;
+    }
+
+    /**
+     * @return the name of the label, or null if this is an instruction
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the opcode, or null if this is a label
+     */
+    public String getOpcode() {
+        return opcode;
+    }
+
+    public List<String> getArgs() {
+        return args;
+    }
+
+    public String getArg(int index) {
+        return args.get(index);
+    }
+
+    public boolean is(String... opcodes) {
+        if (opcode == null) {
+            return false;
+        }
+        for (var candidate : opcodes) {
+            if (opcode.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true for {@code iload}, {@code aload} and their short forms
+     */
+    public boolean isLoad() {
+        return opcode != null && (opcode.startsWith("iload") || opcode.startsWith("aload"));
+    }
+
+    /**
+     * @return true for {@code istore}, {@code astore} and their short forms
+     */
+    public boolean isStore() {
+        return opcode != null && (opcode.startsWith("istore") || opcode.startsWith("astore"));
+    }
+
+    /**
+     * @return the local variable of a load, store or {@code iinc}
+     */
+    public int getLocal() {
+        int underscore = opcode.indexOf('_');
+        if (underscore >= 0) {
+            return Integer.parseInt(opcode.substring(underscore + 1));
+        }
+        return Integer.parseInt(args.getFirst());
+    }
+
+    /**
+     * @return the type prefix of the opcode, such as 'i' for {@code iload}
+     */
+    public char getTypePrefix() {
+        return opcode.charAt(0);
+    }
+
+    /**
+     * @return true if the instruction pushes an int constant
+     */
+    public boolean isIntConstant() {
+        return is("iconst_m1", "iconst_0", "iconst_1", "iconst_2", "iconst_3", "iconst_4", "iconst_5",
+                "bipush", "sipush") || (is("ldc") && args.getFirst().matches("-?\\d+"));
+    }
+
+    /**
+     * @return the value pushed by an int constant instruction
+     */
+    public int getIntConstant() {
+        if (opcode.startsWith("iconst_")) {
+            var value = opcode.substring("iconst_".length());
+            return value.equals("m1") ? -1 : Integer.parseInt(value);
+        }
+        return Integer.parseInt(args.getFirst());
+    }
+
+    /**
+     * @return true if the instruction may jump to a label
+     */
+    public boolean isJump() {
+        return opcode != null && (opcode.startsWith("if") || opcode.startsWith("goto"));
+    }
+
+    public boolean isConditionalJump() {
+        return opcode != null && opcode.startsWith("if");
+    }
+
+    /**
+     * @return the label a jump goes to
+     */
+    public String getTarget() {
+        return args.getLast();
+    }
+
+    /**
+     * @return true if execution never continues to the next instruction
+     */
+    public boolean isExit() {
+        return opcode != null && EXITS.contains(opcode);
+    }
+
+    /**
+     * @return a load or store of the given local, using the short form when there is one
+     */
+    public static JasminInstruction localAccess(String opcode, int local) {
+        if (local <= 3) {
+            return of(opcode + "_" + local);
+        }
+        return of(opcode, String.valueOf(local));
+    }
+
+    /**
+     * @return the instruction that pushes the given int constant, using the shortest form
+     */
+    public static JasminInstruction intConstant(int value) {
+        if (value >= -1 && value <= 5) {
+            return of("iconst_" + (value == -1 ? "m1" : String.valueOf(value)));
+        }
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return of("bipush", String.valueOf(value));
+        }
+        if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return of("sipush", String.valueOf(value));
+        }
+        return of("ldc", String.valueOf(value));
+    }
+
+    @Override
+    public String toString() {
+        if (isLabel()) {
+            return label + ":";
+        }
+        return args.isEmpty() ? opcode : opcode + " " + String.join(" ", args);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof JasminInstruction other && toString().equals(other.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
@@ -0,0 +1,128 @@
+package pt.up.fe.comp2025.backend.peephole;
+
+import java.util.*;
+
+/**
+ * Rewrites the jumps whose target is too far for the 16-bit offset of {@code goto} and of the conditional jumps.
+ * <p>
+ * A far {@code goto} becomes a {@code goto_w}, which has a 32-bit offset. Conditional jumps have no wide form, so a far
+ * {@code if<cond> L} becomes the opposite jump over a {@code goto_w}: {@code if<!cond> skip; goto_w L; skip:}. Each
+ * rewrite makes the code longer and may push other jumps out of range, so the offsets are computed again until every
+ * jump reaches its target.
+ */
+public class LongJumps {
+
+    private static final int MIN_OFFSET = Short.MIN_VALUE;
+    private static final int MAX_OFFSET = Short.MAX_VALUE;
+
+    private static final Map<String, String> OPPOSITES = new HashMap<>();
+
+    static {
+        addOpposites("ifeq", "ifne");
+        addOpposites("iflt", "ifge");
+        addOpposites("ifgt", "ifle");
+        addOpposites("if_icmpeq", "if_icmpne");
+        addOpposites("if_icmplt", "if_icmpge");
+        addOpposites("if_icmpgt", "if_icmple");
+        addOpposites("if_acmpeq", "if_acmpne");
+        addOpposites("ifnull", "ifnonnull");
+    }
+
+    private int widened;
+
+    private static void addOpposites(String first, String second) {
+        OPPOSITES.put(first, second);
+        OPPOSITES.put(second, first);
+    }
+
+    /**
+     * @return the instructions with every jump able to reach its target
+     */
+    public List<JasminInstruction> widen(List<JasminInstruction> code) {
+        List<JasminInstruction> result = new ArrayList<>(code);
+        var labels = new HashSet<String>();
+        for (var inst : result) {
+            if (inst.isLabel()) {
+                labels.add(inst.getLabel());
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            var offsets = computeOffsets(result);
+            var rewritten = new ArrayList<JasminInstruction>(result.size());
+
+            // Rewrites only make the code longer, so a jump found too far here is still too far after them
+            for (int i = 0; i < result.size(); i++) {
+                var inst = result.get(i);
+                if (!inst.isJump() || inst.is("goto_w") || reaches(inst, offsets.instructions()[i], offsets)) {
+                    rewritten.add(inst);
+                    continue;
+                }
+
+                if (inst.is("goto")) {
+                    rewritten.add(JasminInstruction.of("goto_w", inst.getTarget()));
+                } else {
+                    var skip = newLabel(labels);
+                    rewritten.add(JasminInstruction.of(opposite(inst), skip));
+                    rewritten.add(JasminInstruction.of("goto_w", inst.getTarget()));
+                    rewritten.add(JasminInstruction.label(skip));
+                }
+                widened++;
+                changed = true;
+            }
+            result = rewritten;
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of jumps rewritten, over every call to {@link #widen(List)}
+     */
+    public int getWidened() {
+        return widened;
+    }
+
+    private static boolean reaches(JasminInstruction jump, int offset, Offsets offsets) {
+        int distance = offsets.labels().get(jump.getTarget()) - offset;
+        return distance >= MIN_OFFSET && distance <= MAX_OFFSET;
+    }
+
+    private record Offsets(int[] instructions, Map<String, Integer> labels) {
+    }
+
+    private static Offsets computeOffsets(List<JasminInstruction> code) {
+        var instructions = new int[code.size()];
+        Map<String, Integer> labels = new HashMap<>();
+
+        int offset = 0;
+        for (int i = 0; i < code.size(); i++) {
+            var inst = code.get(i);
+            instructions[i] = offset;
+            if (inst.isLabel()) {
+                labels.put(inst.getLabel(), offset);
+            }
+            offset += InstructionSize.getSize(inst);
+        }
+        return new Offsets(instructions, labels);
+    }
+
+    private static String opposite(JasminInstruction jump) {
+        var opposite = OPPOSITES.get(jump.getOpcode());
+        if (opposite == null) {
+            throw new IllegalArgumentException("Unknown conditional jump '" + jump + "'");
+        }
+        return opposite;
+    }
+
+    private static String newLabel(Set<String> labels) {
+        int id = labels.size();
+        while (labels.contains("far" + id)) {
+            id++;
+        }
+        labels.add("far" + id);
+        return "far" + id;
+    }
+}
@@ -0,0 +1,100 @@
+package pt.up.fe.comp2025.backend.peephole;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites the body of a Jasmin method with a set of {@link PeepholeRule}s.
+ * <p>
+ * Every rule is tried at every position of the code, with a window of the size it asks for. After a rewrite, the
+ * positions whose windows overlap the new instructions are tried again, and the whole code is scanned until no rule
+ * applies. Every rule makes the code shorter, removes a jump or replaces a load by a {@code dup}, so a fixpoint is
+ * always reached.
+ * <p>
+ * A rewrite must leave the stack with the same height as the instructions it replaces. It may need more stack
+ * while executing (a {@code dup} instead of a store and a load), so the limit of the method must be computed after
+ * the rewrites.
+ */
+public class PeepholeOptimizer {
+
+    private final List<PeepholeRule> rules;
+    private final int maxWindowSize;
+    private final Map<String, Integer> hits;
+
+    public PeepholeOptimizer(List<PeepholeRule> rules) {
+        this.rules = rules;
+        this.maxWindowSize = rules.stream().mapToInt(PeepholeRule::getWindowSize).max().orElse(1);
+        this.hits = new LinkedHashMap<>();
+        for (var rule : rules) {
+            hits.put(rule.getName(), 0);
+        }
+    }
+
+    public PeepholeOptimizer() {
+        this(PeepholeRules.getAll());
+    }
+
+    /**
+     * @return the instructions after applying the rules until none applies
+     */
+    public List<JasminInstruction> optimize(List<JasminInstruction> code) {
+        var result = new ArrayList<>(code);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            int i = 0;
+            while (i < result.size()) {
+                if (applyAt(result, i)) {
+                    changed = true;
+                    // The new instructions may complete a window that starts before them
+                    i = Math.max(0, i - maxWindowSize + 1);
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private boolean applyAt(List<JasminInstruction> code, int index) {
+        for (var rule : rules) {
+            int size = rule.getWindowSize();
+            if (index + size > code.size()) {
+                continue;
+            }
+
+            var window = code.subList(index, index + size);
+            if (!rule.matchesLabels() && window.stream().anyMatch(JasminInstruction::isLabel)) {
+                continue;
+            }
+
+            var replacement = rule.rewrite(window);
+            if (replacement == null) {
+                continue;
+            }
+
+            if (StackEffect.getDelta(replacement) != StackEffect.getDelta(window)) {
+                throw new IllegalStateException("Peephole rule '" + rule.getName() + "' changes the height of the "
+                        + "stack when rewriting " + window + " into " + replacement);
+            }
+
+            window.clear();
+            window.addAll(replacement);
+            hits.merge(rule.getName(), 1, Integer::sum);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of times each rule was applied, over every call to {@link #optimize(List)}
+     */
+    public Map<String, Integer> getHits() {
+        return hits;
+    }
+}
@@ -0,0 +1,35 @@
+package pt.up.fe.comp2025.backend.peephole;
+
+import java.util.List;
+
+/**
+ * A rewrite of a short sequence of Jasmin instructions into an equivalent one that is not slower.
+ */
+public interface PeepholeRule {
+
+    /**
+     * @return the name used in the statistics of the optimizer
+     */
+    String getName();
+
+    /**
+     * @return the number of consecutive instructions the rule looks at
+     */
+    int getWindowSize();
+
+    /**
+     * Rules that do not match labels are never given a window with a label, since another path may jump into the
+     * middle of it.
+     *
+     * @return true if the window may contain labels
+     */
+    default boolean matchesLabels() {
+        return false;
+    }
+
+    /**
+     * @param window the instructions, exactly {@link #getWindowSize()} of them
+     * @return the instructions that replace the window, or null if the rule does not apply
+     */
+    List<JasminInstruction> rewrite(List<JasminInstruction> window);
+}
@@ -0,0 +1,447 @@
+package pt.up.fe.comp2025.backend.peephole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The rules of the peephole optimizer.
+ */
+public class PeepholeRules {
+
+    private static final Map<String, String> NEGATED_JUMPS = Map.ofEntries(
+            Map.entry("ifeq", "ifne"), Map.entry("ifne", "ifeq"),
+            Map.entry("iflt", "ifge"), Map.entry("ifge", "iflt"),
+            Map.entry("ifgt", "ifle"), Map.entry("ifle", "ifgt"),
+            Map.entry("if_icmpeq", "if_icmpne"), Map.entry("if_icmpne", "if_icmpeq"),
+            Map.entry("if_icmplt", "if_icmpge"), Map.entry("if_icmpge", "if_icmplt"),
+            Map.entry("if_icmpgt", "if_icmple"), Map.entry("if_icmple", "if_icmpgt"),
+            Map.entry("if_acmpeq", "if_acmpne"), Map.entry("if_acmpne", "if_acmpeq"),
+            Map.entry("ifnull", "ifnonnull"), Map.entry("ifnonnull", "ifnull"));
+
+    /**
+     * Jumps that compare two ints, and the jump that compares the first one against zero.
+     */
+    private static final Map<String, String> ZERO_JUMPS = Map.of(
+            "if_icmpeq", "ifeq", "if_icmpne", "ifne",
+            "if_icmplt", "iflt", "if_icmpge", "ifge",
+            "if_icmpgt", "ifgt", "if_icmple", "ifle");
+
+    /**
+     * Operations that do nothing when their second operand is 0.
+     */
+    private static final Set<String> ZERO_IDENTITIES = Set.of("iadd", "isub", "ior", "ixor", "ishl", "ishr", "iushr");
+
+    /**
+     * Operations that do nothing when their second operand is 1.
+     */
+    private static final Set<String> ONE_IDENTITIES = Set.of("imul", "idiv");
+
+    private PeepholeRules() {
+    }
+
+    /**
+     * @return every rule, in the order they are tried at each position
+     */
+    public static List<PeepholeRule> getAll() {
+        var rules = new ArrayList<PeepholeRule>();
+        rules.add(new DeadCode());
+        rules.add(new GotoNext());
+        rules.add(new BranchOverGoto());
+        rules.add(new LoadStoreSame());
+        rules.add(new PushPop());
+        rules.add(new DupPop());
+        rules.add(new ArithmeticIdentity());
+        rules.add(new DoubleNegation());
+        rules.add(new NegatedJump());
+        rules.add(new CompareZero());
+        rules.add(new Increment());
+        rules.add(new StoreLoad());
+        rules.add(new LoadLoad());
+        return rules;
+    }
+
+    /**
+     * {@code goto L; iload_1} → {@code goto L}: code after a jump or return that is not labeled is never executed.
+     */
+    static class DeadCode implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "dead-code";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 2;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            if (window.get(0).isExit()) {
+                return List.of(window.get(0));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code goto L; L:} → {@code L:}
+     */
+    static class GotoNext implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "goto-next";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 2;
+        }
+
+        @Override
+        public boolean matchesLabels() {
+            return true;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            var jump = window.get(0);
+            var label = window.get(1);
+            if ((jump.is("goto") || jump.isConditionalJump()) && label.isLabel()
+                    && jump.getTarget().equals(label.getLabel())) {
+                // A conditional jump still has to pop its operands
+                if (jump.isConditionalJump()) {
+                    var pops = jump.getOpcode().startsWith("if_") ? List.of(JasminInstruction.of("pop2"))
+                            : List.of(JasminInstruction.of("pop"));
+                    return concat(pops, List.of(label));
+                }
+                return List.of(label);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code ifeq A; goto B; A:} → {@code ifne B; A:}
+     */
+    static class BranchOverGoto implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "branch-over-goto";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 3;
+        }
+
+        @Override
+        public boolean matchesLabels() {
+            return true;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            var branch = window.get(0);
+            var jump = window.get(1);
+            var label = window.get(2);
+            if (!branch.isConditionalJump() || !jump.is("goto") || !label.isLabel()
+                    || !branch.getTarget().equals(label.getLabel())) {
+                return null;
+            }
+
+            var negated = NEGATED_JUMPS.get(branch.getOpcode());
+            if (negated == null) {
+                return null;
+            }
+            return List.of(JasminInstruction.of(negated, jump.getTarget()), label);
+        }
+    }
+
+    /**
+     * {@code iload_1; istore_1} → nothing
+     */
+    static class LoadStoreSame implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "load-store-same";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 2;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            var load = window.get(0);
+            var store = window.get(1);
+            if (load.isLoad() && store.isStore() && load.getTypePrefix() == store.getTypePrefix()
+                    && load.getLocal() == store.getLocal()) {
+                return List.of();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code iload_1; pop} → nothing
+     */
+    static class PushPop implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "push-pop";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 2;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            var push = window.get(0);
+            if ((push.isLoad() || push.isIntConstant() || push.is("aconst_null")) && window.get(1).is("pop")) {
+                return List.of();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code dup; pop} → nothing
+     */
+    static class DupPop implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "dup-pop";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 2;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            if (window.get(0).is("dup") && window.get(1).is("pop")) {
+                return List.of();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code iconst_0; iadd} → nothing, {@code iconst_1; imul} → nothing
+     */
+    static class ArithmeticIdentity implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "arithmetic-identity";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 2;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            var constant = window.get(0);
+            var operation = window.get(1);
+            if (!constant.isIntConstant() || operation.isLabel()) {
+                return null;
+            }
+
+            int value = constant.getIntConstant();
+            if ((value == 0 && ZERO_IDENTITIES.contains(operation.getOpcode()))
+                    || (value == 1 && ONE_IDENTITIES.contains(operation.getOpcode()))) {
+                return List.of();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code iconst_1; ixor; iconst_1; ixor} → nothing
+     */
+    static class DoubleNegation implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "double-negation";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 4;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            if (isNegation(window.get(0), window.get(1)) && isNegation(window.get(2), window.get(3))) {
+                return List.of();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code iconst_1; ixor; ifeq L} → {@code ifne L}, for booleans negated without branches
+     */
+    static class NegatedJump implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "negated-jump";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 3;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            var jump = window.get(2);
+            if (isNegation(window.get(0), window.get(1)) && jump.is("ifeq", "ifne")) {
+                return List.of(JasminInstruction.of(NEGATED_JUMPS.get(jump.getOpcode()), jump.getTarget()));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code iconst_0; if_icmplt L} → {@code iflt L}
+     */
+    static class CompareZero implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "compare-zero";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 2;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            var constant = window.get(0);
+            var jump = window.get(1);
+            if (constant.isIntConstant() && constant.getIntConstant() == 0 && !jump.isLabel()
+                    && ZERO_JUMPS.containsKey(jump.getOpcode())) {
+                return List.of(JasminInstruction.of(ZERO_JUMPS.get(jump.getOpcode()), jump.getTarget()));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code iload_1; bipush 5; iadd; istore_1} → {@code iinc 1 5}
+     */
+    static class Increment implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "increment";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 4;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            var load = window.get(0);
+            var constant = window.get(1);
+            var operation = window.get(2);
+            var store = window.get(3);
+            if (!load.is("iload", "iload_0", "iload_1", "iload_2", "iload_3") || !constant.isIntConstant()
+                    || !operation.is("iadd", "isub") || !store.isStore() || store.getTypePrefix() != 'i'
+                    || store.getLocal() != load.getLocal()) {
+                return null;
+            }
+
+            long increment = operation.is("iadd") ? constant.getIntConstant() : -(long) constant.getIntConstant();
+            // Increments outside a byte use the wide form, still a single instruction
+            if (increment < Short.MIN_VALUE || increment > Short.MAX_VALUE) {
+                return null;
+            }
+            return List.of(JasminInstruction.of("iinc", String.valueOf(load.getLocal()), String.valueOf(increment)));
+        }
+    }
+
+    /**
+     * {@code istore_1; iload_1} → {@code dup; istore_1}
+     */
+    static class StoreLoad implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "store-load";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 2;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            var store = window.get(0);
+            var load = window.get(1);
+            if (store.isStore() && load.isLoad() && store.getTypePrefix() == load.getTypePrefix()
+                    && store.getLocal() == load.getLocal()) {
+                return List.of(JasminInstruction.of("dup"), store);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code iload_1; iload_1} → {@code iload_1; dup}
+     */
+    static class LoadLoad implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "load-load";
+        }
+
+        @Override
+        public int getWindowSize() {
+            return 2;
+        }
+
+        @Override
+        public List<JasminInstruction> rewrite(List<JasminInstruction> window) {
+            var first = window.get(0);
+            var second = window.get(1);
+            if (first.isLoad() && first.equals(second)) {
+                return List.of(first, JasminInstruction.of("dup"));
+            }
+            return null;
+        }
+    }
+
+    private static boolean isNegation(JasminInstruction constant, JasminInstruction xor) {
+        return constant.is("iconst_1") && xor.is("ixor");
+    }
+
+    private static List<JasminInstruction> concat(List<JasminInstruction> first, List<JasminInstruction> second) {
+        var result = new ArrayList<>(first);
+        result.addAll(second);
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+package pt.up.fe.comp2025.backend.peephole;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the maximum height of the operand stack of a Jasmin method by following every path of its code.
+ * <p>
+ * Each instruction is given the height of the stack before it executes. The height is propagated to the next
+ * instruction and to the label a jump goes to, and every path that reaches an instruction must agree on it, as the
+ * JVM verifier requires. Code that no path reaches is not executed and is ignored.
+ */
+public class StackAnalysis {
+
+    private final List<JasminInstruction> code;
+    private final Map<String, Integer> labels;
+    private final int[] heights;
+    private final List<String> errors;
+
+    private int maxStack;
+
+    private StackAnalysis(List<JasminInstruction> code) {
+        this.code = code;
+        this.labels = new HashMap<>();
+        this.heights = new int[code.size()];
+        this.errors = new ArrayList<>();
+
+        for (int i = 0; i < code.size(); i++) {
+            if (code.get(i).isLabel()) {
+                labels.put(code.get(i).getLabel(), i);
+            }
+        }
+        Arrays.fill(heights, -1);
+    }
+
+    /**
+     * @param code the body of a method, with its labels
+     */
+    public static StackAnalysis analyze(List<JasminInstruction> code) {
+        var analysis = new StackAnalysis(code);
+        analysis.run();
+        return analysis;
+    }
+
+    private void run() {
+        if (code.isEmpty()) {
+            return;
+        }
+
+        var worklist = new ArrayDeque<Integer>();
+        heights[0] = 0;
+        worklist.add(0);
+
+        while (!worklist.isEmpty()) {
+            int index = worklist.poll();
+            var inst = code.get(index);
+            int height = heights[index];
+
+            if (inst.isLabel()) {
+                propagate(index, index + 1, height, worklist);
+                continue;
+            }
+
+            int pops;
+            int pushes;
+            try {
+                pops = StackEffect.getPops(inst);
+                pushes = StackEffect.getPushes(inst);
+            } catch (IllegalArgumentException e) {
+                errors.add(e.getMessage());
+                continue;
+            }
+
+            if (height < pops) {
+                errors.add("Instruction '" + inst + "' pops " + pops + " values from a stack with " + height);
+                continue;
+            }
+
+            int after = height - pops + pushes;
+            maxStack = Math.max(maxStack, after);
+
+            if (inst.isJump()) {
+                var target = labels.get(inst.getTarget());
+                if (target == null) {
+                    errors.add("Instruction '" + inst + "' jumps to an undefined label");
+                } else {
+                    propagate(index, target, after, worklist);
+                }
+            }
+            if (!inst.isExit()) {
+                propagate(index, index + 1, after, worklist);
+            }
+        }
+    }
+
+    private void propagate(int from, int to, int height, ArrayDeque<Integer> worklist) {
+        if (to >= code.size()) {
+            errors.add("Execution falls off the end of the code after '" + code.get(from) + "'");
+            return;
+        }
+
+        if (heights[to] == -1) {
+            heights[to] = height;
+            worklist.add(to);
+        } else if (heights[to] != height) {
+            errors.add("Stack height mismatch at '" + code.get(to) + "': " + heights[to] + " on one path, "
+                    + height + " on the path from '" + code.get(from) + "'");
+        }
+    }
+
+    /**
+     * @return the highest the stack gets on any path, which is the value of {@code .limit stack}
+     */
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * @return the height of the stack before the instruction at the given index, or -1 if it is never executed
+     */
+    public int getHeight(int index) {
+        return heights[index];
+    }
+
+    /**
+     * @return the inconsistencies found, empty if the code is valid for the verifier
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+}
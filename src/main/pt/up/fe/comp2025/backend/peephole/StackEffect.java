@@ -0,0 +1,132 @@
+package pt.up.fe.comp2025.backend.peephole;
+
+import java.util.List;
+
+/**
+ * How Jasmin instructions change the height of the operand stack.
+ */
+public class StackEffect {
+
+    private StackEffect() {
+    }
+
+    /**
+     * @return the number of values the instruction pops from the stack
+     * @throws IllegalArgumentException if the opcode is not one the backend emits
+     */
+    public static int getPops(JasminInstruction inst) {
+        var opcode = inst.getOpcode();
+        if (opcode.startsWith("invoke")) {
+            int args = countArgumentSlots(inst.getArg(0));
+            return opcode.equals("invokestatic") ? args : args + 1;
+        }
+        if (opcode.startsWith("if_")) {
+            return 2;
+        }
+        if (opcode.startsWith("if")) {
+            return 1;
+        }
+        if (inst.isStore()) {
+            return 1;
+        }
+        if (inst.isLoad() || inst.isIntConstant()) {
+            return 0;
+        }
+
+        return switch (opcode) {
+            case "iadd", "isub", "imul", "idiv", "irem", "iand", "ior", "ixor", "ishl", "ishr", "iushr",
+                 "iaload", "baload", "aaload", "putfield", "pop2", "dup2", "swap", "dup_x1" -> 2;
+            case "iastore", "bastore", "aastore" -> 3;
+            case "ineg", "ireturn", "areturn", "athrow", "pop", "putstatic", "arraylength", "newarray",
+                 "anewarray", "getfield", "checkcast", "instanceof", "dup" -> 1;
+            case "new", "getstatic", "aconst_null", "ldc", "iinc", "goto", "goto_w", "return", "nop" -> 0;
+            default -> throw unknown(inst);
+        };
+    }
+
+    /**
+     * @return the number of values the instruction pushes to the stack, after popping its operands
+     * @throws IllegalArgumentException if the opcode is not one the backend emits
+     */
+    public static int getPushes(JasminInstruction inst) {
+        var opcode = inst.getOpcode();
+        if (opcode.startsWith("invoke")) {
+            return returnsValue(inst.getArg(0)) ? 1 : 0;
+        }
+        if (inst.isLoad() || inst.isIntConstant()) {
+            return 1;
+        }
+
+        return switch (opcode) {
+            case "iadd", "isub", "imul", "idiv", "irem", "iand", "ior", "ixor", "ishl", "ishr", "iushr",
+                 "iaload", "baload", "aaload", "ineg", "arraylength", "newarray", "anewarray", "getfield",
+                 "checkcast", "instanceof", "getstatic", "new", "aconst_null", "ldc" -> 1;
+            case "dup", "swap" -> 2;
+            case "dup_x1" -> 3;
+            case "dup2" -> 4;
+            case "iastore", "bastore", "aastore", "putfield", "putstatic", "pop", "pop2", "ireturn", "areturn",
+                 "return", "athrow", "iinc", "goto", "goto_w", "nop" -> 0;
+            default -> {
+                if (inst.isStore() || inst.isConditionalJump()) {
+                    yield 0;
+                }
+                throw unknown(inst);
+            }
+        };
+    }
+
+    /**
+     * @return the change in the height of the stack after executing the instruction
+     */
+    public static int getDelta(JasminInstruction inst) {
+        if (inst.isLabel()) {
+            return 0;
+        }
+        return getPushes(inst) - getPops(inst);
+    }
+
+    /**
+     * @return the change in the height of the stack after executing the instructions in order, until one of them
+     * leaves the sequence
+     */
+    public static int getDelta(List<JasminInstruction> instructions) {
+        int height = 0;
+        for (var inst : instructions) {
+            height += getDelta(inst);
+            if (inst.isExit()) {
+                break;
+            }
+        }
+        return height;
+    }
+
+    private static IllegalArgumentException unknown(JasminInstruction inst) {
+        return new IllegalArgumentException("Unknown stack effect of instruction '" + inst + "'");
+    }
+
+    /**
+     * @param methodRef a method reference such as {@code Foo/bar(I[IZ)V}
+     */
+    private static int countArgumentSlots(String methodRef) {
+        var descriptor = methodRef.substring(methodRef.indexOf('(') + 1, methodRef.indexOf(')'));
+        int count = 0;
+        int i = 0;
+        while (i < descriptor.length()) {
+            char c = descriptor.charAt(i);
+            if (c == '[') {
+                i++;
+                continue;
+            }
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            count++;
+            i++;
+        }
+        return count;
+    }
+
+    private static boolean returnsValue(String methodRef) {
+        return !methodRef.endsWith(")V");
+    }
+}
@@ -0,0 +1,173 @@
+package pt.up.fe.comp2025.backend.split;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.ArrayLengthInstruction;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.BinaryOpInstruction;
+import org.specs.comp.ollir.inst.CallInstruction;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import org.specs.comp.ollir.inst.GetFieldInstruction;
+import org.specs.comp.ollir.inst.GotoInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.InvokeStaticInstruction;
+import org.specs.comp.ollir.inst.NewInstruction;
+import org.specs.comp.ollir.inst.PutFieldInstruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import org.specs.comp.ollir.inst.UnaryOpInstruction;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Estimates how many bytes of JVM code the OLLIR instructions of a method become.
+ * <p>
+ * The estimates are upper bounds of what the backend emits before the peephole optimizer: every variable access is
+ * counted with the register encoding of its size, every integer literal as an {@code ldc}, every comparison as the
+ * jumps that compute a boolean, and every jump as a {@code goto_w}, in case it is rewritten as a long jump.
+ */
+public class CodeSizeEstimate {
+
+    private static final int GOTO_SIZE = 5;
+    private static final int BRANCH_SIZE = 3 + GOTO_SIZE;
+    private static final int BOOLEAN_SIZE = 8;
+    private static final int CALL_SIZE = 3;
+
+    private static final Set<OperationType> ARITHMETIC = EnumSet.of(OperationType.ADD, OperationType.SUB,
+            OperationType.MUL, OperationType.DIV, OperationType.REM, OperationType.SHR, OperationType.SHL,
+            OperationType.SHRR, OperationType.XOR, OperationType.AND, OperationType.OR);
+
+    private final int accessSize;
+
+    /**
+     * @param method the method whose number of variables decides the size of the loads and stores
+     */
+    public CodeSizeEstimate(Method method) {
+        // Registers above 255 are accessed with the wide form, one more may be needed for the results of a region
+        this.accessSize = method.getVarTable().size() < 255 ? 2 : 4;
+    }
+
+    /**
+     * @return the estimated size of the code of the method
+     */
+    public int getSize(Method method) {
+        return method.getInstructions().stream().mapToInt(this::getSize).sum();
+    }
+
+    /**
+     * @return the estimated size of the code of the graph, with the gotos its layout needs
+     */
+    public int getSize(ControlFlowGraph cfg) {
+        var blocks = cfg.getBlocks();
+        int size = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            size += getSize(blocks.get(i), i + 1 < blocks.size() ? blocks.get(i + 1) : null);
+        }
+        return size;
+    }
+
+    /**
+     * @param following the block laid out after this one, or null if it is the last one
+     * @return the estimated size of the block, with the goto to its next block if it does not fall through to it
+     */
+    public int getSize(BasicBlock block, BasicBlock following) {
+        int size = block.getInstructions().stream().mapToInt(this::getSize).sum();
+        if (block.getNext() != null && block.getNext() != following) {
+            size += GOTO_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated size of the instruction
+     */
+    public int getSize(Instruction inst) {
+        if (inst instanceof AssignInstruction assign) {
+            if (assign.getDest() instanceof ArrayOperand array) {
+                return getArrayAccessSize(array) + getSize(assign.getRhs()) + 1;
+            }
+            return getSize(assign.getRhs()) + accessSize;
+        }
+        if (inst instanceof SingleOpInstruction single) {
+            return getSize(single.getSingleOperand());
+        }
+        if (inst instanceof BinaryOpInstruction binary) {
+            int operation = ARITHMETIC.contains(binary.getOperation().getOpType()) ? 1 : BOOLEAN_SIZE;
+            return getSize(binary.getLeftOperand()) + getSize(binary.getRightOperand()) + operation;
+        }
+        if (inst instanceof UnaryOpInstruction unary) {
+            return getSize(unary.getOperand()) + BOOLEAN_SIZE;
+        }
+        if (inst instanceof CondBranchInstruction branch) {
+            return getSize(branch.getCondition()) + BRANCH_SIZE;
+        }
+        if (inst instanceof GotoInstruction) {
+            return GOTO_SIZE;
+        }
+        if (inst instanceof ReturnInstruction ret) {
+            return ret.getOperand().map(this::getSize).orElse(0) + 1;
+        }
+        if (inst instanceof GetFieldInstruction getField) {
+            return getSize(getField.getObject()) + CALL_SIZE;
+        }
+        if (inst instanceof PutFieldInstruction putField) {
+            return getSize(putField.getObject()) + getSize(putField.getValue()) + CALL_SIZE;
+        }
+        if (inst instanceof ArrayLengthInstruction arrayLength) {
+            return getSize(arrayLength.getCaller()) + 1;
+        }
+        if (inst instanceof CallInstruction call) {
+            return getCallSize(call);
+        }
+        throw new IllegalArgumentException("Unknown size of instruction '" + inst + "'");
+    }
+
+    private int getCallSize(CallInstruction call) {
+        int size = CALL_SIZE;
+        for (var argument : call.getArguments()) {
+            size += getSize(argument);
+        }
+
+        // The result of a new is duplicated to call the constructor, the result of other calls may be popped
+        if (call instanceof NewInstruction) {
+            return size + 1;
+        }
+        if (!(call instanceof InvokeStaticInstruction)) {
+            size += getSize(call.getCaller());
+        }
+        return size + 1;
+    }
+
+    private int getSize(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return literal.getType() instanceof BuiltinType type && type.getKind() == BuiltinKind.BOOLEAN ? 1 : 3;
+        }
+        if (element instanceof ArrayOperand array) {
+            return getArrayAccessSize(array) + 1;
+        }
+        if (element instanceof Operand operand && operand.getName().equals("this")) {
+            return 1;
+        }
+        return accessSize;
+    }
+
+    /**
+     * @return the size of loading the array and its index
+     */
+    private int getArrayAccessSize(ArrayOperand array) {
+        int size = accessSize;
+        for (var index : array.getIndexOperands()) {
+            size += getSize(index);
+        }
+        return size;
+    }
+}
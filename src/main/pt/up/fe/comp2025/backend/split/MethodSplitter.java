@@ -0,0 +1,508 @@
+package pt.up.fe.comp2025.backend.split;
+
+import org.specs.comp.ollir.AccessModifier;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.InvokeStaticInstruction;
+import org.specs.comp.ollir.inst.NewInstruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import org.specs.comp.ollir.type.ArrayType;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import org.specs.comp.ollir.type.ClassKind;
+import org.specs.comp.ollir.type.ClassType;
+import org.specs.comp.ollir.type.Type;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.backend.peephole.InstructionSize;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.cfg.Liveness;
+
+import java.util.*;
+
+/**
+ * Splits the methods whose code would not fit in the 64 KB the JVM allows for a method.
+ * <p>
+ * The size of the code is estimated block by block with {@link CodeSizeEstimate}. While the method is too large, the
+ * largest region of consecutive blocks that is only entered through its first block and always leaves to the same
+ * block is moved to a new private static method, and replaced by a call to it. Blocks larger than
+ * {@link #MAX_BLOCK_SIZE} are split first, so long straight-line code can be moved in pieces.
+ * <p>
+ * The variables live at the start of the region that it reads or writes are passed as parameters, with {@code this}
+ * as one more parameter when the region uses it. The variables the region writes that are live after it are its
+ * results: one is returned, the others are written to a holder array the caller creates and reads back after the
+ * call. Only integers and booleans fit in the holder, so a region with more than one result of another type is not
+ * moved.
+ */
+public class MethodSplitter {
+
+    /**
+     * Largest estimated size of a region, so the new method is far from the limit.
+     */
+    private static final int MAX_REGION_SIZE = 32 * 1024;
+
+    private static final int MAX_BLOCK_SIZE = 2 * 1024;
+
+    /**
+     * Smallest estimated size of a region, so the call that replaces it is much smaller than the region.
+     */
+    private static final int MIN_REGION_SIZE = 256;
+
+    private static final int MAX_PARAMS = 255;
+
+    private static final String SUFFIX = "_split";
+    private static final String SELF = "self";
+    private static final String HOLDER = "holder";
+
+    private static final Type INT_TYPE = new BuiltinType(BuiltinKind.INT32);
+
+    private final ClassUnit classUnit;
+    private final Set<String> methodNames;
+
+    public MethodSplitter(ClassUnit classUnit) {
+        this.classUnit = classUnit;
+        this.methodNames = new HashSet<>();
+        for (var method : classUnit.getMethods()) {
+            methodNames.add(method.getMethodName());
+        }
+    }
+
+    /**
+     * Splits the methods of the class that are too large, adding the new methods to the class.
+     *
+     * @return a log report for each method split
+     */
+    public List<Report> split() {
+        var reports = new ArrayList<Report>();
+
+        for (var method : new ArrayList<>(classUnit.getMethods())) {
+            if (method.isConstructMethod()
+                    || new CodeSizeEstimate(method).getSize(method) <= InstructionSize.MAX_CODE_SIZE) {
+                continue;
+            }
+
+            var splitting = new Splitting(method);
+            splitting.run();
+
+            if (!splitting.created.isEmpty()) {
+                reports.add(Report.newLog(Stage.GENERATION, -1, -1,
+                        "Method splitting of method '" + method.getMethodName() + "': " + splitting.created.size()
+                                + " regions moved to " + String.join(", ", splitting.created), null));
+            }
+        }
+
+        return reports;
+    }
+
+    /**
+     * Blocks from {@code start} to {@code end} of the layout, which always continue to the block at {@code exit}.
+     */
+    private record Region(int start, int end, int exit, int size) {
+    }
+
+    /**
+     * Variables passed to the method of a region and results it gives back.
+     *
+     * @param returned the result returned by the method, or null if it has none
+     * @param held     the results written to the holder, in order
+     */
+    private record Signature(List<String> params, boolean usesThis, String returned, List<String> held) {
+
+        int getParamCount() {
+            return params.size() + (usesThis ? 1 : 0) + (held.isEmpty() ? 0 : 1);
+        }
+    }
+
+    private class Splitting {
+
+        private final Method method;
+        private final ControlFlowGraph cfg;
+        private final CodeSizeEstimate estimate;
+        private final Map<String, Type> types;
+
+        // Blocks that call the method of a region, which are not moved again so the new methods do not nest
+        private final Set<BasicBlock> calls;
+        private final List<String> created;
+
+        Splitting(Method method) {
+            this.method = method;
+            this.cfg = ControlFlowGraph.build(method);
+            this.estimate = new CodeSizeEstimate(method);
+            this.types = new HashMap<>();
+            for (var entry : method.getVarTable().entrySet()) {
+                types.put(entry.getKey(), entry.getValue().getVarType());
+            }
+            this.calls = Collections.newSetFromMap(new IdentityHashMap<>());
+            this.created = new ArrayList<>();
+        }
+
+        void run() {
+            cfg.removeUnreachable();
+            splitLargeBlocks();
+
+            while (estimate.getSize(cfg) > InstructionSize.MAX_CODE_SIZE) {
+                if (!moveLargestRegion()) {
+                    break;
+                }
+            }
+
+            if (!created.isEmpty()) {
+                cfg.commit();
+            }
+        }
+
+        private void splitLargeBlocks() {
+            var blocks = cfg.getBlocks();
+
+            // The second half of a split block is visited next, and split again when needed
+            for (int i = 0; i < blocks.size(); i++) {
+                var block = blocks.get(i);
+                var instructions = block.getInstructions();
+
+                int size = 0;
+                for (int j = 0; j + 1 < instructions.size(); j++) {
+                    size += estimate.getSize(instructions.get(j));
+                    if (size <= MAX_BLOCK_SIZE) {
+                        continue;
+                    }
+
+                    var rest = cfg.newBlock();
+                    var moved = instructions.subList(j + 1, instructions.size());
+                    rest.getInstructions().addAll(moved);
+                    moved.clear();
+
+                    rest.setNext(block.getNext());
+                    rest.setTaken(block.getTaken());
+                    block.setNext(rest);
+                    block.setTaken(null);
+                    cfg.insertAfter(block, rest);
+                    break;
+                }
+            }
+
+            cfg.updateEdges();
+        }
+
+        /**
+         * @return true if a region was moved to a new method
+         */
+        private boolean moveLargestRegion() {
+            var blocks = cfg.getBlocks();
+            Map<BasicBlock, Integer> indexes = new HashMap<>();
+            var sizes = new int[blocks.size()];
+            for (int i = 0; i < blocks.size(); i++) {
+                indexes.put(blocks.get(i), i);
+                sizes[i] = estimate.getSize(blocks.get(i), i + 1 < blocks.size() ? blocks.get(i + 1) : null);
+            }
+
+            // The entry block is empty and has no predecessors, so regions start after it
+            var regions = new ArrayList<Region>();
+            for (int start = 1; start < blocks.size(); start++) {
+                var region = findRegion(start, indexes, sizes);
+                if (region != null) {
+                    regions.add(region);
+                }
+            }
+            regions.sort(Comparator.comparingInt(Region::size).reversed());
+
+            var liveness = new Liveness(cfg);
+            for (var region : regions) {
+                var signature = getSignature(region, liveness);
+                if (signature != null && signature.getParamCount() <= MAX_PARAMS) {
+                    move(region, signature);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the largest region that starts at the given block, or null if there is none
+         */
+        private Region findRegion(int start, Map<BasicBlock, Integer> indexes, int[] sizes) {
+            var blocks = cfg.getBlocks();
+
+            // Blocks outside the region jumped to from inside it, after and before the region
+            Map<Integer, Integer> exitsAfter = new HashMap<>();
+            Set<Integer> exitsBefore = new HashSet<>();
+            int lastPredecessor = start;
+            int size = 0;
+            Region largest = null;
+
+            for (int end = start; end < blocks.size(); end++) {
+                var block = blocks.get(end);
+                size += sizes[end];
+
+                // A block that returns cannot be moved, the caller must return instead
+                if (size > MAX_REGION_SIZE || block.getNext() == null || calls.contains(block)) {
+                    break;
+                }
+
+                // Only the first block can be entered from outside
+                if (end > start) {
+                    for (var pred : block.getPredecessors()) {
+                        int index = indexes.get(pred);
+                        if (index < start) {
+                            return largest;
+                        }
+                        lastPredecessor = Math.max(lastPredecessor, index);
+                    }
+                }
+
+                exitsAfter.remove(end);
+                for (var succ : block.getSuccessors()) {
+                    int index = indexes.get(succ);
+                    if (index > end) {
+                        exitsAfter.merge(index, 1, Integer::sum);
+                    } else if (index < start) {
+                        exitsBefore.add(index);
+                    }
+                }
+
+                if (lastPredecessor <= end && exitsAfter.size() + exitsBefore.size() == 1
+                        && size >= MIN_REGION_SIZE) {
+                    int exit = exitsAfter.isEmpty() ? exitsBefore.iterator().next()
+                            : exitsAfter.keySet().iterator().next();
+                    largest = new Region(start, end, exit, size);
+                }
+            }
+            return largest;
+        }
+
+        /**
+         * @return the signature of the method of the region, or null if its results cannot be given back
+         */
+        private Signature getSignature(Region region, Liveness liveness) {
+            var blocks = cfg.getBlocks();
+            var accessed = new HashSet<String>();
+            var written = new HashSet<String>();
+            boolean usesThis = false;
+
+            for (var block : blocks.subList(region.start(), region.end() + 1)) {
+                for (var inst : block.getInstructions()) {
+                    accessed.addAll(InstructionUtils.getUses(inst));
+                    var def = InstructionUtils.getDefName(inst);
+                    if (def != null) {
+                        accessed.add(def);
+                        written.add(def);
+                    }
+                    usesThis |= usesThis(inst);
+                }
+            }
+
+            // A variable the region may not write keeps its value from before the region
+            var params = new TreeSet<>(liveness.getLiveIn(blocks.get(region.start())));
+            params.retainAll(accessed);
+
+            var results = new TreeSet<>(liveness.getLiveIn(blocks.get(region.exit())));
+            results.retainAll(written);
+
+            var others = results.stream().filter(result -> !isInteger(types.get(result))).toList();
+            if (others.size() > 1) {
+                return null;
+            }
+
+            String returned = others.isEmpty() ? (results.isEmpty() ? null : results.first()) : others.getFirst();
+            var held = new ArrayList<>(results);
+            held.remove(returned);
+
+            return new Signature(new ArrayList<>(params), usesThis, returned, held);
+        }
+
+        /**
+         * Moves the blocks of the region to a new method, and replaces them by a call to it.
+         */
+        private void move(Region region, Signature signature) {
+            var blocks = cfg.getBlocks();
+            var regionBlocks = new ArrayList<>(blocks.subList(region.start(), region.end() + 1));
+            var first = regionBlocks.getFirst();
+            var exit = blocks.get(region.exit());
+
+            var name = newMethodName();
+            var names = new HashSet<>(types.keySet());
+            var self = new Operand(newName(SELF, names), getThisType());
+            var holder = new Operand(newName(HOLDER, names), getHolderType());
+
+            classUnit.addMethod(createMethod(name, regionBlocks, exit, signature, self, holder));
+            created.add(name);
+
+            first.getInstructions().clear();
+            first.getInstructions().addAll(createCall(name, signature, holder));
+            first.setTaken(null);
+            first.setNext(exit);
+            calls.add(first);
+            types.put(holder.getName(), holder.getType());
+
+            var moved = Collections.newSetFromMap(new IdentityHashMap<BasicBlock, Boolean>());
+            moved.addAll(regionBlocks.subList(1, regionBlocks.size()));
+            blocks.removeIf(moved::contains);
+            cfg.updateEdges();
+        }
+
+        private Method createMethod(String name, List<BasicBlock> regionBlocks, BasicBlock exit,
+                                    Signature signature, Operand self, Operand holder) {
+            var result = new Method(classUnit);
+            result.setMethodName(name);
+            result.setMethodAccessModifier(AccessModifier.PRIVATE);
+            result.setStaticMethod();
+            result.setReturnType(signature.returned() == null ? new BuiltinType(BuiltinKind.VOID)
+                    : types.get(signature.returned()));
+
+            var params = new ArrayList<Operand>();
+            if (signature.usesThis()) {
+                params.add(self);
+            }
+            for (var param : signature.params()) {
+                params.add(new Operand(param, types.get(param)));
+            }
+            if (!signature.held().isEmpty()) {
+                params.add(holder);
+            }
+            for (int i = 0; i < params.size(); i++) {
+                var param = new Operand(params.get(i).getName(), params.get(i).getType());
+                param.setParamId(i);
+                result.addParam(param);
+            }
+
+            var regionCfg = ControlFlowGraph.build(result);
+            Map<BasicBlock, BasicBlock> copies = new HashMap<>();
+            for (var block : regionBlocks) {
+                var copy = regionCfg.newBlock();
+                for (var inst : block.getInstructions()) {
+                    copy.getInstructions().add(InstructionUtils.mapElements(inst,
+                            element -> isThis(element) ? self : element));
+                }
+                copies.put(block, copy);
+                regionCfg.getBlocks().add(copy);
+            }
+
+            // Gives the results back where the region continued
+            var end = regionCfg.newBlock();
+            for (int i = 0; i < signature.held().size(); i++) {
+                var variable = signature.held().get(i);
+                end.getInstructions().add(new AssignInstruction(holderElement(holder, i), INT_TYPE,
+                        new SingleOpInstruction(new Operand(variable, types.get(variable)))));
+            }
+            var ret = signature.returned() == null ? new ReturnInstruction()
+                    : new ReturnInstruction(new Operand(signature.returned(), result.getReturnType()));
+            ret.setReturnType(result.getReturnType());
+            end.getInstructions().add(ret);
+            copies.put(exit, end);
+            regionCfg.getBlocks().add(end);
+
+            for (var block : regionBlocks) {
+                var copy = copies.get(block);
+                copy.setNext(copies.get(block.getNext()));
+                copy.setTaken(block.getTaken() == null ? null : copies.get(block.getTaken()));
+            }
+            regionCfg.getEntry().setNext(copies.get(regionBlocks.getFirst()));
+
+            regionCfg.updateEdges();
+            regionCfg.commit();
+            return result;
+        }
+
+        /**
+         * @return the call to the method of the region, with the creation and reading of the holder
+         */
+        private List<Instruction> createCall(String name, Signature signature, Operand holder) {
+            var instructions = new ArrayList<Instruction>();
+
+            var arguments = new ArrayList<Element>();
+            if (signature.usesThis()) {
+                arguments.add(new Operand("this", getThisType()));
+            }
+            for (var param : signature.params()) {
+                arguments.add(new Operand(param, types.get(param)));
+            }
+            if (!signature.held().isEmpty()) {
+                var size = new LiteralElement(String.valueOf(signature.held().size()), INT_TYPE);
+                var newArray = new NewInstruction(new Operand("array", holder.getType()), List.of(size),
+                        holder.getType(), false);
+                instructions.add(new AssignInstruction(holder, holder.getType(), newArray));
+                arguments.add(holder);
+            }
+
+            var className = classUnit.getClassName();
+            var caller = new Operand(className, new ClassType(ClassKind.CLASS, className));
+            var methodName = new LiteralElement(name, new BuiltinType(BuiltinKind.STRING));
+            if (signature.returned() == null) {
+                instructions.add(new InvokeStaticInstruction(caller, methodName, arguments,
+                        new BuiltinType(BuiltinKind.VOID), true));
+            } else {
+                var type = types.get(signature.returned());
+                instructions.add(new AssignInstruction(new Operand(signature.returned(), type), type,
+                        new InvokeStaticInstruction(caller, methodName, arguments, type, false)));
+            }
+
+            for (int i = 0; i < signature.held().size(); i++) {
+                var variable = signature.held().get(i);
+                var type = types.get(variable);
+                instructions.add(new AssignInstruction(new Operand(variable, type), type,
+                        new SingleOpInstruction(holderElement(holder, i))));
+            }
+            return instructions;
+        }
+
+        private ClassType getThisType() {
+            return new ClassType(ClassKind.OBJECTREF, classUnit.getClassName());
+        }
+
+        private String newMethodName() {
+            int id = 0;
+            while (methodNames.contains(method.getMethodName() + SUFFIX + id)) {
+                id++;
+            }
+            methodNames.add(method.getMethodName() + SUFFIX + id);
+            return method.getMethodName() + SUFFIX + id;
+        }
+    }
+
+    private static ArrayType getHolderType() {
+        var type = new ArrayType(1);
+        type.setElementType(INT_TYPE);
+        return type;
+    }
+
+    private static ArrayOperand holderElement(Operand holder, int index) {
+        return new ArrayOperand(holder.getName(), INT_TYPE,
+                new ArrayList<>(List.of(new LiteralElement(String.valueOf(index), INT_TYPE))));
+    }
+
+    private static boolean usesThis(Instruction inst) {
+        var found = new boolean[1];
+        InstructionUtils.mapElements(inst, element -> {
+            found[0] |= isThis(element);
+            return element;
+        });
+        return found[0];
+    }
+
+    private static boolean isThis(Element element) {
+        return element instanceof Operand operand && !element.isLiteral() && operand.getName().equals("this");
+    }
+
+    private static boolean isInteger(Type type) {
+        return type instanceof BuiltinType builtin
+                && (builtin.getKind() == BuiltinKind.INT32 || builtin.getKind() == BuiltinKind.BOOLEAN);
+    }
+
+    private static String newName(String prefix, Set<String> names) {
+        var name = prefix;
+        int id = 0;
+        while (names.contains(name)) {
+            name = prefix + id++;
+        }
+        names.add(name);
+        return name;
+    }
+}
@@ -0,0 +1,104 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * OLLIR result whose class is built and changed directly, by the generation from the AST and by the optimizations.
+ * <p>
+ * The code is printed from the class the first time it is requested, so it shows what the backend will receive, and
+ * is not printed at all when nothing asks for it.
+ * <p>
+ * Every constructor of {@link OllirResult} parses OLLIR code, so no constructor is used for the results: each one is
+ * a copy of a prototype, made by {@link Object#clone()}, with its own class, reports and config. Only the prototype
+ * calls the constructor of the parent, once, with the smallest valid class. Every getter of the parent is
+ * overridden, so what the parent parsed is never seen.
+ */
+public class ClassUnitOllirResult extends OllirResult implements Cloneable {
+
+    private static final ClassUnitOllirResult PROTOTYPE = new ClassUnitOllirResult();
+
+    private ClassUnit ollirClass;
+    private JmmSemanticsResult semanticsResult;
+    private List<Report> reports;
+    private Map<String, String> config;
+    private String ollirCode;
+
+    private ClassUnitOllirResult() {
+        super("Empty {\n}\n", Map.of());
+    }
+
+    /**
+     * @return the result of the class generated from the AST of the semantics result
+     */
+    public static ClassUnitOllirResult of(JmmSemanticsResult semanticsResult, ClassUnit ollirClass,
+                                          List<Report> reports) {
+        var allReports = new ArrayList<>(semanticsResult.getReports());
+        allReports.addAll(reports);
+        return create(ollirClass, semanticsResult, allReports, semanticsResult.getConfig());
+    }
+
+    /**
+     * @return the result of the class of the original result, with more reports
+     */
+    public static ClassUnitOllirResult of(OllirResult original, List<Report> reports) {
+        var semanticsResult = original instanceof ClassUnitOllirResult result ? result.semanticsResult : null;
+        var allReports = new ArrayList<>(original.getReports());
+        allReports.addAll(reports);
+        return create(original.getOllirClass(), semanticsResult, allReports, original.getConfig());
+    }
+
+    private static ClassUnitOllirResult create(ClassUnit ollirClass, JmmSemanticsResult semanticsResult,
+                                               List<Report> reports, Map<String, String> config) {
+        ClassUnitOllirResult result;
+        try {
+            result = (ClassUnitOllirResult) PROTOTYPE.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("OLLIR results must be cloneable", e);
+        }
+
+        result.ollirClass = ollirClass;
+        result.semanticsResult = semanticsResult;
+        result.reports = reports;
+        result.config = config;
+        result.ollirCode = null;
+        return result;
+    }
+
+    @Override
+    public String getOllirCode() {
+        if (ollirCode == null) {
+            ollirCode = new OllirPrinter().print(ollirClass);
+        }
+        return ollirCode;
+    }
+
+    @Override
+    public ClassUnit getOllirClass() {
+        return ollirClass;
+    }
+
+    /**
+     * @return the result the class was generated from, empty if it was parsed from OLLIR code
+     */
+    public Optional<JmmSemanticsResult> getSemanticsResult() {
+        return Optional.ofNullable(semanticsResult);
+    }
+
+    @Override
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    @Override
+    public Map<String, String> getConfig() {
+        return config;
+    }
+}
@@ -14,8 +14,27 @@ import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2025.CompilerConfig;
+import pt.up.fe.comp2025.ConfigOptions;
 import pt.up.fe.comp2025.ast.Kind;
 import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.passes.AlgebraicSimplification;
+import pt.up.fe.comp2025.optimization.passes.BlockLayout;
+import pt.up.fe.comp2025.optimization.passes.BranchOptimization;
+import pt.up.fe.comp2025.optimization.passes.ConstantPropagation;
+import pt.up.fe.comp2025.optimization.passes.CopyPropagation;
+import pt.up.fe.comp2025.optimization.passes.DeadCodeElimination;
+import pt.up.fe.comp2025.optimization.passes.Inlining;
+import pt.up.fe.comp2025.optimization.passes.InterproceduralConstantPropagation;
+import pt.up.fe.comp2025.optimization.passes.LoopInvariantCodeMotion;
+import pt.up.fe.comp2025.optimization.passes.LoopUnrolling;
+import pt.up.fe.comp2025.optimization.passes.PassManager;
+import pt.up.fe.comp2025.optimization.passes.ScalarReplacement;
+import pt.up.fe.comp2025.optimization.passes.StrengthReduction;
+import pt.up.fe.comp2025.optimization.passes.TailCallElimination;
+import pt.up.fe.comp2025.optimization.passes.UnreachableMethodElimination;
+import pt.up.fe.comp2025.optimization.passes.ValueNumbering;
 
 import java.util.*;
 
@@ -23,8 +42,26 @@ import static pt.up.fe.comp2025.ast.Kind.*;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
+    /**
+     * Maximum number of times the scalar optimizations are repeated with -O3.
+     */
+    private static final int MAX_ITERATIONS = 4;
+
+    /**
+     * Maximum number of times the liveness of the instructions is computed for the graph coloring of a method, the
+     * registers are allocated by a linear scan if it has not converged by then.
+     */
+    private static final int MAX_LIVENESS_ROUNDS = 100;
+
+    private static final String CONSTANT_FOLDING = "ConstantFolding";
+    private static final String REGISTER_ALLOCATION = "RegisterAllocation";
+    private static final String REGISTER_PRIORITY = "RegisterPriority";
+
     ArrayList<Kind> assignments;
 
+    private OptimizationBudget budget;
+    private Map<String, String> budgetConfig;
+
     public JmmOptimizationImpl() {
         assignments = new ArrayList<>();
         assignments.add(ASSIGN_STMT);
@@ -34,33 +71,123 @@ public class JmmOptimizationImpl implements JmmOptimization {
 
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
-        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
-        var ollirCode = visitor.visit(semanticsResult.getRootNode());
+        // With optimizations, values are computed directly into the variables they are assigned to
+        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable(),
+                CompilerConfig.getOptimizationLevel(semanticsResult.getConfig()) > 0);
+        var ollirClass = visitor.generate(semanticsResult.getRootNode());
 
-        return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
+        return ClassUnitOllirResult.of(semanticsResult, ollirClass, Collections.emptyList());
+    }
+
+    /**
+     * @return the budget of the compilation with the given config, started by the first optimization stage of the
+     * compilation
+     */
+    private OptimizationBudget getBudget(Map<String, String> config) {
+        if (budget == null || budgetConfig != config) {
+            budget = new OptimizationBudget(ConfigOptions.getWorkBudget(config), ConfigOptions.getSizeBudget(config),
+                    ConfigOptions.getMethodWorkBudget(config), ConfigOptions.getMethodSizeBudget(config),
+                    ConfigOptions.getBudget(config), ConfigOptions.getMethodBudget(config));
+            budgetConfig = config;
+        }
+        return budget;
+    }
+
+    /**
+     * Optimization passes that will be applied to the OLLIR class, in order, for the optimization level of the
+     * config.
+     * <p>
+     * -O1 only does the cleanups inside each method, -O2 adds the interprocedural and loop optimizations and -O3 also
+     * unrolls loops by default and repeats the scalar optimizations until they have nothing left to do.
+     * <p>
+     * With a profile, the inlining and the layout of the blocks are guided by it. An instrumented build does not
+     * inline calls, so the profile counts every call the recompilation can inline.
+     */
+    private PassManager buildPasses(Map<String, String> config, Profile profile) {
+        int level = CompilerConfig.getOptimizationLevel(config);
+        var passes = new PassManager(CompilerConfig.getTimePasses(config), getBudget(config));
+
+        if (level == 1) {
+            return passes.add(new ConstantPropagation())
+                    .add(new AlgebraicSimplification())
+                    .add(new CopyPropagation())
+                    .add(new DeadCodeElimination())
+                    .add(new BranchOptimization())
+                    .add(new BlockLayout(profile));
+        }
+
+        passes.add(new TailCallElimination());
+        passes.add(new InterproceduralConstantPropagation(ConfigOptions.getInlinePublic(config)));
+        if (!CompilerConfig.isInstrumented(config)) {
+            passes.add(new Inlining(new Inlining.Heuristics(ConfigOptions.getInlineSize(config),
+                    ConfigOptions.getInlineCallerSize(config), ConfigOptions.getInlineDepth(config),
+                    ConfigOptions.getInlinePublic(config)), profile));
+        }
+        passes.add(new ConstantPropagation());
+        if (ConfigOptions.getUnroll(config)) {
+            passes.add(new LoopUnrolling(ConfigOptions.getUnrollFactor(config), ConfigOptions.getUnrollSize(config)));
+            // Computes the values of the loop variables in the unrolled copies
+            passes.add(new ConstantPropagation());
+        }
+        passes.add(new ScalarReplacement(ConfigOptions.getInlinePublic(config)));
+        if (level >= 3) {
+            passes.addFixpoint(MAX_ITERATIONS, new AlgebraicSimplification(), new ValueNumbering(),
+                    new CopyPropagation(), new DeadCodeElimination(), new ConstantPropagation(),
+                    new InterproceduralConstantPropagation(ConfigOptions.getInlinePublic(config)));
+        } else {
+            passes.add(new AlgebraicSimplification());
+            passes.add(new ValueNumbering());
+            // The loops read the locals of the fields through copies, which would hide their invariant code
+            passes.add(new CopyPropagation());
+        }
+        passes.add(new LoopInvariantCodeMotion());
+        passes.add(new StrengthReduction());
+        passes.add(new CopyPropagation());
+        passes.add(new DeadCodeElimination());
+        passes.add(new BranchOptimization());
+        passes.add(new BlockLayout(profile));
+        // Last, the calls to helpers are only gone after the other passes
+        passes.add(new UnreachableMethodElimination());
+
+        return passes;
     }
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
         var config = ollirResult.getConfig();
+        var profile = CompilerConfig.getProfileFile(config).map(Profile::read).orElse(Profile.EMPTY);
+
+        if (CompilerConfig.getOptimizationLevel(config) > 0) {
+            ollirResult = optimizeOllir(ollirResult, profile);
+        }
+
         int n = CompilerConfig.getRegisterAllocation(config);
 
-        if (n == -1) {
-            return ollirResult;
-        } else {
+        if (n != -1) {
             optimizeRegisters(ollirResult);
+            var reports = new ArrayList<Report>();
             int mx = 0;
 
             for (var method : ollirResult.getOllirClass().getMethods()) {
                 var VT = method.getVarTable();
+                int methodMx = 0;
                 for (var reg : VT.keySet()) {
                     int val = VT.get(reg).getVirtualReg();
-                    mx = Math.max(mx, val);
+                    methodMx = Math.max(methodMx, val);
+                }
+                mx = Math.max(mx, methodMx);
+
+                String message = "Register allocation in method '" + method.getMethodName() + "': "
+                        + VT.size() + " variables in " + (methodMx + 1) + " registers";
+                if (methodMx + 1 > n) {
+                    reports.add(OptimizationRemark.missed(REGISTER_ALLOCATION, method, null, 0,
+                            message + ", more than the " + n + " allowed"));
+                } else {
+                    reports.add(OptimizationRemark.applied(REGISTER_ALLOCATION, method, message));
                 }
             }
 
             if (mx + 1 > n) {
-                var reports = ollirResult.getReports();
                 reports.add(new Report(
                         ReportType.ERROR,
                         Stage.OPTIMIZATION,
@@ -68,18 +195,79 @@ public class JmmOptimizationImpl implements JmmOptimization {
                         -1,
                         "Need at least " + (mx + 1) + " registers.\n"));
             }
+            ollirResult = ClassUnitOllirResult.of(ollirResult, reports);
+        }
+
+        // Done last, the other optimizations renumber the registers
+        if (CompilerConfig.getOptimizationLevel(config) > 0 && !profile.isEmpty()) {
+            ollirResult = ClassUnitOllirResult.of(ollirResult,
+                    prioritizeRegisters(ollirResult.getOllirClass(), profile));
+        }
+
+        var budgetReports = getBudget(config).getReports();
+        if (!budgetReports.isEmpty()) {
+            ollirResult = ClassUnitOllirResult.of(ollirResult, budgetReports);
+        }
+
+        // The remarks of the OLLIR code only know their method
+        if (ollirResult instanceof ClassUnitOllirResult result && result.getSemanticsResult().isPresent()) {
+            OptimizationRemarks.locate(ollirResult.getReports(), result.getSemanticsResult().get().getRootNode());
+        }
+        var remarksFile = CompilerConfig.getRemarksFile(config);
+        if (remarksFile.isPresent()) {
+            OptimizationRemarks.write(ollirResult.getReports(), remarksFile.get());
+            System.out.print(OptimizationRemarks.summarize(ollirResult.getReports()));
         }
+
         return ollirResult;
     }
 
+    private OllirResult optimizeOllir(OllirResult ollirResult, Profile profile) {
+        var classUnit = ollirResult.getOllirClass();
+        var reports = new ArrayList<Report>();
+
+        int instructionsBefore = countInstructions(classUnit);
+        int localsBefore = countLocals(classUnit);
+
+        reports.addAll(buildPasses(ollirResult.getConfig(), profile).run(classUnit));
+
+        reports.add(Report.newLog(Stage.OPTIMIZATION, -1, -1, "OLLIR optimization of class '"
+                + classUnit.getClassName() + "': " + instructionsBefore + " instructions and " + localsBefore
+                + " local variables before, " + countInstructions(classUnit) + " instructions and "
+                + countLocals(classUnit) + " local variables after", null));
+
+        return ClassUnitOllirResult.of(ollirResult, reports);
+    }
+
+    private static int countInstructions(ClassUnit classUnit) {
+        return classUnit.getMethods().stream().mapToInt(method -> method.getInstructions().size()).sum();
+    }
+
+    /**
+     * @return the number of variables of every method, counting 'this' and the parameters
+     */
+    private static int countLocals(ClassUnit classUnit) {
+        return classUnit.getMethods().stream().mapToInt(method -> method.getVarTable().size()).sum();
+    }
+
     private void optimizeRegisters(OllirResult OR) {
+        var budget = getBudget(OR.getConfig());
         OR.getOllirClass().buildCFGs();
         for (var method : OR.getOllirClass().getMethods()) {
-            optMethodReg(method);
+            if (!budget.allowsColoring(method)) {
+                allocateLinear(method);
+            } else if (!optMethodReg(method)) {
+                budget.degradeRegisterAllocation(method, "liveness did not converge in " + MAX_LIVENESS_ROUNDS
+                        + " rounds");
+                allocateLinear(method);
+            }
         }
     }
 
-    private void optMethodReg(Method m) {
+    /**
+     * @return false if the liveness did not converge, then the registers are left as they were
+     */
+    private boolean optMethodReg(Method m) {
         var insts = m.getInstructions();
         var sz = insts.size();
 
@@ -96,7 +284,12 @@ public class JmmOptimizationImpl implements JmmOptimization {
 
         // Calculate live-ins and live-outs using standard data flow analysis
         boolean changed = true;
+        int rounds = 0;
         while (changed) {
+            if (++rounds > MAX_LIVENESS_ROUNDS) {
+                return false;
+            }
+
             changed = false;
             for (int i = sz - 1; i >= 0; i--) { // Process backwards for faster convergence
                 var inst = m.getInstr(i);
@@ -206,330 +399,263 @@ public class JmmOptimizationImpl implements JmmOptimization {
                 VT.put(var, new org.specs.comp.ollir.Descriptor(colors.get(var)));
             }
         }
+        return true;
     }
 
-    private boolean equalSets(Set<String> a, Set<String> b) {
-        if (a.size() != b.size())
-            return false;
-        for (var s : a) {
-            if (!b.contains(s))
-                return false;
+    /**
+     * Allocates the registers of a method by a linear scan over the live interval of each variable, from its first
+     * to its last appearance in the code. An interval that overlaps a loop is extended to the whole loop, so the
+     * intervals are conservative but need no liveness analysis.
+     */
+    private void allocateLinear(Method m) {
+        var insts = m.getInstructions();
+        var VT = m.getVarTable();
+
+        Set<String> fixed = new HashSet<>();
+        fixed.add("this");
+        for (var param : m.getParams()) {
+            if (param instanceof Operand operand) {
+                fixed.add(operand.getName());
+            }
         }
-        return true;
-    }
 
-    private Set<String> uses(Instruction inst) {
-        Set<String> ret = new TreeSet<>();
-        if (inst instanceof AssignInstruction ai) {
-            if (ai.getRhs() instanceof BinaryOpInstruction bi) {
-                if (bi.getLeftOperand() instanceof Operand lop) {
-                    ret.add(lop.getName());
-                }
-                if (bi.getRightOperand() instanceof Operand rop) {
-                    ret.add(rop.getName());
-                }
-            } else if (ai.getRhs() instanceof SingleOpInstruction si) {
-                if (si.getSingleOperand() instanceof Operand op) {
-                    ret.add(op.getName());
+        // First and last instruction of each variable
+        Map<String, int[]> intervals = new LinkedHashMap<>();
+        for (int i = 0; i < insts.size(); i++) {
+            var names = new HashSet<>(InstructionUtils.getUses(insts.get(i)));
+            names.add(InstructionUtils.getDefName(insts.get(i)));
+            for (var name : names) {
+                if (name == null || fixed.contains(name) || !VT.containsKey(name)) {
+                    continue;
                 }
+                int index = i;
+                intervals.computeIfAbsent(name, key -> new int[]{index, index})[1] = i;
             }
-        } else if (inst instanceof GetFieldInstruction gf) {
-            ret.add(gf.getField().getName());
         }
-        return ret;
-    }
 
-    private Set<String> defs(Instruction inst) {
-        Set<String> ret = new TreeSet<>();
-        if (inst instanceof AssignInstruction ai) {
-            ret.add(((Operand) ai.getDest()).getName());
-        } else if (inst instanceof PutFieldInstruction pf) {
-            ret.add(pf.getField().getName());
+        // A jump back to an earlier instruction closes a loop
+        List<int[]> loops = new ArrayList<>();
+        for (int i = 0; i < insts.size(); i++) {
+            for (var suc : insts.get(i).getSuccessors()) {
+                int id = suc.getId() - 1;
+                if (id >= 0 && id <= i) {
+                    loops.add(new int[]{id, i});
+                }
+            }
         }
-        return ret;
-    }
-
-    @Override
-    public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
-        var config = semanticsResult.getConfig();
-        var optimize = CompilerConfig.getOptimize(config);
 
-        if (optimize) {
-            optimizeConstantPropAndFold(semanticsResult.getRootNode(), semanticsResult.getSymbolTable());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var loop : loops) {
+                for (var interval : intervals.values()) {
+                    boolean overlaps = interval[0] <= loop[1] && interval[1] >= loop[0];
+                    if (overlaps && (interval[0] > loop[0] || interval[1] < loop[1])) {
+                        interval[0] = Math.min(interval[0], loop[0]);
+                        interval[1] = Math.max(interval[1], loop[1]);
+                        changed = true;
+                    }
+                }
+            }
         }
-        inPlaceArrayForVarArgs(semanticsResult.getRootNode(), semanticsResult.getSymbolTable());
-        return semanticsResult;
-    }
 
-    private void optimizeConstantPropAndFold(JmmNode node, SymbolTable table) {
-        while (propagate(node, table) || fold(node, table))
-            ;
-    }
-
-    private boolean propagate(JmmNode node, SymbolTable table) {
-        var cl = node.getChildren(CLASS_DECL.getNodeName()).getFirst();
-        var methods = cl.getChildren(METHOD_DECL.getNodeName());
+        // Registers of the intervals that ended are reused by the next ones
+        int nextReg = (m.isStaticMethod() ? 0 : 1) + m.getParams().size();
+        List<Map.Entry<String, int[]>> sorted = new ArrayList<>(intervals.entrySet());
+        sorted.sort(Comparator.comparingInt(entry -> entry.getValue()[0]));
+        PriorityQueue<Map.Entry<String, int[]>> active = new PriorityQueue<>(
+                Comparator.comparingInt(entry -> entry.getValue()[1]));
+        TreeSet<Integer> free = new TreeSet<>();
+        Map<String, Integer> registers = new HashMap<>();
 
-        boolean ret = false;
+        for (var entry : sorted) {
+            while (!active.isEmpty() && active.peek().getValue()[1] < entry.getValue()[0]) {
+                free.add(registers.get(active.poll().getKey()));
+            }
 
-        for (var method : methods) {
-            ret |= propagateInMethod(method, table);
+            int reg = free.isEmpty() ? nextReg++ : free.pollFirst();
+            registers.put(entry.getKey(), reg);
+            active.add(entry);
         }
 
-        return false;
+        for (var entry : registers.entrySet()) {
+            VT.put(entry.getKey(), new org.specs.comp.ollir.Descriptor(entry.getValue()));
+        }
     }
 
-    private boolean propagateInMethod(JmmNode node, SymbolTable table) {
-        HashMap<String, Integer> integers = new HashMap<>();
-        HashMap<String, Boolean> booleans = new HashMap<>();
-
-        boolean ret = false;
-
-        for (var stmt : node.getChildren()) {
-            try {
-                Kind kind = Kind.fromString(stmt.getKind());
-                if (!Kind.STATEMENTS.contains(kind))
-                    continue;
-
-                if (kind == ASSIGN_STMT || kind == ARRAY_ASSIGN_STMT) {
-                    var var = stmt.getChild(0).get("name");
-                    var expr = stmt.getChild(stmt.getNumChildren() - 1);
-                    ret |= addAndReplace(var, expr, integers, booleans);
-                }
-                if (stmt.getKind().equals(RETURN_STMT.getNodeName())) {
-                    var expr = stmt.getChild(0);
-                    ret |= tryReplace(expr, integers, booleans);
-                }
-                if (stmt.getKind().equals(IF_STMT.getNodeName())) {
-                    var expr = stmt.getChild(0);
-                    ret |= checkIfStmt(stmt, integers, booleans);
-                    ret |= tryReplace(expr, integers, booleans);
-                }
-                if (stmt.getKind().equals(WHILE_STMT.getNodeName())) {
-                    var expr = stmt.getChild(0);
-                    ret |= checkWhileStmt(stmt, integers, booleans);
-                    ret |= tryReplace(expr, integers, booleans);
-                }
-            } catch (Exception ignored) {
+    /**
+     * Gives the lowest registers to the variables used most often in the profile, which the JVM loads and stores
+     * with shorter instructions. The registers are permuted, so the variables that shared a register still do.
+     */
+    private List<Report> prioritizeRegisters(ClassUnit classUnit, Profile profile) {
+        var reports = new ArrayList<Report>();
+
+        for (var method : classUnit.getMethods()) {
+            var VT = method.getVarTable();
+            var cfg = ControlFlowGraph.build(method);
+            var counts = profile.getBlockCounts(cfg);
+            if (counts.isEmpty()) {
                 continue;
             }
-        }
 
-        return false;
-    }
-
-    private boolean checkWhileStmt(JmmNode stmt, HashMap<String, Integer> integers, HashMap<String, Boolean> booleans) {
-        boolean ret = false;
-        var expr = stmt.getChild(0);
-        var body = stmt.getChild(1);
-
-        for (var key : integers.keySet()) {
-            boolean updated = varUpdated(key, body);
-            if (!updated) {
-                for (var child : body.getChildren()) {
-                    HashMap<String, Integer> mi = new HashMap<>();
-                    mi.put(key, integers.get(key));
-                    HashMap<String, Boolean> mb = new HashMap<>();
-                    ret |= tryReplace(child, mi, mb);
+            Set<String> fixed = new HashSet<>();
+            fixed.add("this");
+            for (var param : method.getParams()) {
+                if (param instanceof Operand operand) {
+                    fixed.add(operand.getName());
                 }
-            } else {
-                integers.remove(key);
             }
-        }
-
-        for (var key : booleans.keySet()) {
-            boolean updated = varUpdated(key, body);
-            if (!updated) {
-                for (var child : body.getChildren()) {
-                    HashMap<String, Boolean> mb = new HashMap<>();
-                    mb.put(key, booleans.get(key));
-                    HashMap<String, Integer> mi = new HashMap<>();
-                    ret |= tryReplace(child, mi, mb);
+            Set<Integer> fixedRegisters = new HashSet<>();
+            for (var name : fixed) {
+                if (VT.containsKey(name)) {
+                    fixedRegisters.add(VT.get(name).getVirtualReg());
                 }
-            } else {
-                booleans.remove(key);
             }
-        }
-
-        return ret;
-    }
 
-    private boolean checkIfStmt(JmmNode stmt, HashMap<String, Integer> integers, HashMap<String, Boolean> booleans) {
-        var expr = stmt.getChild(0);
-        var ifBody = stmt.getChild(1);
-        var elseBody = stmt.getChild(2);
-
-        boolean ret = false;
-
-        for (var key : integers.keySet()) {
-            boolean updated = varUpdated(key, ifBody);
-            if (!updated) {
-                for (var child : ifBody.getChildren()) {
-                    HashMap<String, Integer> mi = new HashMap<>();
-                    mi.put(key, integers.get(key));
-                    HashMap<String, Boolean> mb = new HashMap<>();
-                    ret |= tryReplace(child, mi, mb);
+            // Each use or definition weighs as many times as its block ran
+            Map<Integer, Long> weights = new TreeMap<>();
+            for (var entry : VT.entrySet()) {
+                int reg = entry.getValue().getVirtualReg();
+                if (!fixed.contains(entry.getKey()) && !fixedRegisters.contains(reg)) {
+                    weights.putIfAbsent(reg, 0L);
                 }
             }
-
-            updated |= varUpdated(key, elseBody);
-            if (!updated) {
-                for (var child : elseBody.getChildren()) {
-                    HashMap<String, Integer> mi = new HashMap<>();
-                    mi.put(key, integers.get(key));
-                    HashMap<String, Boolean> mb = new HashMap<>();
-                    ret |= tryReplace(child, mi, mb);
+            for (var block : cfg.getBlocks()) {
+                long count = counts.get(block);
+                if (count <= 0) {
+                    continue;
+                }
+                for (var inst : block.getInstructions()) {
+                    var names = new HashSet<>(InstructionUtils.getUses(inst));
+                    names.add(InstructionUtils.getDefName(inst));
+                    for (var name : names) {
+                        if (name != null && VT.containsKey(name)) {
+                            weights.computeIfPresent(VT.get(name).getVirtualReg(), (reg, weight) -> weight + count);
+                        }
+                    }
                 }
-            } else {
-                integers.remove(key);
             }
-        }
 
-        for (var key : booleans.keySet()) {
-            boolean updated = varUpdated(key, ifBody);
-            if (!updated) {
-                for (var child : ifBody.getChildren()) {
-                    HashMap<String, Boolean> mb = new HashMap<>();
-                    mb.put(key, booleans.get(key));
-                    HashMap<String, Integer> mi = new HashMap<>();
-                    ret |= tryReplace(child, mi, mb);
-                }
+            var registers = new ArrayList<>(weights.keySet());
+            var byWeight = new ArrayList<>(registers);
+            byWeight.sort(Comparator.comparingLong(weights::get).reversed());
+            if (byWeight.equals(registers)) {
+                continue;
             }
 
-            updated |= varUpdated(key, elseBody);
-            if (!updated) {
-                for (var child : elseBody.getChildren()) {
-                    HashMap<String, Boolean> mb = new HashMap<>();
-                    mb.put(key, booleans.get(key));
-                    HashMap<String, Integer> mi = new HashMap<>();
-                    ret |= tryReplace(child, mi, mb);
+            Map<Integer, Integer> renumbering = new HashMap<>();
+            for (int i = 0; i < registers.size(); i++) {
+                renumbering.put(byWeight.get(i), registers.get(i));
+            }
+            Set<Descriptor> renumbered = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (var entry : VT.entrySet()) {
+                var descriptor = entry.getValue();
+                var reg = renumbering.get(descriptor.getVirtualReg());
+                if (!fixed.contains(entry.getKey()) && reg != null && renumbered.add(descriptor)) {
+                    descriptor.setVirtualReg(reg);
                 }
-            } else {
-                booleans.remove(key);
             }
+
+            int moved = (int) registers.stream().filter(reg -> !renumbering.get(reg).equals(reg)).count();
+            reports.add(OptimizationRemark.applied(REGISTER_PRIORITY, method,
+                    "Register priority in method '" + method.getMethodName() + "': " + moved
+                            + " registers renumbered by their use in the profile"));
         }
 
-        return ret;
+        return reports;
     }
 
-    private boolean varUpdated(String key, JmmNode stmt) {
-        if (stmt.getKind().equals(BLOCK_STMT.getNodeName())) {
-            boolean ret = false;
-            for (var child : stmt.getChildren()) {
-                ret |= varUpdated(key, child);
-            }
-            return ret;
+    private boolean equalSets(Set<String> a, Set<String> b) {
+        if (a.size() != b.size())
+            return false;
+        for (var s : a) {
+            if (!b.contains(s))
+                return false;
         }
+        return true;
+    }
 
-        try {
-            Kind kind = Kind.fromString(stmt.getKind());
-
-            if (kind == ASSIGN_STMT || kind == ARRAY_ASSIGN_STMT) {
-                var name = stmt.getChild(0).get("name");
-                var expr = stmt.getChild(stmt.getNumChildren() - 1);
-                return name.equals(key) && !canEvaluate(expr);
+    private Set<String> uses(Instruction inst) {
+        Set<String> ret = new TreeSet<>();
+        if (inst instanceof AssignInstruction ai) {
+            if (ai.getRhs() instanceof BinaryOpInstruction bi) {
+                if (bi.getLeftOperand() instanceof Operand lop) {
+                    ret.add(lop.getName());
+                }
+                if (bi.getRightOperand() instanceof Operand rop) {
+                    ret.add(rop.getName());
+                }
+            } else if (ai.getRhs() instanceof SingleOpInstruction si) {
+                if (si.getSingleOperand() instanceof Operand op) {
+                    ret.add(op.getName());
+                }
             }
-        } catch (Exception ignored) {
-            return true;
+        } else if (inst instanceof GetFieldInstruction gf) {
+            ret.add(gf.getField().getName());
         }
-
-        return false;
+        return ret;
     }
 
-    private boolean tryReplace(JmmNode expr, HashMap<String, Integer> integers, HashMap<String, Boolean> booleans) {
-        if (expr.getKind().equals(PAREN_EXPR.getNodeName())) {
-            return tryReplace(expr.getChild(0), integers, booleans);
-        }
-        if (expr.getKind().equals(UNARY_EXPR.getNodeName())) {
-            return tryReplace(expr.getChild(0), integers, booleans);
-        }
-        if (expr.getKind().equals(BINARY_EXPR.getNodeName())) {
-            return tryReplace(expr.getChild(0), integers, booleans) ||
-                    tryReplace(expr.getChild(1), integers, booleans);
-        }
-        if (expr.getKind().equals(VAR_REF_EXPR.getNodeName())) {
-            return replaceVar(expr, integers, booleans);
-        }
-
-        boolean ret = false;
-        for (var child : expr.getChildren()) {
-            ret |= tryReplace(child, integers, booleans);
+    private Set<String> defs(Instruction inst) {
+        Set<String> ret = new TreeSet<>();
+        if (inst instanceof AssignInstruction ai) {
+            ret.add(((Operand) ai.getDest()).getName());
+        } else if (inst instanceof PutFieldInstruction pf) {
+            ret.add(pf.getField().getName());
         }
-
         return ret;
     }
 
-    private boolean replaceVar(JmmNode expr, HashMap<String, Integer> integers, HashMap<String, Boolean> booleans) {
-        JmmNode parent = expr.getParent();
-        String name = expr.get("name");
-        JmmNode add;
+    @Override
+    public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
+        var config = semanticsResult.getConfig();
+        var remarks = new ArrayList<Report>();
 
-        if (integers.containsKey(name)) {
-            add = new JmmNodeImpl(Collections.singletonList(INTEGER_LITERAL.getNodeName()));
-            add.put("value", integers.get(name).toString());
-        } else if (booleans.containsKey(name)) {
-            add = new JmmNodeImpl(Collections.singletonList(BOOLEAN_LITERAL.getNodeName()));
-            add.put("value", booleans.get(name).toString());
-        } else {
-            return false;
+        if (CompilerConfig.getOptimizationLevel(config) > 0) {
+            optimizeConstantPropAndFold(semanticsResult.getRootNode(), semanticsResult.getSymbolTable(), remarks,
+                    getBudget(config));
         }
-
-        int idx = parent.getChildren().indexOf(expr);
-        parent.removeChild(expr);
-        parent.add(add, idx);
-        return true;
+        inPlaceArrayForVarArgs(semanticsResult.getRootNode(), semanticsResult.getSymbolTable());
+        return new JmmSemanticsResult(semanticsResult, remarks);
     }
 
-    private boolean addAndReplace(String var, JmmNode expr, HashMap<String, Integer> integers,
-            HashMap<String, Boolean> booleans) {
-        if (expr.getKind().equals(INTEGER_LITERAL.getNodeName())) {
-            integers.put(var, Integer.parseInt(expr.get("value")));
-            return false; // did not replace constant
-        }
-        if (expr.getKind().equals(BOOLEAN_LITERAL.getNodeName())) {
-            booleans.put(var, Boolean.parseBoolean(expr.get("value")));
-            return false; // did not replace constant
-        }
-        if (expr.getKind().equals(PAREN_EXPR.getNodeName())) {
-            return addAndReplace(var, expr.getChild(0), integers, booleans);
-        }
-        if (expr.getKind().equals(UNARY_EXPR.getNodeName())) {
-            return addAndReplace(var, expr.getChild(0), integers, booleans);
-        }
-        if (expr.getKind().equals(BINARY_EXPR.getNodeName())) {
-            return addAndReplace(var, expr.getChild(0), integers, booleans) ||
-                    addAndReplace(var, expr.getChild(1), integers, booleans);
-        }
-        if (expr.getKind().equals(VAR_REF_EXPR.getNodeName())) {
-            // if something like i = 1; i = i + 1; cannot propagate i;
-            if (var.equals(expr.get("name")))
-                return false;
-            return replaceVar(expr, integers, booleans);
+    private void optimizeConstantPropAndFold(JmmNode node, SymbolTable table, List<Report> remarks,
+                                             OptimizationBudget budget) {
+        // Propagation is done by the constant propagation pass on the OLLIR code, only folding is left to the AST
+        // Each round visits every node of the tree
+        int nodes = node.getDescendants().size() + 1;
+        int rounds = 0;
+        while (fold(node, table, remarks)) {
+            rounds++;
+            budget.spend(nodes);
+            if (budget.isExceeded()) {
+                remarks.add(new Report(ReportType.WARNING, Stage.OPTIMIZATION, -1, -1,
+                        "Optimization budget exceeded: folding of the AST stopped after " + rounds + " rounds"));
+                break;
+            }
         }
-
-        return false;
     }
 
-    private boolean fold(JmmNode node, SymbolTable table) {
+    private boolean fold(JmmNode node, SymbolTable table, List<Report> remarks) {
         boolean ret = false;
 
         try {
             Kind kind = Kind.fromString(node.getKind());
             if (assignments.contains(kind)) {
-                ret |= foldExpr(node, table);
+                ret |= foldExpr(node, table, remarks);
             }
         } catch (Exception e) {
             // thrown by Kind.fromString, ignore
         }
 
         for (var child : node.getChildren()) {
-            ret |= fold(child, table);
+            ret |= fold(child, table, remarks);
         }
 
         return ret;
     }
 
-    private boolean foldExpr(JmmNode node, SymbolTable table) {
+    private boolean foldExpr(JmmNode node, SymbolTable table, List<Report> remarks) {
         JmmNode expr = node.getChild(node.getNumChildren() - 1);
 
         if (expr.getKind().equals(INTEGER_LITERAL.getNodeName()) ||
@@ -554,6 +680,10 @@ public class JmmOptimizationImpl implements JmmOptimization {
         node.removeChild(expr);
         node.add(add);
 
+        var method = node.getAncestor(METHOD_DECL).map(methodNode -> methodNode.get("name")).orElse(null);
+        remarks.add(OptimizationRemark.applied(CONSTANT_FOLDING, method, expr.getLine(), expr.getColumn(),
+                "Constant folding in method '" + method + "': expression folded to " + result));
+
         return true;
     }
 
@@ -0,0 +1,70 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.inst.Instruction;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instructions of the method being generated, added in the order they run.
+ * <p>
+ * A label is placed before the instruction that follows it, so it is kept until that instruction is added. Each
+ * instruction is placed at the position in the source code of the node being generated.
+ */
+public class MethodCode {
+
+    private final Method method;
+    private final List<String> pendingLabels;
+    private JmmNode node;
+
+    public MethodCode(Method method) {
+        this.method = method;
+        this.pendingLabels = new ArrayList<>();
+        this.node = null;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Places the instructions added next at the position of the node, unless the node has no position, such as the
+     * nodes built by the optimizations of the AST.
+     *
+     * @return the node the instructions were placed at before, to be given back once the node is generated
+     */
+    public JmmNode placeAt(JmmNode node) {
+        var outer = this.node;
+        if (node == null || node.getLine() >= 0) {
+            this.node = node;
+        }
+        return outer;
+    }
+
+    public void add(Instruction inst) {
+        if (node != null) {
+            SourcePositions.set(inst, node.getLine(), node.getColumn());
+        }
+        method.addInstr(inst);
+        for (var label : pendingLabels) {
+            method.addLabel(label, inst);
+        }
+        pendingLabels.clear();
+    }
+
+    public void addLabel(String label) {
+        pendingLabels.add(label);
+    }
+
+    /**
+     * @throws IllegalStateException if a label is not followed by any instruction
+     */
+    public void close() {
+        if (!pendingLabels.isEmpty()) {
+            throw new IllegalStateException("Labels " + pendingLabels + " of method '" + method.getMethodName()
+                    + "' are not followed by any instruction");
+        }
+    }
+}
@@ -1,38 +1,102 @@
 package pt.up.fe.comp2025.optimization;
 
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.*;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp2025.ast.TypeName;
 import pt.up.fe.comp2025.ast.TypeUtils;
-import java.util.ArrayList;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static pt.up.fe.comp2025.ast.Kind.*;
 
 /**
- * Generates OLLIR code from JmmNodes that are expressions.
+ * Generates the OLLIR instructions of JmmNodes that are expressions.
+ * <p>
+ * The instructions that compute an expression are added to the code of the method, and the visit returns the element
+ * that holds its value, or null if it has none.
  */
-public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExprResult> {
-
-    private static final String SPACE = " ";
-    private static final String ASSIGN = ":=";
-    private final String END_STMT = ";\n";
+public class OllirExprGeneratorVisitor extends AJmmVisitor<MethodCode, Element> {
 
     private final SymbolTable table;
 
     private final TypeUtils types;
     private final OptUtils ollirTypes;
 
+    // Expression whose result is written directly to a variable instead of a new temporary
+    private JmmNode destination;
+    private String destinationName;
+
     public OllirExprGeneratorVisitor(SymbolTable table) {
         this.table = table;
         this.types = new TypeUtils(table);
         this.ollirTypes = new OptUtils(types);
     }
 
+    /**
+     * Generates the code of an expression whose value is assigned to a local variable, computing it directly into
+     * the variable when possible. The variable is only written after all the operands of the expression are read.
+     *
+     * @param name name of the variable
+     * @return the value of the expression, which is the variable if the value was computed into it
+     */
+    public Element visitInto(JmmNode node, String name, MethodCode code) {
+        destination = unwrapParens(node);
+        destinationName = name;
+        try {
+            return visit(node, code);
+        } finally {
+            destination = null;
+        }
+    }
+
+    /**
+     * @return the variable that holds the result of the expression, a new temporary unless it is the destination
+     * of {@link #visitInto(JmmNode, String, MethodCode)}
+     */
+    private String resultTemp(JmmNode node) {
+        if (node == destination) {
+            destination = null;
+            return destinationName;
+        }
+        return ollirTypes.nextTemp();
+    }
+
+    /**
+     * Adds the assignment of the result of the instruction to the variable.
+     *
+     * @return the variable, as an operand
+     */
+    private Operand assign(String name, Type type, Instruction rhs, MethodCode code) {
+        code.add(new AssignInstruction(new Operand(name, ollirTypes.toOllirType(type)), ollirTypes.toOllirType(type),
+                rhs));
+        return new Operand(name, ollirTypes.toOllirType(type));
+    }
+
+    /**
+     * Generates the node with its instructions placed at its position in the source code.
+     */
+    @Override
+    public Element visit(JmmNode node, MethodCode code) {
+        if (code == null) {
+            return super.visit(node, code);
+        }
+
+        var outer = code.placeAt(node);
+        var result = super.visit(node, code);
+        code.placeAt(outer);
+        return result;
+    }
+
     @Override
     protected void buildVisitor() {
         addVisit(VAR_REF_EXPR, this::visitVarRef);
@@ -45,126 +109,185 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         addVisit(LENGTH_EXPR, this::visitArrayLength);
         addVisit(BOOLEAN_LITERAL, this::visitBooleanLiteral);
         addVisit(FUNC_EXPR, this::visitFuncExpr);
+        addVisit(PAREN_EXPR, this::visitParenExpr);
+        addVisit(UNARY_EXPR, this::visitUnaryExpr);
+        addVisit(THIS_EXPR, this::visitThisExpr);
         setDefaultVisit(this::defaultVisit);
     }
 
-    private OllirExprResult visitBooleanLiteral(JmmNode node, Void unused) {
+    private Element visitBooleanLiteral(JmmNode node, MethodCode code) {
         var boolType = TypeUtils.newType(TypeName.BOOLEAN, false);
-        String ollirBoolType = ollirTypes.toOllirType(boolType);
-        String code = node.get("value") + ollirBoolType;
-        return new OllirExprResult(code);
+        // OLLIR has no boolean literals, booleans are the integers 1 and 0
+        String value = node.get("value").equals("true") ? "1" : "0";
+        return new LiteralElement(value, ollirTypes.toOllirType(boolType));
     }
 
-    private OllirExprResult visitInteger(JmmNode node, Void unused) {
+    private Element visitThisExpr(JmmNode node, MethodCode code) {
+        return new Operand("this", ollirTypes.toOllirType(new Type(table.getClassName(), false)));
+    }
+
+    private Element visitInteger(JmmNode node, MethodCode code) {
         var intType = TypeUtils.newType(TypeName.INT, false);
-        String ollirIntType = ollirTypes.toOllirType(intType);
-        String code = node.get("value") + ollirIntType;
-        return new OllirExprResult(code);
+        return new LiteralElement(node.get("value"), ollirTypes.toOllirType(intType));
     }
 
-    private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
-        var lhs = visit(node.getChild(0));
-        var rhs = visit(node.getChild(1));
+    private Element visitBinExpr(JmmNode node, MethodCode code) {
         String op = node.get("op");
+        if (op.equals("&&") || op.equals("||")) {
+            return materialize(node, op.equals("&&") ? "and" : "or", code);
+        }
 
-        StringBuilder computation = new StringBuilder();
+        var lhs = visit(node.getChild(0), code);
+        var rhs = visit(node.getChild(1), code);
 
-        // Get the result type and its OLLIR equivalent
+        // Get the result type, which is also the type of the operation
         Type resType = types.getExprType(node);
-        String resOllirType = ollirTypes.toOllirType(resType);
         // temporary to store the result
-        String tempName = ollirTypes.nextTemp();
-
-        if (op.equals("&&")) {
-            String labelEval = OptUtils.getLabel("andEval");
-            String labelFalse = OptUtils.getLabel("andFalse");
-            String labelTrue = OptUtils.getLabel("andTrue");
-            String labelEnd = OptUtils.getLabel("andEnd");
-
-            // If lhs is true, evaluate rhs, otherwise go to false
-            computation.append(lhs.getComputation());
-            computation.append("if (").append(lhs.getCode()).append(") goto ").append(labelEval).append(END_STMT);
-            computation.append("goto ").append(labelFalse).append(END_STMT);
-
-            // Evaluate rhs
-            computation.append(labelEval).append(":\n");
-            computation.append(rhs.getComputation());
-            computation.append("if (").append(rhs.getCode()).append(") goto ").append(labelTrue).append(END_STMT);
-            computation.append("goto ").append(labelFalse).append(END_STMT);
-
-            // False label: assign false
-            computation.append(labelFalse).append(":\n");
-            computation.append(tempName).append(resOllirType).append(" :=").append(resOllirType).append(" false")
-                    .append(resOllirType).append(END_STMT);
-            computation.append("goto ").append(labelEnd).append(END_STMT);
-
-            // True label: assign true
-            computation.append(labelTrue).append(":\n");
-            computation.append(tempName).append(resOllirType).append(" :=").append(resOllirType).append(" true")
-                    .append(resOllirType).append(END_STMT);
-
-            // End label
-            computation.append(labelEnd).append(":\n");
-
-            return new OllirExprResult(tempName + resOllirType, computation.toString());
-        } else if (op.equals("||")) {
-            String labelEval = OptUtils.getLabel("orEval");
-            String labelFalse = OptUtils.getLabel("orFalse");
-            String labelTrue = OptUtils.getLabel("orTrue");
-            String labelEnd = OptUtils.getLabel("orEnd");
-
-            // If lhs is true, go to true, otherwise evaluate rhs
-            computation.append(lhs.getComputation());
-            computation.append("if (").append(lhs.getCode()).append(") goto ").append(labelTrue).append(END_STMT);
-            computation.append("goto ").append(labelEval).append(END_STMT);
-
-            // Evaluate rhs
-            computation.append(labelEval).append(":\n");
-            computation.append(rhs.getComputation());
-            computation.append("if (").append(rhs.getCode()).append(") goto ").append(labelTrue).append(END_STMT);
-            computation.append("goto ").append(labelFalse).append(END_STMT);
-
-            // False label: assign false
-            computation.append(labelFalse).append(":\n");
-            computation.append(tempName).append(resOllirType).append(" :=").append(resOllirType).append(" false")
-                    .append(resOllirType).append(END_STMT);
-            computation.append("goto ").append(labelEnd).append(END_STMT);
-
-            // True label: assign true
-            computation.append(labelTrue).append(":\n");
-            computation.append(tempName).append(resOllirType).append(" :=").append(resOllirType).append(" true")
-                    .append(resOllirType).append(END_STMT);
-
-            // End label
-            computation.append(labelEnd).append(":\n");
-
-            return new OllirExprResult(tempName + resOllirType, computation.toString());
+        String tempName = resultTemp(node);
+
+        var operation = new Operation(OptUtils.toOperationType(op), ollirTypes.toOllirType(resType));
+        return assign(tempName, resType, new BinaryOpInstruction(lhs, operation, rhs), code);
+    }
+
+    private Element visitParenExpr(JmmNode node, MethodCode code) {
+        return visit(node.getChild(0), code);
+    }
+
+    private Element visitUnaryExpr(JmmNode node, MethodCode code) {
+        var operand = unwrapParens(node.getChild(0));
+        var boolType = TypeUtils.newType(TypeName.BOOLEAN, false);
+
+        // The negation of a comparison is the opposite comparison
+        if (isComparison(operand)) {
+            var lhs = visit(operand.getChild(0), code);
+            var rhs = visit(operand.getChild(1), code);
+            String tempName = resultTemp(node);
+
+            var operation = new Operation(OptUtils.toOperationType(negateComparison(operand.get("op"))),
+                    ollirTypes.toOllirType(boolType));
+            return assign(tempName, boolType, new BinaryOpInstruction(lhs, operation, rhs), code);
+        }
+
+        if (isShortCircuit(operand) || operand.getKind().equals(UNARY_EXPR.getNodeName())) {
+            return materialize(node, "not", code);
+        }
+
+        var value = visit(operand, code);
+        String tempName = resultTemp(node);
+        var operation = new Operation(OperationType.NOTB, ollirTypes.toOllirType(boolType));
+        return assign(tempName, boolType, new UnaryOpInstruction(operation, value), code);
+    }
+
+    /**
+     * Computes the value of a boolean expression that is lowered to branches, such as the short-circuit operators.
+     *
+     * @param prefix prefix of the labels
+     */
+    private Element materialize(JmmNode node, String prefix, MethodCode code) {
+        var boolType = TypeUtils.newType(TypeName.BOOLEAN, false);
+        String tempName = resultTemp(node);
+        String labelTrue = OptUtils.getLabel(prefix + "True");
+        String labelEnd = OptUtils.getLabel(prefix + "End");
+
+        visitCondition(node, labelTrue, true, code);
+
+        // Falls through when the condition is false
+        assign(tempName, boolType, new SingleOpInstruction(new LiteralElement("0", ollirTypes.toOllirType(boolType))),
+                code);
+        code.add(new GotoInstruction(labelEnd));
+
+        code.addLabel(labelTrue);
+        assign(tempName, boolType, new SingleOpInstruction(new LiteralElement("1", ollirTypes.toOllirType(boolType))),
+                code);
+
+        code.addLabel(labelEnd);
+
+        return new Operand(tempName, ollirTypes.toOllirType(boolType));
+    }
+
+    /**
+     * Generates the code of a condition in jumping form: it jumps to the label when the condition evaluates to
+     * {@code jumpWhen} and falls through otherwise.
+     * <p>
+     * Short-circuit operators, negations and comparisons are lowered directly into branches, so no boolean value is
+     * computed for them. Other expressions are evaluated and their value is tested.
+     */
+    public void visitCondition(JmmNode node, String label, boolean jumpWhen, MethodCode code) {
+        node = unwrapParens(node);
+
+        if (node.getKind().equals(UNARY_EXPR.getNodeName())) {
+            visitCondition(node.getChild(0), label, !jumpWhen, code);
+            return;
+        }
+
+        if (isShortCircuit(node)) {
+            boolean isOr = node.get("op").equals("||");
+
+            // 'a || b' is true as soon as 'a' is true, 'a && b' is false as soon as 'a' is false
+            if (jumpWhen == isOr) {
+                visitCondition(node.getChild(0), label, jumpWhen, code);
+                visitCondition(node.getChild(1), label, jumpWhen, code);
+                return;
+            }
+
+            String labelSkip = OptUtils.getLabel(isOr ? "orSkip" : "andSkip");
+            visitCondition(node.getChild(0), labelSkip, !jumpWhen, code);
+            visitCondition(node.getChild(1), label, jumpWhen, code);
+            code.addLabel(labelSkip);
+            return;
+        }
+
+        var boolType = ollirTypes.toOllirType(TypeUtils.newType(TypeName.BOOLEAN, false));
+        CondBranchInstruction branch;
+        if (isComparison(node)) {
+            var lhs = visit(node.getChild(0), code);
+            var rhs = visit(node.getChild(1), code);
+            String op = jumpWhen ? node.get("op") : negateComparison(node.get("op"));
+
+            var operation = new Operation(OptUtils.toOperationType(op), boolType);
+            branch = new OpCondInstruction(new BinaryOpInstruction(lhs, operation, rhs));
         } else {
-            // Default handling for other operators
-            computation.append(lhs.getComputation());
-            computation.append(rhs.getComputation());
-
-            String tempWithType = tempName + resOllirType;
-            computation.append(tempWithType)
-                    .append(" :=")
-                    .append(resOllirType)
-                    .append(" ")
-                    .append(lhs.getCode())
-                    .append(" ")
-                    .append(op)
-                    .append(resOllirType)
-                    .append(" ")
-                    .append(rhs.getCode())
-                    .append(END_STMT);
-
-            return new OllirExprResult(tempWithType, computation.toString());
+            var value = visit(node, code);
+            branch = jumpWhen ? new SingleOpCondInstruction(new SingleOpInstruction(value))
+                    : new OpCondInstruction(new UnaryOpInstruction(new Operation(OperationType.NOTB, boolType), value));
         }
+
+        branch.setLabel(label);
+        code.add(branch);
+    }
+
+    private static JmmNode unwrapParens(JmmNode node) {
+        while (node.getKind().equals(PAREN_EXPR.getNodeName())) {
+            node = node.getChild(0);
+        }
+        return node;
+    }
+
+    private static boolean isShortCircuit(JmmNode node) {
+        return node.getKind().equals(BINARY_EXPR.getNodeName())
+                && (node.get("op").equals("&&") || node.get("op").equals("||"));
+    }
+
+    private static boolean isComparison(JmmNode node) {
+        return node.getKind().equals(BINARY_EXPR.getNodeName())
+                && List.of("<", "<=", ">", ">=", "==", "!=").contains(node.get("op"));
     }
 
-    private OllirExprResult visitVarRef(JmmNode node, Void unused) {
+    private static String negateComparison(String op) {
+        return switch (op) {
+            case "<" -> ">=";
+            case "<=" -> ">";
+            case ">" -> "<=";
+            case ">=" -> "<";
+            case "==" -> "!=";
+            case "!=" -> "==";
+            default -> throw new IllegalArgumentException("Not a comparison: " + op);
+        };
+    }
+
+    private Element visitVarRef(JmmNode node, MethodCode code) {
         String name = node.get("name");
         Type type = types.getExprType(node);
-        String ollirType = ollirTypes.toOllirType(type);
 
         // Check if this is referring to a local variable first (including parameters)
         JmmNode methodNode = node.getAncestor(METHOD_DECL).orElse(null);
@@ -177,7 +300,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
             // If it's a local variable or parameter, use direct reference
             if (isLocalVar || isParam) {
-                return new OllirExprResult(name + ollirType);
+                return new Operand(name, ollirTypes.toOllirType(type));
             }
         }
 
@@ -187,260 +310,141 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         if (isField) {
             // For fields, use getfield instruction
-            String tempVar = ollirTypes.nextTemp();
-            StringBuilder computation = new StringBuilder();
-            computation.append(tempVar).append(ollirType)
-                    .append(" :=").append(ollirType)
-                    .append(" getfield(this, ").append(name).append(ollirType).append(")").append(ollirType)
-                    .append(";\n");
-
-            return new OllirExprResult(tempVar + ollirType, computation);
+            String tempVar = resultTemp(node);
+            var getField = new GetFieldInstruction(OptUtils.thisReference(table.getClassName()),
+                    new Operand(name, ollirTypes.toOllirType(type)), ollirTypes.toOllirType(type));
+            return assign(tempVar, type, getField, code);
         } else {
             // Regular variable
-            return new OllirExprResult(name + ollirType);
+            return new Operand(name, ollirTypes.toOllirType(type));
         }
     }
 
-    private OllirExprResult defaultVisit(JmmNode node, Void unused) {
+    private Element defaultVisit(JmmNode node, MethodCode code) {
         for (var child : node.getChildren()) {
-            visit(child);
+            visit(child, code);
         }
-        return OllirExprResult.EMPTY;
+        return null;
     }
 
-    private OllirExprResult visitNewExpr(JmmNode node, Void dummy) {
+    private Element visitNewExpr(JmmNode node, MethodCode code) {
         // Get the class name from the node
         String className = node.get("classname");
+        Type type = new Type(className, false);
 
         // Create a new temp variable
-        String tempVar = ollirTypes.nextTemp();
-        String typeString = "." + className;
+        String tempVar = resultTemp(node);
 
-        // Build the OLLIR code for object instantiation
-        StringBuilder computation = new StringBuilder();
-        computation.append(tempVar).append(typeString)
-                .append(" :=").append(typeString)
-                .append(" new(").append(className).append(")")
-                .append(typeString)
-                .append(";\n");
+        var newInst = new NewInstruction(OptUtils.classReference(className), new ArrayList<>(),
+                ollirTypes.toOllirType(type), false);
+        var result = assign(tempVar, type, newInst, code);
 
         // Invoke the constructor
-        computation.append("invokespecial(").append(tempVar).append(typeString)
-                .append(", \"<init>\").V")
-                .append(";\n");
+        code.add(new InvokeSpecialInstruction(new Operand(tempVar, ollirTypes.toOllirType(type)),
+                OptUtils.methodName("<init>"), null, new ArrayList<>(),
+                ollirTypes.toOllirType(TypeUtils.newType(TypeName.VOID, false)), true));
 
-        return new OllirExprResult(tempVar + typeString, computation);
+        return result;
     }
 
-    private OllirExprResult visitNewArray(JmmNode node, Void u) {
-        String type = ollirTypes.toOllirType(TypeUtils.newType(TypeName.INT, true)); // array always int
-
-        String tmp = ollirTypes.nextTemp() + type;
+    private Element visitNewArray(JmmNode node, MethodCode code) {
+        var type = TypeUtils.newType(TypeName.INT, true); // array always int
 
-        var expr = visit(node.getChild(0));
+        String tmp = resultTemp(node);
 
-        StringBuilder computation = new StringBuilder();
+        var size = visit(node.getChild(0), code);
 
-        computation.append(expr.getComputation());
-        computation.append(tmp).append(" :=").append(type);
-        computation.append(" new(array, ").append(expr.getCode());
-        computation.append(")").append(type).append(END_STMT);
-
-        return new OllirExprResult(tmp, computation);
+        var arguments = new ArrayList<Element>();
+        arguments.add(size);
+        var newInst = new NewInstruction(new Operand("array", ollirTypes.toOllirType(type)), arguments,
+                ollirTypes.toOllirType(type), false);
+        return assign(tmp, type, newInst, code);
     }
 
-    private OllirExprResult visitArrayAccess(JmmNode node, Void u) {
-        String type = ollirTypes.toOllirType(TypeUtils.newType(TypeName.INT, false));
-
-        String tmp = ollirTypes.nextTemp() + type;
-
-        var v = visit(node.getChild(0));
-        var expr = visit(node.getChild(1));
+    private Element visitArrayAccess(JmmNode node, MethodCode code) {
+        var type = TypeUtils.newType(TypeName.INT, false);
 
-        StringBuilder computation = new StringBuilder();
+        String tmp = resultTemp(node);
 
-        computation.append(v.getComputation()).append(expr.getComputation());
-        computation.append(tmp).append(" :=").append(type);
-        computation.append(" ").append(v.getCode());
-        computation.append("[").append(expr.getCode()).append("]");
-        computation.append(type).append(END_STMT);
+        var array = visit(node.getChild(0), code);
+        var index = visit(node.getChild(1), code);
 
-        return new OllirExprResult(tmp, computation);
+        var element = new ArrayOperand(getName(array), ollirTypes.toOllirType(type), List.of(index));
+        return assign(tmp, type, new SingleOpInstruction(element), code);
     }
 
-    private OllirExprResult visitArrayLength(JmmNode node, Void dummy) {
-        OllirExprResult arrayExpr = visit(node.getChild(0));
-        StringBuilder computation = new StringBuilder(arrayExpr.getComputation());
+    private Element visitArrayLength(JmmNode node, MethodCode code) {
+        var array = visit(node.getChild(0), code);
 
-        String tempVar = ollirTypes.nextTemp();
-        String resultType = ".i32";
+        String tempVar = resultTemp(node);
+        var type = TypeUtils.newType(TypeName.INT, false);
 
-        computation.append(tempVar).append(resultType)
-                .append(" :=").append(resultType)
-                .append(" arraylength(").append(arrayExpr.getCode()).append(")")
-                .append(resultType)
-                .append(END_STMT);
+        return assign(tempVar, type, new ArrayLengthInstruction(array, ollirTypes.toOllirType(type)), code);
+    }
 
-        return new OllirExprResult(tempVar + resultType, computation);
+    /**
+     * @return the name of the variable, or the value of the literal
+     */
+    static String getName(Element element) {
+        return element instanceof Operand operand ? operand.getName() : ((LiteralElement) element).getLiteral();
     }
 
-    private OllirExprResult visitMethodCall(JmmNode node, Void dummy) {
+    private boolean isImported(String className) {
+        for (String imp : table.getImports()) {
+            if (imp.equals(className) || imp.endsWith("." + className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Element visitMethodCall(JmmNode node, MethodCode code) {
         String methodName = node.get("methodname");
-        StringBuilder computation = new StringBuilder();
 
         // Process arguments first, preserving their evaluation order
-        List<OllirExprResult> args = new ArrayList<>();
-        for (int i = 0; i < node.getNumChildren(); i++) {
-            OllirExprResult arg = visit(node.getChild(i));
-            // Add computation first to preserve evaluation order
-            computation.append(arg.getComputation());
-            args.add(arg);
+        List<Element> args = new ArrayList<>();
+        for (var child : node.getChildren()) {
+            args.add(visit(child, code));
         }
 
         // Determine return type
         Type returnType = types.getExprType(node);
-        String returnTypeStr = ollirTypes.toOllirType(returnType);
+        boolean isVoid = returnType.getName().equals("void");
 
         // Check if this is an imported class
         boolean isImported = false;
         String className = methodName; // Default to method name
 
-        // If the method is called on something (e.g., io.println), extract the class
-        // name
+        // If the method is called on something (e.g., io.println), extract the class name
         if (!args.isEmpty()) {
-            String firstArg = args.get(0).getCode();
-            if (firstArg.contains(".")) {
-                className = firstArg.substring(0, firstArg.indexOf("."));
-            }
-
-            // Check if the class is imported
-            for (String imp : table.getImports()) {
-                if (imp.equals(className) || imp.endsWith("." + className)) {
-                    isImported = true;
-                    break;
-                }
+            if (args.get(0) != null) {
+                className = getName(args.get(0));
             }
+            isImported = isImported(className);
         }
 
         // Create temp var for result if needed (non-void return type)
-        String tempVar = "";
-        if (!returnTypeStr.equals(".V")) {
-            tempVar = ollirTypes.nextTemp();
-        }
+        String tempVar = isVoid ? null : resultTemp(node);
 
-        // Generate appropriate invocation based on whether it's imported (static) or
-        // not
+        // The first argument is the class of a static call, or the object of an instance call
+        CallInstruction call;
         if (isImported) {
-            if (returnTypeStr.equals(".V")) {
-                // Void static method call
-                computation.append("invokestatic(")
-                        .append(className).append(", \"")
-                        .append(methodName).append("\"");
-
-                if (args.size() > 1) {
-                    // Skip the first arg which is the class name
-                    String remainingArgs = args.stream()
-                            .skip(1)
-                            .map(OllirExprResult::getCode)
-                            .collect(Collectors.joining(", "));
-
-                    if (!remainingArgs.isEmpty()) {
-                        computation.append(", ").append(remainingArgs);
-                    }
-                }
-
-                computation.append(")")
-                        .append(returnTypeStr)
-                        .append(";\n");
-
-                return new OllirExprResult("", computation);
-            } else {
-                // Non-void static method call with return value
-                String tempWithType = tempVar + returnTypeStr;
-
-                computation.append(tempWithType)
-                        .append(" :=").append(returnTypeStr)
-                        .append(" invokestatic(")
-                        .append(className).append(", \"")
-                        .append(methodName).append("\"");
-
-                if (args.size() > 1) {
-                    // Skip the first arg which is the class name
-                    String remainingArgs = args.stream()
-                            .skip(1)
-                            .map(OllirExprResult::getCode)
-                            .collect(Collectors.joining(", "));
-
-                    if (!remainingArgs.isEmpty()) {
-                        computation.append(", ").append(remainingArgs);
-                    }
-                }
-
-                computation.append(")")
-                        .append(returnTypeStr)
-                        .append(";\n");
-
-                return new OllirExprResult(tempWithType, computation);
-            }
+            call = new InvokeStaticInstruction(OptUtils.classReference(className), OptUtils.methodName(methodName),
+                    new ArrayList<>(args.subList(1, args.size())), ollirTypes.toOllirType(returnType), isVoid);
         } else {
-            // Regular instance method call
-            if (returnTypeStr.equals(".V")) {
-                // Void instance method call
-                computation.append("invokevirtual(")
-                        .append(args.get(0).getCode()).append(", \"")
-                        .append(methodName).append("\"");
-
-                if (args.size() > 1) {
-                    // Skip the first arg which is the object
-                    String remainingArgs = args.stream()
-                            .skip(1)
-                            .map(OllirExprResult::getCode)
-                            .collect(Collectors.joining(", "));
-
-                    if (!remainingArgs.isEmpty()) {
-                        computation.append(", ").append(remainingArgs);
-                    }
-                }
-
-                computation.append(")")
-                        .append(returnTypeStr)
-                        .append(";\n");
-
-                return new OllirExprResult("", computation);
-            } else {
-                // Non-void instance method call with return value
-                String tempWithType = tempVar + returnTypeStr;
-
-                computation.append(tempWithType)
-                        .append(" :=").append(returnTypeStr)
-                        .append(" invokevirtual(")
-                        .append(args.get(0).getCode()).append(", \"")
-                        .append(methodName).append("\"");
-
-                if (args.size() > 1) {
-                    // Skip the first arg which is the object
-                    String remainingArgs = args.stream()
-                            .skip(1)
-                            .map(OllirExprResult::getCode)
-                            .collect(Collectors.joining(", "));
-
-                    if (!remainingArgs.isEmpty()) {
-                        computation.append(", ").append(remainingArgs);
-                    }
-                }
-
-                computation.append(")")
-                        .append(returnTypeStr)
-                        .append(";\n");
-
-                return new OllirExprResult(tempWithType, computation);
-            }
+            call = new InvokeVirtualInstruction(OptUtils.toObjectReference(args.get(0), table.getClassName()),
+                    OptUtils.methodName(methodName), new ArrayList<>(args.subList(1, args.size())),
+                    ollirTypes.toOllirType(returnType), isVoid);
         }
-    }
 
-    private OllirExprResult visitFuncExpr(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
+        if (isVoid) {
+            code.add(call);
+            return null;
+        }
+        return assign(tempVar, returnType, call, code);
+    }
 
+    private Element visitFuncExpr(JmmNode node, MethodCode code) {
         // Get method name
         String methodName = node.get("methodname");
 
@@ -449,159 +453,68 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                 node.getNumChildren() > 0 &&
                 node.getChild(0).getKind().equals(VAR_REF_EXPR.getNodeName())) {
 
-            OllirExprResult arrayExpr = visit(node.getChild(0));
-
             // Check if this is an array type
             Type type = types.getExprType(node.getChild(0));
             if (type != null && type.isArray()) {
-                computation.append(arrayExpr.getComputation());
+                var array = visit(node.getChild(0), code);
 
-                String tempVar = ollirTypes.nextTemp();
-                String resultType = ".i32";
+                String tempVar = resultTemp(node);
+                var resultType = TypeUtils.newType(TypeName.INT, false);
 
-                computation.append(tempVar).append(resultType)
-                        .append(" :=").append(resultType)
-                        .append(" arraylength(").append(arrayExpr.getCode()).append(")")
-                        .append(resultType)
-                        .append(END_STMT);
-
-                return new OllirExprResult(tempVar + resultType, computation);
+                return assign(tempVar, resultType, new ArrayLengthInstruction(array,
+                        ollirTypes.toOllirType(resultType)), code);
             }
         }
 
         // Build arguments list
-        List<OllirExprResult> args = new ArrayList<>();
-        for (int i = 0; i < node.getNumChildren(); i++) {
-            OllirExprResult arg = visit(node.getChild(i));
-            args.add(arg);
-            computation.append(arg.getComputation());
+        List<Element> args = new ArrayList<>();
+        for (var child : node.getChildren()) {
+            args.add(visit(child, code));
         }
 
-        // Check if the first child is a reference to an imported class (for static
-        // method calls)
+        // Check if the first child is a reference to an imported class (for static method calls)
         boolean isImported = false;
         String importedClass = "";
 
         if (node.getNumChildren() > 0 && node.getChild(0).getKind().equals(VAR_REF_EXPR.getNodeName())) {
             String className = node.getChild(0).get("name");
-
-            // Check if the class is imported
-            for (String imp : table.getImports()) {
-                if (imp.equals(className) || imp.endsWith("." + className)) {
-                    isImported = true;
-                    importedClass = className;
-                    break;
-                }
+            if (isImported(className)) {
+                isImported = true;
+                importedClass = className;
             }
         }
 
         // Determine return type
         Type returnType = types.getExprType(node);
-        String ollirType = ollirTypes.toOllirType(returnType);
+        boolean isVoid = returnType.getName().equals("void");
 
         // Generate a temp var to store the result if needed (for non-void methods)
-        String resultVar = ollirTypes.nextTemp();
-        String resultWithType = resultVar + ollirType;
+        String resultVar = resultTemp(node);
 
+        CallInstruction call;
         if (isImported) {
-            // This is a static method call to an imported class like io.println
-            if (ollirType.equals(".V")) {
-                // Void methods don't need assignment
-                computation.append("invokestatic(")
-                        .append(importedClass).append(", \"")
-                        .append(methodName).append("\"");
-
-                // Add arguments, skipping the first one (which is the class name)
-                if (args.size() > 1) {
-                    for (int i = 1; i < args.size(); i++) {
-                        if (i == 1) {
-                            computation.append(", ");
-                        } else {
-                            computation.append(", ");
-                        }
-                        computation.append(args.get(i).getCode());
-                    }
-                }
-
-                computation.append(")")
-                        .append(ollirType)
-                        .append(";\n");
-
-                return new OllirExprResult("", computation);
-            } else {
-                // Non-void methods need assignment to store result
-                computation.append(resultWithType)
-                        .append(" :=").append(ollirType).append(" ")
-                        .append("invokestatic(")
-                        .append(importedClass).append(", \"")
-                        .append(methodName).append("\"");
-
-                // Add arguments, skipping the first one (which is the class name)
-                if (args.size() > 1) {
-                    for (int i = 1; i < args.size(); i++) {
-                        if (i == 1) {
-                            computation.append(", ");
-                        } else {
-                            computation.append(", ");
-                        }
-                        computation.append(args.get(i).getCode());
-                    }
-                }
-
-                computation.append(")")
-                        .append(ollirType)
-                        .append(";\n");
-
-                return new OllirExprResult(resultWithType, computation);
-            }
+            // This is a static method call to an imported class like io.println, the first child is the class
+            call = new InvokeStaticInstruction(OptUtils.classReference(importedClass),
+                    OptUtils.methodName(methodName), new ArrayList<>(args.subList(1, args.size())),
+                    ollirTypes.toOllirType(returnType), isVoid);
         } else {
             // Regular instance method call
             if (args.isEmpty()) {
                 // No target object provided
-                return OllirExprResult.EMPTY;
+                return null;
             }
 
-            String target = args.get(0).getCode();
-
-            if (ollirType.equals(".V")) {
-                // Void method
-                computation.append("invokevirtual(")
-                        .append(target).append(", \"")
-                        .append(methodName).append("\"");
-
-                // Add the rest of the arguments
-                if (args.size() > 1) {
-                    for (int i = 1; i < args.size(); i++) {
-                        computation.append(", ").append(args.get(i).getCode());
-                    }
-                }
-
-                computation.append(")")
-                        .append(ollirType)
-                        .append(";\n");
-
-                return new OllirExprResult("", computation);
-            } else {
-                // Non-void method
-                computation.append(resultWithType)
-                        .append(" :=").append(ollirType).append(" ")
-                        .append("invokevirtual(")
-                        .append(target).append(", \"")
-                        .append(methodName).append("\"");
-
-                // Add the rest of the arguments
-                if (args.size() > 1) {
-                    for (int i = 1; i < args.size(); i++) {
-                        computation.append(", ").append(args.get(i).getCode());
-                    }
-                }
-
-                computation.append(")")
-                        .append(ollirType)
-                        .append(";\n");
-
-                return new OllirExprResult(resultWithType, computation);
-            }
+            call = new InvokeVirtualInstruction(OptUtils.toObjectReference(args.get(0), table.getClassName()),
+                    OptUtils.methodName(methodName), new ArrayList<>(args.subList(1, args.size())),
+                    ollirTypes.toOllirType(returnType), isVoid);
+        }
+
+        if (isVoid) {
+            // Void methods don't need assignment
+            code.add(call);
+            return null;
         }
+        // Non-void methods need assignment to store result
+        return assign(resultVar, returnType, call, code);
     }
-}
\ No newline at end of file
+}
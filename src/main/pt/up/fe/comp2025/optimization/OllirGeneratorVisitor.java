@@ -1,30 +1,34 @@
 package pt.up.fe.comp2025.optimization;
 
+import org.specs.comp.ollir.AccessModifier;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Field;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.inst.*;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2025.ast.TypeName;
 import pt.up.fe.comp2025.ast.TypeUtils;
-import pt.up.fe.comp2025.ast.Kind;
 
-import java.util.List;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.List;
 
 import static pt.up.fe.comp2025.ast.Kind.*;
 
 /**
- * Generates OLLIR code from JmmNodes that are not expressions.
+ * Generates the OLLIR class of a program from the JmmNodes that are not expressions.
+ * <p>
+ * The class is built directly, without writing OLLIR code that must be parsed again. The instructions of each
+ * statement are added to the code of the method being generated.
  */
-public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
-
-    private static final String SPACE = " ";
-    private static final String ASSIGN = ":=";
-    private final String END_STMT = ";\n";
-    private final String NL = "\n";
-    private final String L_BRACKET = " {\n";
-    private final String R_BRACKET = "}\n";
+public class OllirGeneratorVisitor extends AJmmVisitor<MethodCode, Void> {
 
     private final SymbolTable table;
 
@@ -34,22 +38,57 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     private boolean hasReturnStatement = false;
 
     private final OllirExprGeneratorVisitor exprVisitor;
+    private final boolean inlineResults;
+
+    private ClassUnit classUnit;
 
     public OllirGeneratorVisitor(SymbolTable table) {
+        this(table, false);
+    }
+
+    /**
+     * @param inlineResults if true, the value assigned to a local variable is computed directly into the variable,
+     *                      instead of into a temporary that is then copied
+     */
+    public OllirGeneratorVisitor(SymbolTable table, boolean inlineResults) {
         this.table = table;
         this.types = new TypeUtils(table);
         this.ollirTypes = new OptUtils(types);
+        this.inlineResults = inlineResults;
         exprVisitor = new OllirExprGeneratorVisitor(table);
     }
 
+    /**
+     * @return the OLLIR class of the program, with the variable tables of its methods built
+     */
+    public ClassUnit generate(JmmNode root) {
+        OptUtils.resetLabels();
+        classUnit = new ClassUnit();
+        visit(root, null);
+        classUnit.buildVarTables();
+        return classUnit;
+    }
+
+    /**
+     * Generates the node with its instructions placed at its position in the source code.
+     */
+    @Override
+    public Void visit(JmmNode node, MethodCode code) {
+        if (code == null) {
+            return super.visit(node, code);
+        }
+
+        var outer = code.placeAt(node);
+        var result = super.visit(node, code);
+        code.placeAt(outer);
+        return result;
+    }
+
     @Override
     protected void buildVisitor() {
-        addVisit(METHOD_DECL, this::visitMethod);
         addVisit(PROGRAM, this::visitProgram);
         addVisit(CLASS_DECL, this::visitClass);
         addVisit(METHOD_DECL, this::visitMethodDecl);
-        addVisit(PARAM, this::visitParam);
-        addVisit(PARAMETERS, this::visitParameters);
 
         addVisit(RETURN_STMT, this::visitReturn);
         addVisit(ASSIGN_STMT, this::visitAssignStmt);
@@ -65,253 +104,145 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         setDefaultVisit(this::defaultVisit);
     }
 
-    private String visitMethod(JmmNode node, Void u) {
-        StringBuilder code = new StringBuilder(".method ");
-
-        // Add modifiers
-        if (node.getOptional("isPublic").map(Boolean::parseBoolean).orElse(false)) {
-            code.append("public ");
-        } else {
-            code.append("private ");
-        }
-
-        if (node.getOptional("isStatic").map(Boolean::parseBoolean).orElse(false)) {
-            code.append("static ");
-        }
-
-        // Add method name
-        code.append(node.get("name"));
-
-        // Add parameters
-        JmmNode paramsNode = node.getChildren().stream()
-                .filter(child -> child.getKind().equals(PARAMETERS.getNodeName()))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("No parameters node found in method declaration"));
-
-        String params = paramsNode.getChildren().stream()
-                .map(this::visit)
-                .collect(Collectors.joining(", "));
-
-        code.append("(").append(params).append(")");
-
-        // Add return type
-        JmmNode typeNode = node.getChild(0);
-        code.append(ollirTypes.toOllirType(typeNode)).append(" {\n");
-
-        // Add method statements - find statements among children
-        node.getChildren().stream()
-                .filter(child -> STATEMENTS.contains(Kind.fromString(child.getKind())))
-                .forEach(stmt -> code.append("    ").append(visit(stmt)).append("\n"));
-
-        // If return is void and no return statement found, add default return
-        Type returnType = TypeUtils.convertType(typeNode);
-        boolean hasReturnStmt = node.getChildren().stream()
-                .anyMatch(child -> child.getKind().equals(RETURN_STMT.getNodeName()));
-
-        if (returnType.getName().equals("void") && !hasReturnStmt) {
-            code.append("    ret.V;\n");
-        }
-
-        code.append("}\n");
-
-        return code.toString();
-    }
-
-    private String visitIfStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
-        // Get condition expression
-        JmmNode condExpr = node.getChild(0);
-        OllirExprResult condition = exprVisitor.visit(condExpr);
-
-        // Generate unique labels for then/else/end blocks
-        String thenLabel = OptUtils.getLabel("then");
+    private Void visitIfStmt(JmmNode node, MethodCode code) {
+        // Generate unique labels for else/end blocks
         String elseLabel = OptUtils.getLabel("else");
         String endLabel = OptUtils.getLabel("endif");
+        boolean hasElse = node.getNumChildren() > 2;
 
-        // Add condition computation
-        code.append(condition.getComputation());
-
-        // Add conditional branch instruction
-        code.append("if (").append(condition.getCode()).append(") goto ").append(thenLabel).append(END_STMT);
-
-        // If there's an else block
-        if (node.getNumChildren() > 2) {
-            code.append("goto ").append(elseLabel).append(END_STMT);
-        } else {
-            code.append("goto ").append(endLabel).append(END_STMT);
-        }
+        // Jump over the then branch when the condition is false
+        JmmNode condExpr = node.getChild(0);
+        exprVisitor.visitCondition(condExpr, hasElse ? elseLabel : endLabel, false, code);
 
-        // Add then label and then branch
-        code.append(thenLabel).append(":").append(NL);
-        code.append(visit(node.getChild(1)));
-        code.append("goto ").append(endLabel).append(END_STMT);
+        // Add then branch
+        visit(node.getChild(1), code);
 
         // Add else branch if it exists
-        if (node.getNumChildren() > 2) {
-            code.append(elseLabel).append(":").append(NL);
-            code.append(visit(node.getChild(2)));
-            code.append("goto ").append(endLabel).append(END_STMT);
+        if (hasElse) {
+            code.add(new GotoInstruction(endLabel));
+            code.addLabel(elseLabel);
+            visit(node.getChild(2), code);
         }
 
         // Add end label
-        code.append(endLabel).append(":").append(NL);
+        code.addLabel(endLabel);
 
-        return code.toString();
+        return null;
     }
 
-    private String visitWhileStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
-        // Generate unique labels for condition/loop/end
+    private Void visitWhileStmt(JmmNode node, MethodCode code) {
+        // Generate unique labels for condition/loop
         String condLabel = OptUtils.getLabel("whileCond");
         String loopLabel = OptUtils.getLabel("whileBody");
-        String endLabel = OptUtils.getLabel("whileEnd");
 
         // Jump to condition evaluation
-        code.append("goto ").append(condLabel).append(END_STMT);
+        code.add(new GotoInstruction(condLabel));
 
         // Add loop body label
-        code.append(loopLabel).append(":").append(NL);
-        code.append(visit(node.getChild(1)));
-        code.append("goto ").append(condLabel).append(END_STMT);
+        code.addLabel(loopLabel);
+        visit(node.getChild(1), code);
 
-        // Add condition label
-        code.append(condLabel).append(":").append(NL);
-
-        // Get condition expression
+        // Add condition label, the loop continues while the condition is true and falls through otherwise
+        code.addLabel(condLabel);
         JmmNode condExpr = node.getChild(0);
-        OllirExprResult condition = exprVisitor.visit(condExpr);
-        code.append(condition.getComputation());
-
-        // Add conditional branch
-        code.append("if (").append(condition.getCode()).append(") goto ").append(loopLabel).append(END_STMT);
-        code.append("goto ").append(endLabel).append(END_STMT);
-
-        // Add end label
-        code.append(endLabel).append(":").append(NL);
+        exprVisitor.visitCondition(condExpr, loopLabel, true, code);
 
-        return code.toString();
+        return null;
     }
 
-    private String visitImport(JmmNode node, Void unused) {
+    private Void visitImport(JmmNode node, MethodCode code) {
         List<String> name = node.getObjectAsList("name", String.class);
-        return "import " + String.join(".", name) + END_STMT;
+        classUnit.addImport(String.join(".", name));
+        return null;
     }
 
-    private String visitParameters(JmmNode node, Void unused) {
-        StringBuilder params = new StringBuilder();
-
-        // Visit each parameter and join them with commas
-        for (int i = 0; i < node.getNumChildren(); i++) {
-            params.append(visit(node.getChild(i)));
-            if (i < node.getNumChildren() - 1) {
-                params.append(", ");
-            }
-        }
-
-        return params.toString();
-    }
-
-    private String defaultVisit(JmmNode node, Void unused) {
-        StringBuilder result = new StringBuilder();
-
-        // Visit all children and concatenate the results
+    private Void defaultVisit(JmmNode node, MethodCode code) {
+        // Visit all children, in order
         for (var child : node.getChildren()) {
-            result.append(visit(child));
+            visit(child, code);
         }
 
-        return result.toString();
+        return null;
     }
 
-    private String visitMethodDecl(JmmNode node, Void unused) {
+    private Void visitMethodDecl(JmmNode node, MethodCode unused) {
         // Reset state variables for each method
         hasReturnStatement = false;
         needsReturnValue = true;
 
-        StringBuilder code = new StringBuilder(".method ");
+        var method = new Method(classUnit);
+        method.setMethodName(node.get("name"));
 
         boolean isPublic = node.getBoolean("isPublic", false);
 
         if (isPublic) {
-            code.append("public ");
+            method.setMethodAccessModifier(AccessModifier.PUBLIC);
         }
 
-        // name
-        var name = node.get("name");
-        code.append(name);
-
-        // params
-        var paramsCode = visit(node.getChild(1));
-        code.append("(" + paramsCode + ")");
+        // params, numbered after 'this'
+        int paramId = method.isStaticMethod() ? 0 : 1;
+        for (var param : node.getChild(1).getChildren()) {
+            var operand = new Operand(param.get("name"), ollirTypes.toOllirType(param.getChild(0)));
+            operand.setParamId(paramId++);
+            method.addParam(operand);
+        }
 
         // type - get the return type from the method's type node
         JmmNode typeNode = node.getChild(0);
         Type returnType = TypeUtils.convertType(typeNode);
-        String retType = ollirTypes.toOllirType(returnType);
-        code.append(retType);
-        code.append(L_BRACKET);
+        method.setReturnType(ollirTypes.toOllirType(returnType));
 
         // rest of its children stmts
-        var stmtsCode = node.getChildren(STMT).stream()
-                .map(this::visit)
-                .collect(Collectors.joining("\n   ", "   ", ""));
-
-        code.append(stmtsCode);
+        var code = new MethodCode(method);
+        for (var stmt : node.getChildren(STMT)) {
+            visit(stmt, code);
+        }
 
         // Handle return values if needed
         if (needsReturnValue && !hasReturnStatement) {
-            // Add default return for void methods
-            if (returnType.getName().equals("void")) {
-                code.append("\n    ret.V");
-            } else {
-                // For non-void methods, add a default return value (like 0 for int)
-                String defaultValue = "0" + ollirTypes.toOllirType(returnType);
-                code.append("\n    ret").append(retType).append(" ").append(defaultValue);
+            var ret = new ReturnInstruction();
+            // For non-void methods, add a default return value (like 0 for int)
+            if (!returnType.getName().equals("void")) {
+                ret = new ReturnInstruction(new LiteralElement("0", ollirTypes.toOllirType(returnType)));
             }
-            code.append(END_STMT);
+            ret.setReturnType(ollirTypes.toOllirType(returnType));
+            code.add(ret);
         }
 
-        code.append(R_BRACKET);
-        code.append(NL);
+        code.close();
+        classUnit.addMethod(method);
 
-        return code.toString();
+        return null;
     }
 
     // Update visitReturn to set hasReturnStatement
-    private String visitReturn(JmmNode node, Void unused) {
+    private Void visitReturn(JmmNode node, MethodCode code) {
         JmmNode methodNode = node.getAncestor(METHOD_DECL).orElse(null);
         Type retType = methodNode != null ? TypeUtils.convertType(methodNode.getChild(0))
                 : TypeUtils.newType(TypeName.INT, false);
 
-        StringBuilder code = new StringBuilder();
-        var expr = node.getNumChildren() > 0 ? exprVisitor.visit(node.getChild(0)) : OllirExprResult.EMPTY;
+        var expr = node.getNumChildren() > 0 ? exprVisitor.visit(node.getChild(0), code) : null;
 
-        code.append(expr.getComputation());
-        code.append("ret");
-        code.append(ollirTypes.toOllirType(retType));
-        code.append(SPACE);
-        code.append(expr.getCode());
-        code.append(END_STMT);
+        var ret = expr != null ? new ReturnInstruction(expr) : new ReturnInstruction();
+        ret.setReturnType(ollirTypes.toOllirType(retType));
+        code.add(ret);
 
         hasReturnStatement = true;
 
-        return code.toString();
+        return null;
     }
 
-    private String visitAssignStmt(JmmNode node, Void unused) {
+    private Void visitAssignStmt(JmmNode node, MethodCode code) {
         JmmNode left = node.getChild(0);
         JmmNode right = node.getChild(1);
-        StringBuilder code = new StringBuilder();
 
         if (left.getKind().equals(ARRAY_ACCESS_EXPR.getNodeName())) {
             // Handle array assignment separately
-            return visitArrayElement(node, unused);
+            return visitArrayElement(node, code);
         }
 
         String name = left.get("name");
         Type type = types.getExprType(left);
-        String ollirType = ollirTypes.toOllirType(type);
 
         if (right.getKind().equals(BINARY_EXPR.getNodeName())
                 && (right.get("op").equals("+")
@@ -324,21 +255,15 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
                 && right.getChild(0).get("name").equals(name)
                 && right.getChild(1).getKind().equals(INTEGER_LITERAL.getNodeName())) {
 
-            code.append(name).append(ollirType)
-                    .append(" :=").append(ollirType)
-                    .append(" ")
-                    .append(name).append(ollirType)
-                    .append(" ").append(right.get("op")).append(ollirType)
-                    .append(" ")
-                    .append(right.getChild(1).get("value")).append(ollirType)
-                    .append(END_STMT);
+            var operation = new Operation(OptUtils.toOperationType(right.get("op")), ollirTypes.toOllirType(type));
+            var literal = new LiteralElement(right.getChild(1).get("value"), ollirTypes.toOllirType(type));
+            var rhs = new BinaryOpInstruction(new Operand(name, ollirTypes.toOllirType(type)), operation, literal);
+            code.add(new AssignInstruction(new Operand(name, ollirTypes.toOllirType(type)),
+                    ollirTypes.toOllirType(type), rhs));
 
-            return code.toString();
+            return null;
         }
 
-        var rhs = exprVisitor.visit(right);
-        code.append(rhs.getComputation());
-
         // Check if this is a field assignment or a local variable
         // First check if we're in a method
         JmmNode methodNode = node.getAncestor(METHOD_DECL).orElse(null);
@@ -361,28 +286,37 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         boolean isField = !isLocalVar && table.getFields().stream()
                 .anyMatch(field -> field.getName().equals(name));
 
+        boolean inline = inlineResults && !isField && sameType(types.getExprType(right), type);
+        var rhs = inline ? exprVisitor.visitInto(right, name, code) : exprVisitor.visit(right, code);
+
+        if (inline && rhs instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(name)) {
+            // The value was computed into the variable
+            return null;
+        }
+
         if (isField) {
             // For fields, use putfield instruction
-            code.append("putfield(this, ").append(name).append(ollirType)
-                    .append(", ").append(rhs.getCode()).append(")")
-                    .append(".V") // Add proper void return type for putfield
-                    .append(END_STMT);
+            code.add(new PutFieldInstruction(OptUtils.thisReference(table.getClassName()),
+                    new Operand(name, ollirTypes.toOllirType(type)), rhs,
+                    ollirTypes.toOllirType(TypeUtils.newType(TypeName.VOID, false))));
         } else {
             // For local variables, use normal assignment
-            code.append(name).append(ollirType)
-                    .append(" :=").append(ollirType)
-                    .append(" ")
-                    .append(rhs.getCode())
-                    .append(END_STMT);
+            code.add(new AssignInstruction(new Operand(name, ollirTypes.toOllirType(type)),
+                    ollirTypes.toOllirType(type), new SingleOpInstruction(rhs)));
         }
 
-        return code.toString();
+        return null;
     }
 
-    private String visitFieldAssignStmt(JmmNode node, Void unused) {
+    private static boolean sameType(Type first, Type second) {
+        return first != null && first.getName().equals(second.getName()) && first.isArray() == second.isArray();
+    }
+
+    private Void visitFieldAssignStmt(JmmNode node, MethodCode code) {
         JmmNode field = node.getChild(0);
         JmmNode assignee = node.getChild(1);
-        var expr = exprVisitor.visit(assignee);
+        var expr = exprVisitor.visit(assignee, code);
 
         Type fieldType = null;
         for (var f : table.getFields()) {
@@ -392,126 +326,101 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         }
 
         assert fieldType != null;
-        String type = ollirTypes.toOllirType(fieldType);
-
-        return expr.getComputation() + "putfield(this, " + field.get("name") + type + ", " + expr.getCode() + ")" + ".V"
-                + END_STMT;
-    }
-
-    private String visitParam(JmmNode node, Void unused) {
-
-        var typeCode = ollirTypes.toOllirType(node.getChild(0));
-        var id = node.get("name");
 
-        String code = id + typeCode;
-
-        return code;
+        code.add(new PutFieldInstruction(OptUtils.thisReference(table.getClassName()),
+                new Operand(field.get("name"), ollirTypes.toOllirType(fieldType)), expr,
+                ollirTypes.toOllirType(TypeUtils.newType(TypeName.VOID, false))));
+        return null;
     }
 
-    private String visitClass(JmmNode node, Void u) {
-        StringBuilder code = new StringBuilder();
-
-        code.append(table.getClassName());
+    private Void visitClass(JmmNode node, MethodCode unused) {
+        classUnit.setClassName(table.getClassName());
 
         var superClass = table.getSuper().isEmpty() ? "Object" : table.getSuper();
-        code.append(" extends ").append(superClass).append(L_BRACKET);
-        for (var field : table.getFields()) {
-            code.append(".field public ").append(field.getName());
-            code.append(ollirTypes.toOllirType(field.getType())).append(END_STMT);
+        classUnit.setSuperClass(superClass);
+        for (var symbol : table.getFields()) {
+            var field = new Field();
+            field.setFieldAccessModifier(AccessModifier.PUBLIC);
+            field.setFieldName(symbol.getName());
+            field.setFieldType(ollirTypes.toOllirType(symbol.getType()));
+            classUnit.addField(field);
         }
 
-        code.append(buildConstructor());
+        classUnit.addMethod(buildConstructor());
 
         // instantiate methods
         for (var method : node.getChildren()) {
             if (method.getKind().equals("Method")) {
-                code.append(visit(method));
+                visit(method, null);
             }
         }
 
-        code.append(R_BRACKET);
-        return code.toString();
+        return null;
     }
 
-    private String buildConstructor() {
-        return """
-                .construct %s().V {
-                    invokespecial(this, "<init>").V;
-                }
-                """.formatted(table.getClassName());
-    }
+    private Method buildConstructor() {
+        var constructor = new Method(classUnit);
+        constructor.setConstructMethod();
+        constructor.setMethodName(table.getClassName());
+        constructor.setReturnType(ollirTypes.toOllirType(TypeUtils.newType(TypeName.VOID, false)));
 
-    private String visitProgram(JmmNode node, Void unused) {
+        constructor.addInstr(new InvokeSpecialInstruction(OptUtils.thisReference(table.getClassName()),
+                OptUtils.methodName("<init>"), null, new ArrayList<>(),
+                ollirTypes.toOllirType(TypeUtils.newType(TypeName.VOID, false)), true));
 
-        StringBuilder code = new StringBuilder();
+        return constructor;
+    }
 
-        node.getChildren().stream()
-                .map(this::visit)
-                .forEach(code::append);
+    private Void visitProgram(JmmNode node, MethodCode unused) {
+        for (var child : node.getChildren()) {
+            visit(child, null);
+        }
 
-        return code.toString();
+        return null;
     }
 
-    private String visitComplexArrayAccess(JmmNode node, Void unused) {
+    private Void visitComplexArrayAccess(JmmNode node, MethodCode code) {
         // This handles more complex array access like a[i+j] or a[b[i]]
         JmmNode arrayExpr = node.getChild(0);
         JmmNode indexExpr = node.getChild(1);
 
         // Generate code for array and index expressions
-        OllirExprResult array = exprVisitor.visit(arrayExpr);
-        OllirExprResult index = exprVisitor.visit(indexExpr);
-
-        // Build the complete computation
-        StringBuilder code = new StringBuilder();
-        code.append(array.getComputation());
-        code.append(index.getComputation());
+        var array = exprVisitor.visit(arrayExpr, code);
+        var index = exprVisitor.visit(indexExpr, code);
 
         // Create a temporary for the result
         String tempVar = ollirTypes.nextTemp();
-        String resultType = ".i32"; // Array element type is int
+        var resultType = TypeUtils.newType(TypeName.INT, false); // Array element type is int
 
-        // Generate the array access instruction with proper OLLIR syntax
-        code.append(tempVar).append(resultType)
-                .append(" :=").append(resultType)
-                .append(" ").append(array.getCode())
-                .append("[").append(index.getCode()).append("]")
-                .append(resultType) // Add the type specification before END_STMT
-                .append(END_STMT);
+        var element = new ArrayOperand(OllirExprGeneratorVisitor.getName(array), ollirTypes.toOllirType(resultType),
+                List.of(index));
+        code.add(new AssignInstruction(new Operand(tempVar, ollirTypes.toOllirType(resultType)),
+                ollirTypes.toOllirType(resultType), new SingleOpInstruction(element)));
 
-        return new OllirExprResult(tempVar + resultType, code.toString()).getComputation();
+        return null;
     }
 
-    private String visitArrayElement(JmmNode node, Void unused) {
+    private Void visitArrayElement(JmmNode node, MethodCode code) {
         // Handle array element assignment (a[i] = x)
         JmmNode arrayAccessNode = node.getChild(0);
         JmmNode valueExpr = node.getChild(1);
 
         // Generate array object and index expressions
-        OllirExprResult arrayObj = exprVisitor.visit(arrayAccessNode.getChild(0));
-        OllirExprResult indexExpr = exprVisitor.visit(arrayAccessNode.getChild(1));
-        OllirExprResult value = exprVisitor.visit(valueExpr);
+        var arrayObj = exprVisitor.visit(arrayAccessNode.getChild(0), code);
+        var indexExpr = exprVisitor.visit(arrayAccessNode.getChild(1), code);
+        var value = exprVisitor.visit(valueExpr, code);
 
         // Define the result type for array elements (always i32 in this case)
-        String resultType = ".i32";
-
-        StringBuilder code = new StringBuilder();
-        code.append(arrayObj.getComputation());
-        code.append(indexExpr.getComputation());
-        code.append(value.getComputation());
-
-        // Generate the array assignment - use correct OLLIR syntax
-        code.append(arrayObj.getCode())
-                .append("[").append(indexExpr.getCode()).append("]")
-                .append(resultType)
-                .append(" :=").append(resultType)
-                .append(" ")
-                .append(value.getCode())
-                .append(END_STMT);
-
-        return code.toString();
+        var resultType = TypeUtils.newType(TypeName.INT, false);
+
+        var element = new ArrayOperand(OllirExprGeneratorVisitor.getName(arrayObj),
+                ollirTypes.toOllirType(resultType), List.of(indexExpr));
+        code.add(new AssignInstruction(element, ollirTypes.toOllirType(resultType), new SingleOpInstruction(value)));
+
+        return null;
     }
 
-    private String visitExprStmt(JmmNode node, Void unused) {
+    private Void visitExprStmt(JmmNode node, MethodCode code) {
         JmmNode exprNode = node.getChild(0);
 
         // Handle function calls (both static and instance methods)
@@ -519,7 +428,6 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
                 exprNode.getKind().equals(METHOD_CALL_EXPR.getNodeName())) {
 
             String methodName = exprNode.get("methodname");
-            StringBuilder code = new StringBuilder();
             boolean isStatic = false;
             String className = null;
             int startArgIndex = 0;
@@ -544,77 +452,41 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             }
 
             // Process arguments
-            List<String> argCodes = new ArrayList<>();
+            List<Element> args = new ArrayList<>();
             for (int i = startArgIndex; i < exprNode.getNumChildren(); i++) {
-                OllirExprResult arg = exprVisitor.visit(exprNode.getChild(i));
-                code.append(arg.getComputation());
-                argCodes.add(arg.getCode());
+                args.add(exprVisitor.visit(exprNode.getChild(i), code));
             }
 
             // Get the return type of the method
             Type returnType = types.getExprType(exprNode);
-            String returnTypeStr = ollirTypes.toOllirType(returnType);
 
-            // Build the method call
+            // Build the method call, its result is not used
             if (isStatic) {
+                // The imported method is not known, a call whose result is not used is assumed to return nothing
+                if (returnType.getName().equals(TypeName.ANY.getName())) {
+                    returnType = TypeUtils.newType(TypeName.VOID, false);
+                }
                 // Static method call to imported class
-                code.append("invokestatic(")
-                        .append(className)
-                        .append(", \"")
-                        .append(methodName)
-                        .append("\"");
+                code.add(new InvokeStaticInstruction(OptUtils.classReference(className),
+                        OptUtils.methodName(methodName), args, ollirTypes.toOllirType(returnType), true));
             } else {
                 // Instance method call
-                if (argCodes.isEmpty()) {
+                if (args.isEmpty()) {
                     // No arguments provided
-                    return code.toString();
+                    return null;
                 }
 
-                // Check if this is a call to a static method in the current class
-                final List<String> finalArgCodes = argCodes;
-                boolean isStaticLocalMethod = table.getMethods().stream()
-                        .anyMatch(m -> {
-                            // Get method signature
-                            String methodSig = m + "(" + finalArgCodes.size() + ")";
-                            // Check if method exists and is static
-                            return m.equals(methodName) &&
-                                    table.getParameters(methodSig) != null &&
-                                    table.getParameters(methodSig).size() == finalArgCodes.size();
-                        });
-
-                if (isStaticLocalMethod) {
-                    // Static method call in current class
-                    code.append("invokestatic(")
-                            .append(table.getClassName())
-                            .append(", \"")
-                            .append(methodName)
-                            .append("\"");
-                } else {
-                    // Instance method call (either local or inherited)
-                    code.append("invokevirtual(")
-                            .append(argCodes.get(0)) // First argument is the object
-                            .append(", \"")
-                            .append(methodName)
-                            .append("\"");
-
-                    // Remove the object from arguments list
-                    argCodes = argCodes.subList(1, argCodes.size());
-                }
+                // Instance method call (either local or inherited), the first argument is the object
+                code.add(new InvokeVirtualInstruction(OptUtils.toObjectReference(args.get(0), table.getClassName()),
+                        OptUtils.methodName(methodName), new ArrayList<>(args.subList(1, args.size())),
+                        ollirTypes.toOllirType(returnType), true));
             }
 
-            // Add remaining arguments if any
-            if (!argCodes.isEmpty()) {
-                code.append(", ")
-                        .append(String.join(", ", argCodes));
-            }
-
-            code.append(")").append(returnTypeStr)
-                    .append(END_STMT);
-
-            return code.toString();
+            return null;
         }
 
         // Default behavior for other expressions
-        return exprVisitor.visit(exprNode).getComputation();
+        exprVisitor.visit(exprNode, code);
+        return null;
     }
 }
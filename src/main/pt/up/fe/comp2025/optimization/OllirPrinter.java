@@ -0,0 +1,267 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.ArrayType;
+import org.specs.comp.ollir.type.BuiltinType;
+import org.specs.comp.ollir.type.ClassKind;
+import org.specs.comp.ollir.type.ClassType;
+import org.specs.comp.ollir.type.Type;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Prints a {@link ClassUnit} as OLLIR code.
+ * <p>
+ * The classes are generated and optimized directly, so this is how their code is shown. The output can be parsed
+ * again by the OLLIR parser.
+ */
+public class OllirPrinter {
+
+    private static final String SPACE = " ";
+    private static final String ASSIGN = ":=";
+    private static final String END_STMT = ";\n";
+    private static final String NL = "\n";
+    private static final String L_BRACKET = " {\n";
+    private static final String R_BRACKET = "}\n";
+    private static final String INDENT = "    ";
+
+    public String print(ClassUnit classUnit) {
+        StringBuilder code = new StringBuilder();
+
+        for (var imp : classUnit.getImports()) {
+            code.append("import ").append(imp).append(END_STMT);
+        }
+
+        code.append(classUnit.getClassName());
+        if (classUnit.getSuperClass() != null) {
+            code.append(" extends ").append(classUnit.getSuperClass());
+        }
+        code.append(L_BRACKET);
+
+        for (var field : classUnit.getFields()) {
+            code.append(printField(field));
+        }
+
+        for (var method : classUnit.getMethods()) {
+            code.append(printMethod(method));
+        }
+
+        code.append(R_BRACKET);
+        return code.toString();
+    }
+
+    private String printField(Field field) {
+        StringBuilder code = new StringBuilder(".field ");
+        code.append(printModifier(field.getFieldAccessModifier()));
+        if (field.isStaticField()) {
+            code.append("static ");
+        }
+        if (field.isFinalField()) {
+            code.append("final ");
+        }
+        code.append(field.getFieldName()).append(printType(field.getFieldType()));
+        if (field.isInitialized()) {
+            code.append(SPACE).append(ASSIGN).append(SPACE).append(field.getInitialValue());
+        }
+        code.append(END_STMT);
+        return code.toString();
+    }
+
+    private String printModifier(AccessModifier modifier) {
+        return switch (modifier) {
+            case PUBLIC -> "public ";
+            case PRIVATE -> "private ";
+            case PROTECTED -> "protected ";
+            default -> "";
+        };
+    }
+
+    public String printMethod(Method method) {
+        StringBuilder code = new StringBuilder();
+
+        if (method.isConstructMethod()) {
+            code.append(".construct ");
+        } else {
+            code.append(".method ");
+            code.append(printModifier(method.getMethodAccessModifier()));
+            if (method.isStaticMethod()) {
+                code.append("static ");
+            }
+            if (method.isFinalMethod()) {
+                code.append("final ");
+            }
+            if (method.isVarargs()) {
+                code.append("varargs ");
+            }
+        }
+
+        var params = method.getParams().stream()
+                .map(this::printElement)
+                .collect(Collectors.joining(", "));
+        code.append(method.getMethodName()).append("(").append(params).append(")");
+        code.append(printType(method.getReturnType())).append(L_BRACKET);
+
+        // Labels of each instruction, in a deterministic order
+        Map<Instruction, List<String>> labelsOf = new IdentityHashMap<>();
+        for (var entry : method.getLabels().entrySet()) {
+            labelsOf.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+        }
+        labelsOf.values().forEach(Collections::sort);
+
+        for (var inst : method.getInstructions()) {
+            for (var label : labelsOf.getOrDefault(inst, List.of())) {
+                code.append(INDENT).append(label).append(":").append(NL);
+            }
+            code.append(INDENT).append(printInstruction(inst)).append(END_STMT);
+        }
+
+        code.append(R_BRACKET);
+        return code.toString();
+    }
+
+    public String printInstruction(Instruction inst) {
+        if (inst instanceof AssignInstruction assign) {
+            var type = printType(assign.getTypeOfAssign());
+            return printElement(assign.getDest()) + SPACE + ASSIGN + type + SPACE + printInstruction(assign.getRhs());
+        }
+        if (inst instanceof SingleOpInstruction single) {
+            return printElement(single.getSingleOperand());
+        }
+        if (inst instanceof BinaryOpInstruction binary) {
+            return printElement(binary.getLeftOperand()) + SPACE + printOperation(binary.getOperation(),
+                    binary.getLeftOperand().getType()) + SPACE + printElement(binary.getRightOperand());
+        }
+        if (inst instanceof UnaryOpInstruction unary) {
+            return printOperation(unary.getOperation(), unary.getOperand().getType()) + SPACE
+                    + printElement(unary.getOperand());
+        }
+        if (inst instanceof CondBranchInstruction cond) {
+            return "if (" + printInstruction(cond.getCondition()) + ") goto " + cond.getLabel();
+        }
+        if (inst instanceof GotoInstruction gotoInst) {
+            return "goto " + gotoInst.getLabel();
+        }
+        if (inst instanceof ReturnInstruction ret) {
+            var code = "ret" + printType(ret.getReturnType());
+            return ret.getOperand().map(op -> code + SPACE + printElement(op)).orElse(code);
+        }
+        if (inst instanceof GetFieldInstruction getField) {
+            return "getfield(" + printElement(getField.getObject()) + ", " + printElement(getField.getField()) + ")"
+                    + printType(getField.getFieldType());
+        }
+        if (inst instanceof PutFieldInstruction putField) {
+            return "putfield(" + printElement(putField.getObject()) + ", " + printElement(putField.getField()) + ", "
+                    + printElement(putField.getValue()) + ").V";
+        }
+        if (inst instanceof CallInstruction call) {
+            return printCall(call);
+        }
+        throw new RuntimeException("Cannot print instruction " + inst.getClass().getSimpleName());
+    }
+
+    private String printCall(CallInstruction call) {
+        String name;
+        if (call instanceof InvokeVirtualInstruction) {
+            name = "invokevirtual";
+        } else if (call instanceof InvokeStaticInstruction) {
+            name = "invokestatic";
+        } else if (call instanceof InvokeSpecialInstruction) {
+            name = "invokespecial";
+        } else if (call instanceof NewInstruction) {
+            name = "new";
+        } else if (call instanceof ArrayLengthInstruction) {
+            name = "arraylength";
+        } else {
+            throw new RuntimeException("Cannot print call " + call.getClass().getSimpleName());
+        }
+
+        var operands = new ArrayList<String>();
+        var caller = call.getCaller();
+        if (call instanceof NewInstruction && caller.getType() instanceof ArrayType) {
+            operands.add("array");
+        } else {
+            operands.add(printElement(caller));
+        }
+        call.getMethodNameTry().ifPresent(methodName ->
+                operands.add("\"" + ((LiteralElement) methodName).getLiteral() + "\""));
+        for (var arg : call.getArguments()) {
+            operands.add(printElement(arg));
+        }
+
+        return name + "(" + String.join(", ", operands) + ")" + printType(call.getReturnType());
+    }
+
+    private String printOperation(Operation operation, Type operandType) {
+        var symbol = switch (operation.getOpType()) {
+            case ADD -> "+";
+            case SUB -> "-";
+            case MUL -> "*";
+            case DIV -> "/";
+            case REM -> "%";
+            case SHR -> ">>";
+            case SHL -> "<<";
+            case SHRR -> ">>>";
+            case XOR -> "^";
+            case AND -> "&";
+            case OR -> "|";
+            case LTH -> "<";
+            case GTH -> ">";
+            case EQ -> "==";
+            case NEQ -> "!=";
+            case LTE -> "<=";
+            case GTE -> ">=";
+            case ANDB -> "&&";
+            case ORB -> "||";
+            case NOTB -> "!";
+            case NOT -> "~";
+        };
+        var type = operation.getTypeInfo() != null ? operation.getTypeInfo() : operandType;
+        return symbol + printType(type);
+    }
+
+    public String printElement(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return literal.getLiteral() + printType(literal.getType());
+        }
+
+        var operand = (Operand) element;
+        if (operand.getType() instanceof ClassType classType) {
+            // 'this' and class names are written without type
+            if (classType.getKind() == ClassKind.THIS || classType.getKind() == ClassKind.CLASS) {
+                return operand.getName();
+            }
+        }
+        var code = new StringBuilder(operand.getName());
+        if (operand instanceof ArrayOperand arrayOperand) {
+            for (var index : arrayOperand.getIndexOperands()) {
+                code.append("[").append(printElement(index)).append("]");
+            }
+        }
+        code.append(printType(operand.getType()));
+        return code.toString();
+    }
+
+    public String printType(Type type) {
+        if (type instanceof BuiltinType builtin) {
+            return switch (builtin.getKind()) {
+                case INT32 -> ".i32";
+                case BOOLEAN -> ".bool";
+                case STRING -> ".String";
+                case VOID -> ".V";
+            };
+        }
+        if (type instanceof ArrayType arrayType) {
+            return ".array".repeat(arrayType.getNumDimensions()) + printType(arrayType.getElementType());
+        }
+        if (type instanceof ClassType classType) {
+            return "." + classType.getName();
+        }
+        throw new RuntimeException("Cannot print type " + type);
+    }
+}
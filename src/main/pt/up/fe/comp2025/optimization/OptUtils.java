@@ -1,10 +1,18 @@
 package pt.up.fe.comp2025.optimization;
 
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.type.ArrayType;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import org.specs.comp.ollir.type.ClassKind;
+import org.specs.comp.ollir.type.ClassType;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2025.ast.TypeUtils;
 import pt.up.fe.specs.util.collections.AccumulatorMap;
-import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
 import static pt.up.fe.comp2025.ast.Kind.TYPE;
 
@@ -44,27 +52,93 @@ public class OptUtils {
         return s + labelCounter++;
     }
 
-    public String toOllirType(JmmNode typeNode) {
+    /**
+     * Labels are numbered from 0 in each class, so compiling the same class again gives the same labels, which the
+     * counters of a profile refer to.
+     */
+    public static void resetLabels() {
+        labelCounter = 0;
+    }
+
+    /**
+     * @return the reference to the object of the class, as the object of a call or of a field access
+     */
+    public static Operand thisReference(String className) {
+        return new Operand("this", new ClassType(ClassKind.THIS, className));
+    }
+
+    /**
+     * 'this' used as a value has the type of the class, but it is a reference of its own kind when it is the object
+     * of a call or of a field access.
+     *
+     * @return the element as the object of a call or of a field access
+     */
+    public static Element toObjectReference(Element element, String className) {
+        if (element instanceof Operand operand && operand.getName().equals("this")) {
+            return thisReference(className);
+        }
+        return element;
+    }
+
+    /**
+     * @return the name of a class, as the class of a static call or of a new
+     */
+    public static Operand classReference(String className) {
+        return new Operand(className, new ClassType(ClassKind.CLASS, className));
+    }
+
+    /**
+     * @return the name of a method, as the method of a call
+     */
+    public static LiteralElement methodName(String name) {
+        return new LiteralElement(name, new BuiltinType(BuiltinKind.STRING));
+    }
+
+    /**
+     * @return the OLLIR operation of a binary operator
+     */
+    public static OperationType toOperationType(String op) {
+        return switch (op) {
+            case "+" -> OperationType.ADD;
+            case "-" -> OperationType.SUB;
+            case "*" -> OperationType.MUL;
+            case "/" -> OperationType.DIV;
+            case "<" -> OperationType.LTH;
+            case "<=" -> OperationType.LTE;
+            case ">" -> OperationType.GTH;
+            case ">=" -> OperationType.GTE;
+            case "==" -> OperationType.EQ;
+            case "!=" -> OperationType.NEQ;
+            case "&&" -> OperationType.ANDB;
+            case "||" -> OperationType.ORB;
+            default -> throw new IllegalArgumentException("Unknown operator: " + op);
+        };
+    }
+
+    public org.specs.comp.ollir.type.Type toOllirType(JmmNode typeNode) {
 
         TYPE.checkOrThrow(typeNode);
 
         return toOllirType(types.convertType(typeNode));
     }
 
-    public String toOllirType(Type type) {
+    /**
+     * @return a new OLLIR type equivalent to the given type, class types are object references
+     */
+    public org.specs.comp.ollir.type.Type toOllirType(Type type) {
         if (type.isArray()) {
-            return ".array" + toOllirType(new Type(type.getName(), false));
+            var arrayType = new ArrayType(1);
+            arrayType.setElementType(toOllirType(new Type(type.getName(), false)));
+            return arrayType;
         }
 
-        return "." + switch (type.getName()) {
-            case "int" -> "i32";
-            case "boolean" -> "bool";
-            case "void" -> "V";
-            case "String" -> "String";
-            default -> type.getName(); // For class types
+        return switch (type.getName()) {
+            case "int" -> new BuiltinType(BuiltinKind.INT32);
+            case "boolean" -> new BuiltinType(BuiltinKind.BOOLEAN);
+            case "void" -> new BuiltinType(BuiltinKind.VOID);
+            case "String" -> new BuiltinType(BuiltinKind.STRING);
+            default -> new ClassType(ClassKind.OBJECTREF, type.getName()); // For class types
         };
     }
 
-
-
 }
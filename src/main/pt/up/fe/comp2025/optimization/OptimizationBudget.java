@@ -0,0 +1,243 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.*;
+
+/**
+ * Limits of the work and of the size of the code the optimizations of a compilation can spend, so very large inputs
+ * are still compiled in a reasonable time.
+ * <p>
+ * The work is counted in instruction visits: each pass that runs on a method visits all of its instructions, and
+ * each round of folding of the AST visits all of its nodes. Counting the work instead of measuring the time makes the
+ * optimizer take the same decisions on every machine and every run. Limits of the time can still be given, and are
+ * then checked as well.
+ * <p>
+ * Once the whole compilation or a method exceeds its budget, the optimizer degrades instead of failing: the expensive
+ * passes are skipped, the folding of the AST stops and the registers are allocated by a linear scan instead of graph
+ * coloring. Each limit that was exceeded is reported as a warning, with the statistics of what was skipped.
+ */
+public class OptimizationBudget {
+
+    /**
+     * Limit of the time that is not checked, the default.
+     */
+    public static final long NO_TIME_LIMIT = Long.MAX_VALUE;
+
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    private final long maxWork;
+    private final int maxSize;
+    private final long maxMethodWork;
+    private final int maxMethodSize;
+    private final long maxTime;
+    private final long maxMethodTime;
+
+    private final long start;
+    private final Map<Method, Long> methodWork;
+    private final Map<Method, Long> methodTimes;
+
+    private long work;
+    private long exceededAfter;
+    private int classSize;
+    private int skipped;
+    private int linearAllocations;
+    private final Map<Method, Degradation> degraded;
+
+    /**
+     * A budget without limits of the time.
+     *
+     * @param maxWork       instruction visits the optimizations of the whole compilation can make
+     * @param maxSize       maximum number of OLLIR instructions of the class for the expensive passes to run
+     * @param maxMethodWork instruction visits the passes can make optimizing a single method
+     * @param maxMethodSize maximum number of OLLIR instructions of a method for the expensive passes to run on it
+     */
+    public OptimizationBudget(long maxWork, int maxSize, long maxMethodWork, int maxMethodSize) {
+        this(maxWork, maxSize, maxMethodWork, maxMethodSize, NO_TIME_LIMIT, NO_TIME_LIMIT);
+    }
+
+    /**
+     * @param maxTime       milliseconds the optimizations of the whole compilation can take, or {@link #NO_TIME_LIMIT}
+     * @param maxMethodTime milliseconds the passes can spend optimizing a single method, or {@link #NO_TIME_LIMIT}
+     */
+    public OptimizationBudget(long maxWork, int maxSize, long maxMethodWork, int maxMethodSize, long maxTime,
+                              long maxMethodTime) {
+        this.maxWork = maxWork;
+        this.maxSize = maxSize;
+        this.maxMethodWork = maxMethodWork;
+        this.maxMethodSize = maxMethodSize;
+        this.maxTime = maxTime;
+        this.maxMethodTime = maxMethodTime;
+        this.start = System.nanoTime();
+        this.methodWork = new IdentityHashMap<>();
+        this.methodTimes = new IdentityHashMap<>();
+        this.work = 0;
+        this.exceededAfter = -1;
+        this.classSize = 0;
+        this.skipped = 0;
+        this.linearAllocations = 0;
+        this.degraded = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return a budget that is never exceeded
+     */
+    public static OptimizationBudget unlimited() {
+        return new OptimizationBudget(Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return true if the work or the time of the compilation or the size of the class is over the budget
+     */
+    public boolean isExceeded() {
+        if (exceededAfter < 0 && (work > maxWork || classSize > maxSize || isOverTime(elapsed(), maxTime))) {
+            exceededAfter = work;
+        }
+        return exceededAfter >= 0;
+    }
+
+    /**
+     * Updates the size of the class, which grows as calls are inlined and loops unrolled.
+     */
+    public void measure(ClassUnit classUnit) {
+        classSize = classUnit.getMethods().stream().mapToInt(method -> method.getInstructions().size()).sum();
+    }
+
+    /**
+     * @return true if an expensive pass can still run on the method, otherwise the pass is counted as skipped
+     */
+    public boolean allows(Method method) {
+        if (isExceeded()) {
+            skipped++;
+            return false;
+        }
+
+        var reason = getExceeded(method);
+        if (reason == null) {
+            return true;
+        }
+
+        degraded.computeIfAbsent(method, key -> new Degradation(reason)).skipped++;
+        return false;
+    }
+
+    /**
+     * @return true if the registers of the method can be allocated by graph coloring, otherwise the linear
+     * allocation is counted
+     */
+    public boolean allowsColoring(Method method) {
+        if (isExceeded()) {
+            linearAllocations++;
+            return false;
+        }
+
+        var reason = getExceeded(method);
+        if (reason == null) {
+            return true;
+        }
+
+        degradeRegisterAllocation(method, reason);
+        return false;
+    }
+
+    /**
+     * Adds the work of the compilation that is not done on a single method.
+     */
+    public void spend(long visits) {
+        work += visits;
+    }
+
+    /**
+     * Adds the work and the time a pass spent on the method.
+     */
+    public void spend(Method method, long visits, long nanos) {
+        work += visits;
+        methodWork.merge(method, visits, Long::sum);
+        methodTimes.merge(method, nanos, Long::sum);
+    }
+
+    /**
+     * Records that the registers of the method were allocated without graph coloring, for a reason other than the
+     * budget.
+     */
+    public void degradeRegisterAllocation(Method method, String reason) {
+        degraded.computeIfAbsent(method, key -> new Degradation(reason)).linearAllocation = true;
+    }
+
+    /**
+     * @return the reason the budget of the method is exceeded, or null if it is not
+     */
+    private String getExceeded(Method method) {
+        int size = method.getInstructions().size();
+        if (size > maxMethodSize) {
+            return size + " instructions, more than the " + maxMethodSize + " allowed";
+        }
+
+        long visits = methodWork.getOrDefault(method, 0L);
+        if (visits > maxMethodWork) {
+            return visits + " instruction visits, more than the " + maxMethodWork + " allowed";
+        }
+
+        long time = methodTimes.getOrDefault(method, 0L);
+        if (isOverTime(time, maxMethodTime)) {
+            return time / NANOS_PER_MILLI + " ms spent, more than the " + maxMethodTime + " ms allowed";
+        }
+
+        return null;
+    }
+
+    /**
+     * @return a warning for each limit that was exceeded
+     */
+    public List<Report> getReports() {
+        var reports = new ArrayList<Report>();
+
+        if (exceededAfter >= 0) {
+            var limits = maxWork + " instruction visits" + (maxTime == NO_TIME_LIMIT ? "" : ", " + maxTime + " ms");
+            var message = "Optimization budget of " + limits + " and " + maxSize + " instructions exceeded after "
+                    + exceededAfter + " instruction visits with " + classSize + " instructions: " + skipped
+                    + " runs of expensive passes skipped";
+            if (linearAllocations > 0) {
+                message += ", registers of " + linearAllocations + " methods allocated by linear scan";
+            }
+            reports.add(new Report(ReportType.WARNING, Stage.OPTIMIZATION, -1, -1, message));
+        }
+
+        for (var entry : degraded.entrySet()) {
+            var degradation = entry.getValue();
+            var message = "Optimization budget of method '" + entry.getKey().getMethodName() + "' exceeded ("
+                    + degradation.reason + "): " + degradation.skipped + " runs of expensive passes skipped";
+            if (degradation.linearAllocation) {
+                message += ", registers allocated by linear scan";
+            }
+            reports.add(new Report(ReportType.WARNING, Stage.OPTIMIZATION, -1, -1, message));
+        }
+
+        return reports;
+    }
+
+    private long elapsed() {
+        return System.nanoTime() - start;
+    }
+
+    private static boolean isOverTime(long nanos, long maxMillis) {
+        return maxMillis != NO_TIME_LIMIT && nanos / NANOS_PER_MILLI > maxMillis;
+    }
+
+    private static class Degradation {
+
+        private final String reason;
+        private int skipped;
+        private boolean linearAllocation;
+
+        Degradation(String reason) {
+            this.reason = reason;
+            this.skipped = 0;
+            this.linearAllocation = false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package pt.up.fe.comp2025.optimization;
+
+import com.google.gson.GsonBuilder;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.inst.Instruction;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Report of an optimization that was applied, or that was missed and why.
+ * <p>
+ * A remark of an optimization of an instruction is placed at the position of the instruction in the source code, when
+ * it is known. The remarks of a whole method, such as the totals of each pass, are placed at its declaration later.
+ * The hotness estimates how often the code of the remark runs, from the loops it is inside of, so the missed
+ * optimizations can be ranked.
+ */
+public class OptimizationRemark extends Report {
+
+    public enum Kind {
+        APPLIED,
+        MISSED
+    }
+
+    /**
+     * Estimated number of times the body of a loop runs for each time the loop is entered.
+     */
+    private static final int LOOP_WEIGHT = 10;
+
+    private static final int MAX_LOOP_DEPTH = 6;
+
+    private final String pass;
+    private final Kind kind;
+    private final String method;
+    private final long hotness;
+
+    private OptimizationRemark(String pass, Kind kind, String method, int line, int column, long hotness,
+                               String message) {
+        super(ReportType.LOG, Stage.OPTIMIZATION, line, column, message);
+        this.pass = pass;
+        this.kind = kind;
+        this.method = method;
+        this.hotness = hotness;
+    }
+
+    public static OptimizationRemark applied(String pass, Method method, String message) {
+        return new OptimizationRemark(pass, Kind.APPLIED, method.getMethodName(), -1, -1, 1, message);
+    }
+
+    /**
+     * @param inst      instruction that was optimized
+     * @param loopDepth number of loops the instruction is inside of
+     */
+    public static OptimizationRemark applied(String pass, Method method, Instruction inst, int loopDepth,
+                                             String message) {
+        return at(pass, Kind.APPLIED, method, inst, getHotness(loopDepth), message);
+    }
+
+    /**
+     * @param inst      instruction that could not be optimized, or null if the remark is about the whole method
+     * @param loopDepth number of loops the missed optimization is inside of
+     */
+    public static OptimizationRemark missed(String pass, Method method, Instruction inst, int loopDepth,
+                                            String reason) {
+        return at(pass, Kind.MISSED, method, inst, getHotness(loopDepth), reason);
+    }
+
+    /**
+     * Remark of an optimization of the AST, at the position of the node it changed.
+     */
+    public static OptimizationRemark applied(String pass, String method, int line, int column, String message) {
+        return new OptimizationRemark(pass, Kind.APPLIED, method, line, column, 1, message);
+    }
+
+    private static OptimizationRemark at(String pass, Kind kind, Method method, Instruction inst, long hotness,
+                                         String message) {
+        var position = inst == null ? null : SourcePositions.get(inst);
+        int line = position == null ? -1 : position.line();
+        int column = position == null ? -1 : position.column();
+        return new OptimizationRemark(pass, kind, method.getMethodName(), line, column, hotness, message);
+    }
+
+    public static long getHotness(int loopDepth) {
+        long hotness = 1;
+        for (int i = 0; i < Math.min(loopDepth, MAX_LOOP_DEPTH); i++) {
+            hotness *= LOOP_WEIGHT;
+        }
+        return hotness;
+    }
+
+    /**
+     * @return a copy of this remark at the given position of the source code
+     */
+    public OptimizationRemark at(int line, int column) {
+        return new OptimizationRemark(pass, kind, method, line, column, hotness, getMessage());
+    }
+
+    public String getPass() {
+        return pass;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the name of the method, or null if the remark is about the whole class
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    public long getHotness() {
+        return hotness;
+    }
+
+    /**
+     * @return the remark as a JSON object in a single line
+     */
+    public String toJsonLine() {
+        var fields = new LinkedHashMap<String, Object>();
+        fields.put("pass", pass);
+        fields.put("kind", kind.name().toLowerCase());
+        fields.put("method", method);
+        fields.put("line", getLine());
+        fields.put("column", getColumn());
+        fields.put("hotness", hotness);
+        fields.put("message", getMessage());
+        return new GsonBuilder().disableHtmlEscaping().create().toJson(fields);
+    }
+}
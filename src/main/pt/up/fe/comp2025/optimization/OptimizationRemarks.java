@@ -0,0 +1,89 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static pt.up.fe.comp2025.ast.Kind.METHOD_DECL;
+
+/**
+ * Output of the optimization remarks among the reports of a stage: a JSON-lines file with one remark in each line,
+ * and a summary of the missed optimizations that run the most.
+ */
+public class OptimizationRemarks {
+
+    private static final int SUMMARY_SIZE = 10;
+
+    /**
+     * Places the remarks of the OLLIR optimizations that have no position, because they are about a whole method or
+     * their instruction was not generated from the source code, at the declaration of their method.
+     */
+    public static void locate(List<Report> reports, JmmNode root) {
+        Map<String, JmmNode> methods = new HashMap<>();
+        for (var method : root.getDescendants(METHOD_DECL)) {
+            methods.putIfAbsent(method.get("name"), method);
+        }
+
+        for (int i = 0; i < reports.size(); i++) {
+            if (reports.get(i) instanceof OptimizationRemark remark && remark.getLine() < 0
+                    && methods.containsKey(remark.getMethod())) {
+                var method = methods.get(remark.getMethod());
+                reports.set(i, remark.at(method.getLine(), method.getColumn()));
+            }
+        }
+    }
+
+    /**
+     * Writes the remarks among the reports to the file, one JSON object in each line.
+     */
+    public static void write(List<Report> reports, File file) {
+        var code = new StringBuilder();
+        for (var remark : getRemarks(reports)) {
+            code.append(remark.toJsonLine()).append("\n");
+        }
+        SpecsIo.write(file, code.toString());
+    }
+
+    /**
+     * @return the missed optimizations with the highest total hotness, equal remarks counted together
+     */
+    public static String summarize(List<Report> reports) {
+        Map<String, List<OptimizationRemark>> missed = getRemarks(reports).stream()
+                .filter(remark -> remark.getKind() == OptimizationRemark.Kind.MISSED)
+                .collect(Collectors.groupingBy(remark -> remark.getPass() + ": " + remark.getMessage(),
+                        LinkedHashMap::new, Collectors.toList()));
+
+        var summary = new StringBuilder("Missed optimizations (" + missed.values().stream().mapToInt(List::size).sum()
+                + "), hottest first:\n");
+        missed.entrySet().stream()
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<String, List<OptimizationRemark>> entry) -> getHotness(entry.getValue()))
+                        .reversed())
+                .limit(SUMMARY_SIZE)
+                .forEach(entry -> {
+                    var first = entry.getValue().getFirst();
+                    summary.append(String.format("  %10d  %s (line %d", getHotness(entry.getValue()),
+                            entry.getKey(), first.getLine()));
+                    if (entry.getValue().size() > 1) {
+                        summary.append(", ").append(entry.getValue().size()).append(" times");
+                    }
+                    summary.append(")\n");
+                });
+        return summary.toString();
+    }
+
+    private static long getHotness(List<OptimizationRemark> remarks) {
+        return remarks.stream().mapToLong(OptimizationRemark::getHotness).sum();
+    }
+
+    private static List<OptimizationRemark> getRemarks(List<Report> reports) {
+        return reports.stream()
+                .filter(OptimizationRemark.class::isInstance)
+                .map(OptimizationRemark.class::cast)
+                .toList();
+    }
+}
@@ -0,0 +1,247 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.inst.*;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Execution counts of an instrumented build of a class, written by its program when {@code main} returns.
+ * <p>
+ * Each line of a profile is a counter, {@code <kind> <method> <site> <count>}. The counters are the entries of each
+ * method, the blocks that start with a label, the conditional branches and the fall-through after each of them, and
+ * the calls to methods of the class. A branch site is the label it jumps to and a call site is the method it calls,
+ * numbered as {@code <label>#<k>} and {@code <callee>#<k>} in the order of the code. The counts of the same counter
+ * are added, so a profile can collect several runs.
+ * <p>
+ * The counters are found in the optimized code of the instrumented build. A build that uses the profile must be
+ * compiled with the same options, so the labels and the sites of its code are the same.
+ */
+public class Profile {
+
+    public static final Profile EMPTY = new Profile(Collections.emptyMap());
+
+    private static final String ENTRY = "entry";
+    private static final String BLOCK = "block";
+    private static final String BRANCH = "branch";
+    private static final String FALLTHROUGH = "fallthrough";
+    private static final String CALL = "call";
+
+    /**
+     * Calls that run at least this fraction of the calls of the hottest site are hot.
+     */
+    private static final int HOT_FRACTION = 10;
+
+    private final Map<String, Long> counts;
+    private final long hotCallCount;
+
+    private Profile(Map<String, Long> counts) {
+        this.counts = counts;
+
+        long maxCallCount = counts.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(CALL + " "))
+                .mapToLong(Map.Entry::getValue)
+                .max()
+                .orElse(0);
+        this.hotCallCount = Math.max(1, maxCallCount / HOT_FRACTION);
+    }
+
+    /**
+     * @throws RuntimeException if the file cannot be read or a line of it is not a counter
+     */
+    public static Profile read(File file) {
+        Map<String, Long> counts = new HashMap<>();
+
+        var contents = SpecsIo.read(file);
+        if (contents == null) {
+            throw new RuntimeException("Could not read profile '" + file + "'");
+        }
+
+        var lines = contents.lines().toList();
+        for (int i = 0; i < lines.size(); i++) {
+            var line = lines.get(i).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            var fields = line.split("\\s+");
+            if (fields.length != 4 || !fields[3].matches("-?\\d+")) {
+                throw new RuntimeException("Invalid line " + (i + 1) + " of profile '" + file + "': " + line);
+            }
+            // The counters of the instrumented build are 32-bit and wrap around
+            counts.merge(fields[0] + " " + fields[1] + " " + fields[2], Integer.toUnsignedLong(
+                    (int) Long.parseLong(fields[3])), Long::sum);
+        }
+
+        return new Profile(counts);
+    }
+
+    public boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    /**
+     * @return the count of the counter, or -1 if the profile does not have it
+     */
+    public long getCount(String key) {
+        return counts.getOrDefault(key, -1L);
+    }
+
+    /**
+     * @return true if the call site ran often compared to the other call sites of the profile
+     */
+    public boolean isHotCall(long count) {
+        return count >= hotCallCount;
+    }
+
+    public static String getEntryKey(String method) {
+        return ENTRY + " " + method + " -";
+    }
+
+    public static String getBlockKey(String method, String label) {
+        return BLOCK + " " + method + " " + label;
+    }
+
+    public static String getBranchKey(String method, String site) {
+        return BRANCH + " " + method + " " + site;
+    }
+
+    public static String getFallthroughKey(String method, String site) {
+        return FALLTHROUGH + " " + method + " " + site;
+    }
+
+    public static String getCallKey(String method, String site) {
+        return CALL + " " + method + " " + site;
+    }
+
+    /**
+     * @return the site of each conditional branch among the instructions
+     */
+    public static Map<Instruction, String> getBranchSites(List<Instruction> instructions) {
+        Map<Instruction, String> sites = new IdentityHashMap<>();
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (var inst : instructions) {
+            if (inst instanceof CondBranchInstruction branch) {
+                int ordinal = ordinals.merge(branch.getLabel(), 1, Integer::sum) - 1;
+                sites.put(inst, branch.getLabel() + "#" + ordinal);
+            }
+        }
+        return sites;
+    }
+
+    /**
+     * @return the site of each instruction among the instructions that calls a method with invokevirtual or
+     * invokestatic, directly or to assign its result
+     */
+    public static Map<Instruction, String> getCallSites(List<Instruction> instructions) {
+        Map<Instruction, String> sites = new IdentityHashMap<>();
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (var inst : instructions) {
+            var callee = getCallee(inst);
+            if (callee != null) {
+                int ordinal = ordinals.merge(callee, 1, Integer::sum) - 1;
+                sites.put(inst, callee + "#" + ordinal);
+            }
+        }
+        return sites;
+    }
+
+    /**
+     * @return the name of the method called by the instruction, or null if it does not call one
+     */
+    public static String getCallee(Instruction inst) {
+        var call = inst instanceof AssignInstruction assign ? assign.getRhs() : inst;
+        if (!(call instanceof InvokeVirtualInstruction || call instanceof InvokeStaticInstruction)) {
+            return null;
+        }
+        return ((CallInstruction) call).getMethodName() instanceof LiteralElement literal
+                ? literal.getLiteral().replace("\"", "")
+                : null;
+    }
+
+    /**
+     * @return the counts of the blocks and edges of the graph
+     */
+    public BlockCounts getBlockCounts(ControlFlowGraph cfg) {
+        return new BlockCounts(cfg);
+    }
+
+    /**
+     * Counts of the blocks and edges of a control-flow graph, of the blocks that start with a counted label, the
+     * first block of the method and the blocks only reached by falling through a conditional branch.
+     */
+    public class BlockCounts {
+
+        private final String method;
+        private final Map<BasicBlock, Long> blockCounts;
+        private final Map<Instruction, String> branchSites;
+
+        private BlockCounts(ControlFlowGraph cfg) {
+            this.method = cfg.getMethod().getMethodName();
+            this.blockCounts = new HashMap<>();
+            this.branchSites = getBranchSites(cfg.getBlocks().stream()
+                    .flatMap(block -> block.getInstructions().stream())
+                    .toList());
+
+            for (var block : cfg.getBlocks()) {
+                for (var label : block.getLabels()) {
+                    long count = getCount(getBlockKey(method, label));
+                    if (count >= 0) {
+                        blockCounts.put(block, count);
+                        break;
+                    }
+                }
+            }
+
+            var first = cfg.getEntry().getNext();
+            if (first != null && !blockCounts.containsKey(first) && getCount(getEntryKey(method)) >= 0) {
+                blockCounts.put(first, getCount(getEntryKey(method)));
+            }
+
+            for (var block : cfg.getBlocks()) {
+                var next = block.getNext();
+                if (block.getBranch() != null && next != null && !blockCounts.containsKey(next)
+                        && next.getPredecessors().size() == 1) {
+                    long count = getCount(getFallthroughKey(method, branchSites.get(block.getBranch())));
+                    if (count >= 0) {
+                        blockCounts.put(next, count);
+                    }
+                }
+            }
+        }
+
+        public boolean isEmpty() {
+            return blockCounts.isEmpty();
+        }
+
+        /**
+         * @return how many times the block ran, or -1 if it is not known
+         */
+        public long get(BasicBlock block) {
+            return blockCounts.getOrDefault(block, -1L);
+        }
+
+        /**
+         * @return how many times the edge between two blocks was followed, or -1 if it is not known
+         */
+        public long getEdge(BasicBlock from, BasicBlock to) {
+            var branch = from.getBranch();
+            if (branch == null) {
+                return to == from.getNext() ? get(from) : -1;
+            }
+
+            var site = branchSites.get(branch);
+            long fallthrough = getCount(getFallthroughKey(method, site));
+            if (to == from.getNext()) {
+                return fallthrough;
+            }
+
+            long executed = getCount(getBranchKey(method, site));
+            return to == from.getTaken() && executed >= 0 && fallthrough >= 0 ? executed - fallthrough : -1;
+        }
+    }
+}
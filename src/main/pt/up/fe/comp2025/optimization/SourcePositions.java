@@ -0,0 +1,52 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.inst.Instruction;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Positions in the source code of the OLLIR instructions generated from it.
+ * <p>
+ * The instructions of the OLLIR library have no position, so the positions are kept aside, by instruction object,
+ * and dropped with the instructions that are no longer used. The generator places each instruction at the node it
+ * was generated from. The optimizations rewrite instructions into new ones through
+ * {@link pt.up.fe.comp2025.optimization.cfg.InstructionUtils}, which gives each new instruction the position of the
+ * one it replaces. The instructions parsed from OLLIR code have no position.
+ */
+public class SourcePositions {
+
+    public record Position(int line, int column) {
+    }
+
+    // Instructions do not override equals, so they are kept by identity
+    private static final Map<Instruction, Position> POSITIONS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private SourcePositions() {
+    }
+
+    public static void set(Instruction inst, int line, int column) {
+        POSITIONS.put(inst, new Position(line, column));
+    }
+
+    /**
+     * Gives an instruction that replaces another the position of the replaced one, unless it already has one.
+     */
+    public static void copy(Instruction from, Instruction to) {
+        if (from == to) {
+            return;
+        }
+        var position = get(from);
+        if (position != null) {
+            POSITIONS.putIfAbsent(to, position);
+        }
+    }
+
+    /**
+     * @return the position of the instruction, or null if it is not known
+     */
+    public static Position get(Instruction inst) {
+        return POSITIONS.get(inst);
+    }
+}
@@ -0,0 +1,126 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A basic block of an OLLIR method.
+ * <p>
+ * Unconditional jumps are not stored as instructions: a block continues in {@link #getNext()} (either by falling
+ * through or through a goto, which is re-created when the graph is committed back to the method). A block that ends
+ * with a conditional branch also has a {@link #getTaken()} successor.
+ */
+public class BasicBlock {
+
+    private final int id;
+    private final List<String> labels;
+    private final List<Instruction> instructions;
+    private final List<BasicBlock> predecessors;
+
+    private BasicBlock next;
+    private BasicBlock taken;
+
+    BasicBlock(int id) {
+        this.id = id;
+        this.labels = new ArrayList<>();
+        this.instructions = new ArrayList<>();
+        this.predecessors = new ArrayList<>();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return the block executed after this one when no branch is taken, or null if the block returns
+     */
+    public BasicBlock getNext() {
+        return next;
+    }
+
+    public void setNext(BasicBlock next) {
+        this.next = next;
+    }
+
+    /**
+     * @return the target of the conditional branch that ends this block, or null if there is none
+     */
+    public BasicBlock getTaken() {
+        return taken;
+    }
+
+    public void setTaken(BasicBlock taken) {
+        this.taken = taken;
+    }
+
+    /**
+     * @return the distinct successors of this block, the branch target first
+     */
+    public List<BasicBlock> getSuccessors() {
+        var successors = new ArrayList<BasicBlock>(2);
+        if (taken != null) {
+            successors.add(taken);
+        }
+        if (next != null && next != taken) {
+            successors.add(next);
+        }
+        return successors;
+    }
+
+    /**
+     * Predecessors are kept up-to-date by {@link ControlFlowGraph#updateEdges()}.
+     */
+    public List<BasicBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    public CondBranchInstruction getBranch() {
+        if (!instructions.isEmpty() && instructions.getLast() instanceof CondBranchInstruction branch) {
+            return branch;
+        }
+        return null;
+    }
+
+    public boolean endsWithReturn() {
+        return !instructions.isEmpty() && instructions.getLast() instanceof ReturnInstruction;
+    }
+
+    /**
+     * Index where new instructions can be appended without passing the block terminator.
+     */
+    public int getInsertionPoint() {
+        if (getBranch() != null || endsWithReturn()) {
+            return instructions.size() - 1;
+        }
+        return instructions.size();
+    }
+
+    /**
+     * Replaces one successor edge of this block by another one.
+     */
+    public void replaceSuccessor(BasicBlock oldSucc, BasicBlock newSucc) {
+        if (taken == oldSucc) {
+            taken = newSucc;
+        }
+        if (next == oldSucc) {
+            next = newSucc;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "B" + id + (labels.isEmpty() ? "" : labels);
+    }
+}
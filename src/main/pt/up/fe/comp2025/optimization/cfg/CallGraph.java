@@ -0,0 +1,208 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.CallInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.InvokeSpecialInstruction;
+import org.specs.comp.ollir.inst.InvokeStaticInstruction;
+import org.specs.comp.ollir.inst.InvokeVirtualInstruction;
+import org.specs.comp.ollir.type.ClassType;
+
+import java.util.*;
+
+/**
+ * Call graph of the methods of a class, built from the calls in their OLLIR code.
+ * <p>
+ * The edges are conservative: a virtual call goes to every method of the class with its name, whatever the type of
+ * the object it is called on, since a subclass or an object of another class could dispatch it back to this class.
+ * Constructors are reached by the {@code invokespecial} of {@code new}. The calls that cannot go to a method of the
+ * class, to imported or inherited methods, are only recorded as unknown calls of their method.
+ */
+public class CallGraph {
+
+    /**
+     * Call of a method of the class.
+     *
+     * @param caller      the method the call is in
+     * @param instruction the instruction of the call, the call itself or the assignment of its result
+     * @param call        the call
+     */
+    public record CallSite(Method caller, Instruction instruction, CallInstruction call) {
+    }
+
+    private final ClassUnit classUnit;
+    private final Map<Method, Set<Method>> callees;
+    private final Map<Method, List<CallSite>> callSites;
+    private final Set<Method> unknownCalls;
+
+    private CallGraph(ClassUnit classUnit) {
+        this.classUnit = classUnit;
+        this.callees = new IdentityHashMap<>();
+        this.callSites = new IdentityHashMap<>();
+        this.unknownCalls = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    public static CallGraph build(ClassUnit classUnit) {
+        var graph = new CallGraph(classUnit);
+        for (var method : classUnit.getMethods()) {
+            graph.callees.put(method, new LinkedHashSet<>());
+            graph.callSites.put(method, new ArrayList<>());
+        }
+        for (var method : classUnit.getMethods()) {
+            graph.addCalls(method);
+        }
+        return graph;
+    }
+
+    private void addCalls(Method method) {
+        for (var inst : method.getInstructions()) {
+            var call = getCall(inst);
+            if (call == null) {
+                continue;
+            }
+
+            var targets = getTargets(call);
+            if (targets == null) {
+                continue;
+            }
+            if (targets.isEmpty()) {
+                unknownCalls.add(method);
+            }
+            for (var target : targets) {
+                callees.get(method).add(target);
+                callSites.get(target).add(new CallSite(method, inst, call));
+            }
+        }
+    }
+
+    /**
+     * @return the methods of the class the call can run, or null if it is not a call of a method, as {@code new} and
+     * {@code arraylength}
+     */
+    private List<Method> getTargets(CallInstruction call) {
+        var targets = new ArrayList<Method>();
+        if (!(call instanceof InvokeSpecialInstruction || call instanceof InvokeStaticInstruction
+                || call instanceof InvokeVirtualInstruction)) {
+            return null;
+        }
+        if (call instanceof InvokeSpecialInstruction) {
+            if (call.getCaller() instanceof Operand caller && caller.getType() instanceof ClassType type
+                    && type.getName().equals(classUnit.getClassName())) {
+                classUnit.getMethods().stream().filter(Method::isConstructMethod).forEach(targets::add);
+            }
+            return targets;
+        }
+
+        boolean isStatic = call instanceof InvokeStaticInstruction;
+        if (isStatic && !(call.getCaller() instanceof Operand caller
+                && caller.getName().equals(classUnit.getClassName()))) {
+            return targets;
+        }
+
+        var name = getMethodName(call);
+        for (var method : classUnit.getMethods()) {
+            if (!method.isConstructMethod() && method.getMethodName().equals(name)
+                    && method.isStaticMethod() == isStatic) {
+                targets.add(method);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * @return the methods of the class the given method can call
+     */
+    public Set<Method> getCallees(Method method) {
+        return callees.getOrDefault(method, Collections.emptySet());
+    }
+
+    /**
+     * @return the calls in the class that can run the given method
+     */
+    public List<CallSite> getCallSites(Method method) {
+        return callSites.getOrDefault(method, Collections.emptyList());
+    }
+
+    /**
+     * @return true if the method calls methods that are not of the class
+     */
+    public boolean hasUnknownCalls(Method method) {
+        return unknownCalls.contains(method);
+    }
+
+    /**
+     * @return the methods reached from the given ones by following the calls, including them
+     */
+    public Set<Method> getReachable(Collection<Method> roots) {
+        Set<Method> reached = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Method> worklist = new ArrayDeque<>(roots);
+        while (!worklist.isEmpty()) {
+            var method = worklist.pop();
+            if (reached.add(method)) {
+                worklist.addAll(getCallees(method));
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * @return the method of the class with the name and number of arguments of a static call to the class or a
+     * virtual call on an object of the class, or null if there is none or more than one. A virtual call may still
+     * run a method of a subclass.
+     */
+    public static Method resolve(ClassUnit classUnit, CallInstruction call) {
+        boolean isStatic;
+        if (call instanceof InvokeStaticInstruction) {
+            if (!(call.getCaller() instanceof Operand caller)
+                    || !caller.getName().equals(classUnit.getClassName())) {
+                return null;
+            }
+            isStatic = true;
+        } else if (call instanceof InvokeVirtualInstruction) {
+            if (!(call.getCaller() instanceof Operand caller) || !(caller.getType() instanceof ClassType type)
+                    || !type.getName().equals(classUnit.getClassName())) {
+                return null;
+            }
+            isStatic = false;
+        } else {
+            return null;
+        }
+
+        Method callee = null;
+        for (var candidate : classUnit.getMethods()) {
+            if (!candidate.isConstructMethod() && candidate.getMethodName().equals(getMethodName(call))
+                    && candidate.getParams().size() == call.getArguments().size()) {
+                if (callee != null) {
+                    // Overloaded, the types of the arguments would be needed
+                    return null;
+                }
+                callee = candidate;
+            }
+        }
+        if (callee == null || callee.isStaticMethod() != isStatic) {
+            return null;
+        }
+        return callee;
+    }
+
+    /**
+     * @return the call made by the instruction, directly or in the value it assigns, or null if it makes none
+     */
+    public static CallInstruction getCall(Instruction inst) {
+        if (inst instanceof CallInstruction call) {
+            return call;
+        }
+        if (inst instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction call) {
+            return call;
+        }
+        return null;
+    }
+
+    public static String getMethodName(CallInstruction call) {
+        return call.getMethodName() instanceof LiteralElement literal ? literal.getLiteral().replace("\"", "") : "";
+    }
+}
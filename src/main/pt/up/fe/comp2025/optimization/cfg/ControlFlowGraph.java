@@ -0,0 +1,396 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import org.specs.comp.ollir.inst.GotoInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+
+import java.util.*;
+
+/**
+ * Basic-block control-flow graph of an OLLIR method.
+ * <p>
+ * The graph is built from the instruction list and labels of a {@link Method} and can be freely modified by the
+ * optimization passes. The changes are written back to the method with {@link #commit()}, which lays out the blocks
+ * in their current order, re-creates the gotos that are needed and rebuilds the variable table.
+ * <p>
+ * The entry block is always an empty block without predecessors, so it can be used as the root of the dominator tree.
+ */
+public class ControlFlowGraph {
+
+    private final Method method;
+    private final List<BasicBlock> blocks;
+    private final Set<String> usedLabels;
+
+    private BasicBlock entry;
+    private int nextBlockId;
+    private int nextLabelId;
+
+    private ControlFlowGraph(Method method) {
+        this.method = method;
+        this.blocks = new ArrayList<>();
+        this.usedLabels = new HashSet<>(method.getLabels().keySet());
+        this.nextBlockId = 0;
+        this.nextLabelId = 0;
+    }
+
+    public static ControlFlowGraph build(Method method) {
+        var cfg = new ControlFlowGraph(method);
+        cfg.buildBlocks();
+        return cfg;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public BasicBlock getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return the blocks in layout order, the entry block first
+     */
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    private void buildBlocks() {
+        var instructions = method.getInstructions();
+
+        // Labels of each instruction, sorted to keep the output deterministic
+        Map<Instruction, List<String>> labelsOf = new IdentityHashMap<>();
+        for (var entry : method.getLabels().entrySet()) {
+            labelsOf.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+        }
+        labelsOf.values().forEach(Collections::sort);
+
+        entry = newBlock();
+        blocks.add(entry);
+
+        Map<String, BasicBlock> blockOfLabel = new HashMap<>();
+        Map<BasicBlock, String> pendingGoto = new HashMap<>();
+        BasicBlock current = null;
+
+        for (var inst : instructions) {
+            var labels = labelsOf.getOrDefault(inst, Collections.emptyList());
+
+            if (current == null || !labels.isEmpty()) {
+                current = newBlock();
+                blocks.add(current);
+            }
+            for (var label : labels) {
+                current.getLabels().add(label);
+                blockOfLabel.put(label, current);
+            }
+
+            if (inst instanceof GotoInstruction gotoInst) {
+                pendingGoto.put(current, gotoInst.getLabel());
+                current = null;
+                continue;
+            }
+
+            current.getInstructions().add(inst);
+
+            if (inst instanceof CondBranchInstruction || inst instanceof ReturnInstruction) {
+                current = null;
+            }
+        }
+
+        // Connect the blocks
+        for (int i = 0; i < blocks.size(); i++) {
+            var block = blocks.get(i);
+            var following = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+
+            if (pendingGoto.containsKey(block)) {
+                block.setNext(getTarget(blockOfLabel, pendingGoto.get(block)));
+                continue;
+            }
+
+            if (block.endsWithReturn()) {
+                continue;
+            }
+
+            var branch = block.getBranch();
+            if (branch != null) {
+                block.setTaken(getTarget(blockOfLabel, branch.getLabel()));
+            }
+            block.setNext(following);
+        }
+
+        updateEdges();
+    }
+
+    private BasicBlock getTarget(Map<String, BasicBlock> blockOfLabel, String label) {
+        var target = blockOfLabel.get(label);
+        if (target == null) {
+            throw new RuntimeException("Label '" + label + "' is not defined in method " + method.getMethodName());
+        }
+        return target;
+    }
+
+    /**
+     * Conditional branches whose target is also their fall-through are dropped, their conditions have no side
+     * effects.
+     */
+    private void removeTrivialBranches() {
+        for (var block : blocks) {
+            if (block.getBranch() != null && block.getTaken() == block.getNext()) {
+                block.getInstructions().removeLast();
+                block.setTaken(null);
+            }
+        }
+    }
+
+    /**
+     * Creates a new block, not yet placed in the layout.
+     */
+    public BasicBlock newBlock() {
+        return new BasicBlock(nextBlockId++);
+    }
+
+    /**
+     * Places the given block right after another block of the layout.
+     */
+    public void insertAfter(BasicBlock position, BasicBlock block) {
+        blocks.add(blocks.indexOf(position) + 1, block);
+    }
+
+    /**
+     * Recomputes the predecessors of every block from the successor edges.
+     */
+    public void updateEdges() {
+        removeTrivialBranches();
+
+        for (var block : blocks) {
+            block.getPredecessors().clear();
+        }
+        for (var block : blocks) {
+            for (var succ : block.getSuccessors()) {
+                succ.getPredecessors().add(block);
+            }
+        }
+    }
+
+    /**
+     * Inserts an empty block in the edge between two blocks.
+     * <p>
+     * The new block is laid out after the source when the edge is a fall-through, so no goto is needed.
+     *
+     * @return the new block
+     */
+    public BasicBlock splitEdge(BasicBlock from, BasicBlock to) {
+        var middle = newBlock();
+        middle.setNext(to);
+
+        if (from.getTaken() == to) {
+            from.setTaken(middle);
+            blocks.add(middle);
+        } else {
+            from.setNext(middle);
+            insertAfter(from, middle);
+        }
+
+        updateEdges();
+        return middle;
+    }
+
+    /**
+     * Makes sure the loop is entered from a single block that always continues to the header, creating an empty one
+     * laid out before the header when needed. Must be done before the graph is converted to SSA form.
+     *
+     * @return the preheader of the loop
+     */
+    public BasicBlock insertPreheader(Loop loop) {
+        var existing = loop.getPreheader(this);
+        if (existing != null) {
+            return existing;
+        }
+
+        var header = loop.getHeader();
+        var preheader = newBlock();
+        preheader.setNext(header);
+        for (var pred : new ArrayList<>(header.getPredecessors())) {
+            if (!loop.contains(pred)) {
+                pred.replaceSuccessor(header, preheader);
+            }
+        }
+        blocks.add(blocks.indexOf(header), preheader);
+
+        updateEdges();
+        return preheader;
+    }
+
+    /**
+     * @return the blocks reachable from the entry, in reverse post-order
+     */
+    public List<BasicBlock> getReversePostOrder() {
+        var visited = new HashSet<BasicBlock>();
+        var postOrder = new ArrayList<BasicBlock>();
+
+        // Iterative DFS, so deep graphs do not overflow the stack
+        Deque<Iterator<BasicBlock>> stack = new ArrayDeque<>();
+        Deque<BasicBlock> path = new ArrayDeque<>();
+        visited.add(entry);
+        stack.push(entry.getSuccessors().iterator());
+        path.push(entry);
+
+        while (!stack.isEmpty()) {
+            var it = stack.peek();
+            if (it.hasNext()) {
+                var succ = it.next();
+                if (visited.add(succ)) {
+                    stack.push(succ.getSuccessors().iterator());
+                    path.push(succ);
+                }
+            } else {
+                stack.pop();
+                postOrder.add(path.pop());
+            }
+        }
+
+        Collections.reverse(postOrder);
+        return postOrder;
+    }
+
+    /**
+     * Removes the blocks that cannot be reached from the entry.
+     *
+     * @return the number of instructions removed
+     */
+    public int removeUnreachable() {
+        var reachable = new HashSet<>(getReversePostOrder());
+        int removed = 0;
+
+        var it = blocks.iterator();
+        while (it.hasNext()) {
+            var block = it.next();
+            if (!reachable.contains(block)) {
+                removed += block.getInstructions().size();
+                it.remove();
+            }
+        }
+
+        updateEdges();
+        return removed;
+    }
+
+    /**
+     * @return a label that does not exist in the method yet
+     */
+    public String newLabel(String prefix) {
+        String label;
+        do {
+            label = prefix + nextLabelId++;
+        } while (usedLabels.contains(label));
+
+        usedLabels.add(label);
+        return label;
+    }
+
+    private String getLabel(BasicBlock block) {
+        if (block.getLabels().isEmpty()) {
+            block.getLabels().add(newLabel("bb"));
+        }
+        return block.getLabels().getFirst();
+    }
+
+    /**
+     * @return the number of instructions of the method, counting the gotos that the layout needs
+     */
+    public int getInstructionCount() {
+        int count = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            var block = blocks.get(i);
+            count += block.getInstructions().size();
+            if (needsGoto(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean needsGoto(int index) {
+        var next = blocks.get(index).getNext();
+        return next != null && (index + 1 >= blocks.size() || blocks.get(index + 1) != next);
+    }
+
+    /**
+     * Writes the graph back to the method: instruction list, labels and variable table.
+     * <p>
+     * Only the labels that are the target of a jump are kept. The CFG nodes built by {@link Method#buildCFG()} are
+     * cleared, so the method must be rebuilt with it before being used by code that depends on them.
+     */
+    public void commit() {
+        // Decide which blocks are jumped to
+        var jumpTargets = new HashSet<BasicBlock>();
+        for (int i = 0; i < blocks.size(); i++) {
+            var block = blocks.get(i);
+            if (block.getTaken() != null) {
+                jumpTargets.add(block.getTaken());
+            }
+            if (needsGoto(i)) {
+                jumpTargets.add(block.getNext());
+            }
+        }
+
+        var instructions = method.getInstructions();
+        var labels = method.getLabels();
+        instructions.clear();
+        labels.clear();
+
+        var pendingLabels = new ArrayList<String>();
+
+        for (int i = 0; i < blocks.size(); i++) {
+            var block = blocks.get(i);
+
+            if (jumpTargets.contains(block)) {
+                pendingLabels.add(getLabel(block));
+            }
+
+            var emitted = new ArrayList<>(block.getInstructions());
+            var branch = block.getBranch();
+            if (branch != null) {
+                branch.setLabel(getLabel(block.getTaken()));
+            }
+            if (needsGoto(i)) {
+                emitted.add(new GotoInstruction(getLabel(block.getNext())));
+            } else if (block.getNext() == null && !block.endsWithReturn() && i + 1 < blocks.size()) {
+                // Falls off the end of the method, which is no longer the end of the layout
+                emitted.add(newVoidReturn());
+            }
+
+            for (var inst : emitted) {
+                for (var label : pendingLabels) {
+                    labels.put(label, inst);
+                }
+                pendingLabels.clear();
+                instructions.add(inst);
+            }
+        }
+
+        // A jump to the end of a method that does not return a value
+        if (!pendingLabels.isEmpty()) {
+            var ret = newVoidReturn();
+            for (var label : pendingLabels) {
+                labels.put(label, ret);
+            }
+            instructions.add(ret);
+        }
+
+        for (var inst : instructions) {
+            inst.getSuccessors().clear();
+            inst.getPredecessors().clear();
+        }
+
+        method.getVarTable().clear();
+        method.buildVarTable();
+    }
+
+    private ReturnInstruction newVoidReturn() {
+        var ret = new ReturnInstruction();
+        ret.setReturnType(method.getReturnType());
+        return ret;
+    }
+}
@@ -0,0 +1,171 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+import java.util.*;
+
+/**
+ * Dominator tree and dominance frontiers of a control-flow graph.
+ * <p>
+ * Uses the iterative algorithm by Cooper, Harvey and Kennedy ("A Simple, Fast Dominance Algorithm"). Only the blocks
+ * reachable from the entry are part of the tree.
+ */
+public class DominatorTree {
+
+    private final ControlFlowGraph cfg;
+    private final List<BasicBlock> reversePostOrder;
+    private final Map<BasicBlock, Integer> order;
+    private final Map<BasicBlock, BasicBlock> idom;
+    private final Map<BasicBlock, List<BasicBlock>> children;
+    private Map<BasicBlock, Set<BasicBlock>> frontiers;
+
+    public DominatorTree(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        this.reversePostOrder = cfg.getReversePostOrder();
+        this.order = new HashMap<>();
+        this.idom = new HashMap<>();
+        this.children = new HashMap<>();
+
+        for (int i = 0; i < reversePostOrder.size(); i++) {
+            order.put(reversePostOrder.get(i), i);
+        }
+
+        computeDominators();
+    }
+
+    private void computeDominators() {
+        var entry = cfg.getEntry();
+        idom.put(entry, entry);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var block : reversePostOrder) {
+                if (block == entry) {
+                    continue;
+                }
+
+                BasicBlock newIdom = null;
+                for (var pred : block.getPredecessors()) {
+                    if (!idom.containsKey(pred)) {
+                        continue;
+                    }
+                    newIdom = newIdom == null ? pred : intersect(pred, newIdom);
+                }
+
+                if (newIdom != null && idom.get(block) != newIdom) {
+                    idom.put(block, newIdom);
+                    changed = true;
+                }
+            }
+        }
+
+        for (var block : reversePostOrder) {
+            children.put(block, new ArrayList<>());
+        }
+        for (var block : reversePostOrder) {
+            if (block != entry) {
+                children.get(idom.get(block)).add(block);
+            }
+        }
+    }
+
+    private BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        while (a != b) {
+            while (order.get(a) > order.get(b)) {
+                a = idom.get(a);
+            }
+            while (order.get(b) > order.get(a)) {
+                b = idom.get(b);
+            }
+        }
+        return a;
+    }
+
+    /**
+     * @return the reachable blocks in reverse post-order
+     */
+    public List<BasicBlock> getReversePostOrder() {
+        return reversePostOrder;
+    }
+
+    public boolean isReachable(BasicBlock block) {
+        return order.containsKey(block);
+    }
+
+    /**
+     * @return the immediate dominator of the block, or null for the entry
+     */
+    public BasicBlock getIdom(BasicBlock block) {
+        var dom = idom.get(block);
+        return dom == block ? null : dom;
+    }
+
+    public List<BasicBlock> getChildren(BasicBlock block) {
+        return children.getOrDefault(block, Collections.emptyList());
+    }
+
+    /**
+     * @return true if every path from the entry to b goes through a
+     */
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        if (!isReachable(a) || !isReachable(b)) {
+            return false;
+        }
+        var current = b;
+        while (current != null) {
+            if (current == a) {
+                return true;
+            }
+            current = getIdom(current);
+        }
+        return false;
+    }
+
+    /**
+     * @return the blocks in pre-order of the dominator tree
+     */
+    public List<BasicBlock> getPreOrder() {
+        var result = new ArrayList<BasicBlock>();
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        stack.push(cfg.getEntry());
+        while (!stack.isEmpty()) {
+            var block = stack.pop();
+            result.add(block);
+            var kids = getChildren(block);
+            for (int i = kids.size() - 1; i >= 0; i--) {
+                stack.push(kids.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Dominance frontier of a block: the blocks where its dominance ends.
+     */
+    public Set<BasicBlock> getFrontier(BasicBlock block) {
+        if (frontiers == null) {
+            computeFrontiers();
+        }
+        return frontiers.getOrDefault(block, Collections.emptySet());
+    }
+
+    private void computeFrontiers() {
+        frontiers = new HashMap<>();
+        for (var block : reversePostOrder) {
+            frontiers.put(block, new LinkedHashSet<>());
+        }
+
+        for (var block : reversePostOrder) {
+            var preds = block.getPredecessors().stream().filter(this::isReachable).toList();
+            if (preds.size() < 2) {
+                continue;
+            }
+            for (var pred : preds) {
+                var runner = pred;
+                while (runner != idom.get(block)) {
+                    frontiers.get(runner).add(block);
+                    runner = idom.get(runner);
+                }
+            }
+        }
+    }
+}
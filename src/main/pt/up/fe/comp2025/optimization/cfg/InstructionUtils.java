@@ -0,0 +1,367 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import org.specs.comp.ollir.type.ClassKind;
+import org.specs.comp.ollir.type.ClassType;
+import pt.up.fe.comp2025.optimization.SourcePositions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Helpers to inspect and rewrite the variables used and defined by OLLIR instructions.
+ * <p>
+ * Rewriting never changes the given instruction, a new instruction is built when some operand changes. The new
+ * instruction keeps the position of the given one in the source code.
+ */
+public class InstructionUtils {
+
+    private InstructionUtils() {
+    }
+
+    /**
+     * @return true if the element is a local variable or parameter (not a literal, 'this', a field or a class name)
+     */
+    public static boolean isVariable(Element element) {
+        if (!(element instanceof Operand operand) || element.isLiteral()) {
+            return false;
+        }
+        if (operand.getName().equals("this")) {
+            return false;
+        }
+        return !(operand.getType() instanceof ClassType classType)
+                || classType.getKind() == ClassKind.OBJECTREF;
+    }
+
+    /**
+     * @return the variable written by the instruction, or null if it does not write one
+     */
+    public static Operand getDef(Instruction inst) {
+        if (inst instanceof AssignInstruction assign
+                && assign.getDest() instanceof Operand dest
+                && !(dest instanceof ArrayOperand)) {
+            return dest;
+        }
+        return null;
+    }
+
+    public static String getDefName(Instruction inst) {
+        var def = getDef(inst);
+        return def == null ? null : def.getName();
+    }
+
+    /**
+     * @return the names of the variables read by the instruction
+     */
+    public static Set<String> getUses(Instruction inst) {
+        var uses = new LinkedHashSet<String>();
+        mapUses(inst, operand -> {
+            uses.add(operand.getName());
+            return operand;
+        });
+        return uses;
+    }
+
+    /**
+     * @return the elements read by the instruction that can be replaced by other values (variables and literals)
+     */
+    public static List<Element> getOperands(Instruction inst) {
+        var operands = new ArrayList<Element>();
+        mapElements(inst, element -> {
+            if (element.isLiteral() || isVariable(element)) {
+                operands.add(element);
+            }
+            return element;
+        });
+        return operands;
+    }
+
+    /**
+     * Rewrites the variables read by an instruction. The mapper may return a literal, except for array references.
+     */
+    public static Instruction mapUses(Instruction inst, Function<Operand, Element> mapper) {
+        return mapElements(inst, element -> isVariable(element) ? mapper.apply((Operand) element) : element);
+    }
+
+    /**
+     * Rewrites the variable written by an instruction.
+     */
+    public static Instruction mapDef(Instruction inst, Function<Operand, Operand> mapper) {
+        var def = getDef(inst);
+        if (def == null) {
+            return inst;
+        }
+        var newDef = mapper.apply(def);
+        if (newDef == def) {
+            return inst;
+        }
+        var assign = (AssignInstruction) inst;
+        var result = new AssignInstruction(newDef, assign.getTypeOfAssign(), assign.getRhs());
+        SourcePositions.copy(inst, result);
+        return result;
+    }
+
+    /**
+     * Rewrites every element read by the instruction (variables and literals). Array references are only renamed.
+     */
+    public static Instruction mapElements(Instruction inst, Function<Element, Element> mapper) {
+        return new ElementMapper(mapper).map(inst);
+    }
+
+    /**
+     * @return a new instruction equal to the given one, which can be placed in another method
+     */
+    public static Instruction copy(Instruction inst) {
+        var result = new ElementMapper(Function.identity()).mapInstruction(inst);
+        SourcePositions.copy(inst, result);
+        return result;
+    }
+
+    /**
+     * @return a copy of the operand with a new name
+     */
+    public static Operand rename(Operand operand, String name) {
+        Operand copy;
+        if (operand instanceof ArrayOperand arrayOperand) {
+            copy = new ArrayOperand(name, operand.getType(), arrayOperand.getIndexOperands());
+        } else {
+            copy = new Operand(name, operand.getType());
+        }
+        if (operand.isParameter()) {
+            copy.setParamId(operand.getParamId());
+        }
+        return copy;
+    }
+
+    /**
+     * @return true if the instruction can be removed when its result is not used: it has no side effects and
+     * cannot throw
+     */
+    public static boolean isPure(Instruction inst) {
+        if (inst instanceof AssignInstruction assign) {
+            return !(assign.getDest() instanceof ArrayOperand) && isPure(assign.getRhs());
+        }
+        if (inst instanceof SingleOpInstruction single) {
+            return !(single.getSingleOperand() instanceof ArrayOperand);
+        }
+        if (inst instanceof UnaryOpInstruction) {
+            return true;
+        }
+        if (inst instanceof BinaryOpInstruction binary) {
+            var opType = binary.getOperation().getOpType();
+            if (opType == OperationType.DIV || opType == OperationType.REM) {
+                // Division by zero throws
+                return binary.getRightOperand() instanceof LiteralElement literal
+                        && !literal.getLiteral().equals("0");
+            }
+            return true;
+        }
+        if (inst instanceof GetFieldInstruction getField) {
+            return getField.getObject().getName().equals("this");
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the instruction may write memory visible outside the method (fields, arrays, calls)
+     */
+    public static boolean writesMemory(Instruction inst) {
+        if (inst instanceof AssignInstruction assign) {
+            return assign.getDest() instanceof ArrayOperand || writesMemory(assign.getRhs());
+        }
+        return inst instanceof PutFieldInstruction
+                || (inst instanceof CallInstruction && !(inst instanceof ArrayLengthInstruction));
+    }
+
+    /**
+     * @return a branch that is taken exactly when the given one is not, to the same label, or null if the condition
+     * cannot be negated without computing it first
+     */
+    public static CondBranchInstruction negate(CondBranchInstruction branch) {
+        CondBranchInstruction negated = null;
+        var condition = branch.getCondition();
+
+        if (condition instanceof SingleOpInstruction single) {
+            var not = new UnaryOpInstruction(new Operation(OperationType.NOTB, new BuiltinType(BuiltinKind.BOOLEAN)),
+                    single.getSingleOperand());
+            negated = new OpCondInstruction(not);
+        } else if (condition instanceof UnaryOpInstruction unary
+                && unary.getOperation().getOpType() == OperationType.NOTB) {
+            negated = new SingleOpCondInstruction(new SingleOpInstruction(unary.getOperand()));
+        } else if (condition instanceof BinaryOpInstruction binary) {
+            var opType = negate(binary.getOperation().getOpType());
+            if (opType != null) {
+                var operation = new Operation(opType, binary.getOperation().getTypeInfo());
+                negated = new OpCondInstruction(new BinaryOpInstruction(binary.getLeftOperand(), operation,
+                        binary.getRightOperand()));
+            }
+        }
+
+        if (negated != null) {
+            negated.setLabel(branch.getLabel());
+        }
+        return negated;
+    }
+
+    /**
+     * @return the comparison that is true exactly when the given one is false, or null if it is not a comparison
+     */
+    public static OperationType negate(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTE;
+            case LTE -> OperationType.GTH;
+            case GTH -> OperationType.LTE;
+            case GTE -> OperationType.LTH;
+            case EQ -> OperationType.NEQ;
+            case NEQ -> OperationType.EQ;
+            default -> null;
+        };
+    }
+
+    private static class ElementMapper {
+
+        private final Function<Element, Element> mapper;
+        private boolean changed;
+
+        ElementMapper(Function<Element, Element> mapper) {
+            this.mapper = mapper;
+        }
+
+        Instruction map(Instruction inst) {
+            changed = false;
+            var result = mapInstruction(inst);
+            if (!changed) {
+                return inst;
+            }
+            SourcePositions.copy(inst, result);
+            return result;
+        }
+
+        private Element mapElement(Element element) {
+            if (element instanceof ArrayOperand arrayOperand) {
+                var indexes = new ArrayList<Element>();
+                for (var index : arrayOperand.getIndexOperands()) {
+                    indexes.add(mapElement(index));
+                }
+                var base = new Operand(arrayOperand.getName(), arrayOperand.getType());
+                var newBase = mapper.apply(base);
+                var name = newBase instanceof Operand operand && newBase != base ? operand.getName()
+                        : arrayOperand.getName();
+
+                if (name.equals(arrayOperand.getName()) && sameElements(indexes, arrayOperand.getIndexOperands())) {
+                    return element;
+                }
+                changed = true;
+                var copy = new ArrayOperand(name, arrayOperand.getType(), indexes);
+                if (arrayOperand.isParameter()) {
+                    copy.setParamId(arrayOperand.getParamId());
+                }
+                return copy;
+            }
+
+            var result = mapper.apply(element);
+            if (result != element) {
+                changed = true;
+            }
+            return result;
+        }
+
+        private boolean sameElements(List<Element> a, List<Element> b) {
+            if (a.size() != b.size()) {
+                return false;
+            }
+            for (int i = 0; i < a.size(); i++) {
+                if (a.get(i) != b.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Operand mapOperand(Operand operand) {
+            var result = mapElement(operand);
+            return result instanceof Operand newOperand ? newOperand : operand;
+        }
+
+        private List<Element> mapList(List<Element> elements) {
+            var result = new ArrayList<Element>();
+            for (var element : elements) {
+                result.add(mapElement(element));
+            }
+            return result;
+        }
+
+        private Instruction mapInstruction(Instruction inst) {
+            if (inst instanceof AssignInstruction assign) {
+                var dest = assign.getDest() instanceof ArrayOperand ? mapElement(assign.getDest()) : assign.getDest();
+                return new AssignInstruction(dest, assign.getTypeOfAssign(), mapInstruction(assign.getRhs()));
+            }
+            if (inst instanceof SingleOpInstruction single) {
+                return new SingleOpInstruction(mapElement(single.getSingleOperand()));
+            }
+            if (inst instanceof BinaryOpInstruction binary) {
+                return new BinaryOpInstruction(mapElement(binary.getLeftOperand()), binary.getOperation(),
+                        mapElement(binary.getRightOperand()));
+            }
+            if (inst instanceof UnaryOpInstruction unary) {
+                return new UnaryOpInstruction(unary.getOperation(), mapElement(unary.getOperand()));
+            }
+            if (inst instanceof OpCondInstruction cond) {
+                var branch = new OpCondInstruction((OpInstruction) mapInstruction(cond.getCondition()));
+                branch.setLabel(cond.getLabel());
+                return branch;
+            }
+            if (inst instanceof SingleOpCondInstruction cond) {
+                var branch = new SingleOpCondInstruction((SingleOpInstruction) mapInstruction(cond.getCondition()));
+                branch.setLabel(cond.getLabel());
+                return branch;
+            }
+            if (inst instanceof ReturnInstruction ret) {
+                var newRet = ret.getOperand().isPresent() ? new ReturnInstruction(mapElement(ret.getOperand().get()))
+                        : new ReturnInstruction();
+                newRet.setReturnType(ret.getReturnType());
+                return newRet;
+            }
+            if (inst instanceof GetFieldInstruction getField) {
+                return new GetFieldInstruction(mapOperand(getField.getObject()), getField.getField(),
+                        getField.getFieldType());
+            }
+            if (inst instanceof PutFieldInstruction putField) {
+                return new PutFieldInstruction(mapOperand(putField.getObject()), putField.getField(),
+                        mapElement(putField.getValue()), putField.getFieldType());
+            }
+            if (inst instanceof InvokeVirtualInstruction call) {
+                return new InvokeVirtualInstruction(mapElement(call.getCaller()), call.getMethodName(),
+                        mapList(call.getArguments()), call.getReturnType(), call.isIsolated());
+            }
+            if (inst instanceof InvokeStaticInstruction call) {
+                return new InvokeStaticInstruction(call.getCaller(), call.getMethodName(),
+                        mapList(call.getArguments()), call.getReturnType(), call.isIsolated());
+            }
+            if (inst instanceof InvokeSpecialInstruction call) {
+                return new InvokeSpecialInstruction(mapElement(call.getCaller()), call.getMethodName(),
+                        call.getSuperClass().orElse(null), mapList(call.getArguments()), call.getReturnType(),
+                        call.isIsolated());
+            }
+            if (inst instanceof NewInstruction call) {
+                return new NewInstruction(call.getCaller(), mapList(call.getArguments()), call.getReturnType(),
+                        call.isIsolated());
+            }
+            if (inst instanceof ArrayLengthInstruction call) {
+                return new ArrayLengthInstruction(mapElement(call.getCaller()), call.getReturnType());
+            }
+            return inst;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+import org.specs.comp.ollir.inst.Instruction;
+
+import java.util.*;
+
+/**
+ * Live-variable analysis over the basic blocks of a control-flow graph.
+ * <p>
+ * Besides the live-in and live-out sets of each block, it can compute the variables live after each instruction of
+ * a block.
+ */
+public class Liveness {
+
+    private final Map<BasicBlock, Set<String>> liveIn;
+    private final Map<BasicBlock, Set<String>> liveOut;
+
+    public Liveness(ControlFlowGraph cfg) {
+        this.liveIn = new HashMap<>();
+        this.liveOut = new HashMap<>();
+
+        var blocks = cfg.getBlocks();
+        Map<BasicBlock, Set<String>> uses = new HashMap<>();
+        Map<BasicBlock, Set<String>> defs = new HashMap<>();
+
+        for (var block : blocks) {
+            var blockUses = new HashSet<String>();
+            var blockDefs = new HashSet<String>();
+            for (var inst : block.getInstructions()) {
+                for (var use : InstructionUtils.getUses(inst)) {
+                    if (!blockDefs.contains(use)) {
+                        blockUses.add(use);
+                    }
+                }
+                var def = InstructionUtils.getDefName(inst);
+                if (def != null) {
+                    blockDefs.add(def);
+                }
+            }
+            uses.put(block, blockUses);
+            defs.put(block, blockDefs);
+            liveIn.put(block, new HashSet<>());
+            liveOut.put(block, new HashSet<>());
+        }
+
+        // Process the blocks backwards for faster convergence
+        var order = new ArrayList<>(blocks);
+        Collections.reverse(order);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var block : order) {
+                var out = new HashSet<String>();
+                for (var succ : block.getSuccessors()) {
+                    out.addAll(liveIn.get(succ));
+                }
+
+                var in = new HashSet<>(out);
+                in.removeAll(defs.get(block));
+                in.addAll(uses.get(block));
+
+                if (!in.equals(liveIn.get(block)) || !out.equals(liveOut.get(block))) {
+                    liveIn.put(block, in);
+                    liveOut.put(block, out);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    public Set<String> getLiveIn(BasicBlock block) {
+        return liveIn.getOrDefault(block, Collections.emptySet());
+    }
+
+    public Set<String> getLiveOut(BasicBlock block) {
+        return liveOut.getOrDefault(block, Collections.emptySet());
+    }
+
+    /**
+     * @return for each instruction of the block, the variables that are live right after it
+     */
+    public List<Set<String>> getLiveAfter(BasicBlock block) {
+        var instructions = block.getInstructions();
+        var result = new ArrayList<Set<String>>(Collections.nCopies(instructions.size(), null));
+
+        var live = new HashSet<>(getLiveOut(block));
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            result.set(i, new HashSet<>(live));
+            transfer(instructions.get(i), live);
+        }
+        return result;
+    }
+
+    /**
+     * Updates the live set from after to before the instruction.
+     */
+    public static void transfer(Instruction inst, Set<String> live) {
+        var def = InstructionUtils.getDefName(inst);
+        if (def != null) {
+            live.remove(def);
+        }
+        live.addAll(InstructionUtils.getUses(inst));
+    }
+}
@@ -0,0 +1,111 @@
+package pt.up.fe.comp2025.optimization.cfg;
+
+import java.util.*;
+
+/**
+ * Natural loop of a control-flow graph: a header that dominates every block of the loop, and the blocks that can
+ * reach one of its back edges without going through the header.
+ * <p>
+ * Back edges to the same header are merged in a single loop.
+ */
+public class Loop {
+
+    private final BasicBlock header;
+    private final Set<BasicBlock> blocks;
+    private final List<BasicBlock> latches;
+
+    private Loop(BasicBlock header) {
+        this.header = header;
+        this.blocks = new LinkedHashSet<>();
+        this.latches = new ArrayList<>();
+        this.blocks.add(header);
+    }
+
+    /**
+     * @return the loops of the graph, inner loops before the loops that contain them
+     */
+    public static List<Loop> find(ControlFlowGraph cfg, DominatorTree domTree) {
+        Map<BasicBlock, Loop> loops = new LinkedHashMap<>();
+
+        for (var block : domTree.getReversePostOrder()) {
+            for (var succ : block.getSuccessors()) {
+                if (domTree.dominates(succ, block)) {
+                    loops.computeIfAbsent(succ, Loop::new).addBackEdge(block);
+                }
+            }
+        }
+
+        var result = new ArrayList<>(loops.values());
+        // A loop that contains another one has more blocks
+        result.sort(Comparator.comparingInt(loop -> loop.getBlocks().size()));
+        return result;
+    }
+
+    private void addBackEdge(BasicBlock latch) {
+        latches.add(latch);
+
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        if (blocks.add(latch)) {
+            worklist.push(latch);
+        }
+        while (!worklist.isEmpty()) {
+            for (var pred : worklist.pop().getPredecessors()) {
+                if (blocks.add(pred)) {
+                    worklist.push(pred);
+                }
+            }
+        }
+    }
+
+    public BasicBlock getHeader() {
+        return header;
+    }
+
+    public Set<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return the blocks with a back edge to the header
+     */
+    public List<BasicBlock> getLatches() {
+        return latches;
+    }
+
+    public boolean contains(BasicBlock block) {
+        return blocks.contains(block);
+    }
+
+    /**
+     * @return the blocks outside the loop that are reached from inside it
+     */
+    public Set<BasicBlock> getExits() {
+        var exits = new LinkedHashSet<BasicBlock>();
+        for (var block : blocks) {
+            for (var succ : block.getSuccessors()) {
+                if (!contains(succ)) {
+                    exits.add(succ);
+                }
+            }
+        }
+        return exits;
+    }
+
+    /**
+     * @return the only block that enters the loop, if it always continues to the header and is not the entry of the
+     * graph, or null otherwise
+     */
+    public BasicBlock getPreheader(ControlFlowGraph cfg) {
+        var outside = header.getPredecessors().stream().filter(pred -> !contains(pred)).toList();
+        if (outside.size() != 1) {
+            return null;
+        }
+        var pred = outside.getFirst();
+        return pred != cfg.getEntry() && pred.getSuccessors().size() == 1 ? pred : null;
+    }
+
+    @Override
+    public String toString() {
+        return "Loop" + blocks;
+    }
+}
@@ -0,0 +1,440 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+
+import java.util.*;
+
+/**
+ * Replaces operations by simpler ones that give the same result.
+ * <p>
+ * Identities such as {@code x + 0}, {@code x * 1}, {@code x * 0}, {@code x - x} and {@code b && true} become copies
+ * or constants, and multiplications by a power of two become left shifts. A division by a power of two is only a
+ * right shift when the dividend is never negative, since the division rounds towards zero.
+ * <p>
+ * Inside each block, the negation of a variable that holds a negation or a comparison reads the original value or
+ * the opposite comparison, so {@code !!b} becomes {@code b}.
+ */
+public class AlgebraicSimplification implements OptimizationPass {
+
+    private static final List<String> RULES = List.of("add-zero", "sub-zero", "sub-self", "mul-one", "mul-zero",
+            "mul-power-of-two", "div-one", "div-power-of-two", "and-constant", "or-constant", "compare-self",
+            "double-negation", "negated-comparison");
+
+    private final Map<String, Integer> ruleHits;
+
+    public AlgebraicSimplification() {
+        this.ruleHits = new LinkedHashMap<>();
+        for (var rule : RULES) {
+            ruleHits.put(rule, 0);
+        }
+    }
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        var reports = new ArrayList<Report>();
+
+        var simplifier = new Simplifier(analyses.getCfg(method), ruleHits);
+        simplifier.run();
+
+        boolean changed = simplifier.simplified > 0;
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Algebraic simplification in method '" + method.getMethodName() + "': "
+                            + simplifier.simplified + " instructions simplified (" + simplifier.shifts
+                            + " multiplications and divisions turned into shifts)"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    @Override
+    public Map<String, Integer> getRuleHits() {
+        return ruleHits;
+    }
+
+    private static class Simplifier {
+
+        private final ControlFlowGraph cfg;
+        private final Set<String> nonNegative;
+
+        // Variables of the current block that hold a negation or a comparison, and the instruction that computed it
+        private final Map<String, Instruction> conditions;
+
+        private final Map<String, Integer> ruleHits;
+
+        private int simplified;
+        private int shifts;
+
+        Simplifier(ControlFlowGraph cfg, Map<String, Integer> ruleHits) {
+            this.cfg = cfg;
+            this.nonNegative = findNonNegative(cfg);
+            this.conditions = new HashMap<>();
+            this.ruleHits = ruleHits;
+        }
+
+        void run() {
+            for (var block : cfg.getBlocks()) {
+                conditions.clear();
+
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    var inst = simplify(instructions.get(i));
+                    if (inst != instructions.get(i)) {
+                        instructions.set(i, inst);
+                        simplified++;
+                    }
+                    record(inst);
+                }
+
+                var branch = block.getBranch();
+                if (branch != null) {
+                    var simpler = simplifyBranch(branch);
+                    if (simpler != null) {
+                        instructions.set(instructions.size() - 1, simpler);
+                        simplified++;
+                    }
+                }
+            }
+
+            if (simplified > 0) {
+                cfg.commit();
+            }
+        }
+
+        private Instruction simplify(Instruction inst) {
+            if (!(inst instanceof AssignInstruction assign)) {
+                return inst;
+            }
+
+            var rhs = assign.getRhs();
+            Instruction simpler = null;
+            if (rhs instanceof BinaryOpInstruction binary) {
+                simpler = simplifyBinary(binary);
+            } else if (rhs instanceof UnaryOpInstruction unary) {
+                simpler = simplifyNegation(unary);
+            }
+
+            if (simpler == null) {
+                return inst;
+            }
+            return new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(), simpler);
+        }
+
+        /**
+         * @return the simpler instruction, or null if there is none
+         */
+        private Instruction simplifyBinary(BinaryOpInstruction binary) {
+            var left = binary.getLeftOperand();
+            var right = binary.getRightOperand();
+            var opType = binary.getOperation().getOpType();
+            Integer leftValue = getLiteral(left);
+            Integer rightValue = getLiteral(right);
+
+            switch (opType) {
+                case ADD, OR, XOR -> {
+                    if (isValue(rightValue, 0)) {
+                        return hit("add-zero", copy(left));
+                    }
+                    if (isValue(leftValue, 0)) {
+                        return hit("add-zero", copy(right));
+                    }
+                }
+                case SUB -> {
+                    if (isValue(rightValue, 0)) {
+                        return hit("sub-zero", copy(left));
+                    }
+                    if (isSameVariable(left, right)) {
+                        return hit("sub-self", copy(intLiteral(0)));
+                    }
+                }
+                case MUL -> {
+                    if (isValue(rightValue, 1)) {
+                        return hit("mul-one", copy(left));
+                    }
+                    if (isValue(leftValue, 1)) {
+                        return hit("mul-one", copy(right));
+                    }
+                    if (isValue(rightValue, 0) || isValue(leftValue, 0)) {
+                        return hit("mul-zero", copy(intLiteral(0)));
+                    }
+                    if (isPowerOfTwo(rightValue)) {
+                        return hit("mul-power-of-two", shift(left, OperationType.SHL, rightValue));
+                    }
+                    if (isPowerOfTwo(leftValue)) {
+                        return hit("mul-power-of-two", shift(right, OperationType.SHL, leftValue));
+                    }
+                }
+                case DIV -> {
+                    if (isValue(rightValue, 1)) {
+                        return hit("div-one", copy(left));
+                    }
+                    if (isPowerOfTwo(rightValue) && isNonNegative(left)) {
+                        return hit("div-power-of-two", shift(left, OperationType.SHR, rightValue));
+                    }
+                }
+                case ANDB -> {
+                    if (isValue(rightValue, 1) || isValue(leftValue, 0)) {
+                        return hit("and-constant", copy(left));
+                    }
+                    if (isValue(leftValue, 1) || isValue(rightValue, 0)) {
+                        return hit("and-constant", copy(right));
+                    }
+                }
+                case ORB -> {
+                    if (isValue(rightValue, 0) || isValue(leftValue, 1)) {
+                        return hit("or-constant", copy(left));
+                    }
+                    if (isValue(leftValue, 0) || isValue(rightValue, 1)) {
+                        return hit("or-constant", copy(right));
+                    }
+                }
+                case EQ, LTE, GTE -> {
+                    if (isSameVariable(left, right)) {
+                        return hit("compare-self", copy(boolLiteral(true)));
+                    }
+                }
+                case NEQ, LTH, GTH -> {
+                    if (isSameVariable(left, right)) {
+                        return hit("compare-self", copy(boolLiteral(false)));
+                    }
+                }
+                default -> {
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the value of a variable that holds a negation or a comparison, negated, or null if it is not known
+         */
+        private Instruction simplifyNegation(UnaryOpInstruction unary) {
+            if (unary.getOperation().getOpType() != OperationType.NOTB
+                    || !(unary.getOperand() instanceof Operand operand)) {
+                return null;
+            }
+
+            var condition = conditions.get(operand.getName());
+            if (condition instanceof UnaryOpInstruction negation) {
+                return hit("double-negation", copy(negation.getOperand()));
+            }
+            if (condition instanceof BinaryOpInstruction comparison) {
+                var operation = new Operation(InstructionUtils.negate(comparison.getOperation().getOpType()),
+                        comparison.getOperation().getTypeInfo());
+                return hit("negated-comparison",
+                        new BinaryOpInstruction(comparison.getLeftOperand(), operation, comparison.getRightOperand()));
+            }
+            return null;
+        }
+
+        /**
+         * {@code if (!t)}, where {@code t} is a negation or a comparison, tests the original value or the opposite
+         * comparison.
+         */
+        private CondBranchInstruction simplifyBranch(CondBranchInstruction branch) {
+            if (!(branch.getCondition() instanceof UnaryOpInstruction unary)) {
+                return null;
+            }
+
+            var simpler = simplifyNegation(unary);
+            CondBranchInstruction result;
+            if (simpler instanceof SingleOpInstruction single) {
+                result = new SingleOpCondInstruction(single);
+            } else if (simpler != null) {
+                result = new OpCondInstruction((OpInstruction) simpler);
+            } else {
+                return null;
+            }
+            result.setLabel(branch.getLabel());
+            return result;
+        }
+
+        /**
+         * Updates the conditions known to be held by variables after the given instruction.
+         */
+        private void record(Instruction inst) {
+            var def = InstructionUtils.getDefName(inst);
+            if (def == null) {
+                return;
+            }
+
+            conditions.remove(def);
+            conditions.values().removeIf(condition -> InstructionUtils.getUses(condition).contains(def));
+
+            var rhs = ((AssignInstruction) inst).getRhs();
+            boolean isCondition = (rhs instanceof UnaryOpInstruction unary
+                    && unary.getOperation().getOpType() == OperationType.NOTB)
+                    || (rhs instanceof BinaryOpInstruction binary
+                    && InstructionUtils.negate(binary.getOperation().getOpType()) != null);
+
+            // Array elements may be written without a definition of a variable
+            boolean scalarOperands = getOperands(rhs).stream().allMatch(operand -> operand.isLiteral()
+                    || (InstructionUtils.isVariable(operand) && !(operand instanceof ArrayOperand)));
+            if (isCondition && scalarOperands && !InstructionUtils.getUses(rhs).contains(def)) {
+                conditions.put(def, rhs);
+            }
+        }
+
+        /**
+         * Counts a hit of the rule that gave the simpler instruction, which is always used.
+         */
+        private Instruction hit(String rule, Instruction simpler) {
+            ruleHits.merge(rule, 1, Integer::sum);
+            return simpler;
+        }
+
+        private boolean isNonNegative(Element element) {
+            return AlgebraicSimplification.isNonNegative(element, nonNegative);
+        }
+
+        private Instruction shift(Element operand, OperationType opType, int powerOfTwo) {
+            shifts++;
+            var operation = new Operation(opType, new BuiltinType(BuiltinKind.INT32));
+            return new BinaryOpInstruction(operand, operation, intLiteral(Integer.numberOfTrailingZeros(powerOfTwo)));
+        }
+    }
+
+    /**
+     * Finds the variables that are never negative: every value assigned to them is a non-negative constant, an
+     * array length, or an operation that cannot give a negative result from non-negative operands without
+     * overflowing. Parameters can hold any value.
+     * <p>
+     * Starts by assuming every variable is non-negative and removes the ones with a definition that may not be, until
+     * nothing changes.
+     */
+    private static Set<String> findNonNegative(ControlFlowGraph cfg) {
+        Map<String, List<Instruction>> definitions = new HashMap<>();
+        var excluded = new HashSet<String>();
+
+        for (var block : cfg.getBlocks()) {
+            for (var inst : block.getInstructions()) {
+                var def = InstructionUtils.getDef(inst);
+                if (def == null) {
+                    continue;
+                }
+                definitions.computeIfAbsent(def.getName(), name -> new ArrayList<>())
+                        .add(((AssignInstruction) inst).getRhs());
+                if (def.isParameter()) {
+                    excluded.add(def.getName());
+                }
+            }
+        }
+        for (var param : cfg.getMethod().getParams()) {
+            if (param instanceof Operand operand) {
+                excluded.add(operand.getName());
+            }
+        }
+
+        var result = new HashSet<>(definitions.keySet());
+        result.removeAll(excluded);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var it = result.iterator(); it.hasNext(); ) {
+                var variable = it.next();
+                if (!definitions.get(variable).stream().allMatch(rhs -> isNonNegative(rhs, result))) {
+                    it.remove();
+                    changed = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isNonNegative(Instruction rhs, Set<String> nonNegative) {
+        if (rhs instanceof ArrayLengthInstruction) {
+            return true;
+        }
+        if (rhs instanceof SingleOpInstruction single) {
+            return isNonNegative(single.getSingleOperand(), nonNegative);
+        }
+        if (!(rhs instanceof BinaryOpInstruction binary)) {
+            return false;
+        }
+
+        var left = binary.getLeftOperand();
+        var right = binary.getRightOperand();
+        Integer rightValue = getLiteral(right);
+        return switch (binary.getOperation().getOpType()) {
+            case SHRR -> (rightValue != null && (rightValue & 31) != 0) || isNonNegative(left, nonNegative);
+            case SHR -> isNonNegative(left, nonNegative);
+            case DIV -> rightValue != null && rightValue > 0 && isNonNegative(left, nonNegative);
+            case REM -> isNonNegative(left, nonNegative);
+            case AND -> isNonNegative(left, nonNegative) || isNonNegative(right, nonNegative);
+            default -> false;
+        };
+    }
+
+    private static boolean isNonNegative(Element element, Set<String> nonNegative) {
+        var value = getLiteral(element);
+        if (value != null) {
+            return value >= 0;
+        }
+        return InstructionUtils.isVariable(element) && !(element instanceof ArrayOperand)
+                && nonNegative.contains(((Operand) element).getName());
+    }
+
+    /**
+     * @return the value of an integer or boolean literal, or null if the element is not one
+     */
+    private static Integer getLiteral(Element element) {
+        if (!(element instanceof LiteralElement literal)) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(literal.getLiteral());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isValue(Integer value, int expected) {
+        return value != null && value == expected;
+    }
+
+    private static boolean isPowerOfTwo(Integer value) {
+        return value != null && value > 1 && Integer.bitCount(value) == 1;
+    }
+
+    private static boolean isSameVariable(Element left, Element right) {
+        return InstructionUtils.isVariable(left) && InstructionUtils.isVariable(right)
+                && !(left instanceof ArrayOperand) && !(right instanceof ArrayOperand)
+                && ((Operand) left).getName().equals(((Operand) right).getName());
+    }
+
+    private static List<Element> getOperands(Instruction inst) {
+        if (inst instanceof UnaryOpInstruction unary) {
+            return List.of(unary.getOperand());
+        }
+        if (inst instanceof BinaryOpInstruction binary) {
+            return List.of(binary.getLeftOperand(), binary.getRightOperand());
+        }
+        return List.of();
+    }
+
+    private static SingleOpInstruction copy(Element element) {
+        return new SingleOpInstruction(element);
+    }
+
+    private static LiteralElement intLiteral(int value) {
+        return new LiteralElement(String.valueOf(value), new BuiltinType(BuiltinKind.INT32));
+    }
+
+    private static LiteralElement boolLiteral(boolean value) {
+        return new LiteralElement(value ? "1" : "0", new BuiltinType(BuiltinKind.BOOLEAN));
+    }
+}
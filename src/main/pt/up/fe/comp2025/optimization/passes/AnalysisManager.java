@@ -0,0 +1,131 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.Liveness;
+import pt.up.fe.comp2025.optimization.cfg.Loop;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Control-flow graph, dominator tree, loops and liveness of each method, computed the first time they are requested
+ * and shared by the passes until the method is changed.
+ * <p>
+ * A pass can change the graph it gets with {@link #getCfg}, but then it must commit it and report the method as
+ * changed, so the pass manager invalidates the analyses of the method. The passes that change the graph without
+ * always committing it, such as the ones that convert it to SSA form or insert preheaders before knowing if they
+ * can optimize the loops, use {@link #takeCfg}. Removing the unreachable blocks of a shared graph is allowed without
+ * committing it, the analyses only describe the code that can run.
+ */
+public class AnalysisManager {
+
+    private final Map<Method, Analyses> analyses;
+
+    private int built;
+    private int reused;
+
+    public AnalysisManager() {
+        this.analyses = new IdentityHashMap<>();
+    }
+
+    public ControlFlowGraph getCfg(Method method) {
+        return get(method).cfg;
+    }
+
+    public DominatorTree getDominatorTree(Method method) {
+        return get(method).getDominatorTree();
+    }
+
+    /**
+     * @return the natural loops of the method, inner loops first
+     */
+    public List<Loop> getLoops(Method method) {
+        var entry = get(method);
+        if (entry.loops == null) {
+            entry.loops = Loop.find(entry.cfg, entry.getDominatorTree());
+        }
+        return entry.loops;
+    }
+
+    public Liveness getLiveness(Method method) {
+        var entry = get(method);
+        if (entry.liveness == null) {
+            entry.liveness = new Liveness(entry.cfg);
+        }
+        return entry.liveness;
+    }
+
+    /**
+     * Gives a pass the graph of a method to change as it wants. The analyses already computed for the graph can still
+     * be used by the pass, but the manager forgets them, and builds the graph again when it is requested next.
+     */
+    public ControlFlowGraph takeCfg(Method method) {
+        var cfg = get(method).cfg;
+        analyses.remove(method);
+        return cfg;
+    }
+
+    /**
+     * Drops the analyses of a method that was changed.
+     */
+    public void invalidate(Method method) {
+        analyses.remove(method);
+    }
+
+    /**
+     * Drops the analyses of the methods that are no longer part of the class.
+     */
+    public void retain(Collection<Method> methods) {
+        analyses.keySet().removeIf(method -> methods.stream().noneMatch(kept -> kept == method));
+    }
+
+    /**
+     * @return how many graphs were built, once for each method and again after each change
+     */
+    public int getBuilt() {
+        return built;
+    }
+
+    /**
+     * @return how many requests for a graph or its analyses were answered with a graph that was already built
+     */
+    public int getReused() {
+        return reused;
+    }
+
+    private Analyses get(Method method) {
+        var entry = analyses.get(method);
+        if (entry != null) {
+            reused++;
+            return entry;
+        }
+
+        built++;
+        entry = new Analyses(ControlFlowGraph.build(method));
+        analyses.put(method, entry);
+        return entry;
+    }
+
+    private static class Analyses {
+
+        private final ControlFlowGraph cfg;
+        private DominatorTree domTree;
+        private List<Loop> loops;
+        private Liveness liveness;
+
+        Analyses(ControlFlowGraph cfg) {
+            this.cfg = cfg;
+        }
+
+        DominatorTree getDominatorTree() {
+            if (domTree == null) {
+                domTree = new DominatorTree(cfg);
+            }
+            return domTree;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.Profile;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+
+import java.util.*;
+
+/**
+ * Lays out the blocks of each method so the edges that ran most often in the profile fall through.
+ * <p>
+ * Blocks are merged into chains by the Pettis-Hansen algorithm: the edges are visited from the hottest, and an edge
+ * joins two chains when it goes from the last block of one to the first block of the other. Ties keep the edges that
+ * already fall through first. The chain of the entry comes first and the other chains keep the order of their first
+ * blocks. Branches to the block after them are then inverted, so the hot path needs no jumps.
+ * <p>
+ * Methods without counts in the profile keep their layout, and so do the fall-through edges whose counts are not
+ * known, such as the ones of the code of inlined calls.
+ */
+public class BlockLayout implements OptimizationPass {
+
+    private final Profile profile;
+
+    public BlockLayout(Profile profile) {
+        this.profile = profile;
+    }
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        var reports = new ArrayList<Report>();
+
+        var cfg = analyses.getCfg(method);
+        var counts = profile.getBlockCounts(cfg);
+        if (counts.isEmpty()) {
+            return PassResult.unchanged();
+        }
+
+        var blocks = cfg.getBlocks();
+        var layout = getLayout(cfg, counts);
+        if (layout.equals(blocks)) {
+            return PassResult.unchanged();
+        }
+
+        int moved = 0;
+        for (int i = 0; i < layout.size(); i++) {
+            if (layout.get(i) != blocks.get(i)) {
+                moved++;
+            }
+        }
+
+        blocks.clear();
+        blocks.addAll(layout);
+        int inverted = BranchOptimization.invertBranches(cfg);
+        cfg.commit();
+
+        reports.add(OptimizationRemark.applied(getName(), method,
+                "Block layout in method '" + method.getMethodName() + "': " + moved + " blocks moved, "
+                        + inverted + " branches inverted"));
+
+        return new PassResult(true, reports);
+    }
+
+    private static List<BasicBlock> getLayout(ControlFlowGraph cfg, Profile.BlockCounts counts) {
+        var blocks = cfg.getBlocks();
+        Map<BasicBlock, Integer> index = new IdentityHashMap<>();
+        Map<BasicBlock, List<BasicBlock>> chains = new IdentityHashMap<>();
+        for (var block : blocks) {
+            index.put(block, index.size());
+            chains.put(block, new ArrayList<>(List.of(block)));
+        }
+
+        // The entry is empty and always falls through into the first block
+        var entry = cfg.getEntry();
+        if (entry.getNext() != null) {
+            merge(chains, entry, entry.getNext());
+        }
+
+        List<Edge> edges = new ArrayList<>();
+        for (var block : blocks) {
+            for (var succ : block.getSuccessors()) {
+                long count = counts.getEdge(block, succ);
+                boolean fallsThrough = index.get(succ) == index.get(block) + 1;
+                if (count < 0 && fallsThrough && succ == block.getNext() && canMerge(chains, block, succ)) {
+                    // Nothing is known of the edge, such as in the code of inlined calls, so it keeps its layout
+                    merge(chains, block, succ);
+                } else if (count > 0) {
+                    edges.add(new Edge(block, succ, count, fallsThrough, edges.size()));
+                }
+            }
+        }
+        edges.sort(Comparator.comparingLong(Edge::count).reversed()
+                .thenComparing(Edge::fallsThrough, Comparator.reverseOrder())
+                .thenComparingInt(Edge::order));
+
+        for (var edge : edges) {
+            if (canMerge(chains, edge.from(), edge.to())) {
+                merge(chains, edge.from(), edge.to());
+            }
+        }
+
+        var ordered = new ArrayList<List<BasicBlock>>();
+        for (var block : blocks) {
+            var chain = chains.get(block);
+            if (chain.getFirst() == block) {
+                ordered.add(chain);
+            }
+        }
+        // Chains are in the order of their first blocks, so the chain of the entry is already the first
+
+        var layout = new ArrayList<BasicBlock>();
+        ordered.forEach(layout::addAll);
+        return layout;
+    }
+
+    /**
+     * @return true if the first block ends a chain and the second starts another one
+     */
+    private static boolean canMerge(Map<BasicBlock, List<BasicBlock>> chains, BasicBlock from, BasicBlock to) {
+        var fromChain = chains.get(from);
+        var toChain = chains.get(to);
+        return fromChain != toChain && fromChain.getLast() == from && toChain.getFirst() == to;
+    }
+
+    /**
+     * Appends the chain that starts with the second block to the chain that ends with the first.
+     */
+    private static void merge(Map<BasicBlock, List<BasicBlock>> chains, BasicBlock from, BasicBlock to) {
+        var chain = chains.get(from);
+        for (var block : chains.get(to)) {
+            chain.add(block);
+            chains.put(block, chain);
+        }
+    }
+
+    private record Edge(BasicBlock from, BasicBlock to, long count, boolean fallsThrough, int order) {
+    }
+}
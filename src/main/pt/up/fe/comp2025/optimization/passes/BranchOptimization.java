@@ -0,0 +1,281 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.*;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+
+import java.util.*;
+
+/**
+ * Removes jumps that only lead to other jumps, and branches whose outcome is already known.
+ * <p>
+ * Each edge of the graph is threaded through the empty blocks it reaches, and through the blocks that only test a
+ * condition that is known to hold (or not) on that edge. The conditions known on an edge are the ones tested by the
+ * branches on the way to it, when there is a single path back to them and their variables are not written in
+ * between. The blocks that are no longer reached are removed.
+ * <p>
+ * Conditional branches whose target is the next block in the layout are then inverted, so they fall through into
+ * it instead of needing a goto. Committing the graph drops the gotos to the next instruction and the labels that are
+ * not jumped to.
+ */
+public class BranchOptimization implements OptimizationPass {
+
+    /**
+     * How many blocks with a single predecessor are followed back when looking for the known conditions of an edge.
+     */
+    private static final int MAX_PATH_LENGTH = 8;
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        var reports = new ArrayList<Report>();
+
+        int branchesBefore = countBranches(method);
+
+        var threading = new Threading(analyses.getCfg(method));
+        threading.run();
+
+        int removed = branchesBefore - countBranches(method);
+        boolean changed = removed > 0 || threading.threaded + threading.inverted > 0;
+        if (removed > 0) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Branch optimization in method '" + method.getMethodName() + "': " + removed
+                            + " branches removed (" + threading.threaded + " jumps threaded, "
+                            + threading.inverted + " branches inverted)"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    /**
+     * @return the number of gotos and conditional branches of the method
+     */
+    static int countBranches(Method method) {
+        return (int) method.getInstructions().stream()
+                .filter(inst -> inst instanceof GotoInstruction || inst instanceof CondBranchInstruction)
+                .count();
+    }
+
+    private static class Threading {
+
+        private final ControlFlowGraph cfg;
+
+        private int threaded;
+        private int inverted;
+
+        Threading(ControlFlowGraph cfg) {
+            this.cfg = cfg;
+        }
+
+        void run() {
+            cfg.removeUnreachable();
+
+            // Threading an edge can leave a block with a single predecessor, so more conditions become known
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (var block : cfg.getBlocks()) {
+                    changed |= threadEdges(block);
+                }
+                cfg.removeUnreachable();
+            }
+
+            inverted = invertBranches(cfg);
+            cfg.commit();
+        }
+
+        private boolean threadEdges(BasicBlock block) {
+            boolean changed = false;
+
+            if (block.getTaken() != null) {
+                var target = thread(block.getTaken(), getKnownConditions(block, true));
+                if (target != block.getTaken()) {
+                    block.setTaken(target);
+                    changed = true;
+                }
+            }
+            if (block.getNext() != null) {
+                var target = thread(block.getNext(), getKnownConditions(block, false));
+                if (target != block.getNext()) {
+                    block.setNext(target);
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                threaded++;
+                cfg.updateEdges();
+            }
+            return changed;
+        }
+
+        /**
+         * @param known the conditions known to hold (or not) when the target is reached
+         * @return the first block reached from the target that does more than jumping
+         */
+        private BasicBlock thread(BasicBlock target, Map<String, Boolean> known) {
+            var visited = new HashSet<BasicBlock>();
+
+            while (visited.add(target)) {
+                var instructions = target.getInstructions();
+
+                if (instructions.isEmpty()) {
+                    // An empty block at the end of a method returns
+                    if (target.getNext() == null) {
+                        break;
+                    }
+                    target = target.getNext();
+                    continue;
+                }
+
+                var branch = target.getBranch();
+                if (instructions.size() == 1 && branch != null) {
+                    var value = known.get(getKey(branch.getCondition()));
+                    if (value == null) {
+                        break;
+                    }
+                    target = value ? target.getTaken() : target.getNext();
+                    continue;
+                }
+
+                break;
+            }
+
+            return target;
+        }
+
+        /**
+         * @param taken whether the edge is the branch target of the block or the block it continues to
+         * @return the conditions that are known to be true or false when the edge is followed
+         */
+        private Map<String, Boolean> getKnownConditions(BasicBlock block, boolean taken) {
+            var known = new HashMap<String, Boolean>();
+            var written = new HashSet<String>();
+
+            var branch = block.getBranch();
+            if (branch != null && block.getTaken() != block.getNext()) {
+                addCondition(known, branch.getCondition(), taken);
+            }
+
+            var current = block;
+            for (int i = 0; i < MAX_PATH_LENGTH && current.getPredecessors().size() == 1; i++) {
+                for (var inst : current.getInstructions()) {
+                    var def = InstructionUtils.getDefName(inst);
+                    if (def != null) {
+                        written.add(def);
+                    }
+                }
+
+                var pred = current.getPredecessors().getFirst();
+                var predBranch = pred.getBranch();
+                if (predBranch != null && pred.getTaken() != pred.getNext()
+                        && Collections.disjoint(InstructionUtils.getUses(predBranch), written)) {
+                    addCondition(known, predBranch.getCondition(), pred.getTaken() == current);
+                }
+
+                current = pred;
+            }
+
+            return known;
+        }
+
+        /**
+         * Records the value of a condition, and of the equivalent forms of it that are tested by other branches.
+         */
+        private static void addCondition(Map<String, Boolean> known, Instruction condition, boolean value) {
+            known.putIfAbsent(getKey(condition), value);
+
+            if (condition instanceof SingleOpInstruction single) {
+                known.putIfAbsent("NOTB " + getKey(single.getSingleOperand()), !value);
+            } else if (condition instanceof UnaryOpInstruction unary
+                    && unary.getOperation().getOpType() == OperationType.NOTB) {
+                known.putIfAbsent(getKey(unary.getOperand()), !value);
+            } else if (condition instanceof BinaryOpInstruction binary) {
+                var opType = binary.getOperation().getOpType();
+                var negated = InstructionUtils.negate(opType);
+                if (negated == null) {
+                    return;
+                }
+
+                String lhs = getKey(binary.getLeftOperand());
+                String rhs = getKey(binary.getRightOperand());
+                // a < b is b > a
+                known.putIfAbsent(swap(opType) + " " + rhs + " " + lhs, value);
+                known.putIfAbsent(negated + " " + lhs + " " + rhs, !value);
+                known.putIfAbsent(swap(negated) + " " + rhs + " " + lhs, !value);
+            }
+        }
+
+        private static OperationType swap(OperationType opType) {
+            return switch (opType) {
+                case LTH -> OperationType.GTH;
+                case LTE -> OperationType.GTE;
+                case GTH -> OperationType.LTH;
+                case GTE -> OperationType.LTE;
+                default -> opType;
+            };
+        }
+
+        private static String getKey(Instruction condition) {
+            if (condition instanceof SingleOpInstruction single) {
+                return getKey(single.getSingleOperand());
+            }
+            if (condition instanceof UnaryOpInstruction unary) {
+                return unary.getOperation().getOpType() + " " + getKey(unary.getOperand());
+            }
+            if (condition instanceof BinaryOpInstruction binary) {
+                return binary.getOperation().getOpType() + " " + getKey(binary.getLeftOperand()) + " "
+                        + getKey(binary.getRightOperand());
+            }
+            // Other conditions are never known
+            return "?" + System.identityHashCode(condition);
+        }
+
+        private static String getKey(Element element) {
+            if (element instanceof LiteralElement literal) {
+                return literal.getLiteral();
+            }
+            return ((Operand) element).getName();
+        }
+    }
+
+    /**
+     * Inverts the conditional branches that jump to the next block, so they fall through into it.
+     *
+     * @return the number of branches inverted
+     */
+    static int invertBranches(ControlFlowGraph cfg) {
+        var blocks = cfg.getBlocks();
+        int inverted = 0;
+
+        for (int i = 0; i + 1 < blocks.size(); i++) {
+            var block = blocks.get(i);
+            var branch = block.getBranch();
+            if (branch == null || block.getNext() == null || block.getTaken() != blocks.get(i + 1)) {
+                continue;
+            }
+
+            var negated = InstructionUtils.negate(branch);
+            if (negated == null) {
+                continue;
+            }
+
+            block.getInstructions().set(block.getInstructions().size() - 1, negated);
+            var next = block.getNext();
+            block.setNext(block.getTaken());
+            block.setTaken(next);
+            inverted++;
+        }
+
+        cfg.updateEdges();
+        return inverted;
+    }
+}
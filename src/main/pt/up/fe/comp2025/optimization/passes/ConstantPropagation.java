@@ -0,0 +1,363 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import org.specs.comp.ollir.type.Type;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.ssa.SsaForm;
+
+import java.util.*;
+
+/**
+ * Sparse conditional constant propagation of {@code int} and {@code boolean} values.
+ * <p>
+ * Works on the SSA form of each method. A version is only considered constant if it has the same value on every
+ * path that can actually execute, so branches whose condition becomes constant also stop the values of the path
+ * they skip from reaching the join points. Constant uses are replaced by literals, constant definitions are folded,
+ * constant branches are resolved and the blocks that can no longer execute are removed.
+ */
+public class ConstantPropagation implements OptimizationPass {
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        var reports = new ArrayList<Report>();
+
+        var domTree = analyses.getDominatorTree(method);
+        var solver = new Solver(analyses.takeCfg(method), domTree);
+        solver.solve();
+        boolean changed = solver.rewrite();
+
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Constant propagation in method '" + method.getMethodName() + "': " + solver.folded
+                            + " instructions folded, " + solver.resolvedBranches + " branches resolved, "
+                            + solver.removed + " unreachable instructions removed"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    /**
+     * Value of a version in the lattice: not known yet (top), a constant, or not constant (bottom).
+     */
+    private record Value(Integer constant, boolean bottom) {
+
+        static final Value TOP = new Value(null, false);
+        static final Value BOTTOM = new Value(null, true);
+
+        static Value of(int constant) {
+            return new Value(constant, false);
+        }
+
+        boolean isConstant() {
+            return constant != null;
+        }
+
+        Value meet(Value other) {
+            if (this.equals(TOP)) {
+                return other;
+            }
+            if (other.equals(TOP) || this.equals(other)) {
+                return this;
+            }
+            return BOTTOM;
+        }
+    }
+
+    private record Edge(BasicBlock from, BasicBlock to) {
+    }
+
+    /**
+     * @return the result of the operation with Java semantics, or null if it cannot be computed at compile time
+     */
+    static Integer compute(OperationType op, int left, int right) {
+        return switch (op) {
+            case ADD -> left + right;
+            case SUB -> left - right;
+            case MUL -> left * right;
+            // Division by zero must still throw at runtime
+            case DIV -> right == 0 ? null : left / right;
+            case REM -> right == 0 ? null : left % right;
+            case SHL -> left << right;
+            case SHR -> left >> right;
+            case SHRR -> left >>> right;
+            case AND, ANDB -> left & right;
+            case OR, ORB -> left | right;
+            case XOR -> left ^ right;
+            case LTH -> left < right ? 1 : 0;
+            case GTH -> left > right ? 1 : 0;
+            case LTE -> left <= right ? 1 : 0;
+            case GTE -> left >= right ? 1 : 0;
+            case EQ -> left == right ? 1 : 0;
+            case NEQ -> left != right ? 1 : 0;
+            default -> null;
+        };
+    }
+
+    private static class Solver {
+
+        private final SsaForm ssa;
+        private final ControlFlowGraph cfg;
+        private final Map<String, Value> values;
+        private final Set<String> defined;
+        private final Set<BasicBlock> executable;
+        private final Set<Edge> executableEdges;
+
+        // Destinations of the constant phi-functions that were removed
+        private final Set<String> removedPhis;
+
+        private int folded;
+        private int resolvedBranches;
+        private int removed;
+
+        Solver(ControlFlowGraph cfg, DominatorTree domTree) {
+            this.cfg = cfg;
+            this.ssa = SsaForm.construct(cfg, domTree);
+            this.values = new HashMap<>();
+            this.defined = new HashSet<>(ssa.getDefinitions().keySet());
+            this.executable = new HashSet<>();
+            this.executableEdges = new HashSet<>();
+            this.removedPhis = new HashSet<>();
+        }
+
+        void solve() {
+            var order = cfg.getReversePostOrder();
+            executable.add(cfg.getEntry());
+
+            // Values only go down the lattice, so the iteration stops
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+
+                for (var block : order) {
+                    if (!executable.contains(block)) {
+                        continue;
+                    }
+
+                    for (var phi : ssa.getPhis(block)) {
+                        var value = Value.TOP;
+                        for (var arg : phi.getArguments().entrySet()) {
+                            if (executableEdges.contains(new Edge(arg.getKey(), block))) {
+                                value = value.meet(valueOf(arg.getValue()));
+                            }
+                        }
+                        changed |= update(phi.getDest(), value);
+                    }
+
+                    for (var inst : block.getInstructions()) {
+                        var def = InstructionUtils.getDef(inst);
+                        if (def != null) {
+                            changed |= update(def, evaluate(((AssignInstruction) inst).getRhs()));
+                        }
+                    }
+
+                    var branch = block.getBranch();
+                    if (branch == null) {
+                        if (block.getNext() != null) {
+                            changed |= markEdge(block, block.getNext());
+                        }
+                        continue;
+                    }
+
+                    var condition = evaluate(branch.getCondition());
+                    if (condition.isConstant()) {
+                        changed |= markEdge(block, condition.constant() != 0 ? block.getTaken() : block.getNext());
+                    } else if (condition.bottom()) {
+                        changed |= markEdge(block, block.getTaken());
+                        changed |= markEdge(block, block.getNext());
+                    }
+                }
+            }
+        }
+
+        private boolean markEdge(BasicBlock from, BasicBlock to) {
+            executable.add(to);
+            return executableEdges.add(new Edge(from, to));
+        }
+
+        private boolean update(Operand version, Value value) {
+            if (!isTracked(version.getType())) {
+                value = Value.BOTTOM;
+            }
+            var old = values.getOrDefault(version.getName(), Value.TOP);
+            var merged = old.meet(value);
+            values.put(version.getName(), merged);
+            return !merged.equals(old);
+        }
+
+        private static boolean isTracked(Type type) {
+            return BuiltinType.is(type, BuiltinKind.INT32) || BuiltinType.is(type, BuiltinKind.BOOLEAN);
+        }
+
+        private Value valueOf(Element element) {
+            if (element instanceof LiteralElement literal) {
+                if (!isTracked(literal.getType())) {
+                    return Value.BOTTOM;
+                }
+                try {
+                    return Value.of(Integer.parseInt(literal.getLiteral()));
+                } catch (NumberFormatException e) {
+                    return Value.BOTTOM;
+                }
+            }
+
+            if (!InstructionUtils.isVariable(element) || element instanceof ArrayOperand) {
+                return Value.BOTTOM;
+            }
+
+            var name = ((Operand) element).getName();
+            if (values.containsKey(name)) {
+                return values.get(name);
+            }
+            // Versions not evaluated yet, and locals read before being assigned
+            return defined.contains(name) || ssa.isUndefined(name) ? Value.TOP : Value.BOTTOM;
+        }
+
+        private Value evaluate(Instruction inst) {
+            if (inst instanceof SingleOpInstruction single) {
+                return valueOf(single.getSingleOperand());
+            }
+
+            if (inst instanceof UnaryOpInstruction unary) {
+                var operand = valueOf(unary.getOperand());
+                if (!operand.isConstant()) {
+                    return operand;
+                }
+                return switch (unary.getOperation().getOpType()) {
+                    case NOTB -> Value.of(operand.constant() == 0 ? 1 : 0);
+                    case NOT -> Value.of(~operand.constant());
+                    default -> Value.BOTTOM;
+                };
+            }
+
+            if (inst instanceof BinaryOpInstruction binary) {
+                var left = valueOf(binary.getLeftOperand());
+                var right = valueOf(binary.getRightOperand());
+                if (left.bottom() || right.bottom()) {
+                    return Value.BOTTOM;
+                }
+                if (!left.isConstant() || !right.isConstant()) {
+                    return Value.TOP;
+                }
+                var result = compute(binary.getOperation().getOpType(), left.constant(), right.constant());
+                return result == null ? Value.BOTTOM : Value.of(result);
+            }
+
+            return Value.BOTTOM;
+        }
+
+        private Element constantOf(Operand operand) {
+            var value = values.get(operand.getName());
+            if (value == null || !value.isConstant()) {
+                return operand;
+            }
+            return new LiteralElement(String.valueOf(value.constant()), operand.getType());
+        }
+
+        /**
+         * @return true if the code was changed
+         */
+        boolean rewrite() {
+            for (var block : cfg.getBlocks()) {
+                if (!executable.contains(block)) {
+                    continue;
+                }
+
+                removeConstantPhis(block);
+
+                var branch = block.getBranch();
+                if (branch != null) {
+                    var condition = evaluate(branch.getCondition());
+                    if (condition.isConstant()) {
+                        block.getInstructions().removeLast();
+                        if (condition.constant() != 0) {
+                            block.setNext(block.getTaken());
+                        }
+                        block.setTaken(null);
+                        resolvedBranches++;
+                    }
+                }
+
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    var inst = instructions.get(i);
+                    var newInst = InstructionUtils.mapUses(inst, this::constantOf);
+
+                    var def = InstructionUtils.getDef(newInst);
+                    if (def != null) {
+                        var value = values.get(def.getName());
+                        var rhs = ((AssignInstruction) newInst).getRhs();
+                        boolean isLiteral = rhs instanceof SingleOpInstruction single
+                                && single.getSingleOperand() instanceof LiteralElement;
+                        if (value != null && value.isConstant() && !isLiteral) {
+                            var literal = new LiteralElement(String.valueOf(value.constant()), def.getType());
+                            newInst = new AssignInstruction(def, ((AssignInstruction) newInst).getTypeOfAssign(),
+                                    new SingleOpInstruction(literal));
+                        }
+                    }
+
+                    if (newInst != inst) {
+                        instructions.set(i, newInst);
+                        folded++;
+                    }
+                }
+            }
+
+            cfg.updateEdges();
+            removed = cfg.removeUnreachable();
+
+            for (var block : cfg.getBlocks()) {
+                for (var phi : ssa.getPhis(block)) {
+                    // Arguments of the edges that were removed
+                    phi.getArguments().keySet().retainAll(block.getPredecessors());
+
+                    // Arguments that were defined by a removed phi-function have no definition left
+                    for (var argument : phi.getArguments().entrySet()) {
+                        if (argument.getValue() instanceof Operand operand
+                                && removedPhis.contains(operand.getName())) {
+                            argument.setValue(constantOf(operand));
+                            folded++;
+                        }
+                    }
+                }
+            }
+
+            if (folded + resolvedBranches + removed == 0) {
+                return false;
+            }
+
+            ssa.destruct();
+            cfg.commit();
+            return true;
+        }
+
+        /**
+         * Constant phi-functions are removed, and their uses, including the arguments of the phi-functions that stay,
+         * are replaced by the constant. The arguments of the removed ones are left as they are: the definitions of
+         * the instructions stay, and the definitions of other removed phi-functions are no longer used.
+         */
+        private void removeConstantPhis(BasicBlock block) {
+            ssa.getPhis(block).removeIf(phi -> {
+                var value = values.get(phi.getDest().getName());
+                boolean constant = value != null && value.isConstant();
+                if (constant) {
+                    removedPhis.add(phi.getDest().getName());
+                }
+                return constant;
+            });
+        }
+    }
+}
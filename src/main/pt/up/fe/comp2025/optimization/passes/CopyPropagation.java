@@ -0,0 +1,238 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.cfg.Liveness;
+
+import java.util.*;
+
+/**
+ * Removes the copies between variables, most of them made by the temporaries of the OLLIR generator.
+ * <p>
+ * A temporary computed only to be copied, {@code t = a + b; x = t}, is computed directly into the copy's destination,
+ * {@code x = a + b}, when {@code t} is not live after the copy and {@code x} is not read or written in between. The
+ * remaining copies {@code x = y} are propagated forward: the uses of {@code x} read {@code y} while neither is written
+ * again on every path, which is decided with an available-copies analysis. The copies left without uses are removed
+ * by {@link DeadCodeElimination}.
+ */
+public class CopyPropagation implements OptimizationPass {
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        var reports = new ArrayList<Report>();
+
+        var cfg = analyses.getCfg(method);
+        cfg.removeUnreachable();
+        var propagation = new Propagation(cfg);
+        propagation.run(analyses.getLiveness(method));
+
+        boolean changed = propagation.coalesced + propagation.propagated > 0;
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Copy propagation in method '" + method.getMethodName() + "': " + propagation.coalesced
+                            + " temporaries computed into their copies and " + propagation.propagated
+                            + " uses of copies replaced"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    /**
+     * A copy {@code dest = source} between two variables.
+     */
+    private record Copy(String dest, Operand source) {
+    }
+
+    private static class Propagation {
+
+        private final ControlFlowGraph cfg;
+
+        private int coalesced;
+        private int propagated;
+
+        Propagation(ControlFlowGraph cfg) {
+            this.cfg = cfg;
+        }
+
+        void run(Liveness liveness) {
+            for (var block : cfg.getBlocks()) {
+                coalesce(block, liveness.getLiveAfter(block));
+            }
+
+            propagate();
+
+            if (coalesced + propagated > 0) {
+                cfg.commit();
+            }
+        }
+
+        /**
+         * Computes the temporaries of the block that are only copied directly into the copy's destination.
+         */
+        private void coalesce(BasicBlock block, List<Set<String>> liveAfter) {
+            var instructions = block.getInstructions();
+            liveAfter = new ArrayList<>(liveAfter);
+
+            for (int j = 0; j < instructions.size(); j++) {
+                var copy = asCopy(instructions.get(j));
+                if (copy == null || liveAfter.get(j).contains(copy.source().getName())) {
+                    continue;
+                }
+
+                int i = findDefinition(instructions, j, copy);
+                if (i < 0) {
+                    continue;
+                }
+
+                var dest = InstructionUtils.getDef(instructions.get(j));
+                var temporary = copy.source().getName();
+                instructions.set(i, InstructionUtils.mapDef(instructions.get(i), def -> dest));
+                for (int k = i + 1; k < j; k++) {
+                    instructions.set(k, InstructionUtils.mapUses(instructions.get(k),
+                            operand -> operand.getName().equals(temporary) ? dest : operand));
+                }
+                instructions.remove(j);
+                liveAfter.remove(j);
+                j--;
+                coalesced++;
+            }
+        }
+
+        /**
+         * @return the index of the definition of the copied temporary that can write the copy's destination instead,
+         * or -1 if there is none in the block
+         */
+        private int findDefinition(List<Instruction> instructions, int copyIndex, Copy copy) {
+            var temporary = copy.source().getName();
+            var dest = InstructionUtils.getDef(instructions.get(copyIndex));
+
+            for (int i = copyIndex - 1; i >= 0; i--) {
+                var inst = instructions.get(i);
+                var def = InstructionUtils.getDef(inst);
+
+                if (def != null && def.getName().equals(temporary)) {
+                    var assign = (AssignInstruction) inst;
+                    return sameType(def, dest) && assign.getTypeOfAssign().toString()
+                            .equals(((AssignInstruction) instructions.get(copyIndex)).getTypeOfAssign().toString())
+                            ? i : -1;
+                }
+
+                // Between the definition and the copy, the destination must keep its old value
+                if ((def != null && def.getName().equals(copy.dest()))
+                        || InstructionUtils.getUses(inst).contains(copy.dest())) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Replaces the uses of the variables copied by copies that are available on every path.
+         */
+        private void propagate() {
+            var order = cfg.getReversePostOrder();
+
+            // Copies available at the end of each block, null while not computed (every copy)
+            Map<BasicBlock, Map<String, Copy>> availableOut = new HashMap<>();
+
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (var block : order) {
+                    var available = availableIn(block, availableOut);
+                    for (var inst : block.getInstructions()) {
+                        transfer(inst, available);
+                    }
+                    if (!available.equals(availableOut.get(block))) {
+                        availableOut.put(block, available);
+                        changed = true;
+                    }
+                }
+            }
+
+            for (var block : order) {
+                var available = availableIn(block, availableOut);
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    var inst = instructions.get(i);
+                    var rewritten = InstructionUtils.mapUses(inst, operand -> {
+                        var copy = available.get(operand.getName());
+                        if (copy == null) {
+                            return operand;
+                        }
+                        propagated++;
+                        return copy.source();
+                    });
+                    instructions.set(i, rewritten);
+                    transfer(rewritten, available);
+                }
+            }
+        }
+
+        private Map<String, Copy> availableIn(BasicBlock block, Map<BasicBlock, Map<String, Copy>> availableOut) {
+            if (block == cfg.getEntry()) {
+                return new HashMap<>();
+            }
+
+            Map<String, Copy> result = null;
+            for (var pred : block.getPredecessors()) {
+                var out = availableOut.get(pred);
+                if (out == null) {
+                    continue;
+                }
+                if (result == null) {
+                    result = new HashMap<>(out);
+                } else {
+                    result.entrySet().removeIf(entry -> !entry.getValue().equals(out.get(entry.getKey())));
+                }
+            }
+            return result == null ? new HashMap<>() : result;
+        }
+
+        private static void transfer(Instruction inst, Map<String, Copy> available) {
+            var def = InstructionUtils.getDefName(inst);
+            if (def == null) {
+                return;
+            }
+
+            available.remove(def);
+            available.values().removeIf(copy -> copy.source().getName().equals(def));
+
+            var copy = asCopy(inst);
+            if (copy != null && !copy.source().getName().equals(def)) {
+                available.put(def, copy);
+            }
+        }
+    }
+
+    /**
+     * @return the copy made by the instruction, or null if it is not a copy between two scalar variables
+     */
+    private static Copy asCopy(Instruction inst) {
+        var dest = InstructionUtils.getDef(inst);
+        if (dest == null || !(((AssignInstruction) inst).getRhs() instanceof SingleOpInstruction single)) {
+            return null;
+        }
+
+        var source = single.getSingleOperand();
+        if (!InstructionUtils.isVariable(source) || source instanceof ArrayOperand
+                || !sameType(dest, (Operand) source)) {
+            return null;
+        }
+        return new Copy(dest.getName(), (Operand) source);
+    }
+
+    private static boolean sameType(Operand first, Operand second) {
+        return first.getType().toString().equals(second.getType().toString());
+    }
+}
@@ -0,0 +1,88 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.inst.GotoInstruction;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.cfg.Liveness;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Removes the code whose result is never used or that can never execute.
+ * <p>
+ * Assignments to variables that are not live afterwards are removed when their right-hand side has no side effects
+ * and cannot throw, until no more stores become dead. Calls are always kept. Blocks that cannot be reached are
+ * removed, and committing the graph drops the labels that are no longer jumped to and the gotos to the next block.
+ */
+public class DeadCodeElimination implements OptimizationPass {
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        var reports = new ArrayList<Report>();
+
+        int labelsBefore = method.getLabels().size();
+        int gotosBefore = countGotos(method);
+
+        var cfg = analyses.getCfg(method);
+        int unreachable = cfg.removeUnreachable();
+        int deadStores = removeDeadStores(cfg);
+        cfg.commit();
+
+        int labels = labelsBefore - method.getLabels().size();
+        int gotos = gotosBefore - countGotos(method);
+
+        boolean changed = unreachable + deadStores + labels + gotos > 0;
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Dead code elimination in method '" + method.getMethodName() + "': " + deadStores
+                            + " dead stores, " + unreachable + " unreachable instructions, " + gotos
+                            + " gotos and " + labels + " labels removed"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    /**
+     * @return the number of assignments removed
+     */
+    static int removeDeadStores(ControlFlowGraph cfg) {
+        int removed = 0;
+
+        // Removing a store can make the stores of its operands dead
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            var liveness = new Liveness(cfg);
+
+            for (var block : cfg.getBlocks()) {
+                var instructions = block.getInstructions();
+                var live = new HashSet<>(liveness.getLiveOut(block));
+
+                for (int i = instructions.size() - 1; i >= 0; i--) {
+                    var inst = instructions.get(i);
+                    var def = InstructionUtils.getDefName(inst);
+                    if (def != null && !live.contains(def) && InstructionUtils.isPure(inst)) {
+                        instructions.remove(i);
+                        removed++;
+                        changed = true;
+                        continue;
+                    }
+                    Liveness.transfer(inst, live);
+                }
+            }
+        }
+
+        return removed;
+    }
+
+    private static int countGotos(Method method) {
+        return (int) method.getInstructions().stream()
+                .filter(GotoInstruction.class::isInstance)
+                .count();
+    }
+}
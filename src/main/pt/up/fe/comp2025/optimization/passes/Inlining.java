@@ -0,0 +1,412 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.AccessModifier;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.CallInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.InvokeVirtualInstruction;
+import org.specs.comp.ollir.inst.NewInstruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import org.specs.comp.ollir.type.ClassType;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.Profile;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.CallGraph;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.cfg.Loop;
+
+import java.util.*;
+
+/**
+ * Replaces calls to small methods of the same class by the body of the called method.
+ * <p>
+ * The variables of the called method are renamed to new variables of the caller, its parameters are assigned the
+ * arguments of the call, {@code this} becomes the object the method is called on, and each {@code ret} becomes an
+ * assignment to the variable that receives the result followed by a jump to the code after the call.
+ * <p>
+ * A call is only inlined when the method that runs is known: static methods, methods called on an object created
+ * with {@code new} in the caller, whose class is known exactly, and methods called on {@code this} that are not
+ * public, which other classes are not expected to override. Public methods called on {@code this} are only inlined
+ * when the heuristics allow it. The size of the called method, the size of the caller and the nesting of inlined
+ * calls are bounded, and a method is never inlined into itself, so recursion always stops.
+ * <p>
+ * With a profile, the calls that never ran are not inlined and the hot calls can inline methods
+ * {@link #HOT_CALLEE_FACTOR} times larger.
+ */
+public class Inlining implements OptimizationPass {
+
+    /**
+     * Limits of the inliner.
+     *
+     * @param maxCalleeSize maximum number of instructions of an inlined method
+     * @param maxCallerSize the caller does not grow past this number of instructions
+     * @param maxDepth      maximum nesting of calls inlined in the code of other inlined calls
+     * @param inlinePublic  if true, public methods called on {@code this} are assumed not to be overridden
+     */
+    public record Heuristics(int maxCalleeSize, int maxCallerSize, int maxDepth, boolean inlinePublic) {
+    }
+
+    /**
+     * How many times larger the methods inlined in hot calls can be.
+     */
+    private static final int HOT_CALLEE_FACTOR = 4;
+
+    private final Heuristics heuristics;
+    private final Profile profile;
+
+    public Inlining(Heuristics heuristics) {
+        this(heuristics, Profile.EMPTY);
+    }
+
+    public Inlining(Heuristics heuristics, Profile profile) {
+        this.heuristics = heuristics;
+        this.profile = profile;
+    }
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        if (method.isConstructMethod()) {
+            return PassResult.unchanged();
+        }
+
+        var reports = new ArrayList<Report>();
+
+        var inliner = new Inliner(classUnit, method, analyses.takeCfg(method));
+        inliner.run();
+        reports.addAll(inliner.missed);
+
+        boolean changed = !inliner.inlined.isEmpty();
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Inlining in method '" + method.getMethodName() + "': " + inliner.inlined.size()
+                            + " calls inlined (" + String.join(", ", inliner.inlined) + ")"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    @Override
+    public boolean isExpensive() {
+        return true;
+    }
+
+    /**
+     * How a call was reached: the number of inlined calls it is nested in, and the methods they called.
+     */
+    private record Origin(int depth, Set<String> chain) {
+
+        static final Origin CALLER = new Origin(0, Set.of());
+    }
+
+    private class Inliner {
+
+        private final ClassUnit classUnit;
+        private final Method method;
+        private final ControlFlowGraph cfg;
+        private final Set<String> names;
+        private final Map<Instruction, Origin> origins;
+        private final Set<Instruction> rejected;
+        private final Map<Instruction, Long> callCounts;
+
+        private final List<String> inlined;
+        private final List<OptimizationRemark> missed;
+
+        Inliner(ClassUnit classUnit, Method method, ControlFlowGraph cfg) {
+            this.classUnit = classUnit;
+            this.method = method;
+            this.cfg = cfg;
+            this.names = new HashSet<>(method.getVarTable().keySet());
+            this.origins = new IdentityHashMap<>();
+            this.rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+            this.callCounts = new IdentityHashMap<>();
+            this.inlined = new ArrayList<>();
+            this.missed = new ArrayList<>();
+        }
+
+        void run() {
+            cfg.removeUnreachable();
+
+            // The calls of the original code, the inlined ones are not in the profile
+            var sites = Profile.getCallSites(cfg.getBlocks().stream()
+                    .flatMap(block -> block.getInstructions().stream())
+                    .toList());
+            sites.forEach((inst, site) -> callCounts.put(inst,
+                    profile.getCount(Profile.getCallKey(method.getMethodName(), site))));
+
+            // Each inlining splits a block, so the calls are searched again after it
+            while (inlineNext()) {
+            }
+
+            if (!inlined.isEmpty()) {
+                cfg.commit();
+            }
+        }
+
+        private boolean inlineNext() {
+            var exactObjects = findExactObjects();
+            List<Loop> loops = null;
+
+            for (var block : cfg.getBlocks()) {
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    var inst = instructions.get(i);
+                    if (rejected.contains(inst)) {
+                        continue;
+                    }
+
+                    var call = CallGraph.getCall(inst);
+                    if (call == null) {
+                        continue;
+                    }
+
+                    var callee = resolve(call, exactObjects);
+                    if (callee == null) {
+                        rejected.add(inst);
+                        continue;
+                    }
+                    var origin = origins.getOrDefault(inst, Origin.CALLER);
+                    var reason = getRejection(call, callee, origin, exactObjects,
+                            callCounts.getOrDefault(inst, -1L));
+                    if (reason != null) {
+                        rejected.add(inst);
+                        if (loops == null) {
+                            loops = Loop.find(cfg, new DominatorTree(cfg));
+                        }
+                        int depth = (int) loops.stream().filter(loop -> loop.contains(block)).count();
+                        missed.add(OptimizationRemark.missed(getName(), method, inst, depth, "Call to '"
+                                + callee.getMethodName() + "' in method '" + method.getMethodName()
+                                + "' not inlined: " + reason));
+                        continue;
+                    }
+
+                    inline(block, i, call, callee, origin);
+                    inlined.add(callee.getMethodName());
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the method of the class that the call runs, or null if it is not known
+         */
+        private Method resolve(CallInstruction call, Set<String> exactObjects) {
+            var callee = CallGraph.resolve(classUnit, call);
+            if (callee == null) {
+                return null;
+            }
+
+            // Calls on 'this' to methods that could be overridden are rejected by the heuristics
+            if (!callee.isStaticMethod()) {
+                var receiver = ((Operand) call.getCaller()).getName();
+                if (!exactObjects.contains(receiver) && !receiver.equals("this")) {
+                    return null;
+                }
+            }
+            return callee;
+        }
+
+        /**
+         * @param count how many times the call ran in the profile, or -1 if it is not known
+         * @return why the call should not be inlined, or null if it should
+         */
+        private String getRejection(CallInstruction call, Method callee, Origin origin, Set<String> exactObjects,
+                                    long count) {
+            int calleeSize = callee.getInstructions().size();
+            int maxCalleeSize = count > 0 && profile.isHotCall(count)
+                    ? heuristics.maxCalleeSize() * HOT_CALLEE_FACTOR
+                    : heuristics.maxCalleeSize();
+            int callerSize = cfg.getInstructionCount() + calleeSize;
+            if (!callee.isStaticMethod() && !exactObjects.contains(((Operand) call.getCaller()).getName())
+                    && callee.getMethodAccessModifier() == AccessModifier.PUBLIC && !heuristics.inlinePublic()) {
+                return "the callee is public and could be overridden by a subclass";
+            }
+            if (callee == method || origin.chain().contains(callee.getMethodName())) {
+                return "the call is recursive";
+            }
+            if (count == 0) {
+                return "the call never ran in the profile";
+            }
+            if (origin.depth() >= heuristics.maxDepth()) {
+                return "it is nested in " + origin.depth() + " inlined calls";
+            }
+            if (calleeSize > maxCalleeSize) {
+                return "the callee has " + calleeSize + " instructions, more than " + maxCalleeSize;
+            }
+            if (callerSize > heuristics.maxCallerSize()) {
+                return "the caller would have " + callerSize + " instructions, more than "
+                        + heuristics.maxCallerSize();
+            }
+            return null;
+        }
+
+        /**
+         * @return the variables that always hold an object created with {@code new} of this class
+         */
+        private Set<String> findExactObjects() {
+            var exact = new HashSet<String>();
+            var other = new HashSet<String>();
+            for (var param : method.getParams()) {
+                if (param instanceof Operand operand) {
+                    other.add(operand.getName());
+                }
+            }
+
+            for (var block : cfg.getBlocks()) {
+                for (var inst : block.getInstructions()) {
+                    var def = InstructionUtils.getDefName(inst);
+                    if (def == null) {
+                        continue;
+                    }
+                    var rhs = ((AssignInstruction) inst).getRhs();
+                    if (rhs instanceof NewInstruction newInst && newInst.getReturnType() instanceof ClassType type
+                            && type.getName().equals(classUnit.getClassName())) {
+                        exact.add(def);
+                    } else {
+                        other.add(def);
+                    }
+                }
+            }
+
+            exact.removeAll(other);
+            return exact;
+        }
+
+        /**
+         * Replaces the call at the given position of the block by the body of the callee.
+         */
+        private void inline(BasicBlock block, int index, CallInstruction call, Method callee, Origin origin) {
+            var instructions = block.getInstructions();
+            var callInst = instructions.get(index);
+            var result = InstructionUtils.getDef(callInst);
+
+            // The code after the call continues in a new block
+            var continuation = cfg.newBlock();
+            continuation.getInstructions().addAll(instructions.subList(index + 1, instructions.size()));
+            continuation.setNext(block.getNext());
+            continuation.setTaken(block.getTaken());
+            instructions.subList(index, instructions.size()).clear();
+            block.setTaken(null);
+
+            // New variables for the variables of the callee
+            Map<String, Operand> variables = new HashMap<>();
+            for (var name : callee.getVarTable().keySet()) {
+                if (!name.equals("this")) {
+                    variables.put(name, null);
+                }
+            }
+            Element receiver = call instanceof InvokeVirtualInstruction ? call.getCaller() : null;
+            var renamer = new Renamer(callee.getMethodName(), variables, receiver);
+
+            // The parameters are assigned the arguments
+            var params = callee.getParams();
+            for (int i = 0; i < params.size(); i++) {
+                var param = (Operand) params.get(i);
+                var variable = renamer.rename(param);
+                instructions.add(new AssignInstruction(variable, param.getType(),
+                        new SingleOpInstruction(call.getArguments().get(i))));
+            }
+
+            var calleeCfg = ControlFlowGraph.build(callee);
+            calleeCfg.removeUnreachable();
+            var innerOrigin = new Origin(origin.depth() + 1, with(origin.chain(), callee.getMethodName()));
+
+            Map<BasicBlock, BasicBlock> clones = new HashMap<>();
+            for (var calleeBlock : calleeCfg.getBlocks()) {
+                clones.put(calleeBlock, cfg.newBlock());
+            }
+
+            var position = block;
+            for (var calleeBlock : calleeCfg.getBlocks()) {
+                var clone = clones.get(calleeBlock);
+                for (var inst : calleeBlock.getInstructions()) {
+                    if (inst instanceof ReturnInstruction ret) {
+                        if (result != null && ret.getOperand().isPresent()) {
+                            clone.getInstructions().add(new AssignInstruction(result,
+                                    ((AssignInstruction) callInst).getTypeOfAssign(),
+                                    new SingleOpInstruction(renamer.map(ret.getOperand().get()))));
+                        }
+                        continue;
+                    }
+                    var copy = renamer.apply(inst);
+                    origins.put(copy, innerOrigin);
+                    clone.getInstructions().add(copy);
+                }
+
+                boolean returns = calleeBlock.endsWithReturn() || calleeBlock.getNext() == null;
+                clone.setNext(returns ? continuation : clones.get(calleeBlock.getNext()));
+                if (calleeBlock.getTaken() != null) {
+                    clone.setTaken(clones.get(calleeBlock.getTaken()));
+                }
+
+                cfg.insertAfter(position, clone);
+                position = clone;
+            }
+            cfg.insertAfter(position, continuation);
+
+            block.setNext(clones.get(calleeCfg.getEntry()));
+            cfg.updateEdges();
+        }
+
+        /**
+         * Renames the variables of an inlined method to new variables of the caller.
+         */
+        private class Renamer {
+
+            private final String prefix;
+            private final Map<String, Operand> variables;
+            private final Element receiver;
+
+            Renamer(String prefix, Map<String, Operand> variables, Element receiver) {
+                this.prefix = prefix;
+                this.variables = variables;
+                this.receiver = receiver;
+            }
+
+            Instruction apply(Instruction inst) {
+                var copy = InstructionUtils.mapElements(InstructionUtils.copy(inst), this::map);
+                return InstructionUtils.mapDef(copy, this::rename);
+            }
+
+            Element map(Element element) {
+                if (!(element instanceof Operand operand) || element.isLiteral()) {
+                    return element;
+                }
+                if (operand.getName().equals("this") && receiver != null) {
+                    return receiver;
+                }
+                return variables.containsKey(operand.getName()) ? rename(operand) : element;
+            }
+
+            Operand rename(Operand operand) {
+                var variable = variables.get(operand.getName());
+                if (variable == null) {
+                    var name = prefix + "_" + operand.getName();
+                    int suffix = 0;
+                    while (names.contains(name)) {
+                        name = prefix + "_" + operand.getName() + suffix++;
+                    }
+                    names.add(name);
+                    variable = new Operand(name, operand.getType());
+                    variables.put(operand.getName(), variable);
+                }
+                // A new operand, so it is not marked as a parameter of the callee
+                return new Operand(variable.getName(), operand.getType());
+            }
+        }
+    }
+
+    private static Set<String> with(Set<String> set, String element) {
+        var result = new HashSet<>(set);
+        result.add(element);
+        return result;
+    }
+}
@@ -0,0 +1,413 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.AccessModifier;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import org.specs.comp.ollir.type.Type;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.CallGraph;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+
+import java.util.*;
+
+/**
+ * Propagates constant arguments into the methods of the class and evaluates calls to pure methods at compile time.
+ * <p>
+ * A method is pure if it writes no fields or arrays, creates no objects and only calls pure methods of the class on
+ * {@code this} or statically, so a call has no effect other than its result. The methods are classified on the
+ * {@link CallGraph} of the class: those with effects of their own are impure, and so are their callers, until nothing
+ * changes.
+ * <p>
+ * A call to a pure method whose arguments are all {@code int} or {@code boolean} constants is evaluated by
+ * interpreting the OLLIR of the method, and replaced by its result, or removed if the result is not used. The
+ * interpreter gives up on what it cannot compute at compile time (fields, arrays, division by zero) and after
+ * {@link #MAX_STEPS} instructions or {@link #MAX_DEPTH} nested calls, and keeps the result of each method for each
+ * list of arguments, so recursive methods are evaluated once for each argument list.
+ * <p>
+ * A parameter that every call of a method that is not public passes the same constant is replaced by that constant,
+ * unless the method assigns it. Like the inliner, this assumes the methods that are not public are not called nor
+ * overridden by other classes, and public methods are only assumed not to be overridden when the heuristics of the
+ * inliner allow it.
+ */
+public class InterproceduralConstantPropagation implements OptimizationPass {
+
+    /**
+     * Maximum number of instructions interpreted to evaluate a call, counting the ones of the calls it makes.
+     */
+    private static final int MAX_STEPS = 100_000;
+
+    /**
+     * Maximum nesting of the calls made by an evaluated call.
+     */
+    private static final int MAX_DEPTH = 100;
+
+    private final boolean assumeFinal;
+
+    /**
+     * @param assumeFinal if true, public methods called on {@code this} are assumed not to be overridden
+     */
+    public InterproceduralConstantPropagation(boolean assumeFinal) {
+        this.assumeFinal = assumeFinal;
+    }
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        var reports = new ArrayList<Report>();
+
+        // Each step commits the graph when it changes it, so the next one can use it
+        var callGraph = CallGraph.build(classUnit);
+        int propagated = propagateArguments(classUnit, callGraph, method, analyses);
+        var evaluated = evaluateCalls(classUnit, findPure(classUnit, callGraph), analyses.getCfg(method));
+
+        boolean changed = propagated + evaluated.size() > 0;
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Interprocedural constant propagation in method '" + method.getMethodName() + "': "
+                            + propagated + " constant parameters propagated, " + evaluated.size()
+                            + " pure calls evaluated" + (evaluated.isEmpty() ? ""
+                            : " (" + String.join(", ", evaluated) + ")")));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    @Override
+    public boolean isExpensive() {
+        return true;
+    }
+
+    /**
+     * @return the methods of the class whose calls have no effect other than their result
+     */
+    private Set<Method> findPure(ClassUnit classUnit, CallGraph callGraph) {
+        Set<Method> pure = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (var method : classUnit.getMethods()) {
+            if (!method.isConstructMethod() && !callGraph.hasUnknownCalls(method)
+                    && method.getInstructions().stream().noneMatch(inst -> hasEffects(classUnit, inst))) {
+                pure.add(method);
+            }
+        }
+
+        // A method that calls an impure method is impure
+        boolean changed = true;
+        while (changed) {
+            changed = pure.removeIf(method -> !pure.containsAll(callGraph.getCallees(method)));
+        }
+        return pure;
+    }
+
+    /**
+     * @return true if the instruction has an effect of its own, other than calling a method of the class that is
+     * known to run
+     */
+    private boolean hasEffects(ClassUnit classUnit, Instruction inst) {
+        if (inst instanceof AssignInstruction assign) {
+            return assign.getDest() instanceof ArrayOperand || hasEffects(classUnit, assign.getRhs());
+        }
+        if (inst instanceof PutFieldInstruction || inst instanceof NewInstruction) {
+            return true;
+        }
+        if (inst instanceof CallInstruction call && !(inst instanceof ArrayLengthInstruction)) {
+            return resolve(classUnit, call, assumeFinal) == null;
+        }
+        return false;
+    }
+
+    /**
+     * @param assumeFinal if true, public methods called on {@code this} are assumed not to be overridden
+     * @return the method of the class that the call runs, if it is static or on {@code this} and cannot be
+     * overridden, or null otherwise
+     */
+    static Method resolve(ClassUnit classUnit, CallInstruction call, boolean assumeFinal) {
+        var callee = CallGraph.resolve(classUnit, call);
+        if (callee == null || callee.isStaticMethod()) {
+            return callee;
+        }
+        if (!((Operand) call.getCaller()).getName().equals("this")
+                || (callee.getMethodAccessModifier() == AccessModifier.PUBLIC && !assumeFinal)) {
+            return null;
+        }
+        return callee;
+    }
+
+    /**
+     * Replaces the parameters of the method that all of its calls pass the same constant by the constant.
+     *
+     * @return the number of parameters replaced
+     */
+    private static int propagateArguments(ClassUnit classUnit, CallGraph callGraph, Method method,
+                                          AnalysisManager analyses) {
+        var sites = callGraph.getCallSites(method);
+        if (method.isConstructMethod() || method.getMethodAccessModifier() == AccessModifier.PUBLIC
+                || sites.isEmpty()
+                || sites.stream().anyMatch(site -> CallGraph.resolve(classUnit, site.call()) != method)) {
+            return 0;
+        }
+
+        var assigned = new HashSet<String>();
+        for (var inst : method.getInstructions()) {
+            var def = InstructionUtils.getDefName(inst);
+            if (def != null) {
+                assigned.add(def);
+            }
+        }
+
+        Map<String, Element> constants = new HashMap<>();
+        var params = method.getParams();
+        for (int i = 0; i < params.size(); i++) {
+            if (!(params.get(i) instanceof Operand param) || !isTracked(param.getType())
+                    || assigned.contains(param.getName())) {
+                continue;
+            }
+
+            LiteralElement constant = null;
+            for (var site : sites) {
+                if (!(site.call().getArguments().get(i) instanceof LiteralElement literal)
+                        || (constant != null && !constant.getLiteral().equals(literal.getLiteral()))) {
+                    constant = null;
+                    break;
+                }
+                constant = literal;
+            }
+            if (constant != null) {
+                constants.put(param.getName(), new LiteralElement(constant.getLiteral(), param.getType()));
+            }
+        }
+        if (constants.isEmpty()) {
+            return 0;
+        }
+
+        var cfg = analyses.getCfg(method);
+        boolean changed = false;
+        for (var block : cfg.getBlocks()) {
+            var instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                var inst = instructions.get(i);
+                var newInst = InstructionUtils.mapUses(inst,
+                        operand -> constants.getOrDefault(operand.getName(), operand));
+                if (newInst != inst) {
+                    instructions.set(i, newInst);
+                    changed = true;
+                }
+            }
+        }
+        if (!changed) {
+            return 0;
+        }
+
+        cfg.commit();
+        return constants.size();
+    }
+
+    /**
+     * Replaces the calls to pure methods with constant arguments by their results.
+     *
+     * @return the names of the methods of the calls that were evaluated
+     */
+    private List<String> evaluateCalls(ClassUnit classUnit, Set<Method> pure, ControlFlowGraph cfg) {
+        var evaluated = new ArrayList<String>();
+        var evaluator = new Evaluator(classUnit, pure);
+
+        for (var block : cfg.getBlocks()) {
+            var instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                var inst = instructions.get(i);
+                var call = CallGraph.getCall(inst);
+                if (call == null || !(inst instanceof CallInstruction || InstructionUtils.getDef(inst) != null)) {
+                    continue;
+                }
+
+                var result = evaluator.evaluateCall(call, Map.of(), 0);
+                if (result == null) {
+                    continue;
+                }
+
+                var def = InstructionUtils.getDef(inst);
+                if (def == null) {
+                    instructions.remove(i--);
+                } else if (isTracked(def.getType())) {
+                    instructions.set(i, new AssignInstruction(def, ((AssignInstruction) inst).getTypeOfAssign(),
+                            new SingleOpInstruction(new LiteralElement(String.valueOf(result), def.getType()))));
+                } else {
+                    continue;
+                }
+                evaluated.add(CallGraph.getMethodName(call));
+            }
+        }
+
+        if (!evaluated.isEmpty()) {
+            cfg.commit();
+        }
+        return evaluated;
+    }
+
+    private static boolean isTracked(Type type) {
+        return BuiltinType.is(type, BuiltinKind.INT32) || BuiltinType.is(type, BuiltinKind.BOOLEAN);
+    }
+
+    /**
+     * Interpreter of the {@code int} and {@code boolean} code of pure methods.
+     */
+    private class Evaluator {
+
+        private record Invocation(Method method, List<Integer> arguments) {
+        }
+
+        private final ClassUnit classUnit;
+        private final Set<Method> pure;
+        private final Map<Invocation, Integer> memo;
+        private final Map<Method, ControlFlowGraph> cfgs;
+        private int steps;
+
+        Evaluator(ClassUnit classUnit, Set<Method> pure) {
+            this.classUnit = classUnit;
+            this.pure = pure;
+            this.memo = new HashMap<>();
+            this.cfgs = new IdentityHashMap<>();
+            this.steps = 0;
+        }
+
+        /**
+         * @param variables values of the variables of the method the call is in
+         * @return the result of the call, 0 if it returns nothing, or null if it cannot be evaluated
+         */
+        Integer evaluateCall(CallInstruction call, Map<String, Integer> variables, int depth) {
+            var callee = resolve(classUnit, call, assumeFinal);
+            if (callee == null || !pure.contains(callee) || depth >= MAX_DEPTH) {
+                return null;
+            }
+
+            var arguments = new ArrayList<Integer>();
+            for (var argument : call.getArguments()) {
+                var value = valueOf(argument, variables);
+                if (value == null) {
+                    return null;
+                }
+                arguments.add(value);
+            }
+
+            var invocation = new Invocation(callee, arguments);
+            var result = memo.get(invocation);
+            if (result == null) {
+                if (depth == 0) {
+                    steps = 0;
+                }
+                result = run(callee, arguments, depth);
+                if (result != null) {
+                    memo.put(invocation, result);
+                }
+            }
+            return result;
+        }
+
+        private Integer run(Method method, List<Integer> arguments, int depth) {
+            var cfg = cfgs.computeIfAbsent(method, ControlFlowGraph::build);
+
+            var variables = new HashMap<String, Integer>();
+            var params = method.getParams();
+            for (int i = 0; i < params.size(); i++) {
+                if (!(params.get(i) instanceof Operand param) || !isTracked(param.getType())) {
+                    return null;
+                }
+                variables.put(param.getName(), arguments.get(i));
+            }
+
+            var block = cfg.getEntry();
+            while (block != null) {
+                var next = block.getNext();
+                for (var inst : block.getInstructions()) {
+                    if (++steps > MAX_STEPS) {
+                        return null;
+                    }
+
+                    if (inst instanceof ReturnInstruction ret) {
+                        return ret.getOperand().isPresent() ? valueOf(ret.getOperand().get(), variables) : 0;
+                    }
+                    if (inst instanceof CondBranchInstruction branch) {
+                        var condition = evaluate(branch.getCondition(), variables, depth);
+                        if (condition == null) {
+                            return null;
+                        }
+                        if (condition != 0) {
+                            next = block.getTaken();
+                        }
+                        continue;
+                    }
+
+                    var def = InstructionUtils.getDef(inst);
+                    var value = evaluate(def != null ? ((AssignInstruction) inst).getRhs() : inst, variables,
+                            depth);
+                    if (value == null) {
+                        return null;
+                    }
+                    if (def != null) {
+                        variables.put(def.getName(), value);
+                    }
+                }
+                block = next;
+            }
+
+            // Falls off the end, only void methods do
+            return BuiltinType.is(method.getReturnType(), BuiltinKind.VOID) ? 0 : null;
+        }
+
+        private Integer evaluate(Instruction inst, Map<String, Integer> variables, int depth) {
+            if (inst instanceof SingleOpInstruction single) {
+                return valueOf(single.getSingleOperand(), variables);
+            }
+
+            if (inst instanceof UnaryOpInstruction unary) {
+                var operand = valueOf(unary.getOperand(), variables);
+                if (operand == null) {
+                    return null;
+                }
+                return switch (unary.getOperation().getOpType()) {
+                    case NOTB -> operand == 0 ? 1 : 0;
+                    case NOT -> ~operand;
+                    default -> null;
+                };
+            }
+
+            if (inst instanceof BinaryOpInstruction binary) {
+                var left = valueOf(binary.getLeftOperand(), variables);
+                var right = valueOf(binary.getRightOperand(), variables);
+                if (left == null || right == null) {
+                    return null;
+                }
+                return ConstantPropagation.compute(binary.getOperation().getOpType(), left, right);
+            }
+
+            if (inst instanceof CallInstruction call) {
+                return evaluateCall(call, variables, depth + 1);
+            }
+
+            return null;
+        }
+
+        private static Integer valueOf(Element element, Map<String, Integer> variables) {
+            if (element instanceof LiteralElement literal) {
+                if (!isTracked(literal.getType())) {
+                    return null;
+                }
+                try {
+                    return Integer.parseInt(literal.getLiteral());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            if (!InstructionUtils.isVariable(element) || element instanceof ArrayOperand) {
+                return null;
+            }
+            return variables.get(((Operand) element).getName());
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.*;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.cfg.Loop;
+import pt.up.fe.comp2025.optimization.ssa.SsaForm;
+
+import java.util.*;
+
+/**
+ * Moves the computations whose value does not change inside a loop to the preheader of the loop.
+ * <p>
+ * Works on the SSA form, so an instruction is invariant when the versions it reads are defined outside the loop or
+ * by other invariant instructions. Instructions without side effects that cannot throw are hoisted from any block
+ * of the loop, including {@code getfield} of fields the loop never writes. Instructions that may throw (array loads,
+ * {@code arraylength}, divisions) are only hoisted from the header, which always executes when the loop is entered,
+ * and only if nothing before them in the header has side effects. Loads are not hoisted from loops with calls.
+ * <p>
+ * Inner loops are processed first, so their invariants can then leave the enclosing loops too. Each hoisted
+ * instruction is remarked at its position, and so is each invariant load or computation that could not be hoisted,
+ * with the reason.
+ */
+public class LoopInvariantCodeMotion implements OptimizationPass {
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        if (analyses.getLoops(method).isEmpty()) {
+            return PassResult.unchanged();
+        }
+
+        var reports = new ArrayList<Report>();
+
+        var domTree = analyses.getDominatorTree(method);
+        var hoisting = new Hoisting(analyses.takeCfg(method), domTree);
+        boolean changed = hoisting.run();
+        reports.addAll(hoisting.remarks);
+        reports.addAll(hoisting.missed.values());
+
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Loop-invariant code motion in method '" + method.getMethodName() + "': " + hoisting.hoisted
+                            + " instructions hoisted out of " + hoisting.loops + " loops"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    @Override
+    public boolean isExpensive() {
+        return true;
+    }
+
+    private class Hoisting {
+
+        private final ControlFlowGraph cfg;
+        private final DominatorTree domTree;
+
+        private int hoisted;
+        private int loops;
+        private final List<OptimizationRemark> remarks;
+
+        // Invariant instructions left in their loops, an enclosing loop replaces the remark of an inner one
+        private final Map<Instruction, OptimizationRemark> missed;
+
+        private List<Loop> found;
+        private SsaForm ssa;
+
+        Hoisting(ControlFlowGraph cfg, DominatorTree domTree) {
+            this.cfg = cfg;
+            this.domTree = domTree;
+            this.remarks = new ArrayList<>();
+            this.missed = new LinkedHashMap<>();
+        }
+
+        /**
+         * @return true if the code was changed
+         */
+        boolean run() {
+            cfg.removeUnreachable();
+            for (var loop : Loop.find(cfg, domTree)) {
+                cfg.insertPreheader(loop);
+            }
+
+            // The new preheaders of inner loops belong to the enclosing loops
+            ssa = SsaForm.construct(cfg);
+            found = Loop.find(cfg, ssa.getDominatorTree());
+            for (var loop : found) {
+                var preheader = loop.getPreheader(cfg);
+                if (preheader == null) {
+                    continue;
+                }
+                int before = hoisted;
+                hoist(loop, preheader);
+                if (hoisted > before) {
+                    loops++;
+                }
+            }
+            if (hoisted == 0) {
+                return false;
+            }
+
+            ssa.destruct();
+            cfg.commit();
+            return true;
+        }
+
+        private void hoist(Loop loop, BasicBlock preheader) {
+            var memory = new LoopMemory(loop);
+            var definedInLoop = new HashSet<String>();
+            for (var block : loop.getBlocks()) {
+                for (var phi : ssa.getPhis(block)) {
+                    definedInLoop.add(phi.getDest().getName());
+                }
+                for (var inst : block.getInstructions()) {
+                    var def = InstructionUtils.getDefName(inst);
+                    if (def != null) {
+                        definedInLoop.add(def);
+                    }
+                }
+            }
+            var invariant = new HashSet<String>();
+
+            var order = ssa.getDominatorTree().getReversePostOrder().stream().filter(loop::contains).toList();
+
+            // Hoisting an instruction can make the ones that read its result invariant
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+
+                for (var block : order) {
+                    var instructions = block.getInstructions();
+                    for (int i = 0; i < instructions.size(); i++) {
+                        var inst = instructions.get(i);
+                        if (!isInvariant(inst, definedInLoop, invariant) || !isCandidate(inst) || getObstacle(inst,
+                                block == loop.getHeader(), instructions.subList(0, i), memory) != null) {
+                            continue;
+                        }
+
+                        instructions.remove(i--);
+                        preheader.getInstructions().add(preheader.getInsertionPoint(), inst);
+                        invariant.add(InstructionUtils.getDefName(inst));
+                        hoisted++;
+                        changed = true;
+
+                        missed.remove(inst);
+                        remarks.add(OptimizationRemark.applied(getName(), cfg.getMethod(), inst, getDepth(block),
+                                "Loop-invariant " + describe(inst) + " in method '"
+                                        + cfg.getMethod().getMethodName() + "' hoisted out of a loop"));
+                    }
+                }
+            }
+
+            for (var block : order) {
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    var inst = instructions.get(i);
+                    if (!isInvariant(inst, definedInLoop, invariant) || !isCandidate(inst)) {
+                        continue;
+                    }
+                    var obstacle = getObstacle(inst, block == loop.getHeader(), instructions.subList(0, i), memory);
+                    if (obstacle == null) {
+                        continue;
+                    }
+                    missed.put(inst, OptimizationRemark.missed(getName(), cfg.getMethod(), inst, getDepth(block),
+                            "Loop-invariant " + describe(inst) + " in method '" + cfg.getMethod().getMethodName()
+                                    + "' not hoisted: " + obstacle));
+                }
+            }
+        }
+
+        /**
+         * @return the number of loops the block is inside of
+         */
+        private int getDepth(BasicBlock block) {
+            return (int) found.stream().filter(loop -> loop.contains(block)).count();
+        }
+
+        /**
+         * @return what the instruction computes, with the original names of the variables it reads
+         */
+        private String describe(Instruction inst) {
+            var rhs = ((AssignInstruction) inst).getRhs();
+            if (rhs instanceof GetFieldInstruction getField) {
+                return "load of field '" + getField.getField().getName() + "'";
+            }
+            if (rhs instanceof SingleOpInstruction single && single.getSingleOperand() instanceof ArrayOperand array) {
+                return "load of array '" + ssa.getVariable(array.getName()) + "'";
+            }
+            if (rhs instanceof ArrayLengthInstruction arrayLength) {
+                var array = arrayLength.getCaller();
+                return array instanceof Operand operand ? "length of array '" + ssa.getVariable(operand.getName())
+                        + "'" : "length of array";
+            }
+            return "computation";
+        }
+
+        private static boolean isInvariant(Instruction inst, Set<String> definedInLoop, Set<String> invariant) {
+            if (InstructionUtils.getDef(inst) == null) {
+                return false;
+            }
+            for (var use : InstructionUtils.getUses(inst)) {
+                if (definedInLoop.contains(use) && !invariant.contains(use)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return true if the instruction is a load or a computation, which can be hoisted when it is invariant
+         */
+        private static boolean isCandidate(Instruction inst) {
+            var rhs = ((AssignInstruction) inst).getRhs();
+
+            // Copies are left to the coalescing of the SSA versions
+            if (rhs instanceof SingleOpInstruction single) {
+                return single.getSingleOperand() instanceof ArrayOperand;
+            }
+            return rhs instanceof GetFieldInstruction || rhs instanceof BinaryOpInstruction
+                    || rhs instanceof UnaryOpInstruction || rhs instanceof ArrayLengthInstruction;
+        }
+
+        /**
+         * @param inHeader  whether the instruction is in the header of the loop
+         * @param preceding the instructions before it in its block
+         * @return why the invariant instruction cannot be hoisted, or null if it can
+         */
+        private static String getObstacle(Instruction inst, boolean inHeader, List<Instruction> preceding,
+                                          LoopMemory memory) {
+            var rhs = ((AssignInstruction) inst).getRhs();
+
+            if (rhs instanceof GetFieldInstruction getField) {
+                if (memory.hasCalls) {
+                    return "the loop calls methods that may write the field";
+                }
+                if (memory.writtenFields.contains(getField.getField().getName())) {
+                    return "the field is written in the loop";
+                }
+            } else if (rhs instanceof SingleOpInstruction) {
+                if (memory.hasCalls) {
+                    return "the loop calls methods that may write the array";
+                }
+                if (memory.writesArrays) {
+                    return "the loop writes to arrays";
+                }
+            }
+
+            if (InstructionUtils.isPure(inst)) {
+                return null;
+            }
+
+            // It may throw, so it must be executed as soon as the loop is entered, and nothing observable can
+            // happen before it
+            if (!inHeader || !preceding.stream().allMatch(InstructionUtils::isPure)) {
+                return "it may throw an exception and does not run first when the loop is entered";
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Memory written inside a loop.
+     */
+    private static class LoopMemory {
+
+        private final Set<String> writtenFields;
+        private boolean writesArrays;
+        private boolean hasCalls;
+
+        LoopMemory(Loop loop) {
+            this.writtenFields = new HashSet<>();
+
+            for (var block : loop.getBlocks()) {
+                for (var inst : block.getInstructions()) {
+                    var rhs = inst instanceof AssignInstruction assign ? assign.getRhs() : inst;
+                    if (inst instanceof AssignInstruction assign && assign.getDest() instanceof ArrayOperand) {
+                        writesArrays = true;
+                    } else if (inst instanceof PutFieldInstruction putField) {
+                        writtenFields.add(putField.getField().getName());
+                    } else if (rhs instanceof CallInstruction && !(rhs instanceof ArrayLengthInstruction)
+                            && !(rhs instanceof NewInstruction)) {
+                        hasCalls = true;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.BinaryOpInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.cfg.Loop;
+
+import java.util.*;
+
+/**
+ * Unrolls the loops that run a number of iterations known at compile time.
+ * <p>
+ * A counted loop has a header with only the test {@code i < n} (or any other comparison) of a variable with a
+ * literal, a single update {@code i = i + c} with a literal {@code c} done once in every iteration, and no other exit.
+ * The value of {@code i} before the loop is the literal assigned to it on the single path that reaches the loop, as
+ * left by {@link ConstantPropagation}, so the number of iterations is found by running the test and the update.
+ * <p>
+ * A loop whose unrolled body fits in the size limit is replaced by one copy of the body for each iteration, and
+ * constant propagation then computes the values of {@code i} in each copy. Otherwise, the body is copied as many
+ * times as the unroll factor allows within the limit, and the test is only done once for all the copies. The
+ * iterations left over by the factor are done by copies of the body before the loop, since their number is known,
+ * so no remainder loop is needed.
+ */
+public class LoopUnrolling implements OptimizationPass {
+
+    /**
+     * The loop is not unrolled if it runs more iterations than this, so finding the count is always fast.
+     */
+    private static final int MAX_ITERATIONS = 1 << 16;
+
+    private final int factor;
+    private final int maxSize;
+
+    /**
+     * @param factor  maximum number of copies of the body in a loop that is partially unrolled
+     * @param maxSize maximum number of instructions of the code that replaces the body of a loop
+     */
+    public LoopUnrolling(int factor, int maxSize) {
+        this.factor = factor;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        if (analyses.getLoops(method).isEmpty()) {
+            return PassResult.unchanged();
+        }
+
+        var reports = new ArrayList<Report>();
+
+        var unroller = new Unroller(analyses.takeCfg(method));
+        unroller.run();
+        reports.addAll(unroller.missed);
+
+        boolean changed = unroller.full + unroller.partial > 0;
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Loop unrolling in method '" + method.getMethodName() + "': " + unroller.full
+                            + " loops fully unrolled, " + unroller.partial + " loops partially unrolled"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    @Override
+    public boolean isExpensive() {
+        return true;
+    }
+
+    /**
+     * The bounds and initial values of the loops are only recognized once they are literals.
+     */
+    @Override
+    public List<Class<? extends OptimizationPass>> getDependencies() {
+        return List.of(ConstantPropagation.class);
+    }
+
+    /**
+     * A counted loop: its test, with the edge that stays in the loop, and the update of its variable.
+     */
+    private record CountedLoop(Loop loop, BasicBlock bodyEntry, BasicBlock exit, String variable, OperationType test,
+                               int bound, boolean variableOnLeft, boolean stayWhenTrue, int step) {
+
+        boolean stays(int value) {
+            boolean result = variableOnLeft ? compare(test, value, bound) : compare(test, bound, value);
+            return result == stayWhenTrue;
+        }
+    }
+
+    private class Unroller {
+
+        private final ControlFlowGraph cfg;
+        private final Set<BasicBlock> visited;
+        private final List<OptimizationRemark> missed;
+
+        private int full;
+        private int partial;
+
+        Unroller(ControlFlowGraph cfg) {
+            this.cfg = cfg;
+            this.visited = new HashSet<>();
+            this.missed = new ArrayList<>();
+        }
+
+        void run() {
+            cfg.removeUnreachable();
+
+            // Each unrolling changes the graph, so the loops are found again after it
+            while (unrollNext()) {
+            }
+
+            if (full + partial > 0) {
+                cfg.commit();
+            }
+        }
+
+        private boolean unrollNext() {
+            var found = Loop.find(cfg, new DominatorTree(cfg));
+            for (var loop : found) {
+                if (!visited.add(loop.getHeader()) || hasInnerLoop(loop, found)) {
+                    continue;
+                }
+
+                int depth = (int) found.stream().filter(other -> other.contains(loop.getHeader())).count();
+                var preheader = cfg.insertPreheader(loop);
+                var counted = asCountedLoop(loop, new DominatorTree(cfg));
+                if (counted == null) {
+                    miss(loop, depth, "it is not a counted loop");
+                    continue;
+                }
+
+                var initial = findInitialValue(preheader, counted.variable());
+                if (initial == null) {
+                    miss(loop, depth, "the initial value of '" + counted.variable() + "' is not known");
+                    continue;
+                }
+
+                int iterations = countIterations(counted, initial);
+                if (iterations < 0) {
+                    miss(loop, depth, "it runs more than " + MAX_ITERATIONS + " iterations");
+                    continue;
+                }
+                if (unroll(counted, preheader, iterations)) {
+                    return true;
+                }
+                miss(loop, depth, "its body is too large to be unrolled in " + maxSize + " instructions");
+            }
+            return false;
+        }
+
+        private void miss(Loop loop, int depth, String reason) {
+            var method = cfg.getMethod();
+            missed.add(OptimizationRemark.missed(getName(), method, loop.getHeader().getBranch(), depth,
+                    "Loop of method '" + method.getMethodName() + "' not unrolled: " + reason));
+        }
+
+        /**
+         * @return the test and the update of the loop, or null if it is not a counted loop
+         */
+        private CountedLoop asCountedLoop(Loop loop, DominatorTree domTree) {
+            var header = loop.getHeader();
+            var branch = header.getBranch();
+            if (branch == null || header.getInstructions().size() != 1
+                    || !(branch.getCondition() instanceof BinaryOpInstruction condition)
+                    || !isComparison(condition.getOperation().getOpType()) || loop.getExits().size() != 1) {
+                return null;
+            }
+
+            boolean stayWhenTrue = loop.contains(header.getTaken());
+            var bodyEntry = stayWhenTrue ? header.getTaken() : header.getNext();
+            var exit = stayWhenTrue ? header.getNext() : header.getTaken();
+            if (bodyEntry == header || loop.contains(exit)) {
+                return null;
+            }
+            // Only the header leaves the loop
+            for (var block : loop.getBlocks()) {
+                if (block != header && block.getSuccessors().stream().anyMatch(succ -> !loop.contains(succ))) {
+                    return null;
+                }
+            }
+
+            var left = condition.getLeftOperand();
+            var right = condition.getRightOperand();
+            boolean variableOnLeft = isIntVariable(left) && right instanceof LiteralElement;
+            if (!variableOnLeft && !(isIntVariable(right) && left instanceof LiteralElement)) {
+                return null;
+            }
+            var variable = ((Operand) (variableOnLeft ? left : right)).getName();
+            int bound = Integer.parseInt(((LiteralElement) (variableOnLeft ? right : left)).getLiteral());
+
+            var step = findStep(loop, variable, domTree);
+            if (step == null) {
+                return null;
+            }
+            return new CountedLoop(loop, bodyEntry, exit, variable, condition.getOperation().getOpType(), bound,
+                    variableOnLeft, stayWhenTrue, step);
+        }
+
+        /**
+         * @return the constant added to the variable in every iteration, or null if it is changed in any other way
+         */
+        private Integer findStep(Loop loop, String variable, DominatorTree domTree) {
+            Integer step = null;
+            for (var block : loop.getBlocks()) {
+                for (var inst : block.getInstructions()) {
+                    if (!variable.equals(InstructionUtils.getDefName(inst))) {
+                        continue;
+                    }
+                    if (step != null || !loop.getLatches().stream().allMatch(latch -> domTree.dominates(block, latch))
+                            || !(((AssignInstruction) inst).getRhs() instanceof BinaryOpInstruction binary)) {
+                        return null;
+                    }
+                    step = asIncrement(binary, variable);
+                    if (step == null) {
+                        return null;
+                    }
+                }
+            }
+            return step;
+        }
+
+        /**
+         * @return the literal last assigned to the variable on the single path that reaches the preheader, or null if
+         * it is not known
+         */
+        private Integer findInitialValue(BasicBlock preheader, String variable) {
+            var block = preheader;
+            var seen = new HashSet<BasicBlock>();
+            while (block != null && seen.add(block)) {
+                var instructions = block.getInstructions();
+                for (int i = instructions.size() - 1; i >= 0; i--) {
+                    var inst = instructions.get(i);
+                    if (!variable.equals(InstructionUtils.getDefName(inst))) {
+                        continue;
+                    }
+                    return ((AssignInstruction) inst).getRhs() instanceof SingleOpInstruction single
+                            && single.getSingleOperand() instanceof LiteralElement literal
+                            ? Integer.valueOf(literal.getLiteral()) : null;
+                }
+                block = block.getPredecessors().size() == 1 ? block.getPredecessors().getFirst() : null;
+            }
+            return null;
+        }
+
+        /**
+         * @return the number of iterations of the loop, or -1 if it runs too many of them
+         */
+        private int countIterations(CountedLoop counted, int initial) {
+            int value = initial;
+            for (int iterations = 0; iterations <= MAX_ITERATIONS; iterations++) {
+                if (!counted.stays(value)) {
+                    return iterations;
+                }
+                value += counted.step();
+            }
+            return -1;
+        }
+
+        private boolean unroll(CountedLoop counted, BasicBlock preheader, int iterations) {
+            var loop = counted.loop();
+            var header = loop.getHeader();
+            var body = cfg.getBlocks().stream().filter(block -> block != header && loop.contains(block)).toList();
+            int bodySize = body.stream().mapToInt(block -> block.getInstructions().size()).sum();
+
+            if ((long) iterations * bodySize <= maxSize) {
+                // Every iteration is a copy of the body, and the header is no longer reached
+                var copies = copyBody(body, counted, iterations, counted.exit(), preheader);
+                preheader.setNext(copies == null ? counted.exit() : copies);
+                full++;
+            } else {
+                int copies = Math.min(factor, maxSize / Math.max(bodySize, 1));
+                while (copies > 1 && (copies + iterations % copies) * bodySize > maxSize) {
+                    copies--;
+                }
+                if (copies < 2 || iterations / copies < 2) {
+                    return false;
+                }
+
+                // The iterations left over are done before the loop, so the rest is a multiple of the copies
+                int remainder = iterations % copies;
+                if (remainder > 0) {
+                    preheader.setNext(copyBody(body, counted, remainder, header, preheader));
+                }
+                var unrolled = copyBody(body, counted, copies, header, body.getLast());
+                header.replaceSuccessor(counted.bodyEntry(), unrolled);
+                partial++;
+            }
+
+            cfg.updateEdges();
+            cfg.removeUnreachable();
+            return true;
+        }
+
+        /**
+         * Creates the given number of copies of the body, each one continuing to the next, and the last one to the
+         * given block, and places them in the layout after another block.
+         *
+         * @return the first block of the first copy, or null if there are no copies
+         */
+        private BasicBlock copyBody(List<BasicBlock> body, CountedLoop counted, int count, BasicBlock after,
+                                    BasicBlock position) {
+            var header = counted.loop().getHeader();
+            List<Map<BasicBlock, BasicBlock>> copies = new ArrayList<>();
+            for (int k = 0; k < count; k++) {
+                Map<BasicBlock, BasicBlock> copy = new HashMap<>();
+                for (var block : body) {
+                    var clone = cfg.newBlock();
+                    for (var inst : block.getInstructions()) {
+                        clone.getInstructions().add(InstructionUtils.copy(inst));
+                    }
+                    copy.put(block, clone);
+                }
+                copies.add(copy);
+            }
+
+            for (int k = 0; k < count; k++) {
+                var copy = copies.get(k);
+                var target = k + 1 < count ? copies.get(k + 1).get(counted.bodyEntry()) : after;
+                for (var block : body) {
+                    var clone = copy.get(block);
+                    clone.setNext(block.getNext() == header ? target : copy.get(block.getNext()));
+                    if (block.getTaken() != null) {
+                        clone.setTaken(block.getTaken() == header ? target : copy.get(block.getTaken()));
+                    }
+                    cfg.insertAfter(position, clone);
+                    position = clone;
+                }
+            }
+
+            return copies.isEmpty() ? null : copies.getFirst().get(counted.bodyEntry());
+        }
+    }
+
+    private static boolean hasInnerLoop(Loop loop, List<Loop> loops) {
+        return loops.stream().anyMatch(other -> other != loop && loop.contains(other.getHeader()));
+    }
+
+    /**
+     * @return the constant added to the variable by {@code i + c}, {@code c + i} or {@code i - c}, or null if the
+     * instruction is not one of them
+     */
+    private static Integer asIncrement(BinaryOpInstruction binary, String variable) {
+        var left = binary.getLeftOperand();
+        var right = binary.getRightOperand();
+        var opType = binary.getOperation().getOpType();
+
+        if (opType == OperationType.ADD && isVariable(left, variable) && right instanceof LiteralElement literal) {
+            return Integer.valueOf(literal.getLiteral());
+        }
+        if (opType == OperationType.ADD && isVariable(right, variable) && left instanceof LiteralElement literal) {
+            return Integer.valueOf(literal.getLiteral());
+        }
+        if (opType == OperationType.SUB && isVariable(left, variable) && right instanceof LiteralElement literal) {
+            return -Integer.parseInt(literal.getLiteral());
+        }
+        return null;
+    }
+
+    private static boolean isComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH, LTE, GTH, GTE, EQ, NEQ -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean compare(OperationType test, int left, int right) {
+        return switch (test) {
+            case LTH -> left < right;
+            case LTE -> left <= right;
+            case GTH -> left > right;
+            case GTE -> left >= right;
+            case EQ -> left == right;
+            case NEQ -> left != right;
+            default -> throw new IllegalArgumentException("Not a comparison: " + test);
+        };
+    }
+
+    private static boolean isIntVariable(Element element) {
+        return InstructionUtils.isVariable(element) && !(element instanceof ArrayOperand)
+                && element.getType() instanceof BuiltinType type && type.getKind() == BuiltinKind.INT32;
+    }
+
+    private static boolean isVariable(Element element, String name) {
+        return isIntVariable(element) && ((Operand) element).getName().equals(name);
+    }
+}
@@ -0,0 +1,55 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents an optimization pass over the OLLIR code of a class.
+ */
+public interface OptimizationPass {
+
+    /**
+     * Optimizes a method of the given class in place.
+     *
+     * @param classUnit the class of the method, other methods can be read but not changed
+     * @param method    the method that will be optimized
+     * @param analyses  the analyses of the methods of the class, which stay valid while the methods are not changed
+     * @return whether the method was changed and the reports of the optimization
+     */
+    PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses);
+
+    /**
+     * @return the name of the pass in the statistics of the pass manager
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * @return how many times each rule of the pass was applied, in all the methods it optimized, printed with the
+     * statistics of the pass manager; empty if the pass has no separate rules
+     */
+    default Map<String, Integer> getRuleHits() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @return the passes that must run before this one in a pipeline, because this pass relies on their results
+     */
+    default List<Class<? extends OptimizationPass>> getDependencies() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return true if the cost of the pass grows faster than the size of the code, or the pass makes the code larger,
+     * so it is skipped when the optimization budget is exceeded
+     */
+    default boolean isExpensive() {
+        return false;
+    }
+
+}
@@ -0,0 +1,222 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationBudget;
+
+import java.util.*;
+
+/**
+ * Runs a pipeline of optimization passes over the OLLIR code of a class.
+ * <p>
+ * The pipeline is a sequence of groups of passes. A group added with {@link #addFixpoint} is run again while any of
+ * its passes changes the code, up to a maximum number of iterations. A pass can only be added after the passes it
+ * depends on.
+ * <p>
+ * The passes share the analyses of the methods through an {@link AnalysisManager}, and say if they changed each
+ * method, so only the analyses of the changed methods are computed again. The statistics, with the time of each pass
+ * and the size of the code before and after it, are printed if requested, followed by the hits of the rules of the
+ * passes that have them.
+ * <p>
+ * The passes run one method at a time, and each run is charged to the budget of the method as a visit of each of
+ * its instructions, along with the time it took. The expensive passes are skipped for the methods over their
+ * budget, and for every method once the compilation is over its budget, which also stops the repetition of the
+ * fixpoint groups.
+ */
+public class PassManager {
+
+    private final List<Group> groups;
+    private final Set<Class<? extends OptimizationPass>> added;
+    private final boolean printStatistics;
+    private final OptimizationBudget budget;
+
+    private final AnalysisManager analyses;
+
+    /**
+     * @param printStatistics if the time and the changes of the size of the code of each pass are printed
+     */
+    public PassManager(boolean printStatistics) {
+        this(printStatistics, OptimizationBudget.unlimited());
+    }
+
+    /**
+     * @param printStatistics if the time and the changes of the size of the code of each pass are printed
+     * @param budget          limits of the work and size of the code above which the expensive passes are skipped
+     */
+    public PassManager(boolean printStatistics, OptimizationBudget budget) {
+        this.groups = new ArrayList<>();
+        this.added = new HashSet<>();
+        this.printStatistics = printStatistics;
+        this.budget = budget;
+        this.analyses = new AnalysisManager();
+    }
+
+    /**
+     * Adds a pass that runs once.
+     */
+    public PassManager add(OptimizationPass pass) {
+        return addFixpoint(1, pass);
+    }
+
+    /**
+     * Adds passes that run in order, again and again until none of them changes the code.
+     *
+     * @param maxIterations maximum number of times the passes are run
+     * @throws IllegalArgumentException if a pass depends on a pass that was not added before it
+     */
+    public PassManager addFixpoint(int maxIterations, OptimizationPass... passes) {
+        for (var pass : passes) {
+            for (var dependency : pass.getDependencies()) {
+                if (!added.contains(dependency)) {
+                    throw new IllegalArgumentException("Pass '" + pass.getName() + "' must run after pass '"
+                            + dependency.getSimpleName() + "'");
+                }
+            }
+            added.add(pass.getClass());
+        }
+
+        groups.add(new Group(List.of(passes), maxIterations));
+        return this;
+    }
+
+    /**
+     * Optimizes the given class in place.
+     *
+     * @return the reports of all passes
+     */
+    public List<Report> run(ClassUnit classUnit) {
+        var reports = new ArrayList<Report>();
+        var statistics = new ArrayList<String>();
+
+        for (var group : groups) {
+            for (int iteration = 1; iteration <= group.maxIterations; iteration++) {
+                boolean changed = false;
+                for (var pass : group.passes) {
+                    var name = iteration == 1 ? pass.getName() : pass.getName() + " #" + iteration;
+                    changed |= run(pass, name, classUnit, reports, statistics);
+                }
+                if (!changed || budget.isExceeded()) {
+                    break;
+                }
+            }
+        }
+
+        if (printStatistics) {
+            System.out.println("Optimization passes of class '" + classUnit.getClassName() + "':");
+            statistics.forEach(System.out::println);
+            System.out.println("  Analyses: " + analyses.getBuilt() + " graphs built, " + analyses.getReused()
+                    + " requests answered with a graph already built");
+            printRuleHits();
+        }
+
+        return reports;
+    }
+
+    /**
+     * @return true if the pass changed the code
+     */
+    private boolean run(OptimizationPass pass, String name, ClassUnit classUnit, List<Report> reports,
+                        List<String> statistics) {
+        int methodsBefore = classUnit.getNumMethods();
+        var sizeBefore = printStatistics ? measure(classUnit) : null;
+
+        budget.measure(classUnit);
+        boolean changed = false;
+
+        long start = System.nanoTime();
+        for (var method : List.copyOf(classUnit.getMethods())) {
+            if (pass.isExpensive() && !budget.allows(method)) {
+                continue;
+            }
+
+            int visits = method.getInstructions().size();
+            long methodStart = System.nanoTime();
+            var result = pass.optimize(classUnit, method, analyses);
+            budget.spend(method, visits, System.nanoTime() - methodStart);
+
+            reports.addAll(result.reports());
+            if (result.changed()) {
+                analyses.invalidate(method);
+                changed = true;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        analyses.retain(classUnit.getMethods());
+        changed |= classUnit.getNumMethods() != methodsBefore;
+
+        if (printStatistics) {
+            statistics.add(String.format("  %-28s %9.3f ms  %s", name, elapsed / 1e6,
+                    sizeBefore.describeChange(measure(classUnit))).stripTrailing());
+        }
+
+        return changed;
+    }
+
+    /**
+     * Prints the hits of the rules of each pass, added up over the times the pass was in the pipeline.
+     */
+    private void printRuleHits() {
+        Map<String, Map<String, Integer>> hitsByPass = new LinkedHashMap<>();
+        for (var group : groups) {
+            for (var pass : group.passes) {
+                var hits = hitsByPass.computeIfAbsent(pass.getName(), name -> new LinkedHashMap<>());
+                pass.getRuleHits().forEach((rule, count) -> hits.merge(rule, count, Integer::sum));
+            }
+        }
+
+        hitsByPass.forEach((pass, hits) -> {
+            if (!hits.isEmpty()) {
+                System.out.println("  Rules of " + pass + ":");
+                hits.forEach((rule, count) -> System.out.println(String.format("    %-26s %9d", rule, count)));
+            }
+        });
+    }
+
+    private CodeSize measure(ClassUnit classUnit) {
+        var size = new CodeSize(0, 0, 0, 0, 0);
+        for (var method : classUnit.getMethods()) {
+            var cfg = analyses.getCfg(method);
+            var liveness = analyses.getLiveness(method);
+
+            int maxLive = 0;
+            for (var block : cfg.getBlocks()) {
+                maxLive = Math.max(maxLive, liveness.getLiveIn(block).size());
+                for (var live : liveness.getLiveAfter(block)) {
+                    maxLive = Math.max(maxLive, live.size());
+                }
+            }
+
+            size = size.plus(new CodeSize(method.getInstructions().size(), cfg.getBlocks().size(),
+                    analyses.getLoops(method).size(), method.getVarTable().size(), maxLive));
+        }
+        return size;
+    }
+
+    private record Group(List<OptimizationPass> passes, int maxIterations) {
+    }
+
+    /**
+     * Size of the code of a class, the highest number of variables live at once is the largest of its methods.
+     */
+    private record CodeSize(int instructions, int blocks, int loops, int locals, int maxLive) {
+
+        CodeSize plus(CodeSize other) {
+            return new CodeSize(instructions + other.instructions, blocks + other.blocks, loops + other.loops,
+                    locals + other.locals, Math.max(maxLive, other.maxLive));
+        }
+
+        String describeChange(CodeSize after) {
+            return describe("instructions", instructions, after.instructions)
+                    + describe("blocks", blocks, after.blocks)
+                    + describe("loops", loops, after.loops)
+                    + describe("locals", locals, after.locals)
+                    + describe("max live", maxLive, after.maxLive);
+        }
+
+        private static String describe(String name, int before, int after) {
+            var change = after == before ? "" : String.format(" (%+d)", after - before);
+            return String.format("  %-28s", name + " " + before + " -> " + after + change);
+        }
+    }
+}
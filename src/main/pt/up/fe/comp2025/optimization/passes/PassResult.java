@@ -0,0 +1,18 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.List;
+
+/**
+ * Result of an optimization pass on a method.
+ *
+ * @param changed true if the code of the method was changed, so its analyses are no longer valid
+ * @param reports the optimizations applied or missed
+ */
+public record PassResult(boolean changed, List<Report> reports) {
+
+    public static PassResult unchanged() {
+        return new PassResult(false, List.of());
+    }
+}
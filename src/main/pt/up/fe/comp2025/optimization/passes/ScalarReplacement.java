@@ -0,0 +1,421 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.cfg.Loop;
+
+import java.util.*;
+
+/**
+ * Keeps the fields of {@code this} in local variables where the accesses to them can be proven not to be observed.
+ * <p>
+ * Inside a loop, a field that no call of the loop can read or write is loaded into a new local in the preheader, the
+ * {@code getfield} and {@code putfield} of the loop read and write the local instead, and, if the loop writes it, it
+ * is stored back on every edge that leaves the loop. A call is only known not to touch the field if it runs a method
+ * of the class that cannot be overridden and whose code, and the code of the methods it calls, never accesses it;
+ * any other call keeps the loop as it is. The value is not stored back when the loop throws, which is not observable
+ * since jmm cannot catch exceptions.
+ * <p>
+ * Then, the {@code getfield} of a field whose value is already in a variable or is a constant on every path, because
+ * it was loaded or stored before and nothing in between could have changed it, is replaced by a copy of that value,
+ * which is decided with an available-fields analysis.
+ */
+public class ScalarReplacement implements OptimizationPass {
+
+    private static final String PREFIX = "field";
+
+    private final boolean assumeFinal;
+
+    /**
+     * @param assumeFinal if true, public methods called on {@code this} are assumed not to be overridden
+     */
+    public ScalarReplacement(boolean assumeFinal) {
+        this.assumeFinal = assumeFinal;
+    }
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        var reports = new ArrayList<Report>();
+
+        // The preheaders are inserted before knowing if the fields of the loops can be kept in locals
+        var cfg = analyses.getLoops(method).isEmpty() ? analyses.getCfg(method) : analyses.takeCfg(method);
+        var replacement = new Replacement(classUnit, method, cfg, findAccessedFields(classUnit));
+        replacement.run();
+
+        boolean changed = replacement.replaced + replacement.forwarded > 0;
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Scalar replacement in method '" + method.getMethodName() + "': " + replacement.replaced
+                            + " fields kept in locals in " + replacement.loops + " loops and "
+                            + replacement.forwarded + " field loads replaced"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    @Override
+    public boolean isExpensive() {
+        return true;
+    }
+
+    /**
+     * @return the names of the fields each method of the class can access, directly or in the methods it calls, on
+     * any object. The methods that make calls that cannot be resolved are left out, since they can access any field.
+     */
+    private Map<Method, Set<String>> findAccessedFields(ClassUnit classUnit) {
+        Map<Method, Set<String>> accessed = new IdentityHashMap<>();
+        Map<Method, List<Method>> callees = new IdentityHashMap<>();
+        for (var method : classUnit.getMethods()) {
+            var fields = new HashSet<String>();
+            var calls = new ArrayList<Method>();
+            boolean unknown = false;
+            for (var inst : method.getInstructions()) {
+                var rhs = inst instanceof AssignInstruction assign ? assign.getRhs() : inst;
+                if (rhs instanceof FieldInstruction field) {
+                    fields.add(field.getField().getName());
+                } else if (isCall(rhs)) {
+                    var callee = InterproceduralConstantPropagation.resolve(classUnit, (CallInstruction) rhs,
+                            assumeFinal);
+                    if (callee == null) {
+                        unknown = true;
+                    } else {
+                        calls.add(callee);
+                    }
+                }
+            }
+            if (!unknown) {
+                accessed.put(method, fields);
+                callees.put(method, calls);
+            }
+        }
+
+        // A method accesses the fields of the methods it calls, and can access any field if they can
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var method : new ArrayList<>(accessed.keySet())) {
+                var fields = accessed.get(method);
+                for (var callee : callees.get(method)) {
+                    var calleeFields = accessed.get(callee);
+                    if (calleeFields == null) {
+                        accessed.remove(method);
+                        changed = true;
+                        break;
+                    }
+                    changed |= fields.addAll(calleeFields);
+                }
+            }
+        }
+        return accessed;
+    }
+
+    /**
+     * @return true if the instruction calls a method, unlike {@code new} and {@code arraylength}
+     */
+    private static boolean isCall(Instruction inst) {
+        return inst instanceof CallInstruction && !(inst instanceof ArrayLengthInstruction)
+                && !(inst instanceof NewInstruction);
+    }
+
+    private static boolean isThis(Operand object) {
+        return object.getName().equals("this");
+    }
+
+    private class Replacement {
+
+        private final ClassUnit classUnit;
+        private final ControlFlowGraph cfg;
+        private final Map<Method, Set<String>> accessedFields;
+        private final Set<String> names;
+
+        private int replaced;
+        private int loops;
+        private int forwarded;
+
+        Replacement(ClassUnit classUnit, Method method, ControlFlowGraph cfg,
+                    Map<Method, Set<String>> accessedFields) {
+            this.classUnit = classUnit;
+            this.cfg = cfg;
+            this.accessedFields = accessedFields;
+            this.names = new HashSet<>(method.getVarTable().keySet());
+        }
+
+        void run() {
+            cfg.removeUnreachable();
+
+            replaceInLoops();
+            forwardLoads();
+
+            if (replaced + forwarded > 0) {
+                cfg.commit();
+            }
+        }
+
+        private void replaceInLoops() {
+            var found = Loop.find(cfg, new DominatorTree(cfg));
+            if (found.isEmpty()) {
+                return;
+            }
+
+            for (var loop : found) {
+                cfg.insertPreheader(loop);
+            }
+
+            // Outer loops first, so a field is kept in the same local in the loops nested in them
+            found = new ArrayList<>(Loop.find(cfg, new DominatorTree(cfg)));
+            found.sort(Comparator.comparingInt((Loop loop) -> loop.getBlocks().size()).reversed());
+            for (var loop : found) {
+                var preheader = loop.getPreheader(cfg);
+                if (preheader == null) {
+                    continue;
+                }
+                int before = replaced;
+                replace(loop, preheader);
+                if (replaced > before) {
+                    loops++;
+                }
+            }
+        }
+
+        private void replace(Loop loop, BasicBlock preheader) {
+            var blocks = cfg.getBlocks().stream().filter(loop::contains).toList();
+
+            // The first access to each field of this, which gives the operands of the new accesses
+            Map<String, FieldInstruction> fields = new LinkedHashMap<>();
+            var written = new HashSet<String>();
+            var excluded = new HashSet<String>();
+            for (var block : blocks) {
+                for (var inst : block.getInstructions()) {
+                    var rhs = inst instanceof AssignInstruction assign ? assign.getRhs() : inst;
+                    if (rhs instanceof FieldInstruction field) {
+                        var name = field.getField().getName();
+                        if (isThis(field.getObject())) {
+                            fields.putIfAbsent(name, field);
+                        } else {
+                            excluded.add(name);
+                        }
+                        if (rhs instanceof PutFieldInstruction) {
+                            written.add(name);
+                        }
+                    } else if (isCall(rhs)) {
+                        var callee = InterproceduralConstantPropagation.resolve(classUnit, (CallInstruction) rhs,
+                                assumeFinal);
+                        var calleeFields = callee == null ? null : accessedFields.get(callee);
+                        if (calleeFields == null) {
+                            return;
+                        }
+                        excluded.addAll(calleeFields);
+                    }
+                }
+            }
+            fields.keySet().removeAll(excluded);
+            if (fields.isEmpty()) {
+                return;
+            }
+
+            Map<String, Operand> locals = new HashMap<>();
+            for (var field : fields.values()) {
+                var local = newVariable(field.getField());
+                locals.put(field.getField().getName(), local);
+                preheader.getInstructions().add(preheader.getInsertionPoint(), new AssignInstruction(local,
+                        local.getType(), new GetFieldInstruction(field.getObject(), field.getField(),
+                        field.getField().getType())));
+            }
+
+            for (var block : blocks) {
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    var inst = instructions.get(i);
+                    if (inst instanceof AssignInstruction assign && assign.getRhs() instanceof GetFieldInstruction get
+                            && locals.containsKey(get.getField().getName())) {
+                        instructions.set(i, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                                new SingleOpInstruction(locals.get(get.getField().getName()))));
+                    } else if (inst instanceof PutFieldInstruction put
+                            && locals.containsKey(put.getField().getName())) {
+                        var local = locals.get(put.getField().getName());
+                        instructions.set(i, new AssignInstruction(local, local.getType(),
+                                new SingleOpInstruction(put.getValue())));
+                    }
+                }
+            }
+
+            replaced += fields.size();
+            fields.keySet().retainAll(written);
+            if (fields.isEmpty()) {
+                return;
+            }
+
+            var exits = new ArrayList<BasicBlock[]>();
+            for (var block : blocks) {
+                for (var succ : block.getSuccessors()) {
+                    if (!loop.contains(succ)) {
+                        exits.add(new BasicBlock[]{block, succ});
+                    }
+                }
+            }
+            for (var exit : exits) {
+                var middle = cfg.splitEdge(exit[0], exit[1]);
+                for (var field : fields.values()) {
+                    middle.getInstructions().add(new PutFieldInstruction(field.getObject(), field.getField(),
+                            locals.get(field.getField().getName()), new BuiltinType(BuiltinKind.VOID)));
+                }
+            }
+        }
+
+        /**
+         * Replaces the loads of the fields whose value is available on every path.
+         */
+        private void forwardLoads() {
+            var order = cfg.getReversePostOrder();
+
+            // Values of the fields at the end of each block, null while not computed (every field)
+            Map<BasicBlock, Map<String, Element>> availableOut = new HashMap<>();
+
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (var block : order) {
+                    var available = availableIn(block, availableOut);
+                    for (var inst : block.getInstructions()) {
+                        transfer(inst, available);
+                    }
+                    var previous = availableOut.get(block);
+                    if (previous == null || !sameValues(available, previous)) {
+                        availableOut.put(block, available);
+                        changed = true;
+                    }
+                }
+            }
+
+            for (var block : order) {
+                var available = availableIn(block, availableOut);
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    var inst = instructions.get(i);
+                    var value = getAvailableLoad(inst, available);
+                    transfer(inst, available);
+                    if (value == null) {
+                        continue;
+                    }
+
+                    var dest = InstructionUtils.getDef(inst);
+                    if (value instanceof Operand operand && operand.getName().equals(dest.getName())) {
+                        instructions.remove(i--);
+                    } else {
+                        instructions.set(i, new AssignInstruction(dest,
+                                ((AssignInstruction) inst).getTypeOfAssign(), new SingleOpInstruction(value)));
+                    }
+                    forwarded++;
+                }
+            }
+        }
+
+        private Map<String, Element> availableIn(BasicBlock block,
+                                                 Map<BasicBlock, Map<String, Element>> availableOut) {
+            if (block == cfg.getEntry()) {
+                return new HashMap<>();
+            }
+
+            Map<String, Element> result = null;
+            for (var pred : block.getPredecessors()) {
+                var out = availableOut.get(pred);
+                if (out == null) {
+                    continue;
+                }
+                if (result == null) {
+                    result = new HashMap<>(out);
+                } else {
+                    result.entrySet().removeIf(entry -> !sameValue(entry.getValue(), out.get(entry.getKey())));
+                }
+            }
+            return result == null ? new HashMap<>() : result;
+        }
+
+        private Operand newVariable(Operand field) {
+            int id = 0;
+            while (names.contains(PREFIX + id)) {
+                id++;
+            }
+            names.add(PREFIX + id);
+            return new Operand(PREFIX + id, field.getType());
+        }
+    }
+
+    /**
+     * @return the value of the field loaded by the instruction into a variable, if it is available, or null
+     */
+    private static Element getAvailableLoad(Instruction inst, Map<String, Element> available) {
+        if (InstructionUtils.getDef(inst) == null
+                || !(((AssignInstruction) inst).getRhs() instanceof GetFieldInstruction get)
+                || !isThis(get.getObject())) {
+            return null;
+        }
+        return available.get(get.getField().getName());
+    }
+
+    private static void transfer(Instruction inst, Map<String, Element> available) {
+        var rhs = inst instanceof AssignInstruction assign ? assign.getRhs() : inst;
+        if (isCall(rhs)) {
+            available.clear();
+        } else if (rhs instanceof PutFieldInstruction put) {
+            var name = put.getField().getName();
+            if (isThis(put.getObject()) && isValue(put.getValue())) {
+                available.put(name, put.getValue());
+            } else {
+                available.remove(name);
+            }
+        }
+
+        var def = InstructionUtils.getDef(inst);
+        if (def == null) {
+            return;
+        }
+
+        var value = getAvailableLoad(inst, available);
+        if (value instanceof Operand operand && operand.getName().equals(def.getName())) {
+            // Loads the value the variable already has
+            return;
+        }
+        available.values().removeIf(element -> element instanceof Operand operand
+                && operand.getName().equals(def.getName()));
+        if (value == null && rhs instanceof GetFieldInstruction get && isThis(get.getObject())) {
+            available.put(get.getField().getName(), def);
+        }
+    }
+
+    /**
+     * @return true if the element can be copied to a variable: a literal or a variable that is not an array access
+     */
+    private static boolean isValue(Element element) {
+        return element instanceof LiteralElement
+                || (InstructionUtils.isVariable(element) && !(element instanceof ArrayOperand));
+    }
+
+    private static boolean sameValue(Element first, Element second) {
+        if (first instanceof LiteralElement firstLiteral && second instanceof LiteralElement secondLiteral) {
+            return firstLiteral.getLiteral().equals(secondLiteral.getLiteral())
+                    && first.getType().toString().equals(second.getType().toString());
+        }
+        return first instanceof Operand firstOperand && second instanceof Operand secondOperand
+                && firstOperand.getName().equals(secondOperand.getName());
+    }
+
+    private static boolean sameValues(Map<String, Element> first, Map<String, Element> second) {
+        return first.keySet().equals(second.keySet())
+                && first.entrySet().stream()
+                .allMatch(entry -> sameValue(entry.getValue(), second.get(entry.getKey())));
+    }
+}
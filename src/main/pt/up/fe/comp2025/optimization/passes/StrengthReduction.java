@@ -0,0 +1,317 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.BinaryOpInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.cfg.Loop;
+
+import java.util.*;
+
+/**
+ * Replaces multiplications of an induction variable by a constant inside a loop by additions.
+ * <p>
+ * A basic induction variable {@code i} is changed inside the loop by a single {@code i = i + c}, with a constant
+ * {@code c}. For each {@code j = i * k} (or {@code j = i << n}) with a constant {@code k}, a new variable {@code s} is
+ * set to {@code i * k} in the preheader and incremented by {@code c * k} right after {@code i} is, so it always holds
+ * {@code i * k} inside the loop and the multiplication becomes the copy {@code j = s}.
+ * <p>
+ * The increment must fit in an {@code iinc}, a short in its wide form, so it costs a single instruction, and only
+ * multiplications done once in every iteration are replaced, so the loop never executes more instructions than
+ * before: the increment is done at most once per iteration, outside of inner loops. A factor that is a variable would
+ * need an addition as long as the multiplication it replaces, so it is not reduced.
+ */
+public class StrengthReduction implements OptimizationPass {
+
+    private static final String PREFIX = "iv";
+
+    private final Map<String, Integer> ruleHits;
+
+    public StrengthReduction() {
+        this.ruleHits = new LinkedHashMap<>();
+        ruleHits.put("mul-induction", 0);
+        ruleHits.put("shift-induction", 0);
+    }
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        if (analyses.getLoops(method).isEmpty()) {
+            return PassResult.unchanged();
+        }
+
+        var reports = new ArrayList<Report>();
+
+        var domTree = analyses.getDominatorTree(method);
+        var reduction = new Reduction(method, analyses.takeCfg(method), ruleHits);
+        reduction.run(domTree);
+
+        boolean changed = reduction.reduced > 0;
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Strength reduction in method '" + method.getMethodName() + "': " + reduction.reduced
+                            + " multiplications replaced by additions in " + reduction.loops + " loops"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    @Override
+    public Map<String, Integer> getRuleHits() {
+        return ruleHits;
+    }
+
+    @Override
+    public boolean isExpensive() {
+        return true;
+    }
+
+    /**
+     * The single instruction that changes a basic induction variable, {@code i = i + step}.
+     */
+    private record Induction(BasicBlock block, Instruction update, int step) {
+    }
+
+    /**
+     * A multiplication of a variable by a constant, {@code variable * factor}.
+     */
+    private record Multiplication(Operand variable, int factor) {
+    }
+
+    private static class Reduction {
+
+        private final ControlFlowGraph cfg;
+        private final Set<String> names;
+        private final Map<String, Integer> ruleHits;
+
+        private int reduced;
+        private int loops;
+
+        Reduction(Method method, ControlFlowGraph cfg, Map<String, Integer> ruleHits) {
+            this.cfg = cfg;
+            this.names = new HashSet<>(method.getVarTable().keySet());
+            this.ruleHits = ruleHits;
+        }
+
+        void run(DominatorTree initialDomTree) {
+            cfg.removeUnreachable();
+            for (var loop : Loop.find(cfg, initialDomTree)) {
+                cfg.insertPreheader(loop);
+            }
+
+            // The new preheaders of inner loops belong to the enclosing loops
+            var domTree = new DominatorTree(cfg);
+            var found = Loop.find(cfg, domTree);
+            for (var loop : found) {
+                var preheader = loop.getPreheader(cfg);
+                if (preheader == null) {
+                    continue;
+                }
+                int before = reduced;
+                reduce(loop, preheader, domTree, innerBlocks(loop, found));
+                if (reduced > before) {
+                    loops++;
+                }
+            }
+
+            if (reduced > 0) {
+                cfg.commit();
+            }
+        }
+
+        private void reduce(Loop loop, BasicBlock preheader, DominatorTree domTree, Set<BasicBlock> inner) {
+            Map<String, List<Instruction>> definitions = new HashMap<>();
+            Map<Instruction, BasicBlock> blockOf = new HashMap<>();
+            for (var block : loop.getBlocks()) {
+                for (var inst : block.getInstructions()) {
+                    blockOf.put(inst, block);
+                    var def = InstructionUtils.getDefName(inst);
+                    if (def != null) {
+                        definitions.computeIfAbsent(def, name -> new ArrayList<>()).add(inst);
+                    }
+                }
+            }
+
+            // One new variable for each induction variable and factor
+            Map<String, Operand> reducedValues = new HashMap<>();
+
+            for (var block : loop.getBlocks()) {
+                if (inner.contains(block) || !executesEveryIteration(block, loop, domTree)) {
+                    continue;
+                }
+
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    var inst = instructions.get(i);
+                    if (!(InstructionUtils.getDef(inst) != null
+                            && ((AssignInstruction) inst).getRhs() instanceof BinaryOpInstruction binary)) {
+                        continue;
+                    }
+
+                    var candidate = asMultiplication(binary);
+                    if (candidate == null) {
+                        continue;
+                    }
+
+                    var induction = findInduction(candidate.variable(), definitions, blockOf, inner);
+                    if (induction == null || !fitsIncrement((long) induction.step() * candidate.factor())) {
+                        continue;
+                    }
+
+                    var key = candidate.variable().getName() + "*" + candidate.factor();
+                    var value = reducedValues.get(key);
+                    if (value == null) {
+                        value = newVariable();
+                        initialize(value, candidate, induction, preheader);
+                        reducedValues.put(key, value);
+                    }
+
+                    instructions.set(i, new AssignInstruction(InstructionUtils.getDef(inst),
+                            ((AssignInstruction) inst).getTypeOfAssign(), new SingleOpInstruction(value)));
+                    reduced++;
+                    ruleHits.merge(binary.getOperation().getOpType() == OperationType.SHL ? "shift-induction"
+                            : "mul-induction", 1, Integer::sum);
+                }
+            }
+        }
+
+        /**
+         * @return the update of a basic induction variable, or null if the element is not one
+         */
+        private Induction findInduction(Element element, Map<String, List<Instruction>> definitions,
+                                        Map<Instruction, BasicBlock> blockOf, Set<BasicBlock> inner) {
+            if (!isIntVariable(element)) {
+                return null;
+            }
+            var name = ((Operand) element).getName();
+            var defs = definitions.get(name);
+            if (defs == null || defs.size() != 1) {
+                return null;
+            }
+
+            var update = defs.getFirst();
+            if (!(((AssignInstruction) update).getRhs() instanceof BinaryOpInstruction binary)
+                    || inner.contains(blockOf.get(update))) {
+                return null;
+            }
+
+            var opType = binary.getOperation().getOpType();
+            var left = binary.getLeftOperand();
+            var right = binary.getRightOperand();
+            if (opType == OperationType.ADD && isVariable(left, name) && right instanceof LiteralElement literal) {
+                return new Induction(blockOf.get(update), update, Integer.parseInt(literal.getLiteral()));
+            }
+            if (opType == OperationType.ADD && isVariable(right, name) && left instanceof LiteralElement literal) {
+                return new Induction(blockOf.get(update), update, Integer.parseInt(literal.getLiteral()));
+            }
+            if (opType == OperationType.SUB && isVariable(left, name) && right instanceof LiteralElement literal) {
+                return new Induction(blockOf.get(update), update, -Integer.parseInt(literal.getLiteral()));
+            }
+            return null;
+        }
+
+        /**
+         * Sets the new variable to {@code i * factor} in the preheader, and adds {@code step * factor} to it after
+         * the update of {@code i}.
+         */
+        private void initialize(Operand value, Multiplication candidate, Induction induction, BasicBlock preheader) {
+            preheader.getInstructions().add(preheader.getInsertionPoint(), assign(value, candidate.variable(),
+                    OperationType.MUL, intLiteral(candidate.factor())));
+
+            var updateCode = induction.block().getInstructions();
+            updateCode.add(updateCode.indexOf(induction.update()) + 1,
+                    assign(value, value, OperationType.ADD, intLiteral(induction.step() * candidate.factor())));
+        }
+
+        private Operand newVariable() {
+            int id = 0;
+            while (names.contains(PREFIX + id)) {
+                id++;
+            }
+            names.add(PREFIX + id);
+            return new Operand(PREFIX + id, new BuiltinType(BuiltinKind.INT32));
+        }
+    }
+
+    /**
+     * @return the blocks of the loops nested in the given one
+     */
+    private static Set<BasicBlock> innerBlocks(Loop loop, List<Loop> loops) {
+        var inner = new HashSet<BasicBlock>();
+        for (var other : loops) {
+            if (other != loop && loop.contains(other.getHeader())) {
+                inner.addAll(other.getBlocks());
+            }
+        }
+        return inner;
+    }
+
+    private static boolean executesEveryIteration(BasicBlock block, Loop loop, DominatorTree domTree) {
+        return loop.getLatches().stream().allMatch(latch -> domTree.dominates(block, latch));
+    }
+
+    /**
+     * @return the variable and the constant factor of {@code i * k}, {@code k * i} or {@code i << n}, or null if the
+     * instruction is not one of them
+     */
+    private static Multiplication asMultiplication(BinaryOpInstruction binary) {
+        var left = binary.getLeftOperand();
+        var right = binary.getRightOperand();
+
+        switch (binary.getOperation().getOpType()) {
+            case MUL -> {
+                if (isIntVariable(left) && right instanceof LiteralElement literal) {
+                    return new Multiplication((Operand) left, Integer.parseInt(literal.getLiteral()));
+                }
+                if (isIntVariable(right) && left instanceof LiteralElement literal) {
+                    return new Multiplication((Operand) right, Integer.parseInt(literal.getLiteral()));
+                }
+            }
+            case SHL -> {
+                if (isIntVariable(left) && right instanceof LiteralElement literal) {
+                    return new Multiplication((Operand) left, 1 << Integer.parseInt(literal.getLiteral()));
+                }
+            }
+            default -> {
+            }
+        }
+        return null;
+    }
+
+    private static boolean fitsIncrement(long increment) {
+        return increment >= Short.MIN_VALUE && increment <= Short.MAX_VALUE;
+    }
+
+    private static boolean isIntVariable(Element element) {
+        return InstructionUtils.isVariable(element) && !(element instanceof ArrayOperand)
+                && element.getType() instanceof BuiltinType type && type.getKind() == BuiltinKind.INT32;
+    }
+
+    private static boolean isVariable(Element element, String name) {
+        return isIntVariable(element) && ((Operand) element).getName().equals(name);
+    }
+
+    private static AssignInstruction assign(Operand dest, Element left, OperationType opType, Element right) {
+        var type = new BuiltinType(BuiltinKind.INT32);
+        return new AssignInstruction(dest, type, new BinaryOpInstruction(left, new Operation(opType, type), right));
+    }
+
+    private static LiteralElement intLiteral(int value) {
+        return new LiteralElement(String.valueOf(value), new BuiltinType(BuiltinKind.INT32));
+    }
+}
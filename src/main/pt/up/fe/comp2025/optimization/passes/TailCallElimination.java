@@ -0,0 +1,264 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.CallInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.InvokeStaticInstruction;
+import org.specs.comp.ollir.inst.InvokeVirtualInstruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+
+import java.util.*;
+
+/**
+ * Replaces the calls of a method to itself in tail position by a jump to its start.
+ * <p>
+ * A call is in tail position when the method returns right after it: {@code t = this.f(a, b); ret t}, a call to a
+ * void method followed by {@code ret}, or a call whose result is ignored followed by {@code ret c}, when every
+ * {@code ret} of the method returns the same literal {@code c}, so the result of the call would be {@code c} as well.
+ * The call becomes the assignment of the arguments to the parameters, through new variables when an argument is
+ * another parameter, and a jump to the first block of the method, so the recursion runs as a loop.
+ * <p>
+ * Only calls on {@code this} and static calls on the class are replaced. A subclass written in Jmm cannot call an
+ * overridden method with {@code super}, so a method that runs on {@code this} always runs itself again when it calls
+ * its own name on {@code this}.
+ */
+public class TailCallElimination implements OptimizationPass {
+
+    private static final String PREFIX = "tc";
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        var reports = new ArrayList<Report>();
+
+        if (method.isConstructMethod() || isOverloaded(classUnit, method)) {
+            return PassResult.unchanged();
+        }
+
+        var elimination = new Elimination(classUnit, method, analyses.getCfg(method));
+        elimination.run();
+
+        boolean changed = elimination.replaced > 0;
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Tail call elimination in method '" + method.getMethodName() + "': " + elimination.replaced
+                            + " recursive calls replaced by jumps"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    private static class Elimination {
+
+        private final ClassUnit classUnit;
+        private final Method method;
+        private final ControlFlowGraph cfg;
+        private final Set<String> names;
+
+        private int replaced;
+
+        Elimination(ClassUnit classUnit, Method method, ControlFlowGraph cfg) {
+            this.classUnit = classUnit;
+            this.method = method;
+            this.cfg = cfg;
+            this.names = new HashSet<>(method.getVarTable().keySet());
+        }
+
+        void run() {
+            cfg.removeUnreachable();
+            var start = cfg.getEntry().getNext();
+            if (start == null) {
+                return;
+            }
+            var returnedLiteral = findReturnedLiteral();
+
+            for (var block : cfg.getBlocks()) {
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    var call = getSelfCall(instructions.get(i));
+                    if (call == null || !isTailPosition(block, i, returnedLiteral)) {
+                        continue;
+                    }
+
+                    instructions.subList(i, instructions.size()).clear();
+                    instructions.addAll(assignParameters(call.getArguments()));
+                    block.setNext(start);
+                    block.setTaken(null);
+                    replaced++;
+                    break;
+                }
+            }
+
+            if (replaced > 0) {
+                cfg.updateEdges();
+                cfg.removeUnreachable();
+                cfg.commit();
+            }
+        }
+
+        /**
+         * @return the call if the instruction calls this method on {@code this} or, for a static method, on the
+         * class, or null otherwise
+         */
+        private CallInstruction getSelfCall(Instruction inst) {
+            CallInstruction call = null;
+            if (inst instanceof CallInstruction top) {
+                call = top;
+            } else if (InstructionUtils.getDef(inst) != null
+                    && ((AssignInstruction) inst).getRhs() instanceof CallInstruction rhs) {
+                call = rhs;
+            }
+            if (!(call instanceof InvokeVirtualInstruction || call instanceof InvokeStaticInstruction)
+                    || !(call.getCaller() instanceof Operand caller)
+                    || !(call.getMethodName() instanceof LiteralElement name)
+                    || !name.getLiteral().replace("\"", "").equals(method.getMethodName())
+                    || call.getArguments().size() != method.getParams().size()) {
+                return null;
+            }
+
+            if (call instanceof InvokeVirtualInstruction && !method.isStaticMethod()) {
+                return caller.getName().equals("this") ? call : null;
+            }
+            if (call instanceof InvokeStaticInstruction && method.isStaticMethod()) {
+                return caller.getName().equals(classUnit.getClassName()) ? call : null;
+            }
+            return null;
+        }
+
+        /**
+         * @return true if the method returns the result of the call at the given position, or a value equal to it
+         */
+        private boolean isTailPosition(BasicBlock block, int index, LiteralElement returnedLiteral) {
+            var result = InstructionUtils.getDefName(block.getInstructions().get(index));
+
+            // The result may be copied to other variables before it is returned
+            var copies = new HashSet<String>();
+            if (result != null) {
+                copies.add(result);
+            }
+
+            var current = block;
+            int i = index + 1;
+            var visited = new HashSet<BasicBlock>();
+            while (visited.add(current)) {
+                var instructions = current.getInstructions();
+                for (; i < instructions.size(); i++) {
+                    var inst = instructions.get(i);
+                    if (inst instanceof ReturnInstruction ret) {
+                        return returnsResult(ret, copies, returnedLiteral);
+                    }
+                    if (!(InstructionUtils.getDef(inst) != null
+                            && ((AssignInstruction) inst).getRhs() instanceof SingleOpInstruction single
+                            && single.getSingleOperand() instanceof Operand source
+                            && copies.contains(source.getName()))) {
+                        return false;
+                    }
+                    copies.add(InstructionUtils.getDefName(inst));
+                }
+
+                if (current.getBranch() != null || current.getNext() == null) {
+                    return false;
+                }
+                current = current.getNext();
+                i = 0;
+            }
+            return false;
+        }
+
+        private static boolean returnsResult(ReturnInstruction ret, Set<String> copies,
+                                             LiteralElement returnedLiteral) {
+            if (ret.getOperand().isEmpty()) {
+                return true;
+            }
+            var operand = ret.getOperand().get();
+            if (operand instanceof LiteralElement literal) {
+                return returnedLiteral != null && literal.getLiteral().equals(returnedLiteral.getLiteral());
+            }
+            return operand instanceof Operand variable && copies.contains(variable.getName());
+        }
+
+        /**
+         * @return the literal returned by every {@code ret} of the method, or null if they do not all return the
+         * same literal
+         */
+        private LiteralElement findReturnedLiteral() {
+            LiteralElement returned = null;
+            for (var block : cfg.getBlocks()) {
+                for (var inst : block.getInstructions()) {
+                    if (!(inst instanceof ReturnInstruction ret)) {
+                        continue;
+                    }
+                    if (ret.getOperand().isEmpty() || !(ret.getOperand().get() instanceof LiteralElement literal)
+                            || (returned != null && !returned.getLiteral().equals(literal.getLiteral()))) {
+                        return null;
+                    }
+                    returned = literal;
+                }
+            }
+            return returned;
+        }
+
+        /**
+         * @return the assignments of the arguments to the parameters, as if they were all done at once
+         */
+        private List<Instruction> assignParameters(List<Element> arguments) {
+            var params = method.getParams();
+            var paramNames = new HashSet<String>();
+            for (var param : params) {
+                paramNames.add(((Operand) param).getName());
+            }
+
+            var saved = new ArrayList<Instruction>();
+            var assignments = new ArrayList<Instruction>();
+            for (int i = 0; i < params.size(); i++) {
+                var param = (Operand) params.get(i);
+                var argument = arguments.get(i);
+                var source = argument instanceof Operand operand && !argument.isLiteral() ? operand.getName() : null;
+                if (param.getName().equals(source)) {
+                    continue;
+                }
+
+                // Another parameter may be assigned before this one reads it
+                if (source != null && paramNames.contains(source)) {
+                    var temporary = newVariable(param);
+                    saved.add(new AssignInstruction(temporary, param.getType(), new SingleOpInstruction(argument)));
+                    argument = temporary;
+                }
+                assignments.add(new AssignInstruction(new Operand(param.getName(), param.getType()), param.getType(),
+                        new SingleOpInstruction(argument)));
+            }
+
+            saved.addAll(assignments);
+            return saved;
+        }
+
+        private Operand newVariable(Operand param) {
+            int id = 0;
+            while (names.contains(PREFIX + id)) {
+                id++;
+            }
+            names.add(PREFIX + id);
+            return new Operand(PREFIX + id, param.getType());
+        }
+    }
+
+    /**
+     * @return true if another method of the class has the same name and number of parameters, so the calls cannot
+     * be told apart without the types of the arguments
+     */
+    private static boolean isOverloaded(ClassUnit classUnit, Method method) {
+        return classUnit.getMethods().stream().anyMatch(other -> other != method
+                && other.getMethodName().equals(method.getMethodName())
+                && other.getParams().size() == method.getParams().size());
+    }
+}
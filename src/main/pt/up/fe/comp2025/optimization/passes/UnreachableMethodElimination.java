@@ -0,0 +1,46 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.AccessModifier;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.CallGraph;
+
+import java.util.List;
+
+/**
+ * Removes the methods of the class that can never be called.
+ * <p>
+ * The roots of the {@link CallGraph} of the class are the methods other classes can call: the public methods, which
+ * include {@code main}, and the constructors. A method that is not public and is not reached from a root by the calls
+ * of the class is removed, often a helper whose calls were all inlined or evaluated. Like the inliner, this assumes
+ * the methods that are not public are not called by other classes, but only in the classes with a {@code main}: the
+ * other classes are only used by other classes, so none of their methods is removed.
+ */
+public class UnreachableMethodElimination implements OptimizationPass {
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        if (isRoot(method) || classUnit.getMethods().stream().noneMatch(UnreachableMethodElimination::isMain)) {
+            return PassResult.unchanged();
+        }
+
+        var roots = classUnit.getMethods().stream().filter(UnreachableMethodElimination::isRoot).toList();
+        if (CallGraph.build(classUnit).getReachable(roots).contains(method)) {
+            return PassResult.unchanged();
+        }
+
+        classUnit.getMethods().remove(method);
+        return new PassResult(true, List.of(OptimizationRemark.applied(getName(), method,
+                "Unreachable method elimination: method '" + method.getMethodName() + "' removed, "
+                        + method.getInstructions().size() + " instructions")));
+    }
+
+    private static boolean isMain(Method method) {
+        return method.getMethodName().equals("main");
+    }
+
+    private static boolean isRoot(Method method) {
+        return method.isConstructMethod() || method.getMethodAccessModifier() == AccessModifier.PUBLIC;
+    }
+}
@@ -0,0 +1,475 @@
+package pt.up.fe.comp2025.optimization.passes;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.*;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.cfg.Loop;
+import pt.up.fe.comp2025.optimization.ssa.Phi;
+import pt.up.fe.comp2025.optimization.ssa.SsaForm;
+
+import java.util.*;
+
+/**
+ * Dominator-based global value numbering.
+ * <p>
+ * Works on the SSA form of each method, walking the dominator tree with a scoped table of the expressions computed
+ * so far. An expression whose value was already computed by a dominating instruction is removed, and its uses read
+ * the earlier result. Arithmetic, comparisons, {@code arraylength} and phi-functions are always reused. Array and
+ * field loads are only reused when the earlier load is still available: any array store may write the same array,
+ * a {@code putfield} may write the same field of any object, and calls may write anything.
+ * <p>
+ * Each removed instruction is remarked at its position, and so is each load that repeats an earlier one whose value
+ * may have changed.
+ */
+public class ValueNumbering implements OptimizationPass {
+
+    @Override
+    public PassResult optimize(ClassUnit classUnit, Method method, AnalysisManager analyses) {
+        var reports = new ArrayList<Report>();
+
+        var domTree = analyses.getDominatorTree(method);
+        var numbering = new Numbering(analyses.takeCfg(method), domTree);
+        boolean changed = numbering.run();
+        reports.addAll(numbering.remarks);
+
+        if (changed) {
+            reports.add(OptimizationRemark.applied(getName(), method,
+                    "Value numbering in method '" + method.getMethodName() + "': " + numbering.computations
+                            + " redundant computations and " + numbering.loadsRemoved
+                            + " redundant loads removed"));
+        }
+
+        return new PassResult(changed, reports);
+    }
+
+    @Override
+    public boolean isExpensive() {
+        return true;
+    }
+
+    /**
+     * Memory read by a load, used to decide which stores and calls make it unavailable.
+     */
+    private record Load(String field) {
+
+        static final Load ARRAY = new Load(null);
+
+        boolean isArray() {
+            return field == null;
+        }
+    }
+
+    private class Numbering {
+
+        private final ControlFlowGraph cfg;
+        private final SsaForm ssa;
+        private final Set<String> defined;
+
+        // Value number of each version, and the element that holds each value number
+        private final Map<String, String> valueNumbers;
+        private final Map<String, Element> leaders;
+        private final Map<String, String> table;
+        private final Map<String, Element> replacements;
+
+        private final Map<String, Load> loads;
+        private final Map<BasicBlock, Set<String>> availableIn;
+
+        private int computations;
+        private int loadsRemoved;
+        private final List<OptimizationRemark> remarks;
+        private List<Loop> loops;
+
+        Numbering(ControlFlowGraph cfg, DominatorTree domTree) {
+            this.cfg = cfg;
+            this.ssa = SsaForm.construct(cfg, domTree);
+            this.defined = new HashSet<>(ssa.getDefinitions().keySet());
+            this.valueNumbers = new HashMap<>();
+            this.leaders = new HashMap<>();
+            this.table = new HashMap<>();
+            this.replacements = new HashMap<>();
+            this.loads = new HashMap<>();
+            this.availableIn = new HashMap<>();
+            this.remarks = new ArrayList<>();
+        }
+
+        /**
+         * @return true if the code was changed
+         */
+        boolean run() {
+            computeAvailableLoads();
+            visit(cfg.getEntry());
+            replaceUses();
+            if (computations + loadsRemoved == 0) {
+                return false;
+            }
+
+            ssa.destruct();
+            cfg.commit();
+            return true;
+        }
+
+        /**
+         * Forward data-flow of the loads whose value is still the one in memory, on every path.
+         */
+        private void computeAvailableLoads() {
+            for (var block : cfg.getBlocks()) {
+                for (var inst : block.getInstructions()) {
+                    var def = InstructionUtils.getDefName(inst);
+                    var load = def == null ? null : loadOf(((AssignInstruction) inst).getRhs());
+                    if (load != null) {
+                        loads.put(def, load);
+                    }
+                }
+            }
+
+            var order = cfg.getReversePostOrder();
+            for (var block : order) {
+                availableIn.put(block, block == cfg.getEntry() ? new HashSet<>() : new HashSet<>(loads.keySet()));
+            }
+
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+
+                for (var block : order) {
+                    var in = availableIn.get(block);
+                    if (block != cfg.getEntry()) {
+                        var newIn = new HashSet<>(loads.keySet());
+                        for (var pred : block.getPredecessors()) {
+                            newIn.retainAll(availableOut(pred));
+                        }
+                        if (!newIn.equals(in)) {
+                            availableIn.put(block, newIn);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        private Set<String> availableOut(BasicBlock block) {
+            var available = new HashSet<>(availableIn.get(block));
+            for (var inst : block.getInstructions()) {
+                transfer(inst, available);
+            }
+            return available;
+        }
+
+        private void transfer(Instruction inst, Set<String> available) {
+            var rhs = inst instanceof AssignInstruction assign ? assign.getRhs() : inst;
+
+            if (inst instanceof AssignInstruction assign && assign.getDest() instanceof ArrayOperand) {
+                // The array may be referenced by other variables, so every array load is killed
+                available.removeIf(name -> loads.get(name).isArray());
+            } else if (inst instanceof PutFieldInstruction putField) {
+                var field = putField.getField().getName();
+                available.removeIf(name -> field.equals(loads.get(name).field()));
+            } else if (rhs instanceof CallInstruction && !(rhs instanceof ArrayLengthInstruction)
+                    && !(rhs instanceof NewInstruction)) {
+                available.clear();
+            }
+
+            var def = InstructionUtils.getDefName(inst);
+            if (def != null && loads.containsKey(def)) {
+                available.add(def);
+            }
+        }
+
+        private static Load loadOf(Instruction rhs) {
+            if (rhs instanceof SingleOpInstruction single && single.getSingleOperand() instanceof ArrayOperand) {
+                return Load.ARRAY;
+            }
+            if (rhs instanceof GetFieldInstruction getField) {
+                return new Load(getField.getField().getName());
+            }
+            return null;
+        }
+
+        private void visit(BasicBlock block) {
+            var added = new ArrayList<String>();
+
+            var phis = ssa.getPhis(block);
+            for (var iterator = phis.iterator(); iterator.hasNext(); ) {
+                var phi = iterator.next();
+                if (numberPhi(block, phi, added)) {
+                    iterator.remove();
+                }
+            }
+
+            var available = new HashSet<>(availableIn.get(block));
+            var instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                var inst = instructions.get(i);
+                if (numberInstruction(block, inst, available, added)) {
+                    instructions.remove(i--);
+                    continue;
+                }
+                transfer(inst, available);
+            }
+
+            for (var child : ssa.getDominatorTree().getChildren(block)) {
+                visit(child);
+            }
+
+            // The expressions of this block do not dominate the siblings
+            for (var key : added) {
+                table.remove(key);
+            }
+        }
+
+        /**
+         * @return true if the phi-function is redundant and was removed
+         */
+        private boolean numberPhi(BasicBlock block, Phi phi, List<String> added) {
+            var dest = phi.getDest().getName();
+
+            var arguments = new ArrayList<String>();
+            for (var pred : block.getPredecessors()) {
+                var arg = phi.getArguments().get(pred);
+                var number = arg == null ? null : valueNumber(arg);
+                if (number == null) {
+                    // Defined later in a loop, nothing is known about it yet
+                    setNumber(phi.getDest(), dest);
+                    return false;
+                }
+                arguments.add(number);
+            }
+
+            // All the arguments have the same value, ignoring the phi-function itself
+            var distinct = arguments.stream().filter(number -> !number.equals(dest)).distinct().toList();
+            if (distinct.size() == 1) {
+                replace(phi.getDest(), distinct.getFirst());
+                computations++;
+                return true;
+            }
+
+            // Phi-functions of the same block that merge the same values
+            var key = "phi" + block.getId() + arguments;
+            return number(phi.getDest(), key, added);
+        }
+
+        /**
+         * @return true if the instruction is redundant and was removed
+         */
+        private boolean numberInstruction(BasicBlock block, Instruction inst, Set<String> available,
+                                          List<String> added) {
+            var def = InstructionUtils.getDef(inst);
+            if (def == null) {
+                return false;
+            }
+
+            var rhs = ((AssignInstruction) inst).getRhs();
+            var copy = SsaForm.getCopyValue(inst);
+            if (copy != null) {
+                var number = valueNumber(copy);
+                setNumber(def, number == null ? def.getName() : number);
+                return false;
+            }
+
+            var key = keyOf(rhs);
+            if (key == null) {
+                setNumber(def, def.getName());
+                return false;
+            }
+
+            if (loads.containsKey(def.getName())) {
+                var leader = table.get(key);
+                if (leader != null && available.contains(leader)) {
+                    replace(def, valueNumbers.get(leader));
+                    loadsRemoved++;
+                    remark(OptimizationRemark.Kind.APPLIED, block, inst, "Redundant " + describe(rhs), "removed");
+                    return true;
+                }
+                if (leader != null) {
+                    remark(OptimizationRemark.Kind.MISSED, block, inst, "Repeated " + describe(rhs),
+                            "not removed: " + (loads.get(def.getName()).isArray() ? "an array store"
+                                    : "a putfield of the field")
+                                    + " or a call may have changed it since the earlier load");
+                }
+                // A load that is not available cannot be reused, this one replaces it
+                table.put(key, def.getName());
+                added.add(key);
+                setNumber(def, def.getName());
+                return false;
+            }
+
+            if (number(def, key, added)) {
+                computations++;
+                remark(OptimizationRemark.Kind.APPLIED, block, inst, "Redundant computation", "removed");
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Remarks the instruction, with the hotness of the loops its block is inside of.
+         */
+        private void remark(OptimizationRemark.Kind kind, BasicBlock block, Instruction inst, String subject,
+                            String outcome) {
+            if (loops == null) {
+                loops = Loop.find(cfg, ssa.getDominatorTree());
+            }
+            int depth = (int) loops.stream().filter(loop -> loop.contains(block)).count();
+            var method = cfg.getMethod();
+            var message = subject + " in method '" + method.getMethodName() + "' " + outcome;
+            remarks.add(kind == OptimizationRemark.Kind.APPLIED
+                    ? OptimizationRemark.applied(getName(), method, inst, depth, message)
+                    : OptimizationRemark.missed(getName(), method, inst, depth, message));
+        }
+
+        private String describe(Instruction rhs) {
+            if (rhs instanceof GetFieldInstruction getField) {
+                return "load of field '" + getField.getField().getName() + "'";
+            }
+            var array = (ArrayOperand) ((SingleOpInstruction) rhs).getSingleOperand();
+            return "load of array '" + ssa.getVariable(array.getName()) + "'";
+        }
+
+        /**
+         * @return true if the expression was already computed, the version then reads the earlier value
+         */
+        private boolean number(Operand def, String key, List<String> added) {
+            var leader = table.get(key);
+            if (leader != null) {
+                replace(def, valueNumbers.get(leader));
+                return true;
+            }
+            table.put(key, def.getName());
+            added.add(key);
+            setNumber(def, def.getName());
+            return false;
+        }
+
+        private void setNumber(Operand version, String number) {
+            valueNumbers.put(version.getName(), number);
+            leaders.putIfAbsent(number, version);
+        }
+
+        private void replace(Operand version, String number) {
+            valueNumbers.put(version.getName(), number);
+            replacements.put(version.getName(), leaders.get(number));
+        }
+
+        /**
+         * @return the value number of an element, or null if it is a version that was not numbered yet
+         */
+        private String valueNumber(Element element) {
+            if (element instanceof LiteralElement literal) {
+                var number = "#" + literal.getLiteral() + "." + literal.getType();
+                leaders.putIfAbsent(number, literal);
+                return number;
+            }
+            if (element instanceof ArrayOperand || !(element instanceof Operand operand)) {
+                return null;
+            }
+            if (!InstructionUtils.isVariable(operand)) {
+                // 'this', fields and class names are always the same value
+                return operand.getName();
+            }
+            var number = valueNumbers.get(operand.getName());
+            if (number != null) {
+                return number;
+            }
+            if (defined.contains(operand.getName())) {
+                return null;
+            }
+            // Parameters, and locals read before being assigned
+            setNumber(operand, operand.getName());
+            return operand.getName();
+        }
+
+        /**
+         * @return a key that identifies the value computed by the right-hand side, or null if it is not reusable
+         */
+        private String keyOf(Instruction rhs) {
+            if (rhs instanceof SingleOpInstruction single && single.getSingleOperand() instanceof ArrayOperand array) {
+                if (array.getIndexOperands().size() != 1) {
+                    return null;
+                }
+                var base = valueNumbers.getOrDefault(array.getName(), array.getName());
+                var index = valueNumber(array.getIndexOperands().getFirst());
+                return index == null ? null : "load " + base + "[" + index + "]";
+            }
+
+            if (rhs instanceof GetFieldInstruction getField) {
+                var object = valueNumber(getField.getObject());
+                return object == null ? null : "getfield " + object + "." + getField.getField().getName();
+            }
+
+            if (rhs instanceof ArrayLengthInstruction arrayLength) {
+                // The length of an array never changes
+                var array = valueNumber(arrayLength.getCaller());
+                return array == null ? null : "arraylength " + array;
+            }
+
+            if (rhs instanceof UnaryOpInstruction unary) {
+                var operand = valueNumber(unary.getOperand());
+                return operand == null ? null : unary.getOperation().getOpType() + " " + operand;
+            }
+
+            if (rhs instanceof BinaryOpInstruction binary) {
+                var left = valueNumber(binary.getLeftOperand());
+                var right = valueNumber(binary.getRightOperand());
+                if (left == null || right == null) {
+                    return null;
+                }
+                var opType = binary.getOperation().getOpType();
+
+                // 'a > b' is 'b < a'
+                if (opType == OperationType.GTH || opType == OperationType.GTE) {
+                    opType = opType == OperationType.GTH ? OperationType.LTH : OperationType.LTE;
+                    var tmp = left;
+                    left = right;
+                    right = tmp;
+                }
+                if (isCommutative(opType) && left.compareTo(right) > 0) {
+                    var tmp = left;
+                    left = right;
+                    right = tmp;
+                }
+                return opType + " " + left + " " + right;
+            }
+
+            return null;
+        }
+
+        private static boolean isCommutative(OperationType opType) {
+            return switch (opType) {
+                case ADD, MUL, AND, OR, XOR, ANDB, ORB, EQ, NEQ -> true;
+                default -> false;
+            };
+        }
+
+        /**
+         * Uses of the removed versions read the value that replaced them.
+         */
+        private void replaceUses() {
+            for (var block : cfg.getBlocks()) {
+                for (var phi : ssa.getPhis(block)) {
+                    phi.getArguments().replaceAll((pred, arg) -> arg instanceof Operand operand
+                            && !(arg instanceof ArrayOperand) ? replacementOf(operand) : arg);
+                }
+
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    instructions.set(i, InstructionUtils.mapUses(instructions.get(i), this::replacementOf));
+                }
+            }
+        }
+
+        private Element replacementOf(Operand operand) {
+            return replacements.getOrDefault(operand.getName(), operand);
+        }
+    }
+}
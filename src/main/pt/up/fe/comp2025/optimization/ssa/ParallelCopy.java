@@ -0,0 +1,99 @@
+package pt.up.fe.comp2025.optimization.ssa;
+
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A set of copies that happen at the same time, such as the copies that replace the phi-functions of a block.
+ * <p>
+ * {@link #sequentialize(Function)} orders the copies so no source is overwritten before it is read, using a temporary
+ * variable to break each cycle.
+ */
+public class ParallelCopy {
+
+    private final List<Operand> dests;
+    private final List<Element> sources;
+
+    public ParallelCopy() {
+        this.dests = new ArrayList<>();
+        this.sources = new ArrayList<>();
+    }
+
+    public void add(Operand dest, Element source) {
+        dests.add(dest);
+        sources.add(source);
+    }
+
+    public boolean isEmpty() {
+        return dests.isEmpty();
+    }
+
+    /**
+     * @param newTemp creates a temporary variable with the type of the given operand
+     * @return assignments equivalent to the parallel copy
+     */
+    public List<Instruction> sequentialize(Function<Operand, Operand> newTemp) {
+        var pendingDests = new ArrayList<Operand>();
+        var pendingSources = new ArrayList<Element>();
+
+        for (int i = 0; i < dests.size(); i++) {
+            var source = sources.get(i);
+            if (source instanceof Operand operand && operand.getName().equals(dests.get(i).getName())) {
+                continue;
+            }
+            pendingDests.add(dests.get(i));
+            pendingSources.add(source);
+        }
+
+        var result = new ArrayList<Instruction>();
+
+        while (!pendingDests.isEmpty()) {
+            int ready = -1;
+            for (int i = 0; i < pendingDests.size() && ready == -1; i++) {
+                if (!isSource(pendingDests.get(i).getName(), pendingSources, i)) {
+                    ready = i;
+                }
+            }
+
+            if (ready != -1) {
+                result.add(copy(pendingDests.remove(ready), pendingSources.remove(ready)));
+                continue;
+            }
+
+            // Every pending copy is part of a cycle: save one destination and read it from the temporary instead
+            var saved = pendingDests.getFirst();
+            var temp = newTemp.apply(saved);
+            result.add(copy(temp, saved));
+            for (int i = 0; i < pendingSources.size(); i++) {
+                if (pendingSources.get(i) instanceof Operand operand && operand.getName().equals(saved.getName())) {
+                    pendingSources.set(i, temp);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private boolean isSource(String name, List<Element> sources, int except) {
+        for (int i = 0; i < sources.size(); i++) {
+            if (i != except && sources.get(i) instanceof Operand operand && operand.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Instruction copy(Operand dest, Element source) {
+        var value = source instanceof Operand operand ? InstructionUtils.rename(operand, operand.getName()) : source;
+        return new AssignInstruction(InstructionUtils.rename(dest, dest.getName()), dest.getType(),
+                new SingleOpInstruction(value));
+    }
+}
@@ -0,0 +1,58 @@
+package pt.up.fe.comp2025.optimization.ssa;
+
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Operand;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A phi-function at the start of a basic block: selects the value of a variable according to the predecessor the
+ * block was entered from.
+ */
+public class Phi {
+
+    private final String variable;
+    private Operand dest;
+    private final Map<BasicBlock, Element> arguments;
+
+    Phi(String variable, Operand dest) {
+        this.variable = variable;
+        this.dest = dest;
+        this.arguments = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return the name of the original (non-SSA) variable
+     */
+    public String getVariable() {
+        return variable;
+    }
+
+    public Operand getDest() {
+        return dest;
+    }
+
+    void setDest(Operand dest) {
+        this.dest = dest;
+    }
+
+    /**
+     * @return the value for each predecessor; it can be replaced by a literal
+     */
+    public Map<BasicBlock, Element> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public String toString() {
+        var args = arguments.entrySet().stream()
+                .map(e -> e.getKey() + ": " + (e.getValue() instanceof LiteralElement literal ? literal.getLiteral()
+                        : ((Operand) e.getValue()).getName()))
+                .collect(Collectors.joining(", "));
+        return dest.getName() + " = phi(" + args + ")";
+    }
+}
@@ -0,0 +1,483 @@
+package pt.up.fe.comp2025.optimization.ssa;
+
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import pt.up.fe.comp2025.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.cfg.Liveness;
+
+import java.util.*;
+
+/**
+ * Static single-assignment form of a control-flow graph.
+ * <p>
+ * {@link #construct(ControlFlowGraph)} places phi-functions at the iterated dominance frontiers of the definitions
+ * (semi-pruned SSA) and renames every definition to a new version of its variable. The value a variable has when
+ * the method starts (parameters, or undefined for locals) keeps the original name.
+ * <p>
+ * {@link #destruct()} replaces the phi-functions by copies in the predecessors, splitting critical edges, and then
+ * gives the original name back to every version that does not interfere with the others.
+ */
+public class SsaForm {
+
+    private static final String VERSION_SEPARATOR = "_";
+
+    private final ControlFlowGraph cfg;
+    private final DominatorTree domTree;
+    private final Map<BasicBlock, List<Phi>> phis;
+    private final Map<String, String> variableOf;
+    private final Set<String> parameters;
+    private final Set<String> usedNames;
+    private final Map<String, Integer> nextVersion;
+
+    private SsaForm(ControlFlowGraph cfg, DominatorTree domTree) {
+        this.cfg = cfg;
+        this.phis = new HashMap<>();
+        this.variableOf = new HashMap<>();
+        this.parameters = new HashSet<>();
+        this.usedNames = new HashSet<>();
+        this.nextVersion = new HashMap<>();
+
+        cfg.removeUnreachable();
+        this.domTree = domTree;
+    }
+
+    /**
+     * Converts the graph to SSA form. Unreachable blocks are removed.
+     */
+    public static SsaForm construct(ControlFlowGraph cfg) {
+        cfg.removeUnreachable();
+        return construct(cfg, new DominatorTree(cfg));
+    }
+
+    /**
+     * Converts the graph to SSA form, with a dominator tree already computed for it. Unreachable blocks are removed,
+     * they are not part of the tree.
+     */
+    public static SsaForm construct(ControlFlowGraph cfg, DominatorTree domTree) {
+        var ssa = new SsaForm(cfg, domTree);
+        ssa.build();
+        return ssa;
+    }
+
+    public ControlFlowGraph getCfg() {
+        return cfg;
+    }
+
+    public DominatorTree getDominatorTree() {
+        return domTree;
+    }
+
+    public List<Phi> getPhis(BasicBlock block) {
+        return phis.computeIfAbsent(block, k -> new ArrayList<>());
+    }
+
+    /**
+     * @return the original variable of an SSA version, or the name itself if it is not a version
+     */
+    public String getVariable(String version) {
+        return variableOf.getOrDefault(version, version);
+    }
+
+    /**
+     * @return true if the name is the value of a variable at the start of the method and the variable is not a
+     * parameter, so its value is undefined
+     */
+    public boolean isUndefined(String name) {
+        return variableOf.containsKey(name) && variableOf.get(name).equals(name) && !parameters.contains(name);
+    }
+
+    /**
+     * @return the block and instruction (null for phi-functions) that define each version
+     */
+    public Map<String, Definition> getDefinitions() {
+        var definitions = new HashMap<String, Definition>();
+        for (var block : cfg.getBlocks()) {
+            for (var phi : getPhis(block)) {
+                definitions.put(phi.getDest().getName(), new Definition(block, null, phi));
+            }
+            for (var inst : block.getInstructions()) {
+                var def = InstructionUtils.getDefName(inst);
+                if (def != null) {
+                    definitions.put(def, new Definition(block, inst, null));
+                }
+            }
+        }
+        return definitions;
+    }
+
+    /**
+     * Where an SSA version is defined: either by an instruction or by a phi-function.
+     */
+    public record Definition(BasicBlock block, Instruction instruction, Phi phi) {
+    }
+
+    private void build() {
+        var method = cfg.getMethod();
+        for (var param : method.getParams()) {
+            if (param instanceof Operand operand) {
+                parameters.add(operand.getName());
+            }
+        }
+        usedNames.addAll(parameters);
+        for (var field : method.getOllirClass().getFields()) {
+            usedNames.add(field.getFieldName());
+        }
+
+        // Variables defined in each block, and variables used before being defined in some block
+        Map<String, Set<BasicBlock>> defBlocks = new LinkedHashMap<>();
+        Map<String, Operand> sampleOperand = new HashMap<>();
+        Set<String> globals = new HashSet<>();
+
+        for (var block : cfg.getBlocks()) {
+            var killed = new HashSet<String>();
+            for (var inst : block.getInstructions()) {
+                collectNames(inst);
+                for (var use : InstructionUtils.getUses(inst)) {
+                    if (!killed.contains(use)) {
+                        globals.add(use);
+                    }
+                }
+                var def = InstructionUtils.getDef(inst);
+                if (def != null) {
+                    killed.add(def.getName());
+                    defBlocks.computeIfAbsent(def.getName(), k -> new LinkedHashSet<>()).add(block);
+                    sampleOperand.putIfAbsent(def.getName(), def);
+                }
+            }
+        }
+
+        for (var variable : defBlocks.keySet()) {
+            variableOf.put(variable, variable);
+        }
+
+        placePhis(defBlocks, sampleOperand, globals);
+        rename(defBlocks.keySet());
+        removeDeadPhis();
+    }
+
+    private void collectNames(Instruction inst) {
+        var def = InstructionUtils.getDefName(inst);
+        if (def != null) {
+            usedNames.add(def);
+        }
+        usedNames.addAll(InstructionUtils.getUses(inst));
+    }
+
+    private void placePhis(Map<String, Set<BasicBlock>> defBlocks, Map<String, Operand> sampleOperand,
+                           Set<String> globals) {
+        for (var entry : defBlocks.entrySet()) {
+            var variable = entry.getKey();
+            if (!globals.contains(variable)) {
+                continue;
+            }
+
+            var hasPhi = new HashSet<BasicBlock>();
+            Deque<BasicBlock> worklist = new ArrayDeque<>(entry.getValue());
+            var queued = new HashSet<>(entry.getValue());
+
+            while (!worklist.isEmpty()) {
+                var block = worklist.poll();
+                for (var frontier : domTree.getFrontier(block)) {
+                    if (hasPhi.add(frontier)) {
+                        getPhis(frontier).add(new Phi(variable, sampleOperand.get(variable)));
+                        if (queued.add(frontier)) {
+                            worklist.add(frontier);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private Operand newVersion(Operand operand, String variable) {
+        int version = nextVersion.getOrDefault(variable, 1);
+        String name;
+        do {
+            name = variable + VERSION_SEPARATOR + version++;
+        } while (usedNames.contains(name) || variableOf.containsKey(name));
+        nextVersion.put(variable, version);
+
+        variableOf.put(name, variable);
+        return InstructionUtils.rename(operand, name);
+    }
+
+    private void rename(Set<String> variables) {
+        Map<String, Deque<String>> stacks = new HashMap<>();
+        for (var variable : variables) {
+            stacks.put(variable, new ArrayDeque<>(List.of(variable)));
+        }
+
+        // Iterative walk of the dominator tree, recording how many versions each block pushed
+        Deque<BasicBlock> toVisit = new ArrayDeque<>();
+        Deque<List<String>> pushed = new ArrayDeque<>();
+        Set<BasicBlock> entered = new HashSet<>();
+        toVisit.push(cfg.getEntry());
+
+        while (!toVisit.isEmpty()) {
+            var block = toVisit.peek();
+
+            if (!entered.add(block)) {
+                toVisit.pop();
+                for (var variable : pushed.pop()) {
+                    stacks.get(variable).pop();
+                }
+                continue;
+            }
+
+            var blockPushes = new ArrayList<String>();
+
+            for (var phi : getPhis(block)) {
+                var version = newVersion(phi.getDest(), phi.getVariable());
+                phi.setDest(version);
+                stacks.get(phi.getVariable()).push(version.getName());
+                blockPushes.add(phi.getVariable());
+            }
+
+            var instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                var inst = InstructionUtils.mapUses(instructions.get(i), operand -> {
+                    var stack = stacks.get(operand.getName());
+                    return stack == null ? operand : InstructionUtils.rename(operand, stack.peek());
+                });
+
+                var def = InstructionUtils.getDef(inst);
+                if (def != null && stacks.containsKey(def.getName())) {
+                    var variable = def.getName();
+                    var version = newVersion(def, variable);
+                    inst = InstructionUtils.mapDef(inst, d -> version);
+                    stacks.get(variable).push(version.getName());
+                    blockPushes.add(variable);
+                }
+
+                instructions.set(i, inst);
+            }
+
+            for (var succ : block.getSuccessors()) {
+                for (var phi : getPhis(succ)) {
+                    var current = stacks.get(phi.getVariable()).peek();
+                    phi.getArguments().put(block, InstructionUtils.rename(phi.getDest(), current));
+                }
+            }
+
+            pushed.push(blockPushes);
+            var children = domTree.getChildren(block);
+            for (int i = children.size() - 1; i >= 0; i--) {
+                toVisit.push(children.get(i));
+            }
+        }
+    }
+
+    /**
+     * Removes the phi-functions whose value is never used, directly or through other used phi-functions.
+     */
+    private void removeDeadPhis() {
+        Map<String, Phi> phiOf = new HashMap<>();
+        for (var blockPhis : phis.values()) {
+            for (var phi : blockPhis) {
+                phiOf.put(phi.getDest().getName(), phi);
+            }
+        }
+
+        var live = new HashSet<String>();
+        Deque<String> worklist = new ArrayDeque<>();
+        for (var block : cfg.getBlocks()) {
+            for (var inst : block.getInstructions()) {
+                for (var use : InstructionUtils.getUses(inst)) {
+                    if (phiOf.containsKey(use) && live.add(use)) {
+                        worklist.add(use);
+                    }
+                }
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            var phi = phiOf.get(worklist.poll());
+            for (var arg : phi.getArguments().values()) {
+                if (arg instanceof Operand operand && phiOf.containsKey(operand.getName())
+                        && live.add(operand.getName())) {
+                    worklist.add(operand.getName());
+                }
+            }
+        }
+
+        for (var blockPhis : phis.values()) {
+            blockPhis.removeIf(phi -> !live.contains(phi.getDest().getName()));
+        }
+    }
+
+    /**
+     * Translates the graph out of SSA form. The graph can then be committed to its method.
+     */
+    public void destruct() {
+        insertCopies();
+        phis.clear();
+        coalesce();
+    }
+
+    private void insertCopies() {
+        for (var block : new ArrayList<>(cfg.getBlocks())) {
+            var blockPhis = getPhis(block);
+            if (blockPhis.isEmpty()) {
+                continue;
+            }
+
+            for (var pred : new ArrayList<>(block.getPredecessors())) {
+                var copies = new ParallelCopy();
+                for (var phi : blockPhis) {
+                    var arg = phi.getArguments().get(pred);
+                    // Values that are undefined on this path need no copy
+                    if (arg == null || (arg instanceof Operand operand && isUndefined(operand.getName()))) {
+                        continue;
+                    }
+                    copies.add(phi.getDest(), arg);
+                }
+
+                if (copies.isEmpty()) {
+                    continue;
+                }
+
+                var target = pred;
+                if (pred.getSuccessors().size() > 1) {
+                    target = cfg.splitEdge(pred, block);
+                }
+
+                var sequence = copies.sequentialize(this::newTemp);
+                target.getInstructions().addAll(target.getInsertionPoint(), sequence);
+            }
+        }
+    }
+
+    private Operand newTemp(Operand operand) {
+        return newVersion(operand, getVariable(operand.getName()));
+    }
+
+    /**
+     * Gives the versions of each variable the original name when they are never live at the same time. The versions
+     * that interfere keep a distinct name.
+     */
+    private void coalesce() {
+        var liveness = new Liveness(cfg);
+
+        Map<String, Set<String>> interference = new HashMap<>();
+        for (var block : cfg.getBlocks()) {
+            var liveAfter = liveness.getLiveAfter(block);
+            var instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                var def = InstructionUtils.getDefName(instructions.get(i));
+                if (def == null || !variableOf.containsKey(def)) {
+                    continue;
+                }
+                var copySource = getCopySource(instructions.get(i));
+                for (var live : liveAfter.get(i)) {
+                    if (live.equals(def) || live.equals(copySource)) {
+                        continue;
+                    }
+                    if (getVariable(live).equals(getVariable(def))) {
+                        interference.computeIfAbsent(def, k -> new HashSet<>()).add(live);
+                        interference.computeIfAbsent(live, k -> new HashSet<>()).add(def);
+                    }
+                }
+            }
+        }
+
+        // The values live at the start of the method are defined there
+        for (var live : liveness.getLiveIn(cfg.getEntry())) {
+            for (var other : liveness.getLiveIn(cfg.getEntry())) {
+                if (!live.equals(other) && getVariable(live).equals(getVariable(other))) {
+                    interference.computeIfAbsent(live, k -> new HashSet<>()).add(other);
+                }
+            }
+        }
+
+        // Greedy assignment of names to the versions of each variable, the original name first
+        Map<String, List<Set<String>>> classes = new HashMap<>();
+        Map<String, String> newName = new HashMap<>();
+
+        var versions = new ArrayList<>(variableOf.keySet());
+        versions.sort(Comparator.comparing((String v) -> !v.equals(getVariable(v))).thenComparing(v -> v));
+
+        for (var version : versions) {
+            var variable = getVariable(version);
+            var variableClasses = classes.computeIfAbsent(variable, k -> new ArrayList<>());
+            var conflicts = interference.getOrDefault(version, Collections.emptySet());
+
+            int chosen = -1;
+            for (int i = 0; i < variableClasses.size() && chosen == -1; i++) {
+                if (Collections.disjoint(variableClasses.get(i), conflicts)) {
+                    chosen = i;
+                }
+            }
+            if (chosen == -1) {
+                chosen = variableClasses.size();
+                variableClasses.add(new HashSet<>());
+            }
+
+            variableClasses.get(chosen).add(version);
+            if (chosen == 0) {
+                newName.put(version, variable);
+            }
+        }
+
+        for (var variableClasses : classes.values()) {
+            for (int i = 1; i < variableClasses.size(); i++) {
+                var members = variableClasses.get(i);
+                // Any member name is unique, use the smallest one for the whole class
+                var name = members.stream().min(Comparator.naturalOrder()).orElseThrow();
+                for (var member : members) {
+                    newName.put(member, name);
+                }
+            }
+        }
+
+        for (var block : cfg.getBlocks()) {
+            var instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                var inst = InstructionUtils.mapUses(instructions.get(i),
+                        operand -> renameTo(operand, newName));
+                inst = InstructionUtils.mapDef(inst, operand -> renameTo(operand, newName));
+
+                // Copies between versions of the same class are no longer needed
+                var def = InstructionUtils.getDefName(inst);
+                if (def != null && def.equals(getCopySource(inst))) {
+                    instructions.remove(i--);
+                    continue;
+                }
+                instructions.set(i, inst);
+            }
+        }
+    }
+
+    private Operand renameTo(Operand operand, Map<String, String> newName) {
+        var name = newName.get(operand.getName());
+        return name == null || name.equals(operand.getName()) ? operand : InstructionUtils.rename(operand, name);
+    }
+
+    /**
+     * @return the variable copied by a 'x := y' instruction, or null
+     */
+    public static String getCopySource(Instruction inst) {
+        if (inst instanceof AssignInstruction assign && assign.getRhs() instanceof SingleOpInstruction single
+                && InstructionUtils.isVariable(single.getSingleOperand())
+                && !(single.getSingleOperand() instanceof org.specs.comp.ollir.ArrayOperand)) {
+            return ((Operand) single.getSingleOperand()).getName();
+        }
+        return null;
+    }
+
+    /**
+     * @return the element that a version is known to be equal to when it is defined by a copy, or null
+     */
+    public static Element getCopyValue(Instruction inst) {
+        if (inst instanceof AssignInstruction assign && assign.getRhs() instanceof SingleOpInstruction single
+                && !(single.getSingleOperand() instanceof org.specs.comp.ollir.ArrayOperand)) {
+            return single.getSingleOperand();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,50 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.BinaryOpInstruction;
+import pt.up.fe.comp.CpUtils;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+
+/**
+ * Tests of the algebraic simplification.
+ */
+public class AlgebraicSimplificationTest {
+
+    @Test
+    public void identitiesAreRemoved() {
+        var optimized = getOllirResultOpt("algebraic/Identities.jmm");
+        var method = CpUtils.getMethod(optimized, "identities");
+
+        CpUtils.assertTrue("Expected no operations in 'identities'",
+                CpUtils.getInstructions(BinaryOpInstruction.class, method).isEmpty(), optimized);
+    }
+
+    @Test
+    public void sameOperandsAreFolded() {
+        var optimized = getOllirResultOpt("algebraic/Identities.jmm");
+        var method = CpUtils.getMethod(optimized, "sameOperands");
+
+        CpUtils.assertNumberOfOperations(OperationType.SUB, 0, method, optimized);
+    }
+
+    @Test
+    public void multiplicationBecomesShift() {
+        var optimized = getOllirResultOpt("algebraic/Identities.jmm");
+        var method = CpUtils.getMethod(optimized, "multiply");
+
+        CpUtils.assertNumberOfOperations(OperationType.MUL, 0, method, optimized);
+        CpUtils.assertNumberOfOperations(OperationType.SHL, 1, method, optimized);
+    }
+
+    @Test
+    public void divisionOfNonNegativeBecomesShift() {
+        var optimized = getOllirResultOpt("algebraic/Identities.jmm");
+        var method = CpUtils.getMethod(optimized, "divide");
+
+        // 'A.length' is never negative, the parameter 'x' may be, and '-7 / 4' is not '-7 >> 2'
+        CpUtils.assertNumberOfOperations(OperationType.SHR, 1, method, optimized);
+        CpUtils.assertNumberOfOperations(OperationType.DIV, 1, method, optimized);
+    }
+}
@@ -0,0 +1,42 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+
+/**
+ * Tests of the jump threading.
+ */
+public class BranchOptimizationTest {
+
+    private static int countBranches(OllirResult result, String methodName) {
+        return CpUtils.getInstructions(CondBranchInstruction.class, CpUtils.getMethod(result, methodName)).size();
+    }
+
+    @Test
+    public void repeatedConditionIsThreaded() {
+        var optimized = getOllirResultOpt("branches/CorrelatedBranches.jmm");
+
+        CpUtils.assertEquals("Expected the second 'x < 0' to be removed", 1,
+                countBranches(optimized, "sameCondition"), optimized);
+    }
+
+    @Test
+    public void negatedConditionIsThreaded() {
+        var optimized = getOllirResultOpt("branches/CorrelatedBranches.jmm");
+
+        CpUtils.assertEquals("Expected '!p' to be decided by the test of 'p'", 1,
+                countBranches(optimized, "negatedCondition"), optimized);
+    }
+
+    @Test
+    public void writtenConditionStays() {
+        var optimized = getOllirResultOpt("branches/CorrelatedBranches.jmm");
+
+        CpUtils.assertEquals("Expected both tests of 'x < 0', 'x' is written in between", 2,
+                countBranches(optimized, "writtenCondition"), optimized);
+    }
+}
@@ -0,0 +1,85 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.comp2025.optimization.JmmOptimizationImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+import static pt.up.fe.comp.cp2.OptimizationsTest.optimizeConfig;
+
+/**
+ * Tests of the sparse conditional constant propagation.
+ */
+public class ConstantPropagationTest {
+
+    private static final String JASMIN_PATH = "pt/up/fe/comp/cp3/jasmin/";
+
+    /**
+     * Optimizes an OLLIR program, checks its output, and checks that the printed code is valid OLLIR with the same
+     * behaviour.
+     */
+    static void testOptimizedOllir(String resource, String expectedOutput) {
+        var original = new OllirResult(SpecsIo.getResource(JASMIN_PATH + resource), optimizeConfig(Map.of()));
+        var optimized = new JmmOptimizationImpl().optimize(original);
+        CpUtils.runJasmin(TestUtils.backend(optimized), expectedOutput);
+
+        var reparsed = new OllirResult(optimized.getOllirCode(), optimizeConfig(Map.of()));
+        CpUtils.runJasmin(TestUtils.backend(reparsed), expectedOutput);
+    }
+
+    @Test
+    public void constantBranchIsPruned() {
+        var optimized = getOllirResultOpt("const_prop_fold/PropWithBranch.jmm");
+        var method = CpUtils.getMethod(optimized, "foo");
+
+        CpUtils.assertLiteralReturn("3", method, optimized);
+        CpUtils.assertNumberOfOperations(OperationType.MUL, 0, method, optimized);
+        CpUtils.assertTrue("Expected no branches in 'foo'",
+                CpUtils.getInstructions(CondBranchInstruction.class, method).isEmpty(), optimized);
+    }
+
+    @Test
+    public void constantAcrossLoop() {
+        var optimized = getOllirResultOpt("const_prop_fold/PropWithBranch.jmm");
+        var method = CpUtils.getMethod(optimized, "bar");
+
+        // 'a' is 4 on every path that executes, although it is assigned in the loop
+        CpUtils.assertLiteralReturn("4", method, optimized);
+        CpUtils.assertNumberOfOperations(OperationType.ADD, 1, method, optimized);
+        assertTrue(optimized.getReports().stream()
+                .anyMatch(report -> report.getMessage().contains("'bar'")));
+    }
+
+    @Test
+    public void constantPhiAsArgumentOfAnotherPhi() {
+        // 'k' is 1 after the first 'if', and that value reaches the join of the second one
+        for (var level : List.of("1", "2", "3")) {
+            var optimized = getOllirResultOpt("const_prop_fold/ConstantPhiArgument.jmm",
+                    Map.of(ConfigOptions.getOptimizationLevel(), level));
+            CpUtils.runJasmin(TestUtils.backend(optimized), "6\n1");
+        }
+    }
+
+    @Test
+    public void optimizedProgramsRun() {
+        testOptimizedOllir("arithmetic/Arithmetic_and.ollir", "0");
+        testOptimizedOllir("control_flow/SimpleIfElseStat.ollir", "Result: 5\nResult: 8");
+        testOptimizedOllir("control_flow/SimpleIfElseNot.ollir", "10\n200");
+        testOptimizedOllir("control_flow/SwitchStat.ollir",
+                "Result: 1\nResult: 2\nResult: 3\nResult: 4\nResult: 5\nResult: 6\nResult: 7");
+        testOptimizedOllir("control_flow/IfWhileNested.ollir", "Result: 1\nResult: 2\nResult: 1");
+        testOptimizedOllir("arrays/ComplexArrayAccess.ollir",
+                "Result: 1\nResult: 2\nResult: 3\nResult: 4\nResult: 5");
+        testOptimizedOllir("calls/ConditionArgsFuncCall.ollir", "Result: 10");
+    }
+}
@@ -0,0 +1,60 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import pt.up.fe.comp.CpUtils;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+
+/**
+ * Tests of the copy propagation.
+ */
+public class CopyPropagationTest {
+
+    /**
+     * @return the number of assignments that copy a variable to another one
+     */
+    private static long countCopies(Method method) {
+        return CpUtils.getInstructions(AssignInstruction.class, method).stream()
+                .filter(assign -> assign.getRhs() instanceof SingleOpInstruction single
+                        && single.getSingleOperand() instanceof Operand operand && !operand.isLiteral())
+                .count();
+    }
+
+    @Test
+    public void temporariesAreComputedIntoVariables() {
+        var optimized = getOllirResultOpt("copy_propagation/Copies.jmm");
+        var method = CpUtils.getMethod(optimized, "temporaries");
+
+        CpUtils.assertEquals("Expected no copies in 'temporaries'", 0, countCopies(method), optimized);
+    }
+
+    @Test
+    public void copiesArePropagatedAcrossBranches() {
+        var optimized = getOllirResultOpt("copy_propagation/Copies.jmm");
+        var method = CpUtils.getMethod(optimized, "acrossBranches");
+
+        CpUtils.assertEquals("Expected no copies in 'acrossBranches'", 0, countCopies(method), optimized);
+    }
+
+    @Test
+    public void copyOfWrittenSourceIsKept() {
+        var optimized = getOllirResultOpt("copy_propagation/Copies.jmm");
+        var method = CpUtils.getMethod(optimized, "sourceWritten");
+
+        // 'b' keeps the old value of 'a', so one copy is needed
+        CpUtils.assertEquals("Expected one copy in 'sourceWritten'", 1, countCopies(method), optimized);
+    }
+
+    @Test
+    public void sizesAreReported() {
+        var optimized = getOllirResultOpt("copy_propagation/Copies.jmm");
+
+        CpUtils.assertTrue("Expected a report of the size of the OLLIR code", optimized.getReports().stream()
+                .anyMatch(report -> report.getMessage().startsWith("OLLIR optimization of class 'Copies'")),
+                optimized);
+    }
+}
@@ -0,0 +1,55 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.CallInstruction;
+import org.specs.comp.ollir.inst.GotoInstruction;
+import org.specs.comp.ollir.inst.InvokeVirtualInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.optimization.JmmOptimizationImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+import static pt.up.fe.comp.cp2.OptimizationsTest.NO_INLINING;
+import static pt.up.fe.comp.cp2.OptimizationsTest.optimizeConfig;
+
+/**
+ * Tests of the dead-code elimination.
+ */
+public class DeadCodeEliminationTest {
+
+    private static final String BASE_PATH = "pt/up/fe/comp/cp2/optimizations/dead_code/";
+
+    @Test
+    public void deadStoresAreRemoved() {
+        var optimized = getOllirResultOpt("dead_code/DeadStores.jmm", NO_INLINING);
+        var method = CpUtils.getMethod(optimized, "foo");
+
+        CpUtils.assertNumberOfOperations(OperationType.ADD, 0, method, optimized);
+        CpUtils.assertNumberOfOperations(OperationType.SUB, 0, method, optimized);
+        // 'x * 2' is live, and is done as a shift
+        CpUtils.assertNumberOfOperations(OperationType.SHL, 1, method, optimized);
+        // The result of the call is not used, but the call is kept
+        CpUtils.assertEquals("Expected the call to 'bar' to be kept", 1,
+                CpUtils.getInstructions(InvokeVirtualInstruction.class, method).size(), optimized);
+    }
+
+    @Test
+    public void unreachableCodeIsRemoved() {
+        var original = new OllirResult(SpecsIo.getResource(BASE_PATH + "UnreachableCode.ollir"),
+                optimizeConfig(NO_INLINING));
+        var optimized = new JmmOptimizationImpl().optimize(original);
+        var method = CpUtils.getMethod(optimized, "main");
+
+        CpUtils.assertEquals("Expected only the reachable call", 1,
+                CpUtils.getInstructions(CallInstruction.class, method).size(), optimized);
+        CpUtils.assertEquals("Expected no gotos", 0,
+                CpUtils.getInstructions(GotoInstruction.class, method).size(), optimized);
+        CpUtils.assertEquals("Expected no labels", 0, method.getLabels().size(), optimized);
+        CpUtils.assertEquals("Expected the call and the return", 2, method.getInstructions().size(), optimized);
+
+        CpUtils.runJasmin(TestUtils.backend(optimized), "Result: 2");
+    }
+}
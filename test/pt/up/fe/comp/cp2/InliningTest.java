@@ -0,0 +1,72 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.inst.InvokeVirtualInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.ConfigOptions;
+
+import java.util.Map;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+
+/**
+ * Tests of the inlining of the methods of the class.
+ */
+public class InliningTest {
+
+    private static int countCalls(OllirResult result, String methodName) {
+        return CpUtils.getInstructions(InvokeVirtualInstruction.class, CpUtils.getMethod(result, methodName)).size();
+    }
+
+    @Test
+    public void callOnThisIsInlined() {
+        var optimized = getOllirResultOpt("inlining/SmallMethods.jmm");
+
+        CpUtils.assertEquals("Expected no calls in 'onThis'", 0, countCalls(optimized, "onThis"), optimized);
+    }
+
+    @Test
+    public void callOnNewObjectIsInlined() {
+        var optimized = getOllirResultOpt("inlining/SmallMethods.jmm");
+
+        CpUtils.assertEquals("Expected no calls in 'onNewObject'", 0, countCalls(optimized, "onNewObject"),
+                optimized);
+    }
+
+    @Test
+    public void callOnParameterIsKept() {
+        var optimized = getOllirResultOpt("inlining/SmallMethods.jmm");
+
+        // The parameter may be an object of a subclass that overrides 'square'
+        CpUtils.assertEquals("Expected one call in 'onParameter'", 1, countCalls(optimized, "onParameter"),
+                optimized);
+    }
+
+    @Test
+    public void publicCalleeIsInlinedOnlyWhenAllowed() {
+        var optimized = getOllirResultOpt("inlining/SmallMethods.jmm");
+        CpUtils.assertEquals("Expected one call in 'publicCallee'", 1, countCalls(optimized, "publicCallee"),
+                optimized);
+
+        var allowed = getOllirResultOpt("inlining/SmallMethods.jmm", Map.of(ConfigOptions.getInlinePublic(), "true"));
+        CpUtils.assertEquals("Expected no calls in 'publicCallee' with public methods inlined", 0,
+                countCalls(allowed, "publicCallee"), allowed);
+    }
+
+    @Test
+    public void recursionIsBounded() {
+        var optimized = getOllirResultOpt("inlining/SmallMethods.jmm", Map.of(ConfigOptions.getInlineDepth(), "2"));
+
+        // 'fact' is inlined twice into 'recursive', and the third call is left
+        CpUtils.assertEquals("Expected one call in 'recursive'", 1, countCalls(optimized, "recursive"), optimized);
+    }
+
+    @Test
+    public void inlinedCallsAreReported() {
+        var optimized = getOllirResultOpt("inlining/SmallMethods.jmm");
+
+        CpUtils.assertTrue("Expected a report of the calls inlined in 'onThis'", optimized.getReports().stream()
+                .anyMatch(report -> report.getMessage().startsWith("Inlining in method 'onThis'")), optimized);
+    }
+}
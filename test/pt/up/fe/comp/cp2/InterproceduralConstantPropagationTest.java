@@ -0,0 +1,70 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.inst.InvokeVirtualInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.optimization.cfg.CallGraph;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+import static pt.up.fe.comp.cp2.OptimizationsTest.NO_INLINING;
+
+/**
+ * Tests of the propagation of constant arguments into the called methods and of the evaluation of calls to pure
+ * methods at compile time. Inlining is disabled, so the calls that are not evaluated stay in the code.
+ */
+public class InterproceduralConstantPropagationTest {
+
+    private static long countCalls(OllirResult result, String methodName, String callee) {
+        return CpUtils.getInstructions(InvokeVirtualInstruction.class, CpUtils.getMethod(result, methodName)).stream()
+                .filter(call -> CallGraph.getMethodName(call).equals(callee))
+                .count();
+    }
+
+    @Test
+    public void pureCallsWithConstantsAreEvaluated() {
+        var optimized = getOllirResultOpt("interprocedural/PureCalls.jmm", NO_INLINING);
+
+        CpUtils.assertEquals("Expected the call to 'helper' to be evaluated", 0,
+                countCalls(optimized, "run", "helper"), optimized);
+        CpUtils.assertEquals("Expected the loop of 'sumTo' to be evaluated", 0,
+                countCalls(optimized, "run", "sumTo"), optimized);
+        // Only evaluated in time with the memo table
+        CpUtils.assertEquals("Expected the recursion of 'fib' to be evaluated", 0,
+                countCalls(optimized, "run", "fib"), optimized);
+        CpUtils.assertTrue("Expected the sum of the results of the calls",
+                optimized.getOllirCode().contains("79988.i32"), optimized);
+    }
+
+    @Test
+    public void callsWithEffectsAreKept() {
+        var optimized = getOllirResultOpt("interprocedural/PureCalls.jmm", NO_INLINING);
+
+        CpUtils.assertEquals("Expected the call to 'impure', which writes a field, to be kept", 1,
+                countCalls(optimized, "run", "impure"), optimized);
+        CpUtils.assertEquals("Expected the call to 'scale' with a variable to be kept", 2,
+                countCalls(optimized, "run", "scale"), optimized);
+    }
+
+    @Test
+    public void callsThatCannotBeComputedAreKept() {
+        var optimized = getOllirResultOpt("interprocedural/PureCalls.jmm", NO_INLINING);
+
+        CpUtils.assertEquals("Expected the division by zero to still happen at runtime", 1,
+                countCalls(optimized, "unsafe", "divide"), optimized);
+        CpUtils.assertEquals("Expected the endless loop to still happen at runtime", 1,
+                countCalls(optimized, "spin", "loop"), optimized);
+    }
+
+    @Test
+    public void constantArgumentsArePropagated() {
+        var optimized = getOllirResultOpt("interprocedural/PureCalls.jmm", NO_INLINING);
+
+        CpUtils.assertTrue("Expected the constant argument of 'scale' in its code",
+                optimized.getOllirCode().contains("x.i32 *.i32 7.i32"), optimized);
+        CpUtils.assertTrue("Expected a report of the evaluated calls", optimized.getReports().stream()
+                        .anyMatch(report -> report.getMessage().startsWith(
+                                "Interprocedural constant propagation in method 'run'")),
+                optimized);
+    }
+}
@@ -0,0 +1,46 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+
+/**
+ * Tests of the conditions of if and while statements, which are generated as jumps instead of boolean values.
+ */
+public class JumpingCodeTest {
+
+    private static final String RESOURCE = "pt/up/fe/comp/cp2/ollir/control_flow/JumpingCode.jmm";
+
+    private static OllirResult getOllirResult() {
+        return CpUtils.getOllirResult(SpecsIo.getResource(RESOURCE), Collections.emptyMap(), false);
+    }
+
+    @Test
+    public void conditionsAreJumps() {
+        var result = getOllirResult();
+        var method = CpUtils.getMethod(result, "conditions");
+
+        CpUtils.assertTrue("Expected no boolean operations in 'conditions'",
+                CpUtils.getOperationInstances(OperationType.ANDB, method, result).isEmpty()
+                        && CpUtils.getOperationInstances(OperationType.ORB, method, result).isEmpty()
+                        && CpUtils.getOperationInstances(OperationType.NOTB, method, result).isEmpty(), result);
+
+        // One branch for each comparison and for 'flag', in the if and in the while
+        var branches = CpUtils.getInstructions(CondBranchInstruction.class, method);
+        CpUtils.assertEquals("Number of branches", 5, branches.size(), result);
+    }
+
+    @Test
+    public void booleanValuesAreComputed() {
+        var result = getOllirResult();
+        var method = CpUtils.getMethod(result, "values");
+
+        CpUtils.assertTrue("Expected no 'and' operations in 'values'",
+                CpUtils.getOperationInstances(OperationType.ANDB, method, result).isEmpty(), result);
+    }
+}
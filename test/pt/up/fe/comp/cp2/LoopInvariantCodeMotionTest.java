@@ -0,0 +1,78 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.ArrayLengthInstruction;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.BinaryOpInstruction;
+import org.specs.comp.ollir.inst.GetFieldInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.Loop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+
+/**
+ * Tests of the loop-invariant code motion.
+ */
+public class LoopInvariantCodeMotionTest {
+
+    /**
+     * @return the right-hand sides of the assignments inside the loops of the method
+     */
+    private static List<Instruction> getLoopInstructions(Method method) {
+        var cfg = ControlFlowGraph.build(method);
+        var loops = Loop.find(cfg, new DominatorTree(cfg));
+        assertFalse("Expected a loop in '" + method.getMethodName() + "'", loops.isEmpty());
+
+        var result = new ArrayList<Instruction>();
+        for (var block : loops.getLast().getBlocks()) {
+            for (var inst : block.getInstructions()) {
+                result.add(inst instanceof AssignInstruction assign ? assign.getRhs() : inst);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void invariantLoadsAreHoisted() {
+        var optimized = getOllirResultOpt("licm/InvariantLoads.jmm");
+        var loop = getLoopInstructions(CpUtils.getMethod(optimized, "lengthAndFields"));
+
+        CpUtils.assertTrue("Expected 'L.length' to be computed before the loop",
+                loop.stream().noneMatch(ArrayLengthInstruction.class::isInstance), optimized);
+        CpUtils.assertTrue("Expected the fields to be read before the loop",
+                loop.stream().noneMatch(GetFieldInstruction.class::isInstance), optimized);
+        // 'size * scale' is invariant, 'L[i] * scale' is not
+        CpUtils.assertEquals("Expected one multiplication in the loop", 1, loop.stream()
+                .filter(inst -> inst instanceof BinaryOpInstruction binary
+                        && binary.getOperation().getOpType() == OperationType.MUL)
+                .count(), optimized);
+    }
+
+    @Test
+    public void loadsOfWrittenFieldsStay() {
+        var optimized = getOllirResultOpt("licm/InvariantLoads.jmm");
+        var loop = getLoopInstructions(CpUtils.getMethod(optimized, "writtenField"));
+
+        // 'scale' is never written, 'size' is written in every iteration, so it is kept in a local instead
+        CpUtils.assertEquals("Expected no field to be read in the loop", 0,
+                loop.stream().filter(GetFieldInstruction.class::isInstance).count(), optimized);
+    }
+
+    @Test
+    public void loadsStayInLoopsWithCalls() {
+        var optimized = getOllirResultOpt("licm/InvariantLoads.jmm");
+        var loop = getLoopInstructions(CpUtils.getMethod(optimized, "loopWithCall"));
+
+        CpUtils.assertEquals("Expected 'scale' to be read in the loop, the call may write it", 1,
+                loop.stream().filter(GetFieldInstruction.class::isInstance).count(), optimized);
+    }
+}
@@ -0,0 +1,77 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.ConfigOptions;
+
+import java.util.Map;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+
+/**
+ * Tests of the unrolling of loops with a constant number of iterations.
+ */
+public class LoopUnrollingTest {
+
+    private static final Map<String, String> UNROLL = Map.of(ConfigOptions.getUnroll(), "true");
+
+    private static int countBranches(OllirResult result, String methodName) {
+        return CpUtils.getInstructions(CondBranchInstruction.class, CpUtils.getMethod(result, methodName)).size();
+    }
+
+    private static long countArrayStores(OllirResult result, String methodName) {
+        return CpUtils.getInstructions(AssignInstruction.class, CpUtils.getMethod(result, methodName)).stream()
+                .filter(assign -> assign.getDest() instanceof ArrayOperand)
+                .count();
+    }
+
+    @Test
+    public void smallLoopsAreFullyUnrolled() {
+        var optimized = getOllirResultOpt("unrolling/CountedLoops.jmm", UNROLL);
+
+        CpUtils.assertEquals("Expected no branches in 'small'", 0, countBranches(optimized, "small"), optimized);
+        CpUtils.assertEquals("Expected one store for each iteration in 'small'", 8L,
+                countArrayStores(optimized, "small"), optimized);
+    }
+
+    @Test
+    public void largeLoopIsPartiallyUnrolled() {
+        var optimized = getOllirResultOpt("unrolling/CountedLoops.jmm", UNROLL);
+
+        // 1000 iterations are a multiple of the default factor of 4, so no copies are needed before the loop
+        CpUtils.assertEquals("Expected one branch in 'large'", 1, countBranches(optimized, "large"), optimized);
+        CpUtils.assertEquals("Expected four copies of the body in 'large'", 4L,
+                countArrayStores(optimized, "large"), optimized);
+    }
+
+    @Test
+    public void unknownBoundIsNotUnrolled() {
+        var optimized = getOllirResultOpt("unrolling/CountedLoops.jmm", UNROLL);
+
+        CpUtils.assertEquals("Expected the loop of 'unknownBound' to be kept", 1,
+                countBranches(optimized, "unknownBound"), optimized);
+    }
+
+    @Test
+    public void loopsAreNotUnrolledByDefault() {
+        var optimized = getOllirResultOpt("unrolling/CountedLoops.jmm");
+
+        CpUtils.assertEquals("Expected one store in 'large'", 1L, countArrayStores(optimized, "large"), optimized);
+        CpUtils.assertTrue("Expected no unrolling reports", optimized.getReports().stream()
+                .noneMatch(report -> report.getMessage().startsWith("Loop unrolling")), optimized);
+    }
+
+    @Test
+    public void unrolledLoopsAreReported() {
+        var optimized = getOllirResultOpt("unrolling/CountedLoops.jmm", UNROLL);
+
+        CpUtils.assertTrue("Expected a report of the loops unrolled in 'small'", optimized.getReports().stream()
+                .anyMatch(report -> report.getMessage().equals(
+                        "Loop unrolling in method 'small': 2 loops fully unrolled, 0 loops partially unrolled")),
+                optimized);
+    }
+}
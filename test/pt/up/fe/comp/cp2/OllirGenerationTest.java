@@ -0,0 +1,62 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.optimization.ClassUnitOllirResult;
+import pt.up.fe.comp2025.optimization.OllirPrinter;
+
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the class built directly from the AST is the class the OLLIR parser builds from its code, over the
+ * programs of the OLLIR tests.
+ */
+public class OllirGenerationTest {
+
+    private static final List<String> PROGRAMS = List.of(
+            "arithmetic/Arithmetic_add.jmm",
+            "arithmetic/Arithmetic_and.jmm",
+            "arithmetic/Arithmetic_less.jmm",
+            "arrays/ArrayAccess.jmm",
+            "arrays/ArrayInit.jmm",
+            "arrays/ComplexArrayAccess.jmm",
+            "basic/BasicAssignment.jmm",
+            "basic/BasicClass.jmm",
+            "basic/BasicClassWithFields.jmm",
+            "basic/BasicMethodInvocation.jmm",
+            "basic/BasicMethodsArray.jmm",
+            "control_flow/JumpingCode.jmm",
+            "control_flow/SimpleIfElseStat.jmm",
+            "control_flow/SimpleWhileStat.jmm",
+            "control_flow/SwitchStat.jmm");
+
+    private static String print(ClassUnit classUnit) {
+        var code = new StringBuilder(new OllirPrinter().print(classUnit));
+        for (var method : classUnit.getMethods()) {
+            code.append(method.getMethodName()).append(": ");
+            new TreeMap<>(method.getVarTable()).forEach((name, descriptor) -> code.append(name).append("=")
+                    .append(descriptor.getVirtualReg()).append(" ").append(descriptor.getScope()).append(" ")
+                    .append(descriptor.getVarType()).append(", "));
+            code.append("\n");
+        }
+        return code.toString();
+    }
+
+    @Test
+    public void builtClassIsTheParsedClass() {
+        for (var program : PROGRAMS) {
+            var built = OllirTest.getOllirResult(program);
+            assertTrue(program + ": expected the class to be built from the AST",
+                    built instanceof ClassUnitOllirResult);
+
+            var parsed = new OllirResult(built.getOllirCode(), built.getConfig());
+            assertEquals(program + ": expected the same class from the AST and from its OLLIR code",
+                    print(parsed.getOllirClass()), print(built.getOllirClass()));
+        }
+    }
+}
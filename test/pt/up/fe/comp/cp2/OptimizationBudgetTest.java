@@ -0,0 +1,93 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests of the degradation of the optimizations when the budget of the compilation or of a method is exceeded.
+ */
+public class OptimizationBudgetTest {
+
+    private static final String BASE_PATH = "pt/up/fe/comp/cp2/optimizations/";
+
+    private static OllirResult getOllirResult(String filename, Map<String, String> config) {
+        config.putIfAbsent(ConfigOptions.getOptimizationLevel(), "2");
+        return CpUtils.getOllirResult(SpecsIo.getResource(BASE_PATH + filename), config, true);
+    }
+
+    private static boolean hasReport(OllirResult result, ReportType type, String prefix) {
+        return result.getReports().stream()
+                .anyMatch(report -> report.getType() == type && report.getMessage().startsWith(prefix));
+    }
+
+    @Test
+    public void withinBudgetHasNoWarnings() {
+        var result = getOllirResult("inlining/SmallMethods.jmm", new HashMap<>());
+
+        CpUtils.assertTrue("Expected no warnings of the budget",
+                !hasReport(result, ReportType.WARNING, "Optimization budget"), result);
+        CpUtils.assertTrue("Expected calls to be inlined", hasReport(result, ReportType.LOG, "Inlining"), result);
+    }
+
+    @Test
+    public void classOverBudgetSkipsExpensivePasses() {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigOptions.getSizeBudget(), "0");
+        var result = getOllirResult("inlining/SmallMethods.jmm", config);
+
+        CpUtils.assertTrue("Expected a warning of the budget of the compilation",
+                hasReport(result, ReportType.WARNING, "Optimization budget of "), result);
+        CpUtils.assertTrue("Expected no inlining over the budget", !hasReport(result, ReportType.LOG, "Inlining"),
+                result);
+        CpUtils.assertTrue("Expected the cheap passes to still run",
+                hasReport(result, ReportType.LOG, "OLLIR optimization of class"), result);
+    }
+
+    @Test
+    public void methodOverBudgetSkipsExpensivePasses() {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigOptions.getMethodSizeBudget(), "1");
+        var result = getOllirResult("inlining/SmallMethods.jmm", config);
+
+        CpUtils.assertTrue("Expected a warning of the budget of a method",
+                hasReport(result, ReportType.WARNING, "Optimization budget of method"), result);
+        CpUtils.assertTrue("Expected no inlining over the budget", !hasReport(result, ReportType.LOG, "Inlining"),
+                result);
+    }
+
+    @Test
+    public void methodOverWorkBudgetSkipsExpensivePasses() {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigOptions.getMethodWorkBudget(), "1");
+        var result = getOllirResult("inlining/SmallMethods.jmm", config);
+
+        CpUtils.assertTrue("Expected a warning of the work of a method",
+                result.getReports().stream().anyMatch(report -> report.getType() == ReportType.WARNING
+                        && report.getMessage().contains("instruction visits, more than the 1 allowed")), result);
+        CpUtils.assertTrue("Expected no inlining over the budget", !hasReport(result, ReportType.LOG, "Inlining"),
+                result);
+    }
+
+    @Test
+    public void methodOverBudgetAllocatesRegistersLinearly() {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigOptions.getOptimizationLevel(), "0");
+        config.put(ConfigOptions.getMethodSizeBudget(), "0");
+        config.put(ConfigOptions.getRegister(), "0");
+        var result = getOllirResult("reg_alloc/regalloc_no_change.jmm", config);
+
+        CpUtils.assertTrue("Expected the registers to be allocated by linear scan",
+                result.getReports().stream().anyMatch(report -> report.getMessage().endsWith("linear scan")), result);
+
+        var varTable = CpUtils.getMethod(result, "soManyRegisters").getVarTable();
+        CpUtils.assertNotEquals("Expected registers of variables 'a' and 'b' to be different",
+                varTable.get("a").getVirtualReg(), varTable.get("b").getVirtualReg(), result);
+    }
+}
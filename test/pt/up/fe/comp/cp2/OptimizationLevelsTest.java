@@ -0,0 +1,75 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.comp2025.optimization.passes.LoopUnrolling;
+import pt.up.fe.comp2025.optimization.passes.PassManager;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests of the pipelines of OLLIR optimizations chosen by the -O0 to -O3 levels.
+ */
+public class OptimizationLevelsTest {
+
+    private static final String BASE_PATH = "pt/up/fe/comp/cp2/optimizations/";
+
+    private static OllirResult getOllirResult(String filename, int level) {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigOptions.getOptimizationLevel(), String.valueOf(level));
+        return CpUtils.getOllirResult(SpecsIo.getResource(BASE_PATH + filename), config, true);
+    }
+
+    private static boolean hasReport(OllirResult result, String prefix) {
+        return result.getReports().stream().anyMatch(report -> report.getMessage().startsWith(prefix));
+    }
+
+    private static int countBranches(OllirResult result, String methodName) {
+        return CpUtils.getInstructions(CondBranchInstruction.class, CpUtils.getMethod(result, methodName)).size();
+    }
+
+    @Test
+    public void levelZeroDoesNotOptimize() {
+        var result = getOllirResult("inlining/SmallMethods.jmm", 0);
+
+        CpUtils.assertTrue("Expected the OLLIR code not to be optimized with -O0",
+                !hasReport(result, "OLLIR optimization of class"), result);
+    }
+
+    @Test
+    public void levelOneOnlyOptimizesInsideMethods() {
+        var result = getOllirResult("inlining/SmallMethods.jmm", 1);
+
+        CpUtils.assertTrue("Expected the OLLIR code to be optimized with -O1",
+                hasReport(result, "OLLIR optimization of class"), result);
+        CpUtils.assertTrue("Expected no inlining with -O1", !hasReport(result, "Inlining"), result);
+    }
+
+    @Test
+    public void levelTwoInlines() {
+        var result = getOllirResult("inlining/SmallMethods.jmm", 2);
+
+        CpUtils.assertTrue("Expected calls to be inlined with -O2", hasReport(result, "Inlining"), result);
+    }
+
+    @Test
+    public void levelThreeUnrollsLoops() {
+        var levelTwo = getOllirResult("unrolling/CountedLoops.jmm", 2);
+        var levelThree = getOllirResult("unrolling/CountedLoops.jmm", 3);
+
+        CpUtils.assertTrue("Expected the loops of 'small' to be kept with -O2", countBranches(levelTwo, "small") > 0,
+                levelTwo);
+        CpUtils.assertEquals("Expected the loops of 'small' to be unrolled with -O3", 0,
+                countBranches(levelThree, "small"), levelThree);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void passRunsAfterItsDependencies() {
+        new PassManager(false).add(new LoopUnrolling(4, 64));
+    }
+}
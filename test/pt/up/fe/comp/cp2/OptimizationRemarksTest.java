@@ -0,0 +1,137 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.comp2025.optimization.OptimizationRemarks;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests of the remarks of the optimizations that were applied and missed.
+ */
+public class OptimizationRemarksTest {
+
+    private static final String BASE_PATH = "pt/up/fe/comp/cp2/optimizations/";
+
+    private static OllirResult getOllirResult(String filename, int level) {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigOptions.getOptimizationLevel(), String.valueOf(level));
+        return CpUtils.getOllirResult(SpecsIo.getResource(BASE_PATH + filename), config, true);
+    }
+
+    private static List<OptimizationRemark> getRemarks(OllirResult result) {
+        return result.getReports().stream()
+                .filter(OptimizationRemark.class::isInstance)
+                .map(OptimizationRemark.class::cast)
+                .toList();
+    }
+
+    @Test
+    public void foldingRemarkIsAtTheExpression() {
+        var result = getOllirResult("const_prop_fold/FoldSimple.jmm", 2);
+
+        var folding = getRemarks(result).stream()
+                .filter(remark -> remark.getPass().equals("ConstantFolding"))
+                .toList();
+        CpUtils.assertTrue("Expected remarks of constant folding", !folding.isEmpty(), result);
+        CpUtils.assertEquals("Expected the first folding at the line of its expression", 9,
+                folding.getFirst().getLine(), result);
+    }
+
+    @Test
+    public void missedInliningHasItsReason() {
+        var result = getOllirResult("inlining/SmallMethods.jmm", 2);
+
+        var missed = getRemarks(result).stream()
+                .filter(remark -> remark.getKind() == OptimizationRemark.Kind.MISSED)
+                .map(OptimizationRemark::getMessage)
+                .toList();
+        CpUtils.assertTrue("Expected a missed inlining of the recursive call",
+                missed.stream().anyMatch(message -> message.endsWith("the call is recursive")), result);
+        CpUtils.assertTrue("Expected a missed inlining of the public callee",
+                missed.stream().anyMatch(message -> message.endsWith("could be overridden by a subclass")), result);
+    }
+
+    @Test
+    public void hoistingRemarksAreAtTheirInstructions() {
+        var result = getOllirResult("licm/InvariantLoads.jmm", 2);
+
+        var remarks = getRemarks(result).stream()
+                .filter(remark -> remark.getPass().equals("LoopInvariantCodeMotion"))
+                .toList();
+        CpUtils.assertTrue("Expected the length of 'L' to be hoisted from line 12",
+                remarks.stream().anyMatch(remark -> remark.getKind() == OptimizationRemark.Kind.APPLIED
+                        && remark.getMessage().startsWith("Loop-invariant length of array 'L' in method")
+                        && remark.getLine() == 12), result);
+        CpUtils.assertTrue("Expected the load of 'scale' at line 35 to be missed because of the call",
+                remarks.stream().anyMatch(remark -> remark.getKind() == OptimizationRemark.Kind.MISSED
+                        && remark.getMessage().endsWith("not hoisted: the loop calls methods that may write the field")
+                        && remark.getLine() == 35), result);
+    }
+
+    @Test
+    public void valueNumberingRemarksAreAtTheirInstructions() {
+        var result = getOllirResult("value_numbering/RedundantLoads.jmm", 2);
+
+        var remarks = getRemarks(result).stream()
+                .filter(remark -> remark.getPass().equals("ValueNumbering"))
+                .toList();
+        CpUtils.assertTrue("Expected the computation at line 10 to be removed",
+                remarks.stream().anyMatch(remark -> remark.getKind() == OptimizationRemark.Kind.APPLIED
+                        && remark.getMessage().equals("Redundant computation in method 'arithmetic' removed")
+                        && remark.getLine() == 10), result);
+        CpUtils.assertTrue("Expected the load of 'v' at line 25 to be missed because of the array store",
+                remarks.stream().anyMatch(remark -> remark.getKind() == OptimizationRemark.Kind.MISSED
+                        && remark.getMessage().startsWith("Repeated load of array 'v' in method 'arrays' not removed")
+                        && remark.getLine() == 25), result);
+    }
+
+    @Test
+    public void ollirRemarksAreAtTheirMethod() {
+        var result = getOllirResult("inlining/SmallMethods.jmm", 2);
+
+        for (var remark : getRemarks(result)) {
+            if (remark.getMethod() != null) {
+                CpUtils.assertTrue("Expected the remark '" + remark.getMessage() + "' to have a line",
+                        remark.getLine() > 0, result);
+            }
+        }
+    }
+
+    @Test
+    public void remarksAreWrittenAsJsonLines() throws IOException {
+        var result = getOllirResult("inlining/SmallMethods.jmm", 2);
+        var file = File.createTempFile("remarks", ".jsonl");
+        file.deleteOnExit();
+
+        OptimizationRemarks.write(result.getReports(), file);
+
+        var lines = SpecsIo.read(file).lines().toList();
+        CpUtils.assertEquals("Expected one line for each remark", getRemarks(result).size(), lines.size(), result);
+        CpUtils.assertTrue("Expected each line to be a JSON object",
+                lines.stream().allMatch(line -> line.startsWith("{\"pass\":") && line.endsWith("}")), result);
+    }
+
+    @Test
+    public void summaryStartsWithTheHottestMiss() {
+        var result = getOllirResult("unrolling/CountedLoops.jmm", 3);
+
+        var summary = OptimizationRemarks.summarize(result.getReports()).lines().toList();
+        var hottest = getRemarks(result).stream()
+                .filter(remark -> remark.getKind() == OptimizationRemark.Kind.MISSED)
+                .mapToLong(OptimizationRemark::getHotness)
+                .max();
+
+        CpUtils.assertTrue("Expected missed optimizations", hottest.isPresent() && summary.size() > 1, result);
+        CpUtils.assertTrue("Expected the hottest missed optimization first, got: " + summary.get(1),
+                summary.get(1).trim().startsWith(String.valueOf(hottest.getAsLong())), result);
+    }
+}
@@ -0,0 +1,92 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.comp2025.optimization.OptimizationRemark;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the instrumented builds and of the optimizations guided by their profiles.
+ */
+public class ProfileGuidedTest {
+
+    private static final String RESOURCE = "pt/up/fe/comp/cp2/optimizations/profile/BiasedLoop.jmm";
+
+    private static Map<String, String> getConfig() {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigOptions.getOptimizationLevel(), "2");
+        return config;
+    }
+
+    /**
+     * Runs an instrumented build of the resource and returns the profile it wrote.
+     */
+    private static File getProfile() throws IOException {
+        var file = File.createTempFile("BiasedLoop", ".profile");
+        file.deleteOnExit();
+        // The counts are appended to the profile
+        file.delete();
+
+        var config = getConfig();
+        config.put(ConfigOptions.getInstrument(), file.getAbsolutePath());
+        var jasminResult = TestUtils.backend(SpecsIo.getResource(RESOURCE), config);
+        TestUtils.noErrors(jasminResult.getReports());
+
+        var output = SpecsStrings.normalizeFileContents(jasminResult.run(), true).trim();
+        assertEquals("0\n16\n32\n48\n156", output);
+
+        return file;
+    }
+
+    private static boolean hasRemark(OllirResult result, String prefix) {
+        return result.getReports().stream()
+                .anyMatch(report -> report instanceof OptimizationRemark && report.getMessage().startsWith(prefix));
+    }
+
+    @Test
+    public void instrumentedBuildWritesCounts() throws IOException {
+        var lines = SpecsIo.read(getProfile()).lines().toList();
+
+        assertTrue("Expected the count of the entry of 'sum', got " + lines, lines.contains("entry sum - 1"));
+        assertTrue("Expected the count of the loop body, got " + lines, lines.contains("block sum whileBody1 64"));
+        assertTrue("Expected the count of the rare call, got " + lines, lines.contains("call sum rare#0 4"));
+        assertTrue("Expected the count of the call that never ran, got " + lines,
+                lines.contains("call sum never#0 0"));
+    }
+
+    @Test
+    public void profileGuidesOptimizations() throws IOException {
+        var config = getConfig();
+        config.put(ConfigOptions.getProfile(), getProfile().getAbsolutePath());
+        var result = CpUtils.getOllirResult(SpecsIo.getResource(RESOURCE), config, true);
+
+        CpUtils.assertTrue("Expected the blocks of 'sum' to be laid out by the profile",
+                hasRemark(result, "Block layout in method 'sum'"), result);
+        CpUtils.assertTrue("Expected the call that never ran not to be inlined",
+                result.getReports().stream().map(Report::getMessage)
+                        .anyMatch(message -> message.contains("the call never ran in the profile")), result);
+    }
+
+    @Test
+    public void profileKeepsTheOutput() throws IOException {
+        var config = getConfig();
+        config.put(ConfigOptions.getProfile(), getProfile().getAbsolutePath());
+        var jasminResult = TestUtils.backend(SpecsIo.getResource(RESOURCE), config);
+
+        var output = SpecsStrings.normalizeFileContents(jasminResult.run(), true).trim();
+        assertEquals("0\n16\n32\n48\n156", output);
+    }
+}
@@ -0,0 +1,71 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.inst.FieldInstruction;
+import org.specs.comp.ollir.inst.GetFieldInstruction;
+import org.specs.comp.ollir.inst.PutFieldInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+import static pt.up.fe.comp.cp2.OptimizationsTest.NO_INLINING;
+
+/**
+ * Tests of the fields kept in locals inside loops and of the loads of fields replaced by their available values.
+ * Inlining is disabled, so the calls made in the loops stay in the code.
+ */
+public class ScalarReplacementTest {
+
+    private static <T extends FieldInstruction> long countAccesses(Class<T> c, OllirResult result, String methodName,
+                                                                  String field) {
+        return CpUtils.getInstructions(c, CpUtils.getMethod(result, methodName)).stream()
+                .filter(access -> access.getField().getName().equals(field))
+                .count();
+    }
+
+    @Test
+    public void fieldIsKeptInLocalInsideLoop() {
+        var optimized = getOllirResultOpt("scalar_replacement/FieldLoops.jmm", NO_INLINING);
+
+        // Only the load before the loop and the store after it are left
+        CpUtils.assertEquals("Expected one getfield of 'sum' in 'accumulate'", 1,
+                countAccesses(GetFieldInstruction.class, optimized, "accumulate", "sum"), optimized);
+        CpUtils.assertEquals("Expected one putfield of 'sum' in 'accumulate'", 1,
+                countAccesses(PutFieldInstruction.class, optimized, "accumulate", "sum"), optimized);
+        CpUtils.assertTrue("Expected a report of the fields kept in locals", optimized.getReports().stream()
+                        .anyMatch(report -> report.getMessage().startsWith(
+                                "Scalar replacement in method 'accumulate': 1 fields kept in locals in 1 loops")),
+                optimized);
+    }
+
+    @Test
+    public void fieldTouchedByCallIsKept() {
+        var optimized = getOllirResultOpt("scalar_replacement/FieldLoops.jmm", NO_INLINING);
+
+        // 'add' does not access the fields, but 'bump' writes 'calls'
+        CpUtils.assertEquals("Expected one getfield of 'sum' in 'countWithCall'", 1,
+                countAccesses(GetFieldInstruction.class, optimized, "countWithCall", "sum"), optimized);
+        CpUtils.assertEquals("Expected the putfield of 'calls' in the loop to be kept", 1,
+                countAccesses(PutFieldInstruction.class, optimized, "countWithCall", "calls"), optimized);
+        CpUtils.assertEquals("Expected the getfield of 'calls' after the call to be kept", 2,
+                countAccesses(GetFieldInstruction.class, optimized, "countWithCall", "calls"), optimized);
+    }
+
+    @Test
+    public void storedValueIsForwarded() {
+        var optimized = getOllirResultOpt("scalar_replacement/FieldLoops.jmm", NO_INLINING);
+
+        CpUtils.assertEquals("Expected the loads of 'sum' after its store to be removed", 0,
+                countAccesses(GetFieldInstruction.class, optimized, "forward", "sum"), optimized);
+        CpUtils.assertEquals("Expected the load of 'calls' after its store to be removed", 1,
+                countAccesses(GetFieldInstruction.class, optimized, "bump", "calls"), optimized);
+    }
+
+    @Test
+    public void outputIsKept() {
+        var optimized = getOllirResultOpt("scalar_replacement/FieldLoops.jmm", NO_INLINING);
+
+        CpUtils.runJasmin(TestUtils.backend(optimized), "45\n10\n14");
+    }
+}
@@ -0,0 +1,212 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.InstructionUtils;
+import pt.up.fe.comp2025.optimization.ssa.ParallelCopy;
+import pt.up.fe.comp2025.optimization.ssa.SsaForm;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trip tests of the SSA construction and destruction: the programs must behave the same after going in and
+ * out of SSA form.
+ */
+public class SsaTest {
+
+    private static final String JASMIN_PATH = "pt/up/fe/comp/cp3/jasmin/";
+
+    private static final List<String> JMM_INPUTS = List.of(
+            "pt/up/fe/comp/cp2/ollir/arithmetic/Arithmetic_add.jmm",
+            "pt/up/fe/comp/cp2/ollir/arithmetic/Arithmetic_and.jmm",
+            "pt/up/fe/comp/cp2/ollir/arithmetic/Arithmetic_less.jmm",
+            "pt/up/fe/comp/cp2/ollir/arrays/ArrayAccess.jmm",
+            "pt/up/fe/comp/cp2/ollir/arrays/ArrayInit.jmm",
+            "pt/up/fe/comp/cp2/ollir/arrays/ComplexArrayAccess.jmm",
+            "pt/up/fe/comp/cp2/ollir/basic/BasicAssignment.jmm",
+            "pt/up/fe/comp/cp2/ollir/basic/BasicClass.jmm",
+            "pt/up/fe/comp/cp2/ollir/basic/BasicClassWithFields.jmm",
+            "pt/up/fe/comp/cp2/ollir/basic/BasicMethodInvocation.jmm",
+            "pt/up/fe/comp/cp2/ollir/basic/BasicMethodsArray.jmm",
+            "pt/up/fe/comp/cp2/ollir/control_flow/SimpleIfElseStat.jmm",
+            "pt/up/fe/comp/cp2/ollir/control_flow/SimpleWhileStat.jmm",
+            "pt/up/fe/comp/cp2/ollir/control_flow/SwitchStat.jmm",
+            "pt/up/fe/comp/cp2/optimizations/const_prop_fold/FoldSequence.jmm",
+            "pt/up/fe/comp/cp2/optimizations/const_prop_fold/FoldSimple.jmm",
+            "pt/up/fe/comp/cp2/optimizations/const_prop_fold/PropAndFoldingSimple.jmm",
+            "pt/up/fe/comp/cp2/optimizations/const_prop_fold/PropSimple.jmm",
+            "pt/up/fe/comp/cp2/optimizations/const_prop_fold/PropWithLoop.jmm",
+            "pt/up/fe/comp/cp2/optimizations/reg_alloc/regalloc.jmm",
+            "pt/up/fe/comp/cp2/optimizations/reg_alloc/regalloc_no_change.jmm");
+
+    static OllirResult getOllirResult(String resource) {
+        return new OllirResult(SpecsIo.getResource(JASMIN_PATH + resource), Collections.emptyMap());
+    }
+
+    static void roundTrip(ClassUnit classUnit) {
+        for (var method : classUnit.getMethods()) {
+            var cfg = ControlFlowGraph.build(method);
+            var ssa = SsaForm.construct(cfg);
+            checkSsa(ssa);
+            ssa.destruct();
+            cfg.commit();
+        }
+    }
+
+    /**
+     * Every version is assigned once, and its definition dominates all its uses.
+     */
+    static void checkSsa(SsaForm ssa) {
+        var cfg = ssa.getCfg();
+        var domTree = ssa.getDominatorTree();
+        var definitions = new HashMap<String, Object>();
+
+        for (var block : cfg.getBlocks()) {
+            for (var phi : ssa.getPhis(block)) {
+                assertNull("Assigned twice: " + phi.getDest().getName(),
+                        definitions.put(phi.getDest().getName(), block));
+            }
+            for (var inst : block.getInstructions()) {
+                var def = InstructionUtils.getDefName(inst);
+                if (def != null) {
+                    assertNull("Assigned twice: " + def, definitions.put(def, block));
+                }
+            }
+        }
+
+        var defs = ssa.getDefinitions();
+        for (var block : cfg.getBlocks()) {
+            for (var phi : ssa.getPhis(block)) {
+                for (var arg : phi.getArguments().entrySet()) {
+                    if (arg.getValue() instanceof Operand operand && defs.containsKey(operand.getName())) {
+                        assertTrue(phi + " argument not dominated by its definition",
+                                domTree.dominates(defs.get(operand.getName()).block(), arg.getKey()));
+                    }
+                }
+            }
+            for (var inst : block.getInstructions()) {
+                for (var use : InstructionUtils.getUses(inst)) {
+                    if (defs.containsKey(use)) {
+                        assertTrue(use + " not dominated by its definition",
+                                domTree.dominates(defs.get(use).block(), block));
+                    }
+                }
+            }
+        }
+    }
+
+    static void testRoundTrip(String resource, String expectedOutput) {
+        var ollirResult = getOllirResult(resource);
+        roundTrip(ollirResult.getOllirClass());
+        CpUtils.runJasmin(TestUtils.backend(ollirResult), expectedOutput);
+    }
+
+    @Test
+    public void loopHeaderHasPhis() {
+        var ollirResult = getOllirResult("control_flow/IfWhileNested.ollir");
+        var method = CpUtils.getMethod(ollirResult, "func");
+        var ssa = SsaForm.construct(ControlFlowGraph.build(method));
+
+        var phiVariables = new HashSet<String>();
+        for (var block : ssa.getCfg().getBlocks()) {
+            ssa.getPhis(block).forEach(phi -> phiVariables.add(phi.getVariable()));
+        }
+
+        assertEquals(Set.of("i", "flag"), phiVariables);
+    }
+
+    @Test
+    public void roundTripArithmetic() {
+        testRoundTrip("arithmetic/Arithmetic_and.ollir", "0");
+        testRoundTrip("arithmetic/Arithmetic_less.ollir", "1");
+    }
+
+    @Test
+    public void roundTripControlFlow() {
+        testRoundTrip("control_flow/SimpleIfElseStat.ollir", "Result: 5\nResult: 8");
+        testRoundTrip("control_flow/SimpleControlFlow.ollir", "Result: 3");
+        testRoundTrip("control_flow/SimpleIfElseNot.ollir", "10\n200");
+        testRoundTrip("control_flow/SimpleWhileStat.ollir", "Result: 0\nResult: 1\nResult: 2");
+        testRoundTrip("control_flow/SwitchStat.ollir",
+                "Result: 1\nResult: 2\nResult: 3\nResult: 4\nResult: 5\nResult: 6\nResult: 7");
+        testRoundTrip("control_flow/IfWhileNested.ollir", "Result: 1\nResult: 2\nResult: 1");
+    }
+
+    @Test
+    public void roundTripCallsAndArrays() {
+        testRoundTrip("calls/ConditionArgsFuncCall.ollir", "Result: 10");
+        testRoundTrip("arrays/ArrayInit.ollir", "Result: 5");
+        testRoundTrip("arrays/ArrayAccess.ollir", "Result: 1\nResult: 2\nResult: 3\nResult: 4\nResult: 5");
+        testRoundTrip("arrays/ComplexArrayAccess.ollir", "Result: 1\nResult: 2\nResult: 3\nResult: 4\nResult: 5");
+        testRoundTrip("arrays/ArrayAsArg.ollir", "Result: 2");
+    }
+
+    @Test
+    public void parallelCopyBreaksCycles() {
+        var type = new BuiltinType(BuiltinKind.INT32);
+        var a = new Operand("a", type);
+        var b = new Operand("b", type);
+        var c = new Operand("c", type);
+
+        // (a, b, c) := (b, a, a)
+        var copies = new ParallelCopy();
+        copies.add(a, b);
+        copies.add(b, a);
+        copies.add(c, a);
+        var sequence = copies.sequentialize(op -> new Operand("t", op.getType()));
+
+        Map<String, Integer> values = new HashMap<>(Map.of("a", 1, "b", 2, "c", 3));
+        for (var inst : sequence) {
+            var assign = (AssignInstruction) inst;
+            var source = (Operand) ((SingleOpInstruction) assign.getRhs()).getSingleOperand();
+            values.put(((Operand) assign.getDest()).getName(), values.get(source.getName()));
+        }
+
+        assertEquals(2, (int) values.get("a"));
+        assertEquals(1, (int) values.get("b"));
+        assertEquals(1, (int) values.get("c"));
+        assertEquals(4, sequence.size());
+    }
+
+    /**
+     * Without optimizations in between, every version gets its original name back.
+     */
+    @Test
+    public void roundTripKeepsVariables() {
+        for (var resource : JMM_INPUTS) {
+            var ollirResult = CpUtils.getOllirResult(SpecsIo.getResource(resource), Collections.emptyMap(), false);
+            var classUnit = ollirResult.getOllirClass();
+
+            Map<String, Set<String>> before = new HashMap<>();
+            for (var method : classUnit.getMethods()) {
+                before.put(method.getMethodName(), variables(method));
+            }
+
+            roundTrip(classUnit);
+
+            for (var method : classUnit.getMethods()) {
+                assertEquals(resource + ", method " + method.getMethodName(),
+                        before.get(method.getMethodName()), variables(method));
+            }
+
+            TestUtils.noErrors(TestUtils.backend(ollirResult));
+        }
+    }
+
+    private static Set<String> variables(Method method) {
+        return new TreeSet<>(method.getVarTable().keySet());
+    }
+}
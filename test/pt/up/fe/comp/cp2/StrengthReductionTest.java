@@ -0,0 +1,69 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.BinaryOpInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp2025.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2025.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2025.optimization.cfg.Loop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+
+/**
+ * Tests of the strength reduction of induction variables.
+ */
+public class StrengthReductionTest {
+
+    /**
+     * @return the right-hand sides of the assignments inside the loops of the method
+     */
+    private static List<Instruction> getLoopInstructions(Method method) {
+        var cfg = ControlFlowGraph.build(method);
+        var loops = Loop.find(cfg, new DominatorTree(cfg));
+        assertFalse("Expected a loop in '" + method.getMethodName() + "'", loops.isEmpty());
+
+        var result = new ArrayList<Instruction>();
+        for (var block : loops.getLast().getBlocks()) {
+            for (var inst : block.getInstructions()) {
+                result.add(inst instanceof AssignInstruction assign ? assign.getRhs() : inst);
+            }
+        }
+        return result;
+    }
+
+    private static long countMultiplications(List<Instruction> instructions) {
+        return instructions.stream()
+                .filter(inst -> inst instanceof BinaryOpInstruction binary
+                        && binary.getOperation().getOpType() == OperationType.MUL)
+                .count();
+    }
+
+    @Test
+    public void constantFactorIsReduced() {
+        var optimized = getOllirResultOpt("strength_reduction/InductionVariables.jmm");
+        var method = CpUtils.getMethod(optimized, "constantFactor");
+
+        CpUtils.assertEquals("Expected no multiplications in the loop", 0,
+                countMultiplications(getLoopInstructions(method)), optimized);
+        CpUtils.assertTrue("Expected a strength reduction report", optimized.getReports().stream()
+                .anyMatch(report -> report.getMessage().startsWith("Strength reduction in method 'constantFactor'")),
+                optimized);
+    }
+
+    @Test
+    public void variableFactorIsNotReduced() {
+        var optimized = getOllirResultOpt("strength_reduction/InductionVariables.jmm");
+        var method = CpUtils.getMethod(optimized, "variableFactor");
+
+        CpUtils.assertEquals("Expected the multiplication to stay in the loop", 1,
+                countMultiplications(getLoopInstructions(method)), optimized);
+    }
+}
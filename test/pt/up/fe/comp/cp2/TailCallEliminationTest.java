@@ -0,0 +1,61 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.inst.GotoInstruction;
+import org.specs.comp.ollir.inst.InvokeVirtualInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+
+/**
+ * Tests of the replacement of recursive calls in tail position by jumps.
+ */
+public class TailCallEliminationTest {
+
+    private static int countCalls(OllirResult result, String methodName) {
+        return CpUtils.getInstructions(InvokeVirtualInstruction.class, CpUtils.getMethod(result, methodName)).size();
+    }
+
+    @Test
+    public void returnedCallBecomesLoop() {
+        var optimized = getOllirResultOpt("tail_calls/TailCalls.jmm");
+        var method = CpUtils.getMethod(optimized, "sum");
+
+        CpUtils.assertEquals("Expected no calls in 'sum'", 0, countCalls(optimized, "sum"), optimized);
+        CpUtils.assertTrue("Expected a jump back to the start of 'sum'",
+                !CpUtils.getInstructions(GotoInstruction.class, method).isEmpty(), optimized);
+    }
+
+    @Test
+    public void swappedParametersAreReplaced() {
+        var optimized = getOllirResultOpt("tail_calls/TailCalls.jmm");
+
+        CpUtils.assertEquals("Expected no calls in 'gcd'", 0, countCalls(optimized, "gcd"), optimized);
+    }
+
+    @Test
+    public void callWithPendingWorkIsKept() {
+        var optimized = getOllirResultOpt("tail_calls/TailCalls.jmm");
+
+        // The result is multiplied after the call returns
+        CpUtils.assertEquals("Expected one call in 'fact'", 1, countCalls(optimized, "fact"), optimized);
+    }
+
+    @Test
+    public void lastCallOfConstantMethodIsReplaced() {
+        var optimized = getOllirResultOpt("tail_calls/TailCalls.jmm");
+
+        // 'sort' always returns true, so only the first call is not in tail position
+        CpUtils.assertEquals("Expected one call in 'sort'", 1, countCalls(optimized, "sort"), optimized);
+    }
+
+    @Test
+    public void replacedCallsAreReported() {
+        var optimized = getOllirResultOpt("tail_calls/TailCalls.jmm");
+
+        CpUtils.assertTrue("Expected a report of the calls replaced in 'sum'", optimized.getReports().stream()
+                .anyMatch(report -> report.getMessage().startsWith("Tail call elimination in method 'sum'")),
+                optimized);
+    }
+}
@@ -0,0 +1,54 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+import static pt.up.fe.comp.cp2.OptimizationsTest.NO_INLINING;
+
+/**
+ * Tests of the removal of the methods that are not public and cannot be reached from the public methods. Inlining is
+ * disabled, so the calls to the helpers stay in the code.
+ */
+public class UnreachableMethodEliminationTest {
+
+    private static boolean hasMethod(OllirResult result, String methodName) {
+        return result.getOllirClass().getMethods().stream().map(Method::getMethodName).anyMatch(methodName::equals);
+    }
+
+    @Test
+    public void reachableMethodsAreKept() {
+        var optimized = getOllirResultOpt("unreachable_methods/UnreachableMethods.jmm", NO_INLINING);
+
+        CpUtils.assertTrue("Expected 'used', called by a public method, to be kept", hasMethod(optimized, "used"),
+                optimized);
+        CpUtils.assertTrue("Expected 'calledByUsed', called by a reachable method, to be kept",
+                hasMethod(optimized, "calledByUsed"), optimized);
+        CpUtils.assertTrue("Expected the public methods to be kept",
+                hasMethod(optimized, "api") && hasMethod(optimized, "main"), optimized);
+    }
+
+    @Test
+    public void unreachableMethodsAreRemoved() {
+        var optimized = getOllirResultOpt("unreachable_methods/UnreachableMethods.jmm", NO_INLINING);
+
+        CpUtils.assertTrue("Expected 'unused' to be removed", !hasMethod(optimized, "unused"), optimized);
+        CpUtils.assertTrue("Expected 'unusedCallee', only called by an unreachable method, to be removed",
+                !hasMethod(optimized, "unusedCallee"), optimized);
+        CpUtils.assertTrue("Expected the unreachable recursive methods to be removed",
+                !hasMethod(optimized, "even") && !hasMethod(optimized, "odd"), optimized);
+        CpUtils.assertTrue("Expected a report of the removed methods", optimized.getReports().stream()
+                .anyMatch(report -> report.getMessage().equals(
+                        "Unreachable method elimination: method 'unused' removed, 2 instructions")), optimized);
+    }
+
+    @Test
+    public void classWithoutMainKeepsItsMethods() {
+        var optimized = getOllirResultOpt("unreachable_methods/Library.jmm", NO_INLINING);
+
+        // Other classes can call the methods that are not public
+        CpUtils.assertTrue("Expected 'helper' to be kept", hasMethod(optimized, "helper"), optimized);
+    }
+}
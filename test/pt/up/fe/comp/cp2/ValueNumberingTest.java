@@ -0,0 +1,51 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.ArrayLengthInstruction;
+import org.specs.comp.ollir.inst.GetFieldInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import pt.up.fe.comp.CpUtils;
+
+import static pt.up.fe.comp.cp2.OptimizationsTest.getOllirResultOpt;
+
+/**
+ * Tests of the global value numbering.
+ */
+public class ValueNumberingTest {
+
+    @Test
+    public void redundantExpressionsAreReused() {
+        var optimized = getOllirResultOpt("value_numbering/RedundantLoads.jmm");
+        var method = CpUtils.getMethod(optimized, "arithmetic");
+
+        // 'y + x' is the same value as 'x + y'
+        CpUtils.assertNumberOfOperations(OperationType.ADD, 2, method, optimized);
+        CpUtils.assertNumberOfOperations(OperationType.LTH, 1, method, optimized);
+    }
+
+    @Test
+    public void arrayLoadsAreReusedUntilAStore() {
+        var optimized = getOllirResultOpt("value_numbering/RedundantLoads.jmm");
+        var method = CpUtils.getMethod(optimized, "arrays");
+
+        // 'v[i]' is loaded again after 'v[0]' is written, both may be the same element
+        var loads = CpUtils.getInstructions(SingleOpInstruction.class, method).stream()
+                .filter(single -> single.getSingleOperand() instanceof ArrayOperand)
+                .count();
+        CpUtils.assertEquals("Expected 2 array loads in 'arrays'", 2, loads, optimized);
+        CpUtils.assertEquals("Expected 1 arraylength in 'arrays'", 1,
+                CpUtils.getInstructions(ArrayLengthInstruction.class, method).size(), optimized);
+    }
+
+    @Test
+    public void fieldLoadsAreReusedUntilAWrite() {
+        var optimized = getOllirResultOpt("value_numbering/RedundantLoads.jmm");
+        var method = CpUtils.getMethod(optimized, "fields");
+
+        // 'f' is loaded again after the call, which may write it, but not after the putfield, whose value is reused
+        CpUtils.assertEquals("Expected 2 getfield in 'fields'", 2,
+                CpUtils.getInstructions(GetFieldInstruction.class, method).size(), optimized);
+    }
+}
@@ -91,6 +91,41 @@ public class JasminOptimizationsTest {
         CpUtils.matches(jasminResult, "(iflt|ifge)");
     }
 
+    /**
+     * Test if boolean negation is done without branches
+     */
+    @Test
+    public void section1_InstSelection_NotWithoutBranches() {
+        JasminResult jasminResult = getJasminResult("InstSelection_not.jmm");
+        CpUtils.matches(jasminResult, "iconst_1\\s+ixor");
+        CpUtils.assertEquals("Expected no branches", 0,
+                CpUtils.countOccurrencesRegex(jasminResult, CpUtils.IF_REGEX + "|" + CpUtils.GOTO_REGEX),
+                jasminResult);
+    }
+
+    /**
+     * Test if comparisons against zero are computed without branches
+     */
+    @Test
+    public void section1_InstSelection_CompareZeroWithoutBranches() {
+        JasminResult jasminResult = getJasminResult("InstSelection_cmp_zero.jmm");
+        CpUtils.matches(jasminResult, "bipush\\s+31\\s+iushr");
+        CpUtils.assertEquals("Expected no branches", 0,
+                CpUtils.countOccurrencesRegex(jasminResult, CpUtils.IF_REGEX + "|" + CpUtils.GOTO_REGEX),
+                jasminResult);
+    }
+
+    /**
+     * Test if a value that is stored and loaded again is kept in the stack with dup
+     */
+    @Test
+    public void section1_Peephole_StoreLoad() {
+        JasminResult jasminResult = getJasminResultOpt("Peephole_store_load.jmm");
+        CpUtils.matches(jasminResult, "dup\\s+istore_2");
+        CpUtils.assertEquals("Expected no load after a store of the same variable", 0,
+                CpUtils.countOccurrencesRegex(jasminResult, "istore_2\\s+iload_2"), jasminResult);
+    }
+
     /**
      * Test if iinc is used when incrementing a variable
      */
@@ -275,4 +275,114 @@ public class JasminTest {
         // Make sure the code compiles
         jasminResult.compile();
     }
+
+    /*checks if the .limits stack is exactly the highest the stack gets on any path, and the code verifies */
+    @Test
+    public void section6_Limits_Stack_Exact() {
+
+        var jasminResult = getJasminResult("limits/StackLimits.ollir");
+        var methodCode = CpUtils.getJasminMethod(jasminResult, "func");
+        var numStack = Integer.parseInt(SpecsStrings.getRegexGroup(methodCode, CpUtils.getLimitStackRegex(), 1));
+
+        assertEquals("limit stack should be exact:\n" + methodCode, 3, numStack);
+        TestUtils.noErrors(jasminResult.getReports());
+
+        // Make sure the code compiles
+        jasminResult.compile();
+    }
+
+    /*checks if a method with more than 256 locals loads, stores and increments the high registers with the wide forms */
+    @Test
+    public void section6_Limits_Wide_Locals() {
+
+        var code = new StringBuilder("v0.i32 :=.i32 1.i32;\n");
+        for (int i = 1; i < 300; i++) {
+            code.append("v").append(i).append(".i32 :=.i32 v").append(i - 1).append(".i32 +.i32 1.i32;\n");
+        }
+        code.append("v299.i32 :=.i32 v299.i32 +.i32 1000.i32;\n");
+        code.append("invokestatic(io, \"println\", v299.i32).V;\n");
+
+        var jasminResult = TestUtils.backend(new OllirResult(wrapInMain(code.toString()), Collections.emptyMap()));
+        TestUtils.noErrors(jasminResult.getReports());
+        CpUtils.matches(jasminResult, "iinc\\s+\\d{3}\\s+1000");
+
+        assertEquals("1300", SpecsStrings.normalizeFileContents(jasminResult.run(), true).trim());
+    }
+
+    /*checks if jumps farther than a short offset are rewritten with goto_w, and the code still runs */
+    @Test
+    public void section6_Limits_Long_Jumps() {
+
+        var code = new StringBuilder("i.i32 :=.i32 0.i32;\nx.i32 :=.i32 0.i32;\nloop:\n");
+        code.append("if (i.i32 >=.bool 3.i32) goto end;\n");
+        for (int j = 0; j < 9000; j++) {
+            code.append("x.i32 :=.i32 x.i32 +.i32 i.i32;\n");
+        }
+        code.append("i.i32 :=.i32 i.i32 +.i32 1.i32;\ngoto loop;\nend:\n");
+        code.append("invokestatic(io, \"println\", x.i32).V;\n");
+
+        var jasminResult = TestUtils.backend(new OllirResult(wrapInMain(code.toString()), Collections.emptyMap()));
+        TestUtils.noErrors(jasminResult.getReports());
+        CpUtils.matches(jasminResult, "goto_w");
+
+        assertEquals("27000", SpecsStrings.normalizeFileContents(jasminResult.run(), true).trim());
+    }
+
+    /*checks if a method larger than the JVM allows is split, with the results of the regions given back */
+    @Test
+    public void section6_Limits_Split_Method() {
+
+        var code = new StringBuilder("i.i32 :=.i32 0.i32;\nx.i32 :=.i32 0.i32;\ny.i32 :=.i32 0.i32;\nloop:\n");
+        code.append("if (i.i32 >=.bool 3.i32) goto end;\n");
+        for (int j = 0; j < 20000; j++) {
+            code.append("x.i32 :=.i32 x.i32 +.i32 i.i32;\ny.i32 :=.i32 y.i32 +.i32 x.i32;\n");
+        }
+        code.append("i.i32 :=.i32 i.i32 +.i32 1.i32;\ngoto loop;\nend:\n");
+        code.append("invokestatic(io, \"println\", x.i32).V;\ninvokestatic(io, \"println\", y.i32).V;\n");
+
+        var jasminResult = TestUtils.backend(new OllirResult(wrapInMain(code.toString()), Collections.emptyMap()));
+        TestUtils.noErrors(jasminResult.getReports());
+        CpUtils.matches(jasminResult, "\\.method private static main_split0\\(III\\[I\\)I");
+
+        assertEquals("60000\n1000030000",
+                SpecsStrings.normalizeFileContents(jasminResult.run(), true).trim());
+    }
+
+    /*checks if the regions of a split instance method receive the object to access its fields */
+    @Test
+    public void section6_Limits_Split_Instance_Method() {
+
+        var code = new StringBuilder("i.i32 :=.i32 0.i32;\nx.i32 :=.i32 0.i32;\nloop:\n");
+        code.append("if (i.i32 >=.bool 3.i32) goto end;\n");
+        for (int j = 0; j < 20000; j++) {
+            code.append("a.i32 :=.i32 getfield(this, count.i32).i32;\nb.i32 :=.i32 a.i32 +.i32 i.i32;\n");
+            code.append("putfield(this, count.i32, b.i32).V;\nx.i32 :=.i32 x.i32 +.i32 b.i32;\n");
+        }
+        code.append("i.i32 :=.i32 i.i32 +.i32 1.i32;\ngoto loop;\nend:\n");
+
+        var ollirCode = "import io;\n"
+                + "Large {\n"
+                + ".field public count.i32;\n"
+                + ".construct Large().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+                + ".method public run().i32 {\n" + code + "ret.i32 x.i32;\n}\n"
+                + ".method public static main(args.array.String).V {\n"
+                + "l.Large :=.Large new(Large).Large;\ninvokespecial(l.Large, \"<init>\").V;\n"
+                + "v.i32 :=.i32 invokevirtual(l.Large, \"run\").i32;\n"
+                + "invokestatic(io, \"println\", v.i32).V;\nret.V;\n}\n"
+                + "}\n";
+
+        var jasminResult = TestUtils.backend(new OllirResult(ollirCode, Collections.emptyMap()));
+        TestUtils.noErrors(jasminResult.getReports());
+        CpUtils.matches(jasminResult, "\\.method private static run_split0\\(LLarge;");
+
+        assertEquals("1000030000", SpecsStrings.normalizeFileContents(jasminResult.run(), true).trim());
+    }
+
+    private static String wrapInMain(String body) {
+        return "import io;\n"
+                + "Large {\n"
+                + ".construct Large().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+                + ".method public static main(args.array.String).V {\n" + body + "ret.V;\n}\n"
+                + "}\n";
+    }
 }